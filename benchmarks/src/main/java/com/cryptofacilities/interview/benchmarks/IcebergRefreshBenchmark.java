@@ -0,0 +1,50 @@
+package com.cryptofacilities.interview.benchmarks;
+
+import com.cryptofacilities.interview.Order;
+import com.cryptofacilities.interview.OrderBookManagerImpl;
+import com.cryptofacilities.interview.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to fill the shown slice of an iceberg order at the front of a level and replenish it, with the level queried
+ * afterwards.
+ *
+ * The level holds {@code icebergsAtLevel} iceberg orders with a display quantity of 1 and a reserve that never runs
+ * out, so every invocation fills the order at the front, refills it and moves it to the back. The cost should not
+ * depend on the number of orders at the level.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IcebergRefreshBenchmark {
+
+  private static final String INSTRUMENT = "ETHBTC";
+  private static final long PRICE = 1_000;
+
+  @Param({"1", "100", "10000"})
+  public int icebergsAtLevel;
+
+  private OrderBookManagerImpl orderBookManager;
+  private Order incomingOrder;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    orderBookManager = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {});
+    for(int i = 0; i < icebergsAtLevel; i++) {
+      orderBookManager.addOrder(new Order(i, INSTRUMENT, Side.sell, PRICE, Long.MAX_VALUE / 2, 1));
+    }
+    incomingOrder = new Order(-1, INSTRUMENT, Side.buy, PRICE, 0);
+  }
+
+  @Benchmark
+  public long fillAndReplenish() {
+    incomingOrder.setQuantity(1);
+    orderBookManager.addOrder(incomingOrder);
+    return orderBookManager.getTotalQuantityAtLevel(INSTRUMENT, Side.sell, PRICE);
+  }
+}
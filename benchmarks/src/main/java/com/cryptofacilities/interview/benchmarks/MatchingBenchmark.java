@@ -0,0 +1,93 @@
+package com.cryptofacilities.interview.benchmarks;
+
+import com.cryptofacilities.interview.FillListener;
+import com.cryptofacilities.interview.Order;
+import com.cryptofacilities.interview.OrderBookManagerImpl;
+import com.cryptofacilities.interview.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the matching engine, reported as resting orders matched per second.
+ *
+ * Each invocation rests {@code ordersPerSweep} sell orders spread over {@code levelsPerSweep} price levels and then
+ * sends one buy that sweeps all of them, on top of a book that already has {@code bookDepth} untouched levels behind
+ * the swept ones. The orders are allocated once up front and re-used, so the only work measured is the book.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatchingBenchmark {
+
+  private static final String INSTRUMENT = "ETHBTC";
+  private static final long BASE_PRICE = 1_000;
+  private static final long ORDER_QUANTITY = 10;
+
+  @Param({"1", "10", "100"})
+  public int ordersPerSweep;
+
+  @Param({"1", "10"})
+  public int levelsPerSweep;
+
+  @Param({"0", "100"})
+  public int bookDepth;
+
+  private OrderBookManagerImpl orderBookManager;
+  private Order[] restingOrders;
+  private Order incomingOrder;
+  private MatchCounter matchCounter;
+
+  /**
+   * Counts matched resting orders. JMH reports the count as a rate alongside the benchmark score.
+   */
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class MatchCounter implements FillListener {
+    public long matchedOrders;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      matchedOrders = 0;
+    }
+
+    @Override
+    public void onFill(Order restingOrder, Order incomingOrder, long price, long quantity) {
+      if(restingOrder.getQuantity() == 0)
+        matchedOrders++;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp(MatchCounter matchCounter) {
+    this.matchCounter = matchCounter;
+    orderBookManager = new OrderBookManagerImpl(matchCounter);
+
+    for(int level = 0; level < bookDepth; level++) {
+      long price = BASE_PRICE + levelsPerSweep + level;
+      orderBookManager.addOrder(new Order("depth" + level, INSTRUMENT, Side.sell, price, ORDER_QUANTITY));
+    }
+
+    restingOrders = new Order[ordersPerSweep];
+    for(int i = 0; i < ordersPerSweep; i++) {
+      long price = BASE_PRICE + (i % levelsPerSweep);
+      restingOrders[i] = new Order("resting" + i, INSTRUMENT, Side.sell, price, ORDER_QUANTITY);
+    }
+    incomingOrder = new Order("incoming", INSTRUMENT, Side.buy, BASE_PRICE + levelsPerSweep - 1, 0);
+  }
+
+  @Benchmark
+  public long sweep() {
+    for(Order restingOrder : restingOrders) {
+      restingOrder.setQuantity(ORDER_QUANTITY);
+      orderBookManager.addOrder(restingOrder);
+    }
+
+    incomingOrder.setQuantity(ORDER_QUANTITY * ordersPerSweep);
+    orderBookManager.addOrder(incomingOrder);
+    return matchCounter.matchedOrders;
+  }
+}
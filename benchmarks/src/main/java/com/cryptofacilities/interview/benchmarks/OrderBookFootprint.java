@@ -0,0 +1,82 @@
+package com.cryptofacilities.interview.benchmarks;
+
+import com.cryptofacilities.interview.OffHeapOrderBookManager;
+import com.cryptofacilities.interview.Order;
+import com.cryptofacilities.interview.OrderBookManagerImpl;
+import com.cryptofacilities.interview.Side;
+
+/**
+ * Measures the heap retained per resting order by the book structures, separately from the orders themselves.
+ *
+ * The orders are created first and their footprint measured, then they are all added to an OrderBookManagerImpl and
+ * the extra heap is attributed to the book. Run with a fixed heap and a single GC thread for stable numbers, e.g.
+ *
+ *   java -Xms4g -Xmx4g -XX:+UseSerialGC -cp target/benchmarks.jar \
+ *     com.cryptofacilities.interview.benchmarks.OrderBookFootprint 1000000 10
+ *
+ * With a third argument of {@code offheap} the orders are added to an OffHeapOrderBookManager instead, which doesn't
+ * keep the Order objects, and the heap it retains is reported alongside the direct memory of its store.
+ */
+public class OrderBookFootprint {
+
+  public static void main(String[] args) {
+    int orderCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int ordersPerLevel = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    if(args.length > 2 && args[2].equals("offheap")) {
+      measureOffHeap(orderCount, ordersPerLevel);
+      return;
+    }
+
+    long baseline = usedHeap();
+    Order[] orders = new Order[orderCount];
+    for(int i = 0; i < orderCount; i++) {
+      Side side = i % 2 == 0 ? Side.buy : Side.sell;
+      long level = (i / 2) / ordersPerLevel;
+      long price = side == Side.buy ? 1_000_000 - level : 1_000_001 + level;
+      orders[i] = new Order(Integer.toString(i), "ETHBTC", side, price, 10);
+    }
+    long ordersOnly = usedHeap() - baseline;
+
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    for(Order order : orders) {
+      orderBookManager.addOrder(order);
+    }
+    long withBook = usedHeap() - baseline;
+
+    System.out.printf("orders=%d ordersPerLevel=%d%n", orderCount, ordersPerLevel);
+    System.out.printf("order objects:  %.1f bytes/order%n", (double) ordersOnly / orderCount);
+    System.out.printf("book overhead:  %.1f bytes/order%n", (double) (withBook - ordersOnly) / orderCount);
+    System.out.printf("total:          %.1f bytes/order%n", (double) withBook / orderCount);
+
+    //keep everything reachable until after the last measurement
+    if(orderBookManager.getBestPrice("ETHBTC", Side.buy) == orders.length)
+      System.out.println();
+  }
+
+  private static void measureOffHeap(int orderCount, int ordersPerLevel) {
+    long baseline = usedHeap();
+    OffHeapOrderBookManager orderBookManager = new OffHeapOrderBookManager(orderCount);
+    for(int i = 0; i < orderCount; i++) {
+      Side side = i % 2 == 0 ? Side.buy : Side.sell;
+      long level = (i / 2) / ordersPerLevel;
+      long price = side == Side.buy ? 1_000_000 - level : 1_000_001 + level;
+      orderBookManager.addOrder(new Order(i, "ETHBTC", side, price, 10));
+    }
+    long withBook = usedHeap() - baseline;
+
+    System.out.printf("off-heap orders=%d ordersPerLevel=%d%n", orderCount, ordersPerLevel);
+    System.out.printf("heap:           %.1f bytes/order%n", (double) withBook / orderCount);
+    System.out.printf("direct memory:  %.1f bytes/order%n", (double) OffHeapOrderBookManager.RECORD_SIZE);
+
+    if(orderBookManager.getLiveOrderCount() < 0)
+      System.out.println();
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for(int i = 0; i < 5; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,261 @@
+package com.cryptofacilities.interview.benchmarks;
+
+import com.cryptofacilities.interview.DepthVisitor;
+import com.cryptofacilities.interview.Order;
+import com.cryptofacilities.interview.OrderCommandBatch;
+import com.cryptofacilities.interview.OrderBookManagerImpl;
+import com.cryptofacilities.interview.OrderResult;
+import com.cryptofacilities.interview.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Per-operation cost of OrderBookManagerImpl on a book in steady state.
+ *
+ * Every instrument is filled with {@code bookDepth} price levels on each side and {@code ordersPerLevel} orders at
+ * each level before measuring. Each operation then targets an order (or its level) picked by {@code orderFlow}:
+ * <ul>
+ *   <li>UNIFORM - every level is equally likely, as assumed in the README</li>
+ *   <li>TOP_HEAVY - levels get exponentially less likely the further they are from the best price, so most of the
+ *   flow is at the top of the book as on a real exchange</li>
+ * </ul>
+ * The targets are pre-generated and the orders are allocated up front and re-used, so only the book is measured.
+ *
+ * Run with both modes to get ops/s and the latency percentiles (p99 etc), and with the GC profiler for the
+ * allocation rate per operation:
+ *
+ *   java -jar target/benchmarks.jar OrderBookManagerBenchmark -prof gc
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderBookManagerBenchmark {
+
+  public enum OrderFlow { UNIFORM, TOP_HEAVY }
+
+  private static final long BASE_PRICE = 1_000_000;
+  private static final long INITIAL_QUANTITY = 1L << 40;
+  private static final int TARGET_COUNT = 1 << 16;
+
+  @Param({"10", "1000"})
+  public int bookDepth;
+
+  @Param({"1", "10"})
+  public int ordersPerLevel;
+
+  @Param({"1", "100"})
+  public int instrumentCount;
+
+  @Param({"UNIFORM", "TOP_HEAVY"})
+  public OrderFlow orderFlow;
+
+  @Param({"false", "true"})
+  public boolean numericIds;
+
+  private OrderBookManagerImpl orderBookManager;
+
+  /**
+   * Every resting order, laid out as [instrument][side][level][position in level]
+   */
+  private Order[] orders;
+
+  /**
+   * Pre-generated indexes into {@link #orders}, cycled through by the benchmarks
+   */
+  private int[] targets;
+  private int nextTarget = 0;
+
+  /**
+   * Re-used by the zero-copy reads, they sum the quantity of every order they are shown
+   */
+  private long visitedQuantity;
+  private final long[] depthBuffer = new long[3 * 10];
+
+  private static final int BATCH_SIZE = 64;
+  private final OrderCommandBatch batch = new OrderCommandBatch(BATCH_SIZE);
+  private final Consumer<Order> orderConsumer = order -> visitedQuantity += order.getQuantity();
+  private final DepthVisitor depthVisitor = new DepthVisitor() {
+    @Override
+    public boolean onLevel(int level, long price, long totalQuantity, int orderCount) {
+      return true;
+    }
+
+    @Override
+    public void onOrder(int level, Order order) {
+      visitedQuantity += order.getQuantity();
+    }
+  };
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    orderBookManager = new OrderBookManagerImpl();
+    orders = new Order[instrumentCount * 2 * bookDepth * ordersPerLevel];
+
+    int slot = 0;
+    for(int instrument = 0; instrument < instrumentCount; instrument++) {
+      String instrumentName = "INSTRUMENT" + instrument;
+      for(Side side : Side.values()) {
+        for(int level = 0; level < bookDepth; level++) {
+          long price = side == Side.buy ? BASE_PRICE - level : BASE_PRICE + 1 + level;
+          for(int position = 0; position < ordersPerLevel; position++) {
+            Order order = numericIds
+                    ? new Order(slot, instrumentName, side, price, INITIAL_QUANTITY)
+                    : new Order("order" + slot, instrumentName, side, price, INITIAL_QUANTITY);
+            orderBookManager.addOrder(order);
+            orders[slot++] = order;
+          }
+        }
+      }
+    }
+
+    Random random = new Random(42);
+    targets = new int[TARGET_COUNT];
+    for(int i = 0; i < TARGET_COUNT; i++) {
+      int instrument = random.nextInt(instrumentCount);
+      int side = random.nextInt(2);
+      int level = pickLevel(random);
+      int position = random.nextInt(ordersPerLevel);
+      targets[i] = ((instrument * 2 + side) * bookDepth + level) * ordersPerLevel + position;
+    }
+  }
+
+  private int pickLevel(Random random) {
+    if(orderFlow == OrderFlow.UNIFORM)
+      return random.nextInt(bookDepth);
+
+    //exponential with a mean of 5 levels from the top, clipped to the depth of the book
+    int level = (int) (-Math.log(1 - random.nextDouble()) * 5);
+    return Math.min(level, bookDepth - 1);
+  }
+
+  private Order nextOrder() {
+    Order order = orders[targets[nextTarget]];
+    nextTarget = (nextTarget + 1) & (TARGET_COUNT - 1);
+    return order;
+  }
+
+  /**
+   * Deletes the target order and adds it straight back at the end of its level, so the book keeps the same shape.
+   * Reports per operation, i.e. the average of one delete and one add.
+   */
+  @Benchmark
+  @OperationsPerInvocation(2)
+  public void deleteAndAddOrder() {
+    Order order = nextOrder();
+    if(numericIds)
+      orderBookManager.deleteOrder(order.getNumericOrderId());
+    else
+      orderBookManager.deleteOrder(order.getOrderId());
+
+    order.setQuantity(INITIAL_QUANTITY);
+    orderBookManager.addOrder(order);
+  }
+
+  /**
+   * Increases the quantity of the target order, which moves it to the back of its level.
+   */
+  @Benchmark
+  public OrderResult modifyOrderUp() {
+    Order order = nextOrder();
+    if(numericIds)
+      return orderBookManager.modifyOrder(order.getNumericOrderId(), order.getQuantity() + 1);
+    return orderBookManager.modifyOrder(order.getOrderId(), order.getQuantity() + 1);
+  }
+
+  /**
+   * Decreases the quantity of the target order, which keeps its position.
+   */
+  @Benchmark
+  public OrderResult modifyOrderDown() {
+    Order order = nextOrder();
+    if(numericIds)
+      return orderBookManager.modifyOrder(order.getNumericOrderId(), order.getQuantity() - 1);
+    return orderBookManager.modifyOrder(order.getOrderId(), order.getQuantity() - 1);
+  }
+
+  /**
+   * The same decreases as {@link #modifyOrderDown()}, {@value #BATCH_SIZE} at a time through applyBatch. Includes
+   * filling the batch, as a gateway would for every burst.
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public OrderResult modifyOrderDownBatch() {
+    batch.clear();
+    for(int i = 0; i < BATCH_SIZE; i++) {
+      Order order = nextOrder();
+      if(numericIds)
+        batch.modifyOrder(order.getNumericOrderId(), order.getQuantity() - 1);
+      else
+        batch.modifyOrder(order.getOrderId(), order.getQuantity() - 1);
+    }
+    orderBookManager.applyBatch(batch);
+    return batch.getResult(BATCH_SIZE - 1);
+  }
+
+  @Benchmark
+  public long getBestPrice() {
+    Order order = nextOrder();
+    return orderBookManager.getBestPrice(order.getInstrument(), order.getSide());
+  }
+
+  @Benchmark
+  public long getTotalQuantityAtLevel() {
+    Order order = nextOrder();
+    return orderBookManager.getTotalQuantityAtLevel(order.getInstrument(), order.getSide(), order.getPrice());
+  }
+
+  /**
+   * getTotalQuantityAtLevel through the instrument id overload, which indexes the book array instead of hashing the
+   * instrument name. Instruments are created in order, so instrument i has id i.
+   */
+  @Benchmark
+  public long getTotalQuantityAtLevelById() {
+    int instrumentId = targets[nextTarget] / (2 * bookDepth * ordersPerLevel);
+    Order order = nextOrder();
+    return orderBookManager.getTotalQuantityAtLevel(instrumentId, order.getSide(), order.getPrice());
+  }
+
+  @Benchmark
+  public List<Order> getOrdersAtLevel() {
+    Order order = nextOrder();
+    return orderBookManager.getOrdersAtLevel(order.getInstrument(), order.getSide(), order.getPrice());
+  }
+
+  /**
+   * Same orders as {@link #getOrdersAtLevel()}, visited in place rather than copied into a list.
+   */
+  @Benchmark
+  public long forEachOrderAtLevel() {
+    Order order = nextOrder();
+    visitedQuantity = 0;
+    orderBookManager.forEachOrderAtLevel(order.getInstrument(), order.getSide(), order.getPrice(), orderConsumer);
+    return visitedQuantity;
+  }
+
+  /**
+   * Every order in the best 10 levels of a side, as a depth renderer would read them each tick.
+   */
+  @Benchmark
+  public long walkDepth() {
+    Order order = nextOrder();
+    visitedQuantity = 0;
+    orderBookManager.walkDepth(order.getInstrument(), order.getSide(), 10, depthVisitor);
+    return visitedQuantity;
+  }
+
+  /**
+   * The best 10 levels of a side as price/quantity/count triples, the depth ladder a market data publisher sends.
+   */
+  @Benchmark
+  public int getDepth() {
+    Order order = nextOrder();
+    return orderBookManager.getDepth(order.getInstrument(), order.getSide(), 10, depthBuffer);
+  }
+}
@@ -0,0 +1,91 @@
+package com.cryptofacilities.interview.benchmarks;
+
+import com.cryptofacilities.interview.Order;
+import com.cryptofacilities.interview.OrderBookManagerImpl;
+import com.cryptofacilities.interview.OrderJournal;
+import com.cryptofacilities.interview.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of journalling on the hot path, and how fast a journal is replayed on startup.
+ *
+ * <ul>
+ *   <li>append - time to journal one add, with a sync every {@code recordsPerSync} records, so the cost of each fsync
+ *   is spread over its group. 0 never syncs, which shows the cost of encoding and writing alone.</li>
+ *   <li>replay - records replayed per second into a new OrderBookManagerImpl, from a journal of {@code REPLAY_ORDERS}
+ *   adds over many instruments, half of which are deleted again.</li>
+ * </ul>
+ *
+ *   java -jar target/benchmarks.jar OrderJournalBenchmark
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderJournalBenchmark {
+
+  private static final int REPLAY_ORDERS = 1_000_000;
+  private static final int REPLAY_RECORDS = REPLAY_ORDERS * 3 / 2;
+  private static final int INSTRUMENTS = 100;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  @Param({"0", "100", "10000"})
+  public int recordsPerSync;
+
+  private Path directory;
+  private Path replayFile;
+  private OrderJournal journal;
+  private Order[] orders;
+  private int nextOrder = 0;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("journal-benchmark");
+
+    replayFile = directory.resolve("replay.journal");
+    try(OrderJournal replayJournal = new OrderJournal(replayFile, BUFFER_SIZE, 0)) {
+      for(int i = 0; i < REPLAY_ORDERS; i++) {
+        replayJournal.appendAdd(new Order(i, "INSTRUMENT" + (i % INSTRUMENTS), Side.values()[i & 1], 1000 + i % 50, 10));
+        if(i % 2 == 1)
+          replayJournal.appendDelete(i - 1);
+      }
+    }
+
+    orders = new Order[1024];
+    for(int i = 0; i < orders.length; i++) {
+      orders[i] = new Order(i, "INSTRUMENT" + (i % INSTRUMENTS), Side.buy, 1000 + i % 50, 10);
+    }
+    journal = new OrderJournal(directory.resolve("append.journal"), BUFFER_SIZE, recordsPerSync);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    journal.close();
+    Files.delete(directory.resolve("append.journal"));
+    Files.delete(replayFile);
+    Files.delete(directory);
+  }
+
+  @Benchmark
+  @BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void append() {
+    journal.appendAdd(orders[nextOrder]);
+    nextOrder = (nextOrder + 1) & (orders.length - 1);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(REPLAY_RECORDS)
+  public OrderBookManagerImpl replay() throws IOException {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    OrderJournal.replay(replayFile, orderBookManager);
+    return orderBookManager;
+  }
+}
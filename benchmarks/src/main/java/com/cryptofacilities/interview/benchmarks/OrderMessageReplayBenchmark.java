@@ -0,0 +1,138 @@
+package com.cryptofacilities.interview.benchmarks;
+
+import com.cryptofacilities.interview.OffHeapOrderBookManager;
+import com.cryptofacilities.interview.OrderBookManagerImpl;
+import com.cryptofacilities.interview.OrderMessageDecoder;
+import com.cryptofacilities.interview.OrderMessageEncoder;
+import com.cryptofacilities.interview.OrderMessageHandler;
+import com.cryptofacilities.interview.OrderMessageReplay;
+import com.cryptofacilities.interview.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages per second replayed from a captured file of binary order messages, see OrderMessageEncoder.
+ *
+ * The file holds {@code ORDERS} adds over 100 instruments, each order modified down 100 orders later and deleted
+ * 10,000 orders later, so about 10,000 orders rest at any time and the book stays in a steady state.
+ *
+ * <ul>
+ *   <li>replay - decoding the file and applying it to a new OrderBookManagerImpl (optionally with pooled orders and
+ *   levels) or OffHeapOrderBookManager</li>
+ *   <li>decodeOnly - decoding the file into a handler that only sums the fields, the cost of reading and decoding
+ *   alone</li>
+ * </ul>
+ *
+ *   java -jar target/benchmarks.jar OrderMessageReplayBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderMessageReplayBenchmark {
+
+  public enum Manager { ON_HEAP, ON_HEAP_POOLED, OFF_HEAP }
+
+  private static final int ORDERS = 2_000_000;
+  private static final int INSTRUMENTS = 100;
+  private static final int MODIFY_LAG = 100;
+  private static final int DELETE_LAG = 10_000;
+  private static final int MESSAGES = INSTRUMENTS + ORDERS + (ORDERS - MODIFY_LAG) + (ORDERS - DELETE_LAG);
+
+  @Param({"ON_HEAP", "ON_HEAP_POOLED", "OFF_HEAP"})
+  public Manager manager;
+
+  private Path directory;
+  private Path file;
+  private long checksum;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("message-benchmark");
+    file = directory.resolve("messages.bin");
+
+    ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+    OrderMessageEncoder encoder = new OrderMessageEncoder(buffer);
+    try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      for(int i = 0; i < INSTRUMENTS; i++) {
+        encoder.encodeInstrument(i, "INSTRUMENT" + i);
+      }
+      for(int i = 0; i < ORDERS; i++) {
+        if(buffer.remaining() < 128)
+          write(buffer, channel);
+        encoder.encodeAdd(i % INSTRUMENTS, i, Side.values()[(i / INSTRUMENTS) & 1], 1000 + i % 50, 10);
+        if(i >= MODIFY_LAG)
+          encoder.encodeModify(i - MODIFY_LAG, 5);
+        if(i >= DELETE_LAG)
+          encoder.encodeDelete(i - DELETE_LAG);
+      }
+      write(buffer, channel);
+    }
+  }
+
+  private static void write(ByteBuffer buffer, FileChannel channel) throws IOException {
+    buffer.flip();
+    while(buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.delete(file);
+    Files.delete(directory);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(MESSAGES)
+  public long replay() throws IOException {
+    OrderMessageHandler handler;
+    if(manager == Manager.OFF_HEAP) {
+      handler = OrderMessageDecoder.handlerFor(new OffHeapOrderBookManager(2 * DELETE_LAG));
+    } else {
+      OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+      if(manager == Manager.ON_HEAP_POOLED)
+        orderBookManager.enablePooling(2 * DELETE_LAG, 2 * INSTRUMENTS * 50);
+      handler = OrderMessageDecoder.handlerFor(orderBookManager);
+    }
+    return OrderMessageReplay.replay(file, new OrderMessageDecoder(handler));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(MESSAGES)
+  public long decodeOnly() throws IOException {
+    checksum = 0;
+    OrderMessageReplay.replay(file, new OrderMessageDecoder(new OrderMessageHandler() {
+      @Override
+      public void onInstrument(int instrumentId, String instrument) {
+        checksum += instrumentId;
+      }
+
+      @Override
+      public void onAdd(int instrumentId, long orderId, Side side, long price, long quantity) {
+        checksum += orderId + price + quantity;
+      }
+
+      @Override
+      public void onModify(long orderId, long newQuantity) {
+        checksum += orderId + newQuantity;
+      }
+
+      @Override
+      public void onDelete(long orderId) {
+        checksum += orderId;
+      }
+    }));
+    return checksum;
+  }
+}
@@ -0,0 +1,77 @@
+package com.cryptofacilities.interview.benchmarks;
+
+import com.cryptofacilities.interview.Order;
+import com.cryptofacilities.interview.ShardedOrderBookManager;
+import com.cryptofacilities.interview.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of ShardedOrderBookManager as the shard count grows, to check it scales with cores.
+ *
+ * Every producer thread submits a batch of adds and then deletes spread over many instruments, and waits for the
+ * shards to apply them, so the score is operations actually applied per second. Run with as many producer threads as
+ * needed to saturate the shards, e.g.
+ *
+ *   java -jar target/benchmarks.jar ShardedOrderBookManagerBenchmark -t 4
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardedOrderBookManagerBenchmark {
+
+  private static final int INSTRUMENTS = 256;
+  private static final int BATCH = 1_024;
+
+  @Param({"1", "2", "4", "8"})
+  public int shardCount;
+
+  private ShardedOrderBookManager orderBookManager;
+  private final AtomicInteger producerCount = new AtomicInteger();
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    orderBookManager = new ShardedOrderBookManager(shardCount);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException {
+    orderBookManager.close();
+  }
+
+  /**
+   * The orders one producer thread cycles through, with ids that don't clash with other producers.
+   */
+  @State(Scope.Thread)
+  public static class Producer {
+    private Order[] orders;
+
+    @Setup(Level.Trial)
+    public void setUp(ShardedOrderBookManagerBenchmark benchmark) {
+      int producer = benchmark.producerCount.getAndIncrement();
+      orders = new Order[BATCH];
+      for(int i = 0; i < BATCH; i++) {
+        long orderId = (long) producer * BATCH + i;
+        orders[i] = new Order(orderId, "INSTRUMENT" + (i % INSTRUMENTS), Side.buy, 100 + i % 10, 10);
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(2 * BATCH)
+  public void addAndDelete(Producer producer) {
+    for(Order order : producer.orders) {
+      order.setQuantity(10);
+      orderBookManager.addOrder(order);
+    }
+    for(Order order : producer.orders) {
+      orderBookManager.deleteOrder(order.getNumericOrderId());
+    }
+    orderBookManager.flush();
+  }
+}
@@ -0,0 +1,132 @@
+package com.cryptofacilities.interview.benchmarks;
+
+import com.cryptofacilities.interview.Order;
+import com.cryptofacilities.interview.OrderBookManagerImpl;
+import com.cryptofacilities.interview.OrderBookSnapshot;
+import com.cryptofacilities.interview.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to snapshot and restore books of {@code orderCount} resting orders, spread over 100 instruments with 10 orders
+ * per level.
+ *
+ * <ul>
+ *   <li>capture - capturing every book in one go, as JournaledOrderBookManager.snapshot() does</li>
+ *   <li>captureSlice - capturing the first 4096 orders, the most a periodic snapshot of JournaledOrderBookManager
+ *   captures after a mutation, however large the book</li>
+ *   <li>write - writing a captured snapshot to disk, done off the writing thread</li>
+ *   <li>restore - rebuilding a new OrderBookManagerImpl from the snapshot file on restart, the number to track for a
+ *   10M order book</li>
+ * </ul>
+ *
+ * Each is a single shot, as a 10M order book takes a while to build. Needs a few GB of heap:
+ *
+ *   java -jar target/benchmarks.jar SnapshotRestoreBenchmark -p orderCount=10000000
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class SnapshotRestoreBenchmark {
+
+  private static final int INSTRUMENTS = 100;
+  private static final int ORDERS_PER_LEVEL = 10;
+  private static final int ORDERS_PER_SLICE = 4096;
+
+  static OrderBookManagerImpl buildBooks(int orderCount) {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    String[] instruments = new String[INSTRUMENTS];
+    for(int i = 0; i < INSTRUMENTS; i++) {
+      instruments[i] = "INSTRUMENT" + i;
+    }
+
+    for(int i = 0; i < orderCount; i++) {
+      int instrument = i % INSTRUMENTS;
+      int position = i / INSTRUMENTS;
+      int level = position / (2 * ORDERS_PER_LEVEL);
+      Side side = (position / ORDERS_PER_LEVEL) % 2 == 0 ? Side.buy : Side.sell;
+      long price = side == Side.buy ? 1_000_000 - level : 1_000_001 + level;
+      orderBookManager.addOrder(new Order(i, instruments[instrument], side, price, 10));
+    }
+    return orderBookManager;
+  }
+
+  @State(Scope.Benchmark)
+  public static class Books {
+    @Param({"1000000", "10000000"})
+    public int orderCount;
+
+    OrderBookManagerImpl orderBookManager;
+    OrderBookSnapshot snapshot;
+    Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      orderBookManager = buildBooks(orderCount);
+      snapshot = OrderBookSnapshot.capture(orderBookManager, 0);
+      directory = Files.createTempDirectory("snapshot-benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      Files.deleteIfExists(directory.resolve("books.snapshot"));
+      Files.delete(directory);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class SnapshotFile {
+    @Param({"1000000", "10000000"})
+    public int orderCount;
+
+    Path directory;
+    Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      directory = Files.createTempDirectory("snapshot-benchmark");
+      file = directory.resolve("books.snapshot");
+      //the books are only needed to write the file, so they don't take up heap while restoring
+      OrderBookSnapshot.capture(buildBooks(orderCount), 0).writeTo(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      Files.delete(file);
+      Files.delete(directory);
+    }
+  }
+
+  @Benchmark
+  public OrderBookSnapshot capture(Books books) {
+    return OrderBookSnapshot.capture(books.orderBookManager, 0);
+  }
+
+  @Benchmark
+  public boolean captureSlice(Books books) {
+    OrderBookSnapshot.Capture capture = OrderBookSnapshot.begin(books.orderBookManager);
+    boolean complete = capture.captureBooks(0, ORDERS_PER_SLICE);
+    //leaves the book it stopped in free for the next invocation's capture
+    capture.cancel();
+    return complete;
+  }
+
+  @Benchmark
+  public void write(Books books) throws IOException {
+    books.snapshot.writeTo(books.directory.resolve("books.snapshot"));
+  }
+
+  @Benchmark
+  public OrderBookManagerImpl restore(SnapshotFile snapshotFile) throws IOException {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    //no journal tail to replay, so this is the snapshot alone
+    OrderBookSnapshot.restore(snapshotFile.file, snapshotFile.directory.resolve("missing.journal"), orderBookManager);
+    return orderBookManager;
+  }
+}
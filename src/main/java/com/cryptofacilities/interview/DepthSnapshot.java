@@ -0,0 +1,86 @@
+package com.cryptofacilities.interview;
+
+/**
+ * A reader thread's copy of the top levels of an OrderBook, filled by {@link PublishedDepth#readInto(DepthSnapshot)}.
+ *
+ * Owned by a single reader and meant to be re-used for every read, so reading the book doesn't allocate. Level 0 is
+ * the best price on each side.
+ */
+public class DepthSnapshot {
+
+    /**
+     * The number of levels copied on each side, indexed by side ordinal
+     */
+    final int[] levelCounts = new int[2];
+
+    /**
+     * The levels copied on each side, indexed by side ordinal, each level being its price, total quantity and order
+     * count
+     */
+    final long[][] levels;
+
+    long version = -1;
+
+    /**
+     * @param depth the most levels per side this snapshot can hold, at least the depth it is read from
+     */
+    public DepthSnapshot(int depth) {
+        levels = new long[2][3 * depth];
+    }
+
+    /**
+     * @return the version of the published levels this was copied from, -1 if it has never been read into
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param side the side of the book
+     * @return the number of levels on the side, up to the published depth
+     */
+    public int getLevelCount(Side side) {
+        return levelCounts[side.ordinal()];
+    }
+
+    /**
+     * @param side the side of the book
+     * @return the best price on the side, or -1 if the side is empty
+     */
+    public long getBestPrice(Side side) {
+        return getLevelCount(side) > 0 ? getPrice(side, 0) : -1;
+    }
+
+    /**
+     * @param side the side of the book
+     * @param level the level, 0 being the best price
+     * @return the price of the level
+     */
+    public long getPrice(Side side, int level) {
+        return levels[side.ordinal()][checkLevel(side, level) * 3];
+    }
+
+    /**
+     * @param side the side of the book
+     * @param level the level, 0 being the best price
+     * @return the total quantity of the orders at the level
+     */
+    public long getTotalQuantity(Side side, int level) {
+        return levels[side.ordinal()][checkLevel(side, level) * 3 + 1];
+    }
+
+    /**
+     * @param side the side of the book
+     * @param level the level, 0 being the best price
+     * @return the number of orders at the level
+     */
+    public long getOrderCount(Side side, int level) {
+        return levels[side.ordinal()][checkLevel(side, level) * 3 + 2];
+    }
+
+    private int checkLevel(Side side, int level) {
+        if(level < 0 || level >= getLevelCount(side))
+            throw new IndexOutOfBoundsException("Level " + level + " of " + getLevelCount(side) + " on " + side);
+        return level;
+    }
+}
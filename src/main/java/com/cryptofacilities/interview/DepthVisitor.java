@@ -0,0 +1,27 @@
+package com.cryptofacilities.interview;
+
+/**
+ * Walks the best price levels of one side of a book, see
+ * {@link OrderBookManager#walkDepth(String, Side, int, DepthVisitor)}.
+ *
+ * Levels are visited from the best price to the worst, each optionally followed by its orders in queue order. Nothing
+ * is copied or allocated along the way, so a visitor re-used for every walk reads the book without any garbage.
+ */
+public interface DepthVisitor {
+
+    /**
+     * @param level the position of the level from the best price, 0 being the best
+     * @param price the price of the level
+     * @param totalQuantity the total quantity resting at the level
+     * @param orderCount the number of orders resting at the level
+     * @return true to have the orders at the level passed to {@link #onOrder(int, Order)} before the next level
+     */
+    boolean onLevel( int level, long price, long totalQuantity, int orderCount );
+
+    /**
+     * @param level the position of the level the order rests at
+     * @param order the order, still resting in the book. Must not be modified, or kept beyond the call.
+     */
+    default void onOrder( int level, Order order ) {
+    }
+}
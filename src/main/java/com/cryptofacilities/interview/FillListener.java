@@ -0,0 +1,20 @@
+package com.cryptofacilities.interview;
+
+/**
+ * Receives the fills produced when an incoming order crosses orders resting on the opposite side of an
+ * {@link OrderBook OrderBook}.
+ *
+ * Fills are reported in price-time priority, one call per resting order touched. By the time of the call the
+ * quantities of both orders have already been reduced by the filled quantity, so a resting order with a quantity of
+ * 0 has been completely filled and removed from the book.
+ */
+public interface FillListener {
+
+    /**
+     * @param restingOrder the order that was resting in the book
+     * @param incomingOrder the order that crossed the book
+     * @param price the price of the fill, always the price of the resting order
+     * @param quantity the quantity filled
+     */
+    void onFill( Order restingOrder, Order incomingOrder, long price, long quantity );
+}
@@ -0,0 +1,87 @@
+package com.cryptofacilities.interview;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size histogram of non-negative long values (e.g. latencies in nanoseconds), in the style of HdrHistogram.
+ *
+ * Values are counted in log-linear buckets: each power of two range is split into 16 equal sub-buckets, so every
+ * value is counted to within about 6% of its true value, from 1 to Long.MAX_VALUE, in a single array of 960 counts
+ * allocated up front. Recording is an index calculation and an increment, with no locks and no allocation.
+ *
+ * Values are recorded by a single thread, the thread that owns what is being measured, and can be read from any
+ * thread with {@link #snapshot()}. {@link #reset()} can also be called from any thread: it doesn't touch the counts
+ * the writer is incrementing, it just makes later snapshots count from that point.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * The counts at the last reset, subtracted from the counts in every snapshot
+     */
+    private volatile long[] baseline = new long[BUCKETS];
+
+    /**
+     * Count a value. Must only be called from the histogram's one writing thread.
+     *
+     * @param value the value, negative values are counted as 0
+     */
+    public void record(long value) {
+        int index = index(Math.max(value, 0));
+        //single writer, so a plain increment published with an ordered store is enough
+        counts.lazySet(index, counts.get(index) + 1);
+    }
+
+    /**
+     * @return a copy of the counts recorded since the last reset, safe to call from any thread
+     */
+    public HistogramSnapshot snapshot() {
+        long[] base = baseline;
+        long[] snapshot = new long[BUCKETS];
+        for(int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i) - base[i];
+        }
+        return new HistogramSnapshot(snapshot);
+    }
+
+    /**
+     * Start counting again from now, safe to call from any thread.
+     */
+    public void reset() {
+        long[] base = new long[BUCKETS];
+        for(int i = 0; i < BUCKETS; i++) {
+            base[i] = counts.get(i);
+        }
+        baseline = base;
+    }
+
+    static int index(long value) {
+        if(value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the smallest value counted in a bucket
+     */
+    static long lowestValue(int index) {
+        if(index < SUB_BUCKETS)
+            return index;
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @return the largest value counted in a bucket
+     */
+    static long highestValue(int index) {
+        return index == BUCKETS - 1 ? Long.MAX_VALUE : lowestValue(index + 1) - 1;
+    }
+}
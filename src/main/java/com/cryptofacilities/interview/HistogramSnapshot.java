@@ -0,0 +1,74 @@
+package com.cryptofacilities.interview;
+
+/**
+ * The counts of a {@link Histogram Histogram} at a point in time, with the usual summary statistics. Values are only
+ * known to the bucket they were counted in, so percentiles and the maximum are reported as the highest value of their
+ * bucket and the mean uses the middle of each bucket.
+ */
+public class HistogramSnapshot {
+
+    private final long[] counts;
+    private final long totalCount;
+
+    HistogramSnapshot(long[] counts) {
+        this.counts = counts;
+        long totalCount = 0;
+        for(long count : counts) {
+            totalCount += count;
+        }
+        this.totalCount = totalCount;
+    }
+
+    /**
+     * @return the number of values counted
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @param percentile between 0 and 100, e.g. 99.9
+     * @return the value that the percentile of values are at or below, 0 if nothing was counted
+     */
+    public long getValueAtPercentile(double percentile) {
+        long countAtPercentile = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long count = 0;
+        for(int i = 0; i < counts.length; i++) {
+            count += counts[i];
+            if(count >= countAtPercentile)
+                return Histogram.highestValue(i);
+        }
+        return 0;
+    }
+
+    /**
+     * @return the largest value counted, 0 if nothing was counted
+     */
+    public long getMax() {
+        for(int i = counts.length - 1; i >= 0; i--) {
+            if(counts[i] > 0)
+                return Histogram.highestValue(i);
+        }
+        return 0;
+    }
+
+    /**
+     * @return the mean of the values counted, 0 if nothing was counted
+     */
+    public double getMean() {
+        if(totalCount == 0)
+            return 0;
+        double sum = 0;
+        for(int i = 0; i < counts.length; i++) {
+            if(counts[i] > 0)
+                sum += counts[i] * (Histogram.lowestValue(i) / 2.0 + Histogram.highestValue(i) / 2.0);
+        }
+        return sum / totalCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1f p50=%d p99=%d p99.9=%d max=%d", totalCount, getMean(),
+                getValueAtPercentile(50), getValueAtPercentile(99), getValueAtPercentile(99.9), getMax());
+    }
+}
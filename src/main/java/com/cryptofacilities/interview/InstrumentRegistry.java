@@ -0,0 +1,73 @@
+package com.cryptofacilities.interview;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns each instrument a dense int id, 0 for the first instrument registered, 1 for the next and so on.
+ *
+ * Managers keep their OrderBooks in an array indexed by the id, so a caller that looks an instrument's id up once
+ * (e.g. when a session subscribes to it, or at startup from the day's instrument list) reaches its OrderBook with an
+ * array index on every later call, without hashing the instrument name or comparing Strings. The registry also holds
+ * the one canonical String of each instrument, which orders created through the int id overloads share instead of
+ * each carrying its own copy decoded from the wire.
+ *
+ * Ids are never reused or removed. Like the managers using it, this is single threaded.
+ */
+public class InstrumentRegistry {
+
+    /**
+     * Returned by {@link #getId(String)} for an instrument that isn't registered
+     */
+    public static final int UNKNOWN = -1;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] instruments = new String[16];
+    private int size = 0;
+
+    /**
+     * Get the id of an instrument, assigning it the next id if it doesn't have one yet.
+     *
+     * @param instrument identifier of an instrument
+     * @return the id of the instrument
+     */
+    public int register(String instrument) {
+        Integer id = ids.get(instrument);
+        if(id != null)
+            return id;
+
+        if(size == instruments.length)
+            instruments = Arrays.copyOf(instruments, size * 2);
+        instruments[size] = instrument;
+        ids.put(instrument, size);
+        return size++;
+    }
+
+    /**
+     * @param instrument identifier of an instrument
+     * @return the id of the instrument, or {@link #UNKNOWN} if it isn't registered
+     */
+    public int getId(String instrument) {
+        Integer id = ids.get(instrument);
+        return id != null ? id : UNKNOWN;
+    }
+
+    /**
+     * @param id the id of a registered instrument
+     * @return the canonical name of the instrument
+     * @throws IllegalArgumentException if no instrument has the id
+     */
+    public String getInstrument(int id) {
+        if(id < 0 || id >= size)
+            throw new IllegalArgumentException("No instrument has id " + id);
+        return instruments[id];
+    }
+
+    /**
+     * @return the number of instruments registered, which is also the next id to be assigned
+     */
+    public int size() {
+        return size;
+    }
+}
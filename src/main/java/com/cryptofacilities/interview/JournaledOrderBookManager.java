@@ -0,0 +1,293 @@
+package com.cryptofacilities.interview;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * An {@link OrderBookManager OrderBookManager} that survives restarts, by writing every mutation to an
+ * {@link OrderJournal OrderJournal} before applying it to an {@link OrderBookManagerImpl OrderBookManagerImpl}.
+ *
+ * On creation the existing journal (if any) is replayed into the manager, rebuilding its OrderBooks and order
+ * directory, and new mutations are appended after it. Like the manager it wraps, this is single threaded.
+ *
+ * With a snapshot file, an {@link OrderBookSnapshot OrderBookSnapshot} is taken every {@code recordsPerSnapshot}
+ * mutations. It is captured a few levels at a time after each of the following mutations, so no single mutation is
+ * held up for long, then written to disk by a background thread. A restart restores the latest snapshot and replays
+ * only the journal written after it.
+ */
+public class JournaledOrderBookManager implements OrderBookManager, AutoCloseable {
+
+    /**
+     * Roughly the most orders captured after a single mutation while a periodic snapshot is in progress
+     */
+    private static final long SNAPSHOT_ORDERS_PER_MUTATION = 4096;
+
+    private final OrderBookManagerImpl orderBookManager;
+    private final OrderJournal journal;
+    private final long replayedRecordCount;
+
+    /**
+     * The file snapshots are written to, null if snapshots are disabled
+     */
+    private final Path snapshotFile;
+    private final long recordsPerSnapshot;
+    private long recordsSinceSnapshot = 0;
+
+    /**
+     * Writes snapshots to disk off this thread, null if snapshots are disabled
+     */
+    private final ExecutorService snapshotWriter;
+
+    /**
+     * The periodic snapshot being captured, null if there is none in progress
+     */
+    private OrderBookSnapshot.Capture capture;
+
+    /**
+     * The snapshot currently being written, a new one isn't started until it is done
+     */
+    private CompletableFuture<Void> pendingSnapshot = CompletableFuture.completedFuture(null);
+
+    /**
+     * The number of snapshots that failed to be written, e.g. because the disk is full
+     */
+    private long failedSnapshotCount = 0;
+
+    /**
+     * Replay the journal into the manager, then open the journal to record new mutations.
+     *
+     * @param orderBookManager the manager to rebuild and wrap, normally a new one
+     * @param journalFile the journal file, created if it doesn't exist
+     * @param bufferSize the number of bytes of records buffered before they are written to the file
+     * @param recordsPerSync the number of records between forcing the journal to disk, or 0 to only force on
+     *                       {@link #sync()} and {@link #close()}
+     */
+    public JournaledOrderBookManager(OrderBookManagerImpl orderBookManager, Path journalFile, int bufferSize,
+                                     int recordsPerSync) throws IOException {
+        this(orderBookManager, journalFile, bufferSize, recordsPerSync, null, 0);
+    }
+
+    /**
+     * Restore the latest snapshot (if any) into the manager and replay the journal written after it, then open the
+     * journal to record new mutations.
+     *
+     * @param orderBookManager the manager to rebuild and wrap, must be a new one
+     * @param journalFile the journal file, created if it doesn't exist
+     * @param bufferSize the number of bytes of records buffered before they are written to the file
+     * @param recordsPerSync the number of records between forcing the journal to disk, or 0 to only force on
+     *                       {@link #sync()} and {@link #close()}
+     * @param snapshotFile the snapshot file, or null to disable snapshots
+     * @param recordsPerSnapshot the number of mutations between snapshots, or 0 to only take them on {@link #snapshot()}
+     */
+    public JournaledOrderBookManager(OrderBookManagerImpl orderBookManager, Path journalFile, int bufferSize,
+                                     int recordsPerSync, Path snapshotFile, long recordsPerSnapshot) throws IOException {
+        if(recordsPerSnapshot < 0)
+            throw new IllegalArgumentException("Records per snapshot must not be negative but was " + recordsPerSnapshot);
+
+        this.orderBookManager = orderBookManager;
+        if(snapshotFile != null && snapshotFile.toFile().exists())
+            this.replayedRecordCount = OrderBookSnapshot.restore(snapshotFile, journalFile, orderBookManager);
+        else
+            this.replayedRecordCount = OrderJournal.replay(journalFile, orderBookManager);
+        this.journal = new OrderJournal(journalFile, bufferSize, recordsPerSync);
+        this.snapshotFile = snapshotFile;
+        this.recordsPerSnapshot = recordsPerSnapshot;
+        this.snapshotWriter = snapshotFile == null ? null : Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "order-book-snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Create a price ladder OrderBook, then journal its creation. Creating a book matches and reports nothing, so unlike
+     * the other mutations it is only journalled once it has succeeded, and a rejected one leaves no record.
+     *
+     * @see OrderBookManagerImpl#addPriceLadderInstrument(String, long, long, int)
+     */
+    public void addPriceLadderInstrument(String instrument, long tickSize, long centrePrice, int ladderSize) {
+        orderBookManager.addPriceLadderInstrument(instrument, tickSize, centrePrice, ladderSize);
+        journal.appendPriceLadderInstrument(instrument, tickSize, centrePrice, ladderSize);
+        afterMutation();
+    }
+
+    /**
+     * Check the order, journal it, then add it. An order the manager would reject is never journalled.
+     *
+     * @throws IllegalArgumentException if the order's OrderBook can't hold its price
+     */
+    public void addOrder(Order order) {
+        orderBookManager.checkOrder(order);
+        journal.appendAdd(order);
+        orderBookManager.addOrder(order);
+        afterMutation();
+    }
+
+    public OrderResult modifyOrder(String orderId, long newQuantity) {
+        journal.appendModify(orderId, newQuantity);
+        OrderResult result = orderBookManager.modifyOrder(orderId, newQuantity);
+        afterMutation();
+        return result;
+    }
+
+    public OrderResult modifyOrder(long orderId, long newQuantity) {
+        journal.appendModify(orderId, newQuantity);
+        OrderResult result = orderBookManager.modifyOrder(orderId, newQuantity);
+        afterMutation();
+        return result;
+    }
+
+    public OrderResult deleteOrder(String orderId) {
+        journal.appendDelete(orderId);
+        OrderResult result = orderBookManager.deleteOrder(orderId);
+        afterMutation();
+        return result;
+    }
+
+    public OrderResult deleteOrder(long orderId) {
+        journal.appendDelete(orderId);
+        OrderResult result = orderBookManager.deleteOrder(orderId);
+        afterMutation();
+        return result;
+    }
+
+    public long getBestPrice(String instrument, Side side) {
+        return orderBookManager.getBestPrice(instrument, side);
+    }
+
+    public long getOrderNumAtLevel(String instrument, Side side, long price) {
+        return orderBookManager.getOrderNumAtLevel(instrument, side, price);
+    }
+
+    public long getTotalQuantityAtLevel(String instrument, Side side, long price) {
+        return orderBookManager.getTotalQuantityAtLevel(instrument, side, price);
+    }
+
+    public long getTotalVolumeAtLevel(String instrument, Side side, long price) {
+        return orderBookManager.getTotalVolumeAtLevel(instrument, side, price);
+    }
+
+    public List<Order> getOrdersAtLevel(String instrument, Side side, long price) {
+        return orderBookManager.getOrdersAtLevel(instrument, side, price);
+    }
+
+    public void forEachOrderAtLevel(String instrument, Side side, long price, Consumer<Order> consumer) {
+        orderBookManager.forEachOrderAtLevel(instrument, side, price, consumer);
+    }
+
+    public int walkDepth(String instrument, Side side, int maxLevels, DepthVisitor visitor) {
+        return orderBookManager.walkDepth(instrument, side, maxLevels, visitor);
+    }
+
+    public int getDepth(String instrument, Side side, int n, long[] buffer) {
+        return orderBookManager.getDepth(instrument, side, n, buffer);
+    }
+
+    /**
+     * @return the number of journal records replayed when this was created
+     */
+    public long getReplayedRecordCount() {
+        return replayedRecordCount;
+    }
+
+    /**
+     * A snapshot that fails to be written is counted once the next mutation finds it has finished, and the next
+     * periodic snapshot is taken as usual. Until one succeeds, a restart replays the journal from the last snapshot
+     * that was written.
+     *
+     * @return the number of snapshots that failed to be written so far
+     */
+    public long getFailedSnapshotCount() {
+        return failedSnapshotCount;
+    }
+
+    /**
+     * Make every mutation so far durable.
+     */
+    public void sync() {
+        journal.sync();
+    }
+
+    /**
+     * Take a complete snapshot now, capturing every book on this thread in one go rather than over the following
+     * mutations, e.g. before shutting down. It is written in the background.
+     *
+     * @return completes once the snapshot is on disk
+     */
+    public CompletableFuture<Void> snapshot() {
+        if(snapshotFile == null)
+            throw new IllegalStateException("Snapshots are disabled, no snapshot file was given");
+
+        //a periodic snapshot part way through is superseded by this one
+        if(capture != null)
+            capture.cancel();
+        capture = OrderBookSnapshot.begin(orderBookManager);
+        capture.captureBooks(journal.getPosition(), Long.MAX_VALUE);
+        return writeSnapshot();
+    }
+
+    /**
+     * Wait for any snapshot being written, then sync and close the journal. The wrapped manager can still be queried.
+     */
+    @Override
+    public void close() throws IOException {
+        if(snapshotWriter != null) {
+            snapshotWriter.shutdown();
+            try {
+                snapshotWriter.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        journal.close();
+    }
+
+    /**
+     * Start a periodic snapshot once enough mutations have been journalled since the last one, and carry on capturing
+     * the one in progress. A new one isn't started while the last one is still being written, and the last one is
+     * counted if it failed.
+     */
+    private void afterMutation() {
+        if(pendingSnapshot.isCompletedExceptionally()) {
+            //some logging should occur here
+            failedSnapshotCount++;
+            pendingSnapshot = CompletableFuture.completedFuture(null);
+        }
+
+        if(capture == null) {
+            if(recordsPerSnapshot == 0 || ++recordsSinceSnapshot < recordsPerSnapshot || !pendingSnapshot.isDone())
+                return;
+            capture = OrderBookSnapshot.begin(orderBookManager);
+        }
+
+        if(capture.captureBooks(journal.getPosition(), SNAPSHOT_ORDERS_PER_MUTATION))
+            writeSnapshot();
+    }
+
+    /**
+     * Hand the completed capture to the background thread to write.
+     */
+    private CompletableFuture<Void> writeSnapshot() {
+        //the journal must be durable up to every book's position, or a crash could leave the snapshot ahead of it
+        journal.sync();
+        OrderBookSnapshot snapshot = capture.finish();
+        capture = null;
+        recordsSinceSnapshot = 0;
+
+        pendingSnapshot = CompletableFuture.runAsync(() -> {
+            try {
+                snapshot.writeTo(snapshotFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, snapshotWriter);
+        return pendingSnapshot;
+    }
+}
@@ -0,0 +1,113 @@
+package com.cryptofacilities.interview;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A downstream price level (L2) view of every instrument, built only from the updates of an
+ * {@link L2DeltaListener L2DeltaListener} feed, e.g. by a market data publisher or a client of one.
+ *
+ * Each level holds the total quantity and order count last reported for it, and is dropped when it is reported with
+ * an order count of 0. Applying every update of every flush leaves this with the same levels as the OrderBooks the
+ * feed came from. Not thread-safe, updates and queries must come from the same thread.
+ */
+public class L2Book implements L2DeltaListener {
+
+    /**
+     * Stands in for a side of an instrument that has never had an update
+     */
+    private static final TreeMap<Long, long[]> EMPTY_SIDE = new TreeMap<>();
+
+    /**
+     * A mapping of instrument name to its levels
+     */
+    private final Map<String, InstrumentLevels> books = new HashMap<>();
+
+    private long updateCount = 0;
+
+    @Override
+    public void onLevelUpdate(String instrument, Side side, long price, long totalQuantity, int orderCount) {
+        updateCount++;
+        TreeMap<Long, long[]> levels = books.computeIfAbsent(instrument, key -> new InstrumentLevels()).side(side);
+        if(orderCount == 0) {
+            levels.remove(price);
+            return;
+        }
+
+        long[] level = levels.get(price);
+        if(level == null) {
+            level = new long[2];
+            levels.put(price, level);
+        }
+        level[0] = totalQuantity;
+        level[1] = orderCount;
+    }
+
+    /**
+     * @param instrument instrument to check
+     * @param side side of the book to check
+     * @return the best price on the side, or -1 if there are no levels on it
+     */
+    public long getBestPrice(String instrument, Side side) {
+        TreeMap<Long, long[]> levels = getLevels(instrument, side);
+        return levels.isEmpty() ? -1 : levels.firstKey();
+    }
+
+    /**
+     * @param instrument instrument to check
+     * @param side side of the book to check
+     * @param price price level to check
+     * @return the total quantity at the level, or -1 if there is no level at that price
+     */
+    public long getTotalQuantityAtLevel(String instrument, Side side, long price) {
+        long[] level = getLevels(instrument, side).get(price);
+        return level != null ? level[0] : -1;
+    }
+
+    /**
+     * @param instrument instrument to check
+     * @param side side of the book to check
+     * @param price price level to check
+     * @return the number of orders at the level, or -1 if there is no level at that price
+     */
+    public long getOrderNumAtLevel(String instrument, Side side, long price) {
+        long[] level = getLevels(instrument, side).get(price);
+        return level != null ? level[1] : -1;
+    }
+
+    /**
+     * @param instrument instrument to check
+     * @param side side of the book to check
+     * @return the number of price levels on the side
+     */
+    public int getLevelCount(String instrument, Side side) {
+        return getLevels(instrument, side).size();
+    }
+
+    /**
+     * @return the number of updates applied since this was created
+     */
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    private TreeMap<Long, long[]> getLevels(String instrument, Side side) {
+        InstrumentLevels book = books.get(instrument);
+        return book != null ? book.side(side) : EMPTY_SIDE;
+    }
+
+    /**
+     * The levels of a single instrument. Each side maps price to total quantity and order count, ordered from best to
+     * worst.
+     */
+    private static class InstrumentLevels {
+        final TreeMap<Long, long[]> buy = new TreeMap<>(Collections.reverseOrder());
+        final TreeMap<Long, long[]> sell = new TreeMap<>();
+
+        TreeMap<Long, long[]> side(Side side) {
+            return side == Side.buy ? buy : sell;
+        }
+    }
+}
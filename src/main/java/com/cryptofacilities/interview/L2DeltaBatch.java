@@ -0,0 +1,109 @@
+package com.cryptofacilities.interview;
+
+import java.util.Arrays;
+
+/**
+ * The price levels changed since the last flush, across every {@link OrderBook OrderBook} of a manager.
+ *
+ * A level is queued the first time it changes in a batch and flagged as pending (see
+ * {@link PriceLevelOrders#l2Pending}), so however many times it changes again it is only queued once. Flushing
+ * reports the current state of every queued level, which coalesces a burst of changes at a level into a single
+ * update. The queue is a set of parallel arrays that only grow, so nothing is allocated per change once warmed up.
+ */
+class L2DeltaBatch {
+  private final L2DeltaListener listener;
+
+  private PriceLevelOrders[] levels = new PriceLevelOrders[64];
+  private OrderBookSide[] bookSides = new OrderBookSide[64];
+  private Side[] sides = new Side[64];
+  private String[] instruments = new String[64];
+  private int size = 0;
+
+  /**
+   * Takes back the removed levels that were still queued when they were removed, null when levels aren't pooled
+   */
+  private ObjectPool<PriceLevelOrders> levelPool;
+
+  /**
+   * @param listener receives the updates when the batch is flushed
+   */
+  L2DeltaBatch(L2DeltaListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Queue a level that has changed, unless it is already queued.
+   *
+   * @param instrument identifier of the instrument the level is in
+   * @param side the side of the book the level is on
+   * @param bookSide the side of the book holding the level
+   * @param level the level, changed or about to be changed
+   */
+  void levelChanged(String instrument, Side side, OrderBookSide bookSide, PriceLevelOrders level) {
+    if(level.l2Pending)
+      return;
+
+    if(size == levels.length)
+      grow();
+    level.l2Pending = true;
+    levels[size] = level;
+    bookSides[size] = bookSide;
+    sides[size] = side;
+    instruments[size] = instrument;
+    size++;
+  }
+
+  /**
+   * Return queued levels that have been removed from their side to a pool once they are reported, as their side
+   * can't while they are queued.
+   *
+   * @param levelPool the pool the sides take their levels from
+   */
+  void setLevelPool(ObjectPool<PriceLevelOrders> levelPool) {
+    this.levelPool = levelPool;
+  }
+
+  /**
+   * @return the number of levels queued since the last flush
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Report the current state of every queued level to the listener, then empty the queue.
+   *
+   * Levels that still have orders report their totals. An emptied level has been removed from its side, and is
+   * reported as removed only if it was reported before, and only if no new level has been created at its price. A new
+   * level at the price is always queued after the one it replaced and reports itself.
+   */
+  void flush() {
+    for(int i = 0; i < size; i++) {
+      PriceLevelOrders level = levels[i];
+      level.l2Pending = false;
+
+      if(!level.isEmpty()) {
+        level.l2Published = true;
+        listener.onLevelUpdate(instruments[i], sides[i], level.getPrice(), level.getTotalQuantity(), level.getOrderCount());
+      } else {
+        if(level.l2Published && bookSides[i].getLevel(level.getPrice()) == null)
+          listener.onLevelUpdate(instruments[i], sides[i], level.getPrice(), 0, 0);
+        //an emptied level has always been removed from its side
+        if(levelPool != null)
+          levelPool.release(level);
+      }
+
+      levels[i] = null;
+      bookSides[i] = null;
+    }
+    size = 0;
+  }
+
+  private void grow() {
+    int capacity = levels.length * 2;
+    levels = Arrays.copyOf(levels, capacity);
+    bookSides = Arrays.copyOf(bookSides, capacity);
+    sides = Arrays.copyOf(sides, capacity);
+    instruments = Arrays.copyOf(instruments, capacity);
+  }
+}
@@ -0,0 +1,21 @@
+package com.cryptofacilities.interview;
+
+/**
+ * Receives price level (L2) updates of an {@link OrderBookManagerImpl OrderBookManagerImpl}, one per level changed
+ * since the last {@link OrderBookManagerImpl#flushL2Deltas()}.
+ *
+ * Each update is the new state of the level, not the change, so updates can be applied in any order and a level
+ * touched many times in a batch is only reported once. A level that was removed is reported with a total quantity
+ * and order count of 0. A level created and removed again within a batch is not reported at all.
+ */
+public interface L2DeltaListener {
+
+    /**
+     * @param instrument identifier of the instrument the level is in
+     * @param side the side of the book the level is on
+     * @param price the price of the level
+     * @param totalQuantity the new total quantity resting at the level, 0 if the level was removed
+     * @param orderCount the new number of orders resting at the level, 0 if the level was removed
+     */
+    void onLevelUpdate( String instrument, Side side, long price, long totalQuantity, int orderCount );
+}
@@ -0,0 +1,247 @@
+package com.cryptofacilities.interview;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * A downstream order-by-order (L3) view of every instrument, built from the events of an
+ * {@link L3EventListener L3EventListener} feed, with recovery from missed events.
+ *
+ * Each instrument expects its events in sequence. When an event arrives out of sequence the instrument is out of sync:
+ * the gap handler is told, and events for the instrument are held back from then on instead of applied. Once an
+ * {@link L3Snapshot L3Snapshot} taken after the gap is given to {@link #applySnapshot(L3Snapshot)}, the view of the
+ * instrument is replaced with it and the held back events numbered after it are applied. The writer never waits for
+ * any of this. Not thread-safe, events, snapshots and queries must come from the same thread.
+ */
+public class L3Book implements L3EventListener {
+
+    private final Map<String, InstrumentOrders> books = new HashMap<>();
+
+    /**
+     * Told the instrument whenever one falls out of sync, null if there is none
+     */
+    private final Consumer<String> gapHandler;
+
+    /**
+     * Creates a view that only notices missed events, {@link #isRecovering(String)} says which instruments need a
+     * snapshot.
+     */
+    public L3Book() {
+        this(null);
+    }
+
+    /**
+     * @param gapHandler told the instrument whenever one falls out of sync, e.g. to request a snapshot of it with
+     *                   {@link OrderBookManagerImpl#requestL3Snapshot(String)}
+     */
+    public L3Book(Consumer<String> gapHandler) {
+        this.gapHandler = gapHandler;
+    }
+
+    @Override
+    public void onOrderEvent(String instrument, long sequence, L3EventType type, Order order, long quantity) {
+        InstrumentOrders book = books.computeIfAbsent(instrument, name -> new InstrumentOrders());
+        if(!book.recovering && sequence != book.sequence + 1) {
+            book.recovering = true;
+            if(gapHandler != null)
+                gapHandler.accept(instrument);
+        }
+
+        Order copy = new Order(order);
+        copy.setQuantity(quantity);
+        if(book.recovering) {
+            book.heldBack.add(new HeldBackEvent(sequence, type, copy));
+            return;
+        }
+        book.apply(type, copy);
+        book.sequence = sequence;
+    }
+
+    /**
+     * Replace the view of an instrument with a snapshot, then apply the held back events that follow it.
+     *
+     * A snapshot older than the view is ignored. If the held back events don't carry on from the snapshot, more
+     * events were missed since it was taken, and the instrument stays out of sync until a newer one is applied.
+     *
+     * @param snapshot a snapshot of the instrument
+     * @return true if the instrument is in sync afterwards
+     */
+    public boolean applySnapshot(L3Snapshot snapshot) {
+        InstrumentOrders book = books.computeIfAbsent(snapshot.getInstrument(), name -> new InstrumentOrders());
+        if(snapshot.getSequence() <= book.sequence)
+            return !book.recovering;
+
+        book.clear();
+        for(Side side : Side.values()) {
+            for(Order order : snapshot.getOrders(side)) {
+                book.apply(L3EventType.ADDED, new Order(order));
+            }
+        }
+        book.sequence = snapshot.getSequence();
+
+        int next = 0;
+        List<HeldBackEvent> heldBack = book.heldBack;
+        for(; next < heldBack.size(); next++) {
+            HeldBackEvent event = heldBack.get(next);
+            if(event.sequence <= book.sequence)
+                continue;
+            if(event.sequence != book.sequence + 1)
+                break;
+            book.apply(event.type, event.order);
+            book.sequence = event.sequence;
+        }
+
+        heldBack.subList(0, next).clear();
+        book.recovering = !heldBack.isEmpty();
+        return !book.recovering;
+    }
+
+    /**
+     * @param instrument instrument to check
+     * @return true if events were missed for the instrument and it is waiting for a snapshot
+     */
+    public boolean isRecovering(String instrument) {
+        InstrumentOrders book = books.get(instrument);
+        return book != null && book.recovering;
+    }
+
+    /**
+     * @param instrument instrument to check
+     * @return the sequence number of the last event applied to the instrument, 0 if there were none
+     */
+    public long getSequence(String instrument) {
+        InstrumentOrders book = books.get(instrument);
+        return book != null ? book.sequence : 0;
+    }
+
+    /**
+     * @param instrument instrument to check
+     * @param side side of the book to check
+     * @return the best price on the side, or -1 if there are no orders on it
+     */
+    public long getBestPrice(String instrument, Side side) {
+        InstrumentOrders book = books.get(instrument);
+        if(book == null || book.levels(side).isEmpty())
+            return -1;
+        return book.levels(side).firstKey();
+    }
+
+    /**
+     * @param instrument instrument to check
+     * @param side side of the book to check
+     * @param price price level to check
+     * @return copies of the orders at the level in queue order, empty if there are none
+     */
+    public List<Order> getOrdersAtLevel(String instrument, Side side, long price) {
+        InstrumentOrders book = books.get(instrument);
+        Map<Object, Order> level = book != null ? book.levels(side).get(price) : null;
+        if(level == null)
+            return Collections.emptyList();
+
+        List<Order> orders = new ArrayList<>(level.size());
+        for(Order order : level.values()) {
+            orders.add(new Order(order));
+        }
+        return orders;
+    }
+
+    /**
+     * @param instrument instrument to check
+     * @return the number of orders resting in the instrument
+     */
+    public int getOrderCount(String instrument) {
+        InstrumentOrders book = books.get(instrument);
+        return book != null ? book.orders.size() : 0;
+    }
+
+    /**
+     * @return the key an order is held under, its numeric id if it has one so the id is never turned into a String
+     */
+    private static Object keyOf(Order order) {
+        return order.hasNumericOrderId() ? (Object) order.getNumericOrderId() : order.getOrderId();
+    }
+
+    /**
+     * The view of a single instrument
+     */
+    private static class InstrumentOrders {
+        long sequence = 0;
+        boolean recovering = false;
+        final List<HeldBackEvent> heldBack = new ArrayList<>();
+
+        /**
+         * A mapping of order key to the view's copy of the order
+         */
+        final Map<Object, Order> orders = new HashMap<>();
+
+        /**
+         * The levels on each side, ordered from best to worst. Each level holds its orders in queue order.
+         */
+        final TreeMap<Long, LinkedHashMap<Object, Order>> buyLevels = new TreeMap<>(Collections.reverseOrder());
+        final TreeMap<Long, LinkedHashMap<Object, Order>> sellLevels = new TreeMap<>();
+
+        TreeMap<Long, LinkedHashMap<Object, Order>> levels(Side side) {
+            return side == Side.buy ? buyLevels : sellLevels;
+        }
+
+        /**
+         * @param type what happened to the order
+         * @param order a copy of the order, with its quantity after the event
+         */
+        void apply(L3EventType type, Order order) {
+            Object key = keyOf(order);
+            if(type == L3EventType.ADDED) {
+                orders.put(key, order);
+                levels(order.getSide()).computeIfAbsent(order.getPrice(), price -> new LinkedHashMap<>())
+                        .put(key, order);
+                return;
+            }
+
+            Order resting = orders.get(key);
+            if(resting == null)
+                return;
+            TreeMap<Long, LinkedHashMap<Object, Order>> side = levels(resting.getSide());
+            LinkedHashMap<Object, Order> level = side.get(resting.getPrice());
+
+            if(type == L3EventType.REDUCED) {
+                resting.setQuantity(order.getQuantity());
+            } else if(type == L3EventType.REQUEUED) {
+                resting.setQuantity(order.getQuantity());
+                level.remove(key);
+                level.put(key, resting);
+            } else {
+                orders.remove(key);
+                level.remove(key);
+                if(level.isEmpty())
+                    side.remove(resting.getPrice());
+            }
+        }
+
+        void clear() {
+            orders.clear();
+            buyLevels.clear();
+            sellLevels.clear();
+        }
+    }
+
+    /**
+     * An event held back while an instrument is out of sync
+     */
+    private static class HeldBackEvent {
+        final long sequence;
+        final L3EventType type;
+        final Order order;
+
+        HeldBackEvent(long sequence, L3EventType type, Order order) {
+            this.sequence = sequence;
+            this.type = type;
+            this.order = order;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.cryptofacilities.interview;
+
+/**
+ * Receives every change to the orders resting in the OrderBooks of an {@link OrderBookManagerImpl OrderBookManagerImpl},
+ * order by order (L3), as it happens.
+ *
+ * Events of each instrument are numbered from 1 with no gaps, so a consumer that sees a sequence number other than the
+ * one it expects has missed events. It can resync from an {@link L3Snapshot L3Snapshot}, replaying the events it saw
+ * after the snapshot's sequence number, see {@link L3Book L3Book}.
+ */
+public interface L3EventListener {
+
+    /**
+     * @param instrument identifier of the instrument the order is in
+     * @param sequence the number of the event within the instrument, one more than the event before
+     * @param type what happened to the order
+     * @param order the order, still owned by the book. Only valid during the call, copy anything that is kept.
+     * @param quantity the quantity of the order after the event, 0 if it was deleted
+     */
+    void onOrderEvent( String instrument, long sequence, L3EventType type, Order order, long quantity );
+}
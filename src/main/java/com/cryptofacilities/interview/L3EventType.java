@@ -0,0 +1,26 @@
+package com.cryptofacilities.interview;
+
+/**
+ * The kinds of order-by-order (L3) event reported to an {@link L3EventListener L3EventListener}
+ */
+public enum L3EventType {
+    /**
+     * an order came to rest at the back of its level, with whatever was left of it after matching
+     */
+    ADDED,
+
+    /**
+     * the quantity of a resting order went down, by a modify or a partial fill, keeping its place in the queue
+     */
+    REDUCED,
+
+    /**
+     * the quantity of a resting order went up, moving it to the back of the queue at its level
+     */
+    REQUEUED,
+
+    /**
+     * an order left the book, deleted, modified to a quantity of 0 or completely filled
+     */
+    DELETED
+}
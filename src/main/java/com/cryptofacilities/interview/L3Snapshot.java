@@ -0,0 +1,64 @@
+package com.cryptofacilities.interview;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A copy of every order resting in an OrderBook, taken on the thread that owns the book between two L3 events, see
+ * {@link OrderBookManagerImpl#requestL3Snapshot(String)}.
+ *
+ * A consumer of the L3 feed that has missed events replaces its view of the instrument with the snapshot, then applies
+ * only the events numbered after {@link #getSequence()}.
+ */
+public class L3Snapshot {
+
+    private final String instrument;
+    private final long sequence;
+
+    /**
+     * Copies of the orders on each side
+     */
+    private final List<Order> buyOrders = new ArrayList<>();
+    private final List<Order> sellOrders = new ArrayList<>();
+
+    L3Snapshot(String instrument, long sequence) {
+        this.instrument = instrument;
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return identifier of the instrument the orders are in
+     */
+    public String getInstrument() {
+        return instrument;
+    }
+
+    /**
+     * @return the sequence number of the last L3 event applied to the book when this was taken, 0 if there were none
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @param side the side of the book
+     * @return copies of the orders on the side, from the best level to the worst and in queue order within a level
+     */
+    public List<Order> getOrders(Side side) {
+        return Collections.unmodifiableList(orders(side));
+    }
+
+    /**
+     * Add a copy of an order at the back of a side, while this is being taken.
+     *
+     * @param order an order resting in the book
+     */
+    void addOrder(Order order) {
+        orders(order.getSide()).add(new Order(order));
+    }
+
+    private List<Order> orders(Side side) {
+        return side == Side.buy ? buyOrders : sellOrders;
+    }
+}
@@ -0,0 +1,17 @@
+package com.cryptofacilities.interview;
+
+/**
+ * A price level that can be held in {@link SortedLevels SortedLevels}, which links it to its neighbours on the same
+ * side so they can be walked from best to worst without a lookup.
+ *
+ * @param <L> the type of level, only ever linked to levels of the same type
+ */
+abstract class LinkedLevel<L extends LinkedLevel<L>> {
+
+  /**
+   * Links to the neighbouring levels on the same side, better and worse. Maintained by
+   * {@link SortedLevels SortedLevels}, null at either end and while this level isn't in one.
+   */
+  L previousLevel;
+  L nextLevel;
+}
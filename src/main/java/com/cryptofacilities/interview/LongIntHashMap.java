@@ -0,0 +1,149 @@
+package com.cryptofacilities.interview;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive long keys to non-negative int values, using open addressing with linear probing.
+ *
+ * The same layout as {@link LongObjectHashMap LongObjectHashMap}, but with the values in an int array, so the whole map
+ * is two primitive arrays that the garbage collector never has to trace. -1 marks an empty slot.
+ */
+class LongIntHashMap {
+  static final int MISSING = -1;
+
+  private static final float LOAD_FACTOR = 0.5f;
+
+  private long[] keys;
+  private int[] values;
+  private int mask;
+  private int size = 0;
+  private int resizeThreshold;
+
+  /**
+   * @param expectedSize the number of entries the map should hold before it needs to grow
+   */
+  LongIntHashMap(int expectedSize) {
+    allocate(capacityFor(expectedSize));
+  }
+
+  /**
+   * @param key the key to look up
+   * @return the value for the key, or {@link #MISSING} if there is none
+   */
+  int get(long key) {
+    for(int slot = slot(key); values[slot] != MISSING; slot = (slot + 1) & mask) {
+      if(keys[slot] == key)
+        return values[slot];
+    }
+    return MISSING;
+  }
+
+  /**
+   * @param key the key to store the value under
+   * @param value the value, must not be negative
+   * @return the previous value for the key, or {@link #MISSING} if there was none
+   */
+  int put(long key, int value) {
+    if(value < 0)
+      throw new IllegalArgumentException("Negative values are not supported");
+
+    int slot = slot(key);
+    for(; values[slot] != MISSING; slot = (slot + 1) & mask) {
+      if(keys[slot] == key) {
+        int previous = values[slot];
+        values[slot] = value;
+        return previous;
+      }
+    }
+
+    keys[slot] = key;
+    values[slot] = value;
+    if(++size > resizeThreshold)
+      rehash(values.length * 2);
+    return MISSING;
+  }
+
+  /**
+   * @param key the key to remove
+   * @return the value that was removed, or {@link #MISSING} if there was none
+   */
+  int remove(long key) {
+    for(int slot = slot(key); values[slot] != MISSING; slot = (slot + 1) & mask) {
+      if(keys[slot] == key) {
+        int removed = values[slot];
+        values[slot] = MISSING;
+        size--;
+        closeGap(slot);
+        return removed;
+      }
+    }
+    return MISSING;
+  }
+
+  /**
+   * @return the number of entries in the map
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * After a slot is emptied, move back any later entries in the same probe run that would otherwise no longer be
+   * reachable from their home slot.
+   *
+   * @param emptySlot the slot that was just emptied
+   */
+  private void closeGap(int emptySlot) {
+    for(int slot = (emptySlot + 1) & mask; values[slot] != MISSING; slot = (slot + 1) & mask) {
+      int home = slot(keys[slot]);
+
+      //the entry can fill the gap if its home slot is not cyclically between the gap and where it sits now
+      boolean canMove = emptySlot <= slot
+              ? home <= emptySlot || home > slot
+              : home <= emptySlot && home > slot;
+      if(canMove) {
+        keys[emptySlot] = keys[slot];
+        values[emptySlot] = values[slot];
+        values[slot] = MISSING;
+        emptySlot = slot;
+      }
+    }
+  }
+
+  private void rehash(int newCapacity) {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    allocate(newCapacity);
+
+    for(int i = 0; i < oldValues.length; i++) {
+      if(oldValues[i] != MISSING) {
+        int slot = slot(oldKeys[i]);
+        while(values[slot] != MISSING)
+          slot = (slot + 1) & mask;
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new int[capacity];
+    Arrays.fill(values, MISSING);
+    mask = capacity - 1;
+    resizeThreshold = (int) (capacity * LOAD_FACTOR);
+  }
+
+  private int slot(long key) {
+    //spread the bits so sequential ids don't form one long probe run
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  private static int capacityFor(int expectedSize) {
+    long capacity = Long.highestOneBit(Math.max(2, (long) (expectedSize / LOAD_FACTOR)) * 2 - 1);
+    if(capacity > 1 << 30)
+      throw new IllegalArgumentException("Expected size " + expectedSize + " is too large");
+    return (int) capacity;
+  }
+}
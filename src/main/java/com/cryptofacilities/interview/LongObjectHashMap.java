@@ -0,0 +1,170 @@
+package com.cryptofacilities.interview;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive long keys to objects, using open addressing with linear probing.
+ *
+ * Keys are never boxed and there are no entry objects, so lookups hash a long and walk two parallel arrays. Removal
+ * shifts the following entries of the probe run back instead of leaving tombstones, so lookups never slow down after
+ * many removes. Null values are not supported, a null slot marks an empty slot.
+ *
+ * @param <V> the type of the values
+ */
+class LongObjectHashMap<V> {
+  private static final int DEFAULT_EXPECTED_SIZE = 64;
+  private static final float LOAD_FACTOR = 0.5f;
+
+  private long[] keys;
+  private V[] values;
+  private int mask;
+  private int size = 0;
+  private int resizeThreshold;
+
+  LongObjectHashMap() {
+    this(DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * @param expectedSize the number of entries the map should hold before it needs to grow
+   */
+  LongObjectHashMap(int expectedSize) {
+    allocate(capacityFor(expectedSize));
+  }
+
+  /**
+   * @param key the key to look up
+   * @return the value for the key, or null if there is none
+   */
+  V get(long key) {
+    for(int slot = slot(key); values[slot] != null; slot = (slot + 1) & mask) {
+      if(keys[slot] == key)
+        return values[slot];
+    }
+    return null;
+  }
+
+  /**
+   * @param key the key to store the value under
+   * @param value the value, must not be null
+   * @return the previous value for the key, or null if there was none
+   */
+  V put(long key, V value) {
+    if(value == null)
+      throw new IllegalArgumentException("Null values are not supported");
+
+    int slot = slot(key);
+    for(; values[slot] != null; slot = (slot + 1) & mask) {
+      if(keys[slot] == key) {
+        V previous = values[slot];
+        values[slot] = value;
+        return previous;
+      }
+    }
+
+    keys[slot] = key;
+    values[slot] = value;
+    if(++size > resizeThreshold)
+      rehash(values.length * 2);
+    return null;
+  }
+
+  /**
+   * @param key the key to remove
+   * @return the value that was removed, or null if there was none
+   */
+  V remove(long key) {
+    for(int slot = slot(key); values[slot] != null; slot = (slot + 1) & mask) {
+      if(keys[slot] == key) {
+        V removed = values[slot];
+        values[slot] = null;
+        size--;
+        closeGap(slot);
+        return removed;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the number of entries in the map
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return true if the map has no entries
+   */
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Remove every entry, keeping the current capacity.
+   */
+  void clear() {
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  /**
+   * After a slot is emptied, move back any later entries in the same probe run that would otherwise no longer be
+   * reachable from their home slot.
+   *
+   * @param emptySlot the slot that was just emptied
+   */
+  private void closeGap(int emptySlot) {
+    for(int slot = (emptySlot + 1) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+      int home = slot(keys[slot]);
+
+      //the entry can fill the gap if its home slot is not cyclically between the gap and where it sits now
+      boolean canMove = emptySlot <= slot
+              ? home <= emptySlot || home > slot
+              : home <= emptySlot && home > slot;
+      if(canMove) {
+        keys[emptySlot] = keys[slot];
+        values[emptySlot] = values[slot];
+        values[slot] = null;
+        emptySlot = slot;
+      }
+    }
+  }
+
+  private void rehash(int newCapacity) {
+    long[] oldKeys = keys;
+    V[] oldValues = values;
+    allocate(newCapacity);
+
+    for(int i = 0; i < oldValues.length; i++) {
+      if(oldValues[i] != null) {
+        int slot = slot(oldKeys[i]);
+        while(values[slot] != null)
+          slot = (slot + 1) & mask;
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = (V[]) new Object[capacity];
+    mask = capacity - 1;
+    resizeThreshold = (int) (capacity * LOAD_FACTOR);
+  }
+
+  private int slot(long key) {
+    //spread the bits so sequential ids don't form one long probe run
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  private static int capacityFor(int expectedSize) {
+    long capacity = Long.highestOneBit(Math.max(2, (long) (expectedSize / LOAD_FACTOR)) * 2 - 1);
+    if(capacity > 1 << 30)
+      throw new IllegalArgumentException("Expected size " + expectedSize + " is too large");
+    return (int) capacity;
+  }
+}
@@ -0,0 +1,66 @@
+package com.cryptofacilities.interview;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * A stack of re-usable objects, preallocated up front, for the single thread that mutates the books.
+ *
+ * Borrowing takes the most recently released object, so the ones in use stay warm in cache. An empty pool creates a
+ * new object rather than failing, and releasing more objects than it was created with grows the stack, so a pool that
+ * was sized too small only allocates until it has caught up with the peak number in use.
+ *
+ * @param <T> the type of object pooled, reset by the caller when borrowed
+ */
+class ObjectPool<T> {
+  private final Supplier<T> factory;
+  private Object[] available;
+  private int size;
+
+  /**
+   * @param size the number of objects to preallocate
+   * @param factory creates the objects
+   */
+  ObjectPool(int size, Supplier<T> factory) {
+    if(size < 0)
+      throw new IllegalArgumentException("Pool size must not be negative but was " + size);
+
+    this.factory = factory;
+    this.available = new Object[Math.max(size, 16)];
+    for(int i = 0; i < size; i++) {
+      available[i] = factory.get();
+    }
+    this.size = size;
+  }
+
+  /**
+   * @return an object from the pool, or a new one if the pool is empty
+   */
+  @SuppressWarnings("unchecked")
+  T borrow() {
+    if(size == 0)
+      return factory.get();
+
+    T object = (T) available[--size];
+    available[size] = null;
+    return object;
+  }
+
+  /**
+   * Return an object to the pool. It must no longer be referenced by anything that will use it.
+   *
+   * @param object an object borrowed from this pool, or any other of the same type
+   */
+  void release(T object) {
+    if(size == available.length)
+      available = Arrays.copyOf(available, size * 2);
+    available[size++] = object;
+  }
+
+  /**
+   * @return the number of objects waiting to be borrowed
+   */
+  int available() {
+    return size;
+  }
+}
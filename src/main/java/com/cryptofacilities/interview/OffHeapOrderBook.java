@@ -0,0 +1,142 @@
+package com.cryptofacilities.interview;
+
+/**
+ * The OrderBook of a single instrument whose orders live in an {@link OffHeapOrderStore OffHeapOrderStore}.
+ *
+ * Each price level is a small heap object holding the aggregates of the level and the first and last slot of its
+ * queue, which is linked through the order records themselves like the intrusive queue of
+ * {@link PriceLevelOrders PriceLevelOrders}. There are only as many levels as there are prices in the book, so the heap
+ * stays small however many orders rest at them. Levels are kept in {@link SortedLevels SortedLevels} like those of
+ * {@link TreeMapOrderBookSide TreeMapOrderBookSide}: indexed by primitive price and linked from best to worst, with a
+ * TreeMap only used to place new levels.
+ */
+class OffHeapOrderBook {
+
+  /**
+   * A price level, the queue of orders at it being linked through the store
+   */
+  static class Level extends LinkedLevel<Level> {
+    final long price;
+    int head = OffHeapOrderStore.NONE;
+    int tail = OffHeapOrderStore.NONE;
+    int orderCount = 0;
+    long totalQuantity = 0;
+
+    Level(long price) {
+      this.price = price;
+    }
+  }
+
+  private final OffHeapOrderStore store;
+
+  private final SortedLevels<Level> buyLevels = new SortedLevels<>(Side.buy);
+  private final SortedLevels<Level> sellLevels = new SortedLevels<>(Side.sell);
+
+  /**
+   * @param store the store holding the orders of this book
+   */
+  OffHeapOrderBook(OffHeapOrderStore store) {
+    this.store = store;
+  }
+
+  /**
+   * Add an order at the back of the queue at its price level.
+   *
+   * @param slot the slot of an order not yet in any level
+   */
+  void addOrder(int slot) {
+    Level level = getOrCreateLevel(store.getSide(slot), store.getPrice(slot));
+    append(level, slot);
+    level.totalQuantity += store.getQuantity(slot);
+  }
+
+  /**
+   * Change the quantity of a resting order. An increase moves it to the back of the queue.
+   *
+   * @param slot the slot of a resting order
+   * @param newQuantity the new quantity, always positive
+   */
+  void modifyOrder(int slot, long newQuantity) {
+    long quantity = store.getQuantity(slot);
+    Level level = getLevel(store.getSide(slot), store.getPrice(slot));
+    if(newQuantity > quantity && slot != level.tail) {
+      unlink(level, slot);
+      append(level, slot);
+    }
+    level.totalQuantity += newQuantity - quantity;
+    store.setQuantity(slot, newQuantity);
+  }
+
+  /**
+   * Remove a resting order from its level, and the level if it is left empty. The slot is not freed.
+   *
+   * @param slot the slot of a resting order
+   */
+  void deleteOrder(int slot) {
+    Side side = store.getSide(slot);
+    Level level = getLevel(side, store.getPrice(slot));
+    unlink(level, slot);
+    level.totalQuantity -= store.getQuantity(slot);
+    if(level.orderCount == 0)
+      removeLevel(side, level);
+  }
+
+  /**
+   * @return the level at a price, or null if there are no orders at it
+   */
+  Level getLevel(Side side, long price) {
+    return levels(side).get(price);
+  }
+
+  /**
+   * @return the level with the best price on a side, or null if the side is empty. The rest follow through
+   * {@link Level#nextLevel}.
+   */
+  Level getBestLevel(Side side) {
+    return levels(side).getBestLevel();
+  }
+
+  private SortedLevels<Level> levels(Side side) {
+    return side == Side.buy ? buyLevels : sellLevels;
+  }
+
+  private Level getOrCreateLevel(Side side, long price) {
+    SortedLevels<Level> sideLevels = levels(side);
+    Level level = sideLevels.get(price);
+    if(level == null) {
+      level = new Level(price);
+      sideLevels.add(price, level);
+    }
+    return level;
+  }
+
+  private void removeLevel(Side side, Level level) {
+    levels(side).remove(level.price);
+  }
+
+  private void append(Level level, int slot) {
+    store.setPrevious(slot, level.tail);
+    store.setNext(slot, OffHeapOrderStore.NONE);
+    if(level.tail == OffHeapOrderStore.NONE)
+      level.head = slot;
+    else
+      store.setNext(level.tail, slot);
+    level.tail = slot;
+    level.orderCount++;
+  }
+
+  private void unlink(Level level, int slot) {
+    int previous = store.getPrevious(slot);
+    int next = store.getNext(slot);
+    if(previous == OffHeapOrderStore.NONE)
+      level.head = next;
+    else
+      store.setNext(previous, next);
+
+    if(next == OffHeapOrderStore.NONE)
+      level.tail = previous;
+    else
+      store.setPrevious(next, previous);
+    level.orderCount--;
+  }
+}
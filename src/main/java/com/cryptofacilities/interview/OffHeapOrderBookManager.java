@@ -0,0 +1,338 @@
+package com.cryptofacilities.interview;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An {@link OrderBookManager OrderBookManager} that keeps its resting orders off the heap, for books of tens of
+ * millions of orders without the garbage collector having to trace them.
+ *
+ * Orders are copied into fixed size records of an {@link OffHeapOrderStore OffHeapOrderStore} when they are added,
+ * and the Order passed to {@link #addOrder(Order)} isn't kept. The store is allocated up front for a set number of
+ * orders and deleted orders go on a free list to be re-used, so once it is warm adding, modifying and deleting orders
+ * allocates nothing. The order directory is a primitive map from order id to record, and only the price levels are
+ * heap objects, one per price in the book.
+ *
+ * It is a leaner sibling of {@link OrderBookManagerImpl OrderBookManagerImpl}: orders must have numeric ids, orders
+ * are always rested as they arrive (no matching), and there are no depth snapshots or L2/L3 feeds. Like it, this is
+ * single threaded.
+ *
+ * Reads that hand out an {@link Order Order} ({@link #getOrdersAtLevel(String, Side, long)},
+ * {@link #forEachOrderAtLevel(String, Side, long, Consumer)} and the orders of
+ * {@link #walkDepth(String, Side, int, DepthVisitor)}) have to create a copy of each order. Use
+ * {@link #forEachRecordAtLevel(String, Side, long, Consumer)} to read the records in place instead.
+ */
+public class OffHeapOrderBookManager implements OrderBookManager {
+
+    /**
+     * The bytes of direct memory taken by each order the manager has capacity for
+     */
+    public static final int RECORD_SIZE = OffHeapOrderStore.RECORD_SIZE;
+
+    private final OffHeapOrderStore store;
+
+    /**
+     * A mapping of numeric Order ID to the slot of its record in the store
+     */
+    private final LongIntHashMap orderDirectory;
+
+    /**
+     * Assigns every instrument with an OrderBook its index in {@link #orderBooks}. Records refer to their instrument
+     * by that index.
+     */
+    private final InstrumentRegistry instruments = new InstrumentRegistry();
+    private final List<OffHeapOrderBook> orderBooks = new ArrayList<>();
+
+    /**
+     * The OrderBook looked up last and its instrument index, re-used while consecutive calls are for the same
+     * instrument
+     */
+    private String lastInstrument;
+    private int lastInstrumentIndex = -1;
+
+    /**
+     * Passed to {@link #forEachRecordAtLevel(String, Side, long, Consumer)} callbacks, pointed at each record in turn
+     */
+    private final OrderFlyweight flyweight;
+
+    /**
+     * @param capacity the most orders that can rest at once, the store for all of them is allocated up front
+     */
+    public OffHeapOrderBookManager(int capacity) {
+        this.store = new OffHeapOrderStore(capacity);
+        this.orderDirectory = new LongIntHashMap(capacity);
+        this.flyweight = new OrderFlyweight(store, this);
+    }
+
+    /**
+     * Copy the order into the store and rest it at the back of its level. If no OrderBook exists, one will be created.
+     *
+     * @throws IllegalArgumentException if the order doesn't have a numeric id, or an order with its id is resting
+     * @throws IllegalStateException if the store is full
+     */
+    public void addOrder(Order order) {
+        if(!order.hasNumericOrderId())
+            throw new IllegalArgumentException("Order " + order.getOrderId() + " doesn't have a numeric id");
+        if(order.isIceberg())
+            throw new IllegalArgumentException("Order " + order.getOrderId() + " is an iceberg order, which isn't supported");
+
+        addOrder(getOrCreateInstrumentIndex(order.getInstrument()), order.getNumericOrderId(), order.getSide(),
+                order.getPrice(), order.getQuantity());
+    }
+
+    /**
+     * Rest an order given as primitive fields at the back of its level, without creating any objects once the
+     * store and the level are warm.
+     *
+     * @param instrumentId the id of the instrument, see {@link #registerInstrument(String)}
+     * @param orderId numeric orderId of the new order
+     * @param side side of the new order
+     * @param price price of the new order
+     * @param quantity quantity of the new order
+     * @throws IllegalArgumentException if no instrument has the id, or an order with the id is resting
+     * @throws IllegalStateException if the store is full
+     */
+    public void addOrder(int instrumentId, long orderId, Side side, long price, long quantity) {
+        if(instrumentId < 0 || instrumentId >= orderBooks.size())
+            throw new IllegalArgumentException("No instrument has id " + instrumentId);
+        if(orderDirectory.get(orderId) != LongIntHashMap.MISSING)
+            throw new IllegalArgumentException("Order " + orderId + " is already resting");
+
+        int slot = store.allocate(orderId, instrumentId, side, price, quantity);
+        orderBooks.get(instrumentId).addOrder(slot);
+        orderDirectory.put(orderId, slot);
+    }
+
+    /**
+     * Get the id of an instrument, creating an empty OrderBook for it if it doesn't have one yet. Ids are dense and
+     * assigned in the order instruments are first seen.
+     *
+     * @param instrument identifier of an instrument
+     * @return the id to use with {@link #addOrder(int, long, Side, long, long)}
+     */
+    public int registerInstrument(String instrument) {
+        return getOrCreateInstrumentIndex(instrument);
+    }
+
+    /**
+     * Orders can only be added with numeric ids, so only a String id that is a number can name one.
+     *
+     * @return {@link OrderResult#ORDER_NOT_FOUND} unless the id is a number, see {@link #modifyOrder(long, long)}
+     */
+    public OrderResult modifyOrder(String orderId, long newQuantity) {
+        if(!Order.isNumericOrderId(orderId))
+            return OrderResult.ORDER_NOT_FOUND;
+        return modifyOrder(Long.parseLong(orderId), newQuantity);
+    }
+
+    /**
+     * Orders can only be added with numeric ids, so only a String id that is a number can name one.
+     *
+     * @return {@link OrderResult#ORDER_NOT_FOUND} unless the id is a number, see {@link #deleteOrder(long)}
+     */
+    public OrderResult deleteOrder(String orderId) {
+        if(!Order.isNumericOrderId(orderId))
+            return OrderResult.ORDER_NOT_FOUND;
+        return deleteOrder(Long.parseLong(orderId));
+    }
+
+    /**
+     * Find the order's record and modify it with the new quantity. A quantity of 0 or less deletes the order.
+     *
+     * @param orderId numeric orderId of the Order to be modified
+     * @param newQuantity new quantity of the Order
+     * @return {@link OrderResult#OK} or {@link OrderResult#ORDER_NOT_FOUND}
+     */
+    public OrderResult modifyOrder(long orderId, long newQuantity) {
+        int slot = orderDirectory.get(orderId);
+        if(slot == LongIntHashMap.MISSING)
+            return OrderResult.ORDER_NOT_FOUND;
+
+        if(newQuantity <= 0) {
+            delete(orderId, slot);
+        } else {
+            orderBooks.get(store.getInstrument(slot)).modifyOrder(slot, newQuantity);
+        }
+        return OrderResult.OK;
+    }
+
+    /**
+     * Find the order's record, remove it from its OrderBook and free it.
+     *
+     * @param orderId numeric orderId of the Order to be deleted
+     * @return {@link OrderResult#OK} or {@link OrderResult#ORDER_NOT_FOUND}
+     */
+    public OrderResult deleteOrder(long orderId) {
+        int slot = orderDirectory.get(orderId);
+        if(slot == LongIntHashMap.MISSING)
+            return OrderResult.ORDER_NOT_FOUND;
+
+        delete(orderId, slot);
+        return OrderResult.OK;
+    }
+
+    public long getBestPrice(String instrument, Side side) {
+        OffHeapOrderBook.Level level = getBestLevel(instrument, side);
+        return level != null ? level.price : -1;
+    }
+
+    public long getOrderNumAtLevel(String instrument, Side side, long price) {
+        OffHeapOrderBook.Level level = getLevel(instrument, side, price);
+        return level != null ? level.orderCount : -1;
+    }
+
+    public long getTotalQuantityAtLevel(String instrument, Side side, long price) {
+        OffHeapOrderBook.Level level = getLevel(instrument, side, price);
+        return level != null ? level.totalQuantity : -1;
+    }
+
+    public long getTotalVolumeAtLevel(String instrument, Side side, long price) {
+        OffHeapOrderBook.Level level = getLevel(instrument, side, price);
+        return level != null ? level.totalQuantity * price : -1;
+    }
+
+    /**
+     * Copy the orders at a price level out of the store, in queue order.
+     */
+    public List<Order> getOrdersAtLevel(String instrument, Side side, long price) {
+        OffHeapOrderBook.Level level = getLevel(instrument, side, price);
+        if(level == null)
+            return Collections.emptyList();
+
+        List<Order> orders = new ArrayList<>(level.orderCount);
+        for(int slot = level.head; slot != OffHeapOrderStore.NONE; slot = store.getNext(slot)) {
+            orders.add(flyweight.wrap(slot).toOrder());
+        }
+        return orders;
+    }
+
+    /**
+     * Pass a copy of each order at a price level to the consumer, in queue order. Unlike
+     * {@link OrderBookManagerImpl OrderBookManagerImpl} this creates an Order per order, see
+     * {@link #forEachRecordAtLevel(String, Side, long, Consumer)}.
+     */
+    public void forEachOrderAtLevel(String instrument, Side side, long price, Consumer<Order> consumer) {
+        OffHeapOrderBook.Level level = getLevel(instrument, side, price);
+        if(level == null)
+            return;
+
+        for(int slot = level.head; slot != OffHeapOrderStore.NONE; slot = store.getNext(slot)) {
+            consumer.accept(flyweight.wrap(slot).toOrder());
+        }
+    }
+
+    /**
+     * Pass the record of each order at a price level to the consumer in queue order, without copying anything. The
+     * same {@link OrderFlyweight OrderFlyweight} is passed for every order, pointed at each record in turn.
+     *
+     * @param instrument instrument to check
+     * @param side side of OrderBook to check
+     * @param price price level to check
+     * @param consumer called for every order at the level
+     */
+    public void forEachRecordAtLevel(String instrument, Side side, long price, Consumer<OrderFlyweight> consumer) {
+        OffHeapOrderBook.Level level = getLevel(instrument, side, price);
+        if(level == null)
+            return;
+
+        for(int slot = level.head; slot != OffHeapOrderStore.NONE; slot = store.getNext(slot)) {
+            consumer.accept(flyweight.wrap(slot));
+        }
+    }
+
+    /**
+     * Walk the best levels on the side specified. Levels are visited without allocating, but orders asked for by the
+     * visitor are passed as copies.
+     */
+    public int walkDepth(String instrument, Side side, int maxLevels, DepthVisitor visitor) {
+        int depth = 0;
+        for(OffHeapOrderBook.Level level = getBestLevel(instrument, side); level != null && depth < maxLevels;
+            level = level.nextLevel, depth++) {
+            if(visitor.onLevel(depth, level.price, level.totalQuantity, level.orderCount)) {
+                for(int slot = level.head; slot != OffHeapOrderStore.NONE; slot = store.getNext(slot)) {
+                    visitor.onOrder(depth, flyweight.wrap(slot).toOrder());
+                }
+            }
+        }
+        return depth;
+    }
+
+    public int getDepth(String instrument, Side side, int n, long[] buffer) {
+        if(n < 0 || buffer.length < 3L * n)
+            throw new IllegalArgumentException("Buffer of " + buffer.length + " can't hold " + n + " levels");
+
+        int depth = 0;
+        for(OffHeapOrderBook.Level level = getBestLevel(instrument, side); level != null && depth < n;
+            level = level.nextLevel, depth++) {
+            buffer[3 * depth] = level.price;
+            buffer[3 * depth + 1] = level.totalQuantity;
+            buffer[3 * depth + 2] = level.orderCount;
+        }
+        return depth;
+    }
+
+    /**
+     * @return the number of orders resting in the store
+     */
+    public long getLiveOrderCount() {
+        return store.size();
+    }
+
+    /**
+     * @return the most orders that can rest at once
+     */
+    public int getCapacity() {
+        return store.capacity();
+    }
+
+    /**
+     * @param instrumentIndex the index a record refers to its instrument by
+     * @return the name of the instrument
+     */
+    String getInstrument(int instrumentIndex) {
+        return instruments.getInstrument(instrumentIndex);
+    }
+
+    private void delete(long orderId, int slot) {
+        orderBooks.get(store.getInstrument(slot)).deleteOrder(slot);
+        orderDirectory.remove(orderId);
+        store.free(slot);
+    }
+
+    private OffHeapOrderBook.Level getLevel(String instrument, Side side, long price) {
+        int instrumentIndex = getInstrumentIndex(instrument);
+        return instrumentIndex >= 0 ? orderBooks.get(instrumentIndex).getLevel(side, price) : null;
+    }
+
+    private OffHeapOrderBook.Level getBestLevel(String instrument, Side side) {
+        int instrumentIndex = getInstrumentIndex(instrument);
+        return instrumentIndex >= 0 ? orderBooks.get(instrumentIndex).getBestLevel(side) : null;
+    }
+
+    /**
+     * @return the index of the instrument's OrderBook, or -1 if it doesn't have one yet
+     */
+    private int getInstrumentIndex(String instrument) {
+        if(lastInstrumentIndex >= 0 && (instrument == lastInstrument || lastInstrument.equals(instrument)))
+            return lastInstrumentIndex;
+
+        int instrumentIndex = instruments.getId(instrument);
+        if(instrumentIndex == InstrumentRegistry.UNKNOWN)
+            return -1;
+        lastInstrument = instrument;
+        lastInstrumentIndex = instrumentIndex;
+        return instrumentIndex;
+    }
+
+    private int getOrCreateInstrumentIndex(String instrument) {
+        int instrumentIndex = getInstrumentIndex(instrument);
+        if(instrumentIndex >= 0)
+            return instrumentIndex;
+
+        instrumentIndex = instruments.register(instrument);
+        orderBooks.add(new OffHeapOrderBook(store));
+        return instrumentIndex;
+    }
+}
@@ -0,0 +1,163 @@
+package com.cryptofacilities.interview;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed size order records in preallocated direct memory, addressed by slot number.
+ *
+ * Each record holds an order's numeric id, price, quantity, the slots of its neighbours in the queue at its level,
+ * the index of its instrument and its side. Records are laid out in slabs of up to 2^20 records each, so the store can
+ * hold more orders than fit in one ByteBuffer. Freed slots are chained through their next link into a free list and
+ * handed out again before any unused slot, so a store in steady state never touches new memory.
+ *
+ * Nothing here is on the heap apart from the slab ByteBuffer objects themselves, so however many orders rest in the
+ * store the garbage collector has nothing to trace.
+ */
+class OffHeapOrderStore {
+  static final int NONE = -1;
+
+  static final int RECORD_SIZE = 40;
+  private static final int ORDER_ID = 0;
+  private static final int PRICE = 8;
+  private static final int QUANTITY = 16;
+  private static final int PREVIOUS = 24;
+  private static final int NEXT = 28;
+  private static final int INSTRUMENT = 32;
+  private static final int SIDE = 36;
+
+  private static final int SLAB_SHIFT = 20;
+  private static final int SLAB_MASK = (1 << SLAB_SHIFT) - 1;
+
+  private final ByteBuffer[] slabs;
+  private final int capacity;
+
+  /**
+   * Slots at or above this have never been handed out
+   */
+  private int highWater = 0;
+
+  /**
+   * First slot of the free list, chained through the next links
+   */
+  private int freeHead = NONE;
+  private int size = 0;
+
+  /**
+   * @param capacity the most orders the store holds, all of it allocated up front
+   */
+  OffHeapOrderStore(int capacity) {
+    if(capacity <= 0)
+      throw new IllegalArgumentException("Capacity must be positive but was " + capacity);
+
+    this.capacity = capacity;
+    slabs = new ByteBuffer[((capacity - 1) >>> SLAB_SHIFT) + 1];
+    for(int i = 0; i < slabs.length; i++) {
+      int records = Math.min(1 << SLAB_SHIFT, capacity - (i << SLAB_SHIFT));
+      slabs[i] = ByteBuffer.allocateDirect(records * RECORD_SIZE).order(ByteOrder.nativeOrder());
+    }
+  }
+
+  /**
+   * Take a free slot for a new order, not linked to any other.
+   *
+   * @return the slot
+   * @throws IllegalStateException if the store is full
+   */
+  int allocate(long orderId, int instrument, Side side, long price, long quantity) {
+    int slot;
+    if(freeHead != NONE) {
+      slot = freeHead;
+      freeHead = getNext(slot);
+    } else if(highWater < capacity) {
+      slot = highWater++;
+    } else {
+      throw new IllegalStateException("Off-heap order store is full at " + capacity + " orders");
+    }
+
+    ByteBuffer slab = slab(slot);
+    int offset = offset(slot);
+    slab.putLong(offset + ORDER_ID, orderId);
+    slab.putLong(offset + PRICE, price);
+    slab.putLong(offset + QUANTITY, quantity);
+    slab.putInt(offset + PREVIOUS, NONE);
+    slab.putInt(offset + NEXT, NONE);
+    slab.putInt(offset + INSTRUMENT, instrument);
+    slab.put(offset + SIDE, (byte) side.ordinal());
+    size++;
+    return slot;
+  }
+
+  /**
+   * Give a slot back to the free list. It must no longer be linked into a level.
+   *
+   * @param slot the slot of an order that has left the book
+   */
+  void free(int slot) {
+    setNext(slot, freeHead);
+    freeHead = slot;
+    size--;
+  }
+
+  /**
+   * @return the number of slots in use
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return the most orders the store holds
+   */
+  int capacity() {
+    return capacity;
+  }
+
+  long getOrderId(int slot) {
+    return slab(slot).getLong(offset(slot) + ORDER_ID);
+  }
+
+  long getPrice(int slot) {
+    return slab(slot).getLong(offset(slot) + PRICE);
+  }
+
+  long getQuantity(int slot) {
+    return slab(slot).getLong(offset(slot) + QUANTITY);
+  }
+
+  void setQuantity(int slot, long quantity) {
+    slab(slot).putLong(offset(slot) + QUANTITY, quantity);
+  }
+
+  int getPrevious(int slot) {
+    return slab(slot).getInt(offset(slot) + PREVIOUS);
+  }
+
+  void setPrevious(int slot, int previous) {
+    slab(slot).putInt(offset(slot) + PREVIOUS, previous);
+  }
+
+  int getNext(int slot) {
+    return slab(slot).getInt(offset(slot) + NEXT);
+  }
+
+  void setNext(int slot, int next) {
+    slab(slot).putInt(offset(slot) + NEXT, next);
+  }
+
+  int getInstrument(int slot) {
+    return slab(slot).getInt(offset(slot) + INSTRUMENT);
+  }
+
+  Side getSide(int slot) {
+    return slab(slot).get(offset(slot) + SIDE) == 0 ? Side.buy : Side.sell;
+  }
+
+  private ByteBuffer slab(int slot) {
+    return slabs[slot >>> SLAB_SHIFT];
+  }
+
+  private static int offset(int slot) {
+    return (slot & SLAB_MASK) * RECORD_SIZE;
+  }
+}
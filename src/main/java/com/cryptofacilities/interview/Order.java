@@ -6,37 +6,82 @@ package com.cryptofacilities.interview;
 public class Order {
 
     /**
-     * unique identifier for the order
+     * unique identifier for the order. For orders created with a numeric id this is only built when first asked for.
      */
-    private final String orderId;
+    private String orderId;
+
+    /**
+     * unique numeric identifier for the order, if it has one
+     */
+    private long numericOrderId;
+
+    /**
+     * true if the order was created with a numeric id, or with a String id that is a number written the way
+     * {@link Long#toString(long)} writes it, so "42" and 42 are the same order
+     */
+    private boolean hasNumericOrderId;
 
     /**
      * identifier of an instrument
      */
-    private final String instrument;
+    private String instrument;
 
     /**
      * either buy or sell
      */
-    private final Side side;
+    private Side side;
 
     /**
      * limit price for the order, always positive
      */
-    private final long price;
+    private long price;
 
     /**
-     * required quantity, always positive
+     * required quantity, always positive. For an iceberg order only the displayed part, the rest is hidden.
      */
     private long quantity;
 
+    /**
+     * the most quantity an iceberg order shows at once, 0 if this isn't an iceberg order
+     */
+    private long displayQuantity;
+
+    /**
+     * the reserve of an iceberg order not yet shown, displayed a slice at a time as the visible quantity is filled.
+     * Not compared, as it isn't part of what the book shows.
+     */
+    private long hiddenQuantity;
+
+    /**
+     * Links to the neighbouring orders in the queue at the price level this order rests at, and the level itself.
+     * Maintained by {@link PriceLevelOrders PriceLevelOrders}, null while the order is not resting in a book.
+     * Not part of the order's value, so they are not copied, compared or printed.
+     */
+    Order previous;
+    Order next;
+    PriceLevelOrders level;
+
+    /**
+     * True if this order belongs to an {@link ObjectPool ObjectPool}, and is returned to it once it leaves the book
+     */
+    boolean pooled;
+
+    /**
+     * Set by {@link PriceLevelOrders PriceLevelOrders} while a fill that used up the displayed part of this iceberg
+     * order is being reported, after the order was refilled from its reserve and moved to the back of the queue
+     */
+    boolean replenished;
+
     /**
      * Copying ctor
      *
      * @param order an order to make copy from
      */
     public Order(Order order) {
-        this( order.orderId, order.instrument, order.side, order.price, order.quantity );
+        this( order.orderId, order.numericOrderId, order.hasNumericOrderId, order.instrument, order.side, order.price,
+                order.quantity );
+        this.displayQuantity = order.displayQuantity;
+        this.hiddenQuantity = order.hiddenQuantity;
     }
 
 
@@ -50,17 +95,229 @@ public class Order {
      * @param quantity required quantity, always positive
      */
     public Order(String orderId, String instrument, Side side, long price, long quantity) {
-        this.orderId = orderId;
+        this( orderId, 0, false, instrument, side, price, quantity );
+    }
+
+    /**
+     * All-values ctor for orders with a numeric id. Such orders are looked up by the numeric id in
+     * {@link OrderBookManager OrderBookManager}, without hashing a String.
+     *
+     * @param orderId unique numeric identifier for the order
+     * @param instrument identifier of an instrument
+     * @param side either buy or sell
+     * @param price limit price for the order, always positive
+     * @param quantity required quantity, always positive
+     */
+    public Order(long orderId, String instrument, Side side, long price, long quantity) {
+        this( null, orderId, true, instrument, side, price, quantity );
+    }
+
+    /**
+     * Iceberg order ctor. Only up to {@code displayQuantity} is shown in the book at a time, the rest is held in
+     * reserve. Whenever the shown part is completely filled it is refilled from the reserve and the order moves to the
+     * back of the queue at its price.
+     *
+     * @param orderId unique identifier for the order
+     * @param instrument identifier of an instrument
+     * @param side either buy or sell
+     * @param price limit price for the order, always positive
+     * @param quantity total quantity, shown and hidden, always positive
+     * @param displayQuantity the most quantity shown at once, always positive
+     */
+    public Order(String orderId, String instrument, Side side, long price, long quantity, long displayQuantity) {
+        this( orderId, 0, false, instrument, side, price, quantity );
+        setDisplayQuantity(displayQuantity);
+    }
+
+    /**
+     * Iceberg order ctor for orders with a numeric id, see {@link #Order(String, String, Side, long, long, long)}.
+     *
+     * @param orderId unique numeric identifier for the order
+     * @param instrument identifier of an instrument
+     * @param side either buy or sell
+     * @param price limit price for the order, always positive
+     * @param quantity total quantity, shown and hidden, always positive
+     * @param displayQuantity the most quantity shown at once, always positive
+     */
+    public Order(long orderId, String instrument, Side side, long price, long quantity, long displayQuantity) {
+        this( null, orderId, true, instrument, side, price, quantity );
+        setDisplayQuantity(displayQuantity);
+    }
+
+    private Order(String orderId, long numericOrderId, boolean hasNumericOrderId, String instrument, Side side,
+                  long price, long quantity) {
+        setOrderId(orderId, numericOrderId, hasNumericOrderId);
         this.instrument = instrument;
         this.side = side;
         this.price = price;
         this.quantity = quantity;
     }
 
+    /**
+     * @return a blank order for an {@link ObjectPool ObjectPool}, given its values when borrowed
+     */
+    static Order newPooled() {
+        Order order = new Order(null, 0, false, null, null, 0, 0);
+        order.pooled = true;
+        return order;
+    }
+
+    /**
+     * Re-use a pooled order for a new order with a String id, see {@link #Order(String, String, Side, long, long)}.
+     *
+     * @return this order
+     */
+    Order reset(String orderId, String instrument, Side side, long price, long quantity) {
+        return reset(orderId, 0, false, instrument, side, price, quantity);
+    }
+
+    /**
+     * Re-use a pooled order for a new order with a numeric id, see {@link #Order(long, String, Side, long, long)}.
+     *
+     * @return this order
+     */
+    Order reset(long orderId, String instrument, Side side, long price, long quantity) {
+        return reset(null, orderId, true, instrument, side, price, quantity);
+    }
+
+    private Order reset(String orderId, long numericOrderId, boolean hasNumericOrderId, String instrument, Side side,
+                        long price, long quantity) {
+        setOrderId(orderId, numericOrderId, hasNumericOrderId);
+        this.instrument = instrument;
+        this.side = side;
+        this.price = price;
+        this.quantity = quantity;
+        this.displayQuantity = 0;
+        this.hiddenQuantity = 0;
+        return this;
+    }
+
+    /**
+     * Set the id of the order, giving a String id that is a number its numeric id as well.
+     */
+    private void setOrderId(String orderId, long numericOrderId, boolean hasNumericOrderId) {
+        if (!hasNumericOrderId && orderId != null && isNumericOrderId(orderId)) {
+            numericOrderId = Long.parseLong(orderId);
+            hasNumericOrderId = true;
+        }
+        this.orderId = orderId;
+        this.numericOrderId = numericOrderId;
+        this.hasNumericOrderId = hasNumericOrderId;
+    }
+
+    /**
+     * Check if a String id is a number written exactly as {@link Long#toString(long)} would write it, with no sign
+     * other than a leading minus and no leading zeros, so it names the same order as that numeric id.
+     *
+     * @param orderId a String order id
+     * @return true if the id can be parsed with {@link Long#parseLong(String)} and is the canonical form of the result
+     */
+    static boolean isNumericOrderId(String orderId) {
+        int length = orderId.length();
+        int start = length > 1 && orderId.charAt(0) == '-' ? 1 : 0;
+        int digits = length - start;
+        if (digits == 0 || digits > 19)
+            return false;
+        //no leading zeros, and no "-0"
+        if (orderId.charAt(start) == '0' && (digits > 1 || start == 1))
+            return false;
+        for (int i = start; i < length; i++) {
+            char c = orderId.charAt(i);
+            if (c < '0' || c > '9')
+                return false;
+        }
+        if (digits < 19)
+            return true;
+
+        try {
+            Long.parseLong(orderId);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Split the quantity of a new iceberg order into the part shown and the reserve.
+     */
+    private void setDisplayQuantity(long displayQuantity) {
+        if (displayQuantity <= 0)
+            throw new IllegalArgumentException("Display quantity must be positive but was " + displayQuantity);
+
+        this.displayQuantity = displayQuantity;
+        this.hiddenQuantity = Math.max(quantity - displayQuantity, 0);
+        this.quantity -= hiddenQuantity;
+    }
+
+    /**
+     * Restore the reserve of an iceberg order exactly as it was, e.g. part way through a displayed slice.
+     *
+     * @param displayQuantity the most quantity shown at once
+     * @param hiddenQuantity the reserve not yet shown
+     * @return this order
+     */
+    Order restoreReserve(long displayQuantity, long hiddenQuantity) {
+        this.displayQuantity = displayQuantity;
+        this.hiddenQuantity = hiddenQuantity;
+        return this;
+    }
+
+    /**
+     * Refill the shown quantity of an iceberg order from its reserve, by up to the display quantity. Does nothing for
+     * other orders, or once the reserve is used up.
+     *
+     * @return the quantity added to the shown quantity
+     */
+    long replenish() {
+        long refill = Math.min(displayQuantity, hiddenQuantity);
+        quantity += refill;
+        hiddenQuantity -= refill;
+        return refill;
+    }
+
+    /**
+     * Change the total quantity of the order, shown and hidden. For an iceberg order a decrease comes out of the
+     * reserve first, and the shown quantity is only reduced once the reserve is gone.
+     *
+     * @param totalQuantity the new total quantity
+     * @param requeued true if the order is moving to the back of its queue, which refills the shown quantity of an
+     *                 iceberg order up to the display quantity
+     */
+    void setTotalQuantity(long totalQuantity, boolean requeued) {
+        if (!isIceberg()) {
+            quantity = totalQuantity;
+        } else if (requeued) {
+            quantity = Math.min(displayQuantity, totalQuantity);
+            hiddenQuantity = totalQuantity - quantity;
+        } else if (totalQuantity >= quantity) {
+            hiddenQuantity = totalQuantity - quantity;
+        } else {
+            quantity = totalQuantity;
+            hiddenQuantity = 0;
+        }
+    }
+
     public String getOrderId() {
+        if (orderId == null && hasNumericOrderId) {
+            orderId = Long.toString(numericOrderId);
+        }
         return orderId;
     }
 
+    /**
+     * @return true if the order was created with a numeric id, or a String id that is a number
+     */
+    public boolean hasNumericOrderId() {
+        return hasNumericOrderId;
+    }
+
+    /**
+     * @return the numeric id of the order, only meaningful if {@link #hasNumericOrderId()}
+     */
+    public long getNumericOrderId() {
+        return numericOrderId;
+    }
+
     public String getInstrument() {
         return instrument;
     }
@@ -81,6 +338,34 @@ public class Order {
         this.quantity = quantity;
     }
 
+    /**
+     * @return true if this is an iceberg order, only showing part of its quantity at a time
+     */
+    public boolean isIceberg() {
+        return displayQuantity > 0;
+    }
+
+    /**
+     * @return the most quantity an iceberg order shows at once, or 0 if this isn't an iceberg order
+     */
+    public long getDisplayQuantity() {
+        return displayQuantity;
+    }
+
+    /**
+     * @return the reserve of an iceberg order that isn't shown yet, 0 for other orders
+     */
+    public long getHiddenQuantity() {
+        return hiddenQuantity;
+    }
+
+    /**
+     * @return the quantity shown plus the hidden reserve, the quantity a modify replaces
+     */
+    public long getTotalQuantity() {
+        return quantity + hiddenQuantity;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -90,29 +375,32 @@ public class Order {
 
         if (price != order.price) return false;
         if (quantity != order.quantity) return false;
-        if (orderId != null ? !orderId.equals(order.orderId) : order.orderId != null) return false;
+        if (displayQuantity != order.displayQuantity) return false;
+        if (getOrderId() != null ? !getOrderId().equals(order.getOrderId()) : order.getOrderId() != null) return false;
         if (instrument != null ? !instrument.equals(order.instrument) : order.instrument != null) return false;
         return side == order.side;
     }
 
     @Override
     public int hashCode() {
-        int result = orderId != null ? orderId.hashCode() : 0;
+        int result = getOrderId() != null ? getOrderId().hashCode() : 0;
         result = 31 * result + (instrument != null ? instrument.hashCode() : 0);
         result = 31 * result + (side != null ? side.hashCode() : 0);
         result = 31 * result + (int) (price ^ (price >>> 32));
         result = 31 * result + (int) (quantity ^ (quantity >>> 32));
+        result = 31 * result + (int) (displayQuantity ^ (displayQuantity >>> 32));
         return result;
     }
 
     @Override
     public String toString() {
         return "Order{" +
-                "orderId='" + orderId + '\'' +
+                "orderId='" + getOrderId() + '\'' +
                 ", instrument='" + instrument + '\'' +
                 ", side=" + side +
                 ", price=" + price +
                 ", quantity=" + quantity +
+                (isIceberg() ? ", displayQuantity=" + displayQuantity + ", hiddenQuantity=" + hiddenQuantity : "") +
                 '}';
     }
 }
@@ -1,6 +1,7 @@
 package com.cryptofacilities.interview;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * @author  Spyros
@@ -11,22 +12,181 @@ import java.util.*;
  */
 class OrderBook {
   /**
-   * A Map of Map of Maps holding orders at price levels of each side of the orderbook.
-   * Map 1 Key = {@link Side Side} of Orderbook
-   * Map 2 Key = Price Level on Side
-   * Map 3 Key = Order ID, Value = {@link Order Order} with that Order ID
+   * A Map holding the price levels of each side of the orderbook.
+   * Key = {@link Side Side} of Orderbook, Value = {@link OrderBookSide OrderBookSide} holding the price levels on it
    */
-  private Map<Side, TreeMap<Long, LinkedHashMap<String, Order>>> orders = new HashMap<>();
+  private Map<Side, OrderBookSide> orders = new HashMap<>();
 
   /**
-   * Constructor will initialise both sides of the OrderBook.
+   * The top levels of the book published for reader threads, null unless enabled with
+   * {@link #enableDepthSnapshots(int)}
+   */
+  private PublishedDepth publishedDepth;
+
+  /**
+   * The batch changed levels are queued to for the L2 feed, and the instrument they are reported under. Null unless
+   * enabled with {@link #enableL2Deltas(String, L2DeltaBatch)}
+   */
+  private L2DeltaBatch l2Deltas;
+  private String instrument;
+
+  /**
+   * Receives the L3 events of this book, null unless enabled with {@link #enableL3Events(String, L3EventListener)}
+   */
+  private L3EventListener l3Listener;
+
+  /**
+   * The sequence number of the last L3 event of this book
+   */
+  private long l3Sequence = 0;
+
+  /**
+   * While matching with L3 events enabled, the listener the fills are passed on to after their events are reported
+   */
+  private FillListener matchFillListener;
+  private FillListener l3FillListener;
+
+  /**
+   * Counts the levels created and removed, null unless enabled with {@link #enableMetrics(OrderBookMetrics)}. The
+   * number of levels on each side is only kept while it is enabled.
+   */
+  private OrderBookMetrics metrics;
+  private final int[] levelCounts = new int[2];
+
+  /**
+   * The snapshot capture part way through this book, told about every level before it changes. Null unless one is in
+   * progress, see {@link #setCapture(OrderBookSnapshot.BookCapture)}
+   */
+  private OrderBookSnapshot.BookCapture capture;
+
+  /**
+   * Constructor will initialise both sides of the OrderBook with TreeMap backed sides, which work for any price.
    *
    * Orders on the buy side are in <b>descending</b> order on price
    * Orders on the sell side are in <b>ascending</b> order on price
    */
   OrderBook() {
-    orders.put(Side.buy, new TreeMap<>(Collections.reverseOrder()));
-    orders.put(Side.sell, new TreeMap<>());
+    orders.put(Side.buy, new TreeMapOrderBookSide(Side.buy));
+    orders.put(Side.sell, new TreeMapOrderBookSide(Side.sell));
+  }
+
+  /**
+   * Constructor will initialise both sides of the OrderBook with array backed price ladders, for instruments with a
+   * fixed tick size. Every price added to the book must be a multiple of the tick size.
+   *
+   * @param tickSize the minimum price increment of the instrument
+   * @param centrePrice the price the ladders are initially centred around
+   * @param ladderSize the initial number of price levels on each side before the ladders need to recentre
+   */
+  OrderBook(long tickSize, long centrePrice, int ladderSize) {
+    orders.put(Side.buy, new PriceLadderOrderBookSide(Side.buy, tickSize, centrePrice, ladderSize));
+    orders.put(Side.sell, new PriceLadderOrderBookSide(Side.sell, tickSize, centrePrice, ladderSize));
+  }
+
+  /**
+   * @param side the side of the book
+   * @return the price levels on that side
+   */
+  OrderBookSide getSide(Side side) {
+    return orders.get(side);
+  }
+
+  /**
+   * Start publishing the top levels of both sides for reader threads. From then on every mutation that changes the
+   * top levels republishes them before returning.
+   *
+   * @param depth the number of levels to publish on each side
+   * @return the published levels, safe to read from any thread
+   */
+  PublishedDepth enableDepthSnapshots(int depth) {
+    publishedDepth = new PublishedDepth(depth);
+    publishedDepth.publish(Side.buy, orders.get(Side.buy));
+    publishedDepth.publish(Side.sell, orders.get(Side.sell));
+    return publishedDepth;
+  }
+
+  /**
+   * Start queueing every level that changes to a batch of L2 deltas, from then on.
+   *
+   * @param instrument identifier of the instrument of this book, reported with each level
+   * @param l2Deltas the batch shared by every book of the manager
+   */
+  void enableL2Deltas(String instrument, L2DeltaBatch l2Deltas) {
+    this.instrument = instrument;
+    this.l2Deltas = l2Deltas;
+  }
+
+  /**
+   * Take the price levels of both sides from a pool, and return them to it once they are removed, from then on.
+   *
+   * @param levelPool the pool shared by every book of the manager
+   */
+  void enablePooling(ObjectPool<PriceLevelOrders> levelPool) {
+    orders.get(Side.buy).setLevelPool(levelPool);
+    orders.get(Side.sell).setLevelPool(levelPool);
+  }
+
+  /**
+   * Start reporting every change to the orders of this book as an L3 event, from then on.
+   *
+   * @param instrument identifier of the instrument of this book, reported with each event
+   * @param l3Listener receives the events
+   */
+  void enableL3Events(String instrument, L3EventListener l3Listener) {
+    this.instrument = instrument;
+    this.l3Listener = l3Listener;
+    this.l3FillListener = this::onL3Fill;
+  }
+
+  /**
+   * Start counting the levels created and removed in this book, from then on.
+   *
+   * @param metrics the metrics shared by every book of the manager
+   */
+  void enableMetrics(OrderBookMetrics metrics) {
+    for(Side side : Side.values()) {
+      OrderBookSide bookSide = orders.get(side);
+      int levelCount = 0;
+      for(PriceLevelOrders level = bookSide.getBestLevel(); level != null; level = bookSide.getNextLevel(level)) {
+        levelCount++;
+      }
+      levelCounts[side.ordinal()] = levelCount;
+      metrics.existingLevels(levelCount);
+    }
+    this.metrics = metrics;
+  }
+
+  /**
+   * Start or stop telling a snapshot capture about every level before it changes, so it can encode the level as it was
+   * first.
+   *
+   * @param capture the capture starting on this book, or null once it is done
+   * @throws IllegalStateException if another capture of this book is still in progress
+   */
+  void setCapture(OrderBookSnapshot.BookCapture capture) {
+    if(capture != null && this.capture != null)
+      throw new IllegalStateException("Another snapshot capture of this book is still in progress");
+    this.capture = capture;
+  }
+
+  /**
+   * Copy every order resting in the book, along with the sequence number of the last L3 event, so the copy can be
+   * brought up to date with the events that follow.
+   *
+   * @param instrument identifier of the instrument of this book
+   * @return the copy
+   */
+  L3Snapshot captureL3(String instrument) {
+    L3Snapshot snapshot = new L3Snapshot(instrument, l3Sequence);
+    for(Side side : Side.values()) {
+      OrderBookSide bookSide = orders.get(side);
+      for(PriceLevelOrders level = bookSide.getBestLevel(); level != null; level = bookSide.getNextLevel(level)) {
+        for(Order order = level.getFirstOrder(); order != null; order = order.next) {
+          snapshot.addOrder(order);
+        }
+      }
+    }
+    return snapshot;
   }
 
   /**
@@ -34,17 +194,83 @@ class OrderBook {
    * @param order Order to be added
    */
   void addOrder(Order order) {
-    TreeMap<Long, LinkedHashMap<String, Order>> orderSide = orders.get(order.getSide());
-    orderSide.computeIfAbsent(order.getPrice(), k -> new LinkedHashMap<>());
-    orderSide.get(order.getPrice()).put(order.getOrderId(), order);
+    OrderBookSide side = orders.get(order.getSide());
+    if(capture != null)
+      capture.beforeLevelChange(order.getSide(), side.getLevel(order.getPrice()));
+    PriceLevelOrders level = side.getOrCreateLevel(order.getPrice());
+    if(level.isEmpty()) {
+      if(metrics != null)
+        metrics.levelCreated(++levelCounts[order.getSide().ordinal()]);
+      if(capture != null)
+        capture.levelCreated(level);
+    }
+    level.addOrder(order);
+    levelChanged(order.getSide(), level);
+    publishDepth(order.getSide(), order.getPrice());
+    reportL3(L3EventType.ADDED, order, order.getQuantity());
+  }
+
+  /**
+   * Match an incoming order against the opposite side of the book in price-time priority.
+   *
+   * Levels are swept from the best price while they cross the limit price of the incoming order. The quantity of the
+   * incoming order is reduced by every fill, so whatever is left once this returns is the remainder to rest.
+   * Nothing is allocated per fill, the listener receives the orders and fill details directly.
+   *
+   * The price is checked before anything is matched, so an order that could never rest in this book is rejected
+   * without trading.
+   *
+   * @param order the incoming order
+   * @param fillListener notified of every fill
+   * @throws IllegalArgumentException if the order's side can't hold its price, e.g. it is off the tick of a ladder
+   */
+  void matchOrder(Order order, FillListener fillListener) {
+    checkOrder(order);
+    Side oppositeSideName = order.getSide() == Side.buy ? Side.sell : Side.buy;
+    OrderBookSide oppositeSide = orders.get(oppositeSideName);
+    //an iceberg can be refilled to the quantity it showed, so only the total says whether anything matched
+    long quantityBefore = order.getTotalQuantity();
+    if(l3Listener != null) {
+      matchFillListener = fillListener;
+      fillListener = l3FillListener;
+    }
+
+    while(order.getQuantity() > 0 && !oppositeSide.isEmpty()) {
+      PriceLevelOrders bestLevel = oppositeSide.getBestLevel();
+      if(!crosses(order, bestLevel.getPrice()))
+        break;
+
+      if(capture != null)
+        capture.beforeLevelChange(oppositeSideName, bestLevel);
+      bestLevel.matchOrder(order, fillListener);
+      levelChanged(oppositeSideName, bestLevel);
+      if(bestLevel.isEmpty())
+        removePriceLevel(oppositeSideName, bestLevel.getPrice());
+    }
+
+    //fills always take the best levels, so there is something to publish whenever anything matched
+    if(publishedDepth != null && order.getTotalQuantity() != quantityBefore)
+      publishedDepth.publish(oppositeSideName, oppositeSide);
+  }
+
+  /**
+   * Check that an order could rest on its side of the book, without changing anything.
+   *
+   * @param order a new order
+   * @throws IllegalArgumentException if the order's side can't hold its price
+   */
+  void checkOrder(Order order) {
+    orders.get(order.getSide()).checkPrice(order.getPrice());
   }
 
   /**
-   * Modify the {@link Order order} with the new quantity.
+   * Modify the {@link Order order} with the new quantity, in place.
    *
-   * If an order quantity is increased, the order is removed and re-added from the map to push it to the end.
+   * If an order quantity is increased, the order is moved to the end of the queue at its price level.
    * If an order quantity is decrease, the order is updated but maintains its position.
    * If an order quantity is 0 or less, that order is deleted from the OrderBook.
+   * The quantity of an iceberg order is its total, shown and hidden. Only the shown quantity is in the level totals,
+   * so cutting into the reserve alone changes nothing that is published or reported.
    *
    * @param order The order to modify
    * @param newQuantity The new order quantity
@@ -55,29 +281,41 @@ class OrderBook {
       return;
     }
 
-    HashMap<String, Order> ordersAtPriceLevel = getOrdersAtPriceLevel(order);
-
-    if(ordersAtPriceLevel != null && ordersAtPriceLevel.get(order.getOrderId()) != null){
-      Order newOrder = new Order(order);
-      newOrder.setQuantity(newQuantity);
-
-      if(newQuantity > order.getQuantity()) {
-        ordersAtPriceLevel.remove(order.getOrderId());
+    if(order.level != null && newQuantity != order.getTotalQuantity()) {
+      if(capture != null)
+        capture.beforeLevelChange(order.getSide(), order.level);
+      L3EventType l3EventType = newQuantity > order.getTotalQuantity() ? L3EventType.REQUEUED : L3EventType.REDUCED;
+      if(l3EventType == L3EventType.REDUCED && newQuantity >= order.getQuantity()) {
+        //only the hidden reserve of an iceberg order shrinks, nothing shown changes
+        order.level.modifyOrder(order, newQuantity);
+        return;
       }
-      ordersAtPriceLevel.put(order.getOrderId(), newOrder);
+      levelChanged(order.getSide(), order.level);
+      order.level.modifyOrder(order, newQuantity);
+      publishDepth(order.getSide(), order.getPrice());
+      reportL3(l3EventType, order, order.getQuantity());
     }
   }
 
   /**
    * Delete the {@link Order order} from the orderbook.
    *
+   * The order's level is found through its back-pointer, so no price lookup is needed.
+   *
    * @param order The order to delete
    */
   void deleteOrder(Order order) {
-    if(getOrdersAtPriceLevel(order) != null) {
-      getOrdersAtPriceLevel(order).remove(order.getOrderId());
-      if (getOrdersAtPriceLevel(order).isEmpty())
+    PriceLevelOrders ordersAtPriceLevel = order.level;
+
+    if(ordersAtPriceLevel != null) {
+      if(capture != null)
+        capture.beforeLevelChange(order.getSide(), ordersAtPriceLevel);
+      ordersAtPriceLevel.deleteOrder(order);
+      levelChanged(order.getSide(), ordersAtPriceLevel);
+      if (ordersAtPriceLevel.isEmpty())
         removePriceLevel(order.getSide(), order.getPrice());
+      publishDepth(order.getSide(), order.getPrice());
+      reportL3(L3EventType.DELETED, order, 0);
     }
   }
 
@@ -88,9 +326,7 @@ class OrderBook {
    * @return the best price on the side specified. returns -1 if no orders at price level.
    */
   long getBestPrice(Side side) {
-    if(!orders.get(side).isEmpty())
-      return orders.get(side).firstKey();
-    return -1;
+    return orders.get(side).getBestPrice();
   }
 
   /**
@@ -101,8 +337,9 @@ class OrderBook {
    * @return the number of orders at the price level on the side specified. returns -1 if no orders at price level.
    */
   long getOrderNumAtLevel(Side side, long price) {
-    if(getOrdersAtPriceLevel(side, price) != null)
-      return getOrdersAtPriceLevel(side, price).size();
+    PriceLevelOrders ordersAtPriceLevel = getOrdersAtPriceLevel(side, price);
+    if(ordersAtPriceLevel != null)
+      return ordersAtPriceLevel.getOrderCount();
     return -1;
   }
 
@@ -114,12 +351,9 @@ class OrderBook {
    * @return the quantity available at the price level on the side specified. returns -1 if no orders at price level.
    */
   long getTotalQuantityAtLevel(Side side, long price) {
-    if(getOrdersAtPriceLevel(side, price) != null)
-      return getOrdersAtPriceLevel(side, price)
-              .values()
-              .stream()
-              .mapToLong(Order::getQuantity)
-              .sum();
+    PriceLevelOrders ordersAtPriceLevel = getOrdersAtPriceLevel(side, price);
+    if(ordersAtPriceLevel != null)
+      return ordersAtPriceLevel.getTotalQuantity();
     return -1;
   }
 
@@ -131,8 +365,9 @@ class OrderBook {
    * @return the volume available at the price level on the side specified. returns -1 if no orders at price level.
    */
   long getTotalVolumeAtLevel(Side side, long price) {
-    if(this.getTotalQuantityAtLevel(side, price) != -1)
-      return getTotalQuantityAtLevel(side, price) * price;
+    PriceLevelOrders ordersAtPriceLevel = getOrdersAtPriceLevel(side, price);
+    if(ordersAtPriceLevel != null)
+      return ordersAtPriceLevel.getTotalVolume();
     return -1;
   }
 
@@ -144,19 +379,131 @@ class OrderBook {
    * @return the list of orders at the price level on the side specified
    */
   List<Order> getOrdersAtLevel(Side side, long price) {
-    if(getOrdersAtPriceLevel(side, price) != null)
-      return new ArrayList<>(getOrdersAtPriceLevel(side, price).values());
+    PriceLevelOrders ordersAtPriceLevel = getOrdersAtPriceLevel(side, price);
+    if(ordersAtPriceLevel != null)
+      return ordersAtPriceLevel.getOrders();
     return Collections.emptyList();
   }
 
   /**
-   * Get orders at a specific price level based on another order's side and price.
+   * Pass the orders at a price level specified on a side of the orderbook to a consumer, in queue order, without
+   * copying them.
    *
-   * @param order the order containing the side and price level wanting to be fetched
-   * @return A HashMap of orders at the side and price level of the order specified. Key = OrderID, Value = Order
+   * @param side the side of the orderbook to get the orders from
+   * @param price the price level on the side to get the orders from
+   * @param consumer called for every order at the level
    */
-  private HashMap<String, Order> getOrdersAtPriceLevel(Order order) {
-    return getOrdersAtPriceLevel(order.getSide(), order.getPrice());
+  void forEachOrderAtLevel(Side side, long price, Consumer<Order> consumer) {
+    PriceLevelOrders ordersAtPriceLevel = getOrdersAtPriceLevel(side, price);
+    if(ordersAtPriceLevel == null)
+      return;
+
+    for(Order order = ordersAtPriceLevel.getFirstOrder(); order != null; order = order.next) {
+      consumer.accept(order);
+    }
+  }
+
+  /**
+   * Walk the best levels of a side of the orderbook, best first, passing the orders of each to the visitor if it
+   * asks for them.
+   *
+   * @param side the side of the orderbook to walk
+   * @param maxLevels the most levels to visit
+   * @param visitor called for every level visited
+   * @return the number of levels visited
+   */
+  int walkDepth(Side side, int maxLevels, DepthVisitor visitor) {
+    OrderBookSide bookSide = orders.get(side);
+    int level = 0;
+    for(PriceLevelOrders priceLevel = bookSide.getBestLevel(); priceLevel != null && level < maxLevels;
+        priceLevel = bookSide.getNextLevel(priceLevel), level++) {
+      if(visitor.onLevel(level, priceLevel.getPrice(), priceLevel.getTotalQuantity(), priceLevel.getOrderCount())) {
+        for(Order order = priceLevel.getFirstOrder(); order != null; order = order.next) {
+          visitor.onOrder(level, order);
+        }
+      }
+    }
+    return level;
+  }
+
+  /**
+   * Write the best levels of a side of the orderbook to a buffer as price, total quantity and order count triples,
+   * best first.
+   *
+   * @param side the side of the orderbook to read
+   * @param n the most levels to write
+   * @param buffer receives the levels, at least 3 * n long
+   * @return the number of levels written
+   */
+  int getDepth(Side side, int n, long[] buffer) {
+    OrderBookSide bookSide = orders.get(side);
+    int level = 0;
+    for(PriceLevelOrders priceLevel = bookSide.getBestLevel(); priceLevel != null && level < n;
+        priceLevel = bookSide.getNextLevel(priceLevel), level++) {
+      buffer[3 * level] = priceLevel.getPrice();
+      buffer[3 * level + 1] = priceLevel.getTotalQuantity();
+      buffer[3 * level + 2] = priceLevel.getOrderCount();
+    }
+    return level;
+  }
+
+  /**
+   * Check whether an order's limit price crosses a price on the opposite side of the book.
+   *
+   * @param order the incoming order
+   * @param oppositePrice a price on the opposite side
+   * @return true if a buy is at or above the price, or a sell is at or below it
+   */
+  private static boolean crosses(Order order, long oppositePrice) {
+    if(order.getSide() == Side.buy)
+      return order.getPrice() >= oppositePrice;
+    return order.getPrice() <= oppositePrice;
+  }
+
+  /**
+   * Queue a level that changed to the L2 feed, if it is enabled.
+   *
+   * @param side the side the level is on
+   * @param level the level that changed
+   */
+  private void levelChanged(Side side, PriceLevelOrders level) {
+    if(l2Deltas != null)
+      l2Deltas.levelChanged(instrument, side, orders.get(side), level);
+  }
+
+  /**
+   * Report an L3 event with the next sequence number, if L3 events are enabled.
+   *
+   * @param type what happened to the order
+   * @param order the order
+   * @param quantity the quantity of the order after the event
+   */
+  private void reportL3(L3EventType type, Order order, long quantity) {
+    if(l3Listener != null)
+      l3Listener.onOrderEvent(instrument, ++l3Sequence, type, order, quantity);
+  }
+
+  /**
+   * Report a fill against a resting order as an L3 event, then pass it on.
+   */
+  private void onL3Fill(Order restingOrder, Order incomingOrder, long price, long quantity) {
+    long remaining = restingOrder.getQuantity();
+    L3EventType type = remaining == 0 ? L3EventType.DELETED
+        : restingOrder.replenished ? L3EventType.REQUEUED : L3EventType.REDUCED;
+    reportL3(type, restingOrder, remaining);
+    matchFillListener.onFill(restingOrder, incomingOrder, price, quantity);
+  }
+
+  /**
+   * Republish a side of the book after a change at a price, if depth snapshots are enabled and the price is within
+   * the published levels. Changes deeper in the book can't alter the top levels, so they cost nothing.
+   *
+   * @param side the side that changed
+   * @param price the price of the level that changed
+   */
+  private void publishDepth(Side side, long price) {
+    if(publishedDepth != null && publishedDepth.isWithinDepth(side, price))
+      publishedDepth.publish(side, orders.get(side));
   }
 
   /**
@@ -164,10 +511,10 @@ class OrderBook {
    *
    * @param side the side at which the orders are to be fetched from
    * @param price the price at which the orders are to be fetched from
-   * @return the orders at the side and price level of the order specified. Key = OrderID, Value = Order
+   * @return the orders at the side and price level specified, or null if there is no such level
    */
-  private HashMap<String, Order> getOrdersAtPriceLevel(Side side, long price) {
-    return orders.get(side).get(price);
+  private PriceLevelOrders getOrdersAtPriceLevel(Side side, long price) {
+    return orders.get(side).getLevel(price);
   }
 
   /**
@@ -177,7 +524,14 @@ class OrderBook {
    * @param price the price level on the side to remove
    */
   private void removePriceLevel(Side side, long price) {
-    orders.get(side).remove(price);
+    OrderBookSide bookSide = orders.get(side);
+    if(capture != null)
+      capture.beforeLevelRemoved(side, bookSide.getLevel(price));
+    bookSide.removeLevel(price);
+    if(metrics != null) {
+      levelCounts[side.ordinal()]--;
+      metrics.levelRemoved();
+    }
   }
 
   @Override
@@ -1,6 +1,7 @@
 package com.cryptofacilities.interview;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Created by CF-8 on 6/27/2017.
@@ -23,18 +24,39 @@ public interface OrderBookManager {
      *
      * If quantity increases, the order should be put at the end of the queue of orders with the same price
      * If quantity decreases, the order should maintain its position in the queue or orders with the same price
+     * For an iceberg order the quantity is its total, shown and hidden. A decrease comes out of the hidden reserve first
      *
      * @param orderId unique identifier of existing order to modify
      * @param newQuantity new quantity for the order, NOT a delta from previous quantity, always positive
+     * @return {@link OrderResult#OK} or {@link OrderResult#ORDER_NOT_FOUND} if there is no such order
      */
-    void modifyOrder( String orderId, long newQuantity );
+    OrderResult modifyOrder( String orderId, long newQuantity );
 
     /**
      * Delete existyng order
      *
      * @param orderId unique identifier of existing order
+     * @return {@link OrderResult#OK} or {@link OrderResult#ORDER_NOT_FOUND} if there is no such order
      */
-    void deleteOrder( String orderId );
+    OrderResult deleteOrder( String orderId );
+
+    /**
+     * Modify existing order that has a numeric id, see {@link #modifyOrder( String , long )}. The String id of the
+     * order is the same number, so either overload finds it.
+     *
+     * @param orderId unique numeric identifier of existing order to modify
+     * @param newQuantity new quantity for the order, NOT a delta from previous quantity, always positive
+     * @return {@link OrderResult#OK} or {@link OrderResult#ORDER_NOT_FOUND} if there is no such order
+     */
+    OrderResult modifyOrder( long orderId, long newQuantity );
+
+    /**
+     * Delete existing order that has a numeric id, also found by the same number as a String id
+     *
+     * @param orderId unique numeric identifier of existing order
+     * @return {@link OrderResult#OK} or {@link OrderResult#ORDER_NOT_FOUND} if there is no such order
+     */
+    OrderResult deleteOrder( long orderId );
 
     /**
      * Get the best price for the instrument and side.
@@ -91,5 +113,60 @@ public interface OrderBookManager {
      */
     List<Order> getOrdersAtLevel(String instrument, Side side, long price );
 
+    /**
+     * Pass all orders for the instrument on given side with given price to a consumer, in the same order as
+     * {@link #getOrdersAtLevel( String, Side, long )} returns them, but without copying them into a list.
+     *
+     * The consumer gets the orders resting in the book, so it must not modify them or keep them beyond the call.
+     *
+     * @param instrument identifier of an instrument
+     * @param side either buy or sell
+     * @param price requested price level
+     * @param consumer called once for every order, not at all if there're no orders at this price
+     */
+    void forEachOrderAtLevel( String instrument, Side side, long price, Consumer<Order> consumer );
+
+    /**
+     * Walk the best price levels for the instrument on given side, from the best price to the worst, and optionally
+     * the orders at each of them in queue order. Nothing is copied.
+     *
+     * @param instrument identifier of an instrument
+     * @param side either buy or sell
+     * @param maxLevels the most levels to visit
+     * @param visitor called for every level visited, and the orders at it if it asks for them
+     * @return the number of levels visited, fewer than maxLevels if the side doesn't have that many
+     */
+    int walkDepth( String instrument, Side side, int maxLevels, DepthVisitor visitor );
+
+    /**
+     * Get the best price levels for the instrument on given side in one call, from the best price to the worst.
+     *
+     * Level i is written to the buffer as its price at {@code buffer[3 * i]}, total quantity at
+     * {@code buffer[3 * i + 1]} and number of orders at {@code buffer[3 * i + 2]}. Only the levels that exist are
+     * visited, so this is O(n) however sparse the book is, and the buffer is meant to be re-used so nothing is
+     * allocated.
+     *
+     * @param instrument identifier of an instrument
+     * @param side either buy or sell
+     * @param n the most levels to get
+     * @param buffer receives the levels, must hold at least 3 * n values
+     * @return the number of levels written, fewer than n if the side doesn't have that many
+     */
+    int getDepth( String instrument, Side side, int n, long[] buffer );
+
+    /**
+     * Apply every command of a batch in one call, in the order they were added, storing the result of each in the
+     * batch. A command that is invalid (or throws for any other reason) gets {@link OrderResult#REJECTED} and doesn't
+     * stop the rest.
+     *
+     * By default the commands are applied one by one through the other methods of this interface. Implementations can
+     * do better, e.g. by looking up each OrderBook once for a run of commands on the same instrument.
+     *
+     * @param batch the commands to apply, and receives their results
+     */
+    default void applyBatch( OrderCommandBatch batch ) {
+        batch.applyEach( this );
+    }
+
 
 }
@@ -1,6 +1,12 @@
 package com.cryptofacilities.interview;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import com.cryptofacilities.interview.OrderBookMetrics.Operation;
 
 /**
  * Created by CF-8 on 6/27/2017.
@@ -8,53 +14,367 @@ import java.util.*;
 public class OrderBookManagerImpl implements OrderBookManager {
 
     /**
-     * A mapping of instrument name to {@link OrderBook OrderBook}
+     * Assigns every instrument with an OrderBook its index in {@link #orderBooks}
+     */
+    private final InstrumentRegistry instruments = new InstrumentRegistry();
+
+    /**
+     * The {@link OrderBook OrderBook} of every instrument, indexed by instrument id
      */
-    private Map<String, OrderBook> orderBooks = new HashMap<>();
+    private OrderBook[] orderBooks = new OrderBook[16];
 
     /**
      * A mapping of Order ID to {@link Order Order}
      */
     private Map<String, Order> orderDirectory = new HashMap<>();
 
+    /**
+     * A mapping of numeric Order ID to {@link Order Order}, for orders with a numeric id. That includes String ids that
+     * are numbers, so "42" and 42 find the same order.
+     */
+    private LongObjectHashMap<Order> numericOrderDirectory = new LongObjectHashMap<>();
+
+    /**
+     * The OrderBook looked up last and its instrument, re-used while consecutive calls are for the same instrument
+     */
+    private String lastInstrument;
+    private OrderBook lastOrderBook;
+
+    /**
+     * Number of modify and delete requests for orders that were not in the directory
+     */
+    private long modifyMissCount = 0;
+    private long deleteMissCount = 0;
+
+    /**
+     * Number of commands rejected while applying a batch or replaying a journal
+     */
+    private long rejectedCommandCount = 0;
+
+    /**
+     * Receives fills when incoming orders cross the book. Null when matching is disabled.
+     */
+    private final FillListener fillListener;
+
+    /**
+     * Passed to the OrderBook when matching, evicts completely filled orders from the directory before passing the
+     * fill on to {@link #fillListener}. Created once so matching doesn't allocate a listener per order.
+     */
+    private final FillListener directoryFillListener;
+
+    /**
+     * The number of levels per side published for reader threads, 0 when depth snapshots are disabled
+     */
+    private final int snapshotDepth;
+
+    /**
+     * A mapping of instrument name to the top levels of its {@link OrderBook OrderBook}, the only state of this
+     * manager that is safe to read from other threads
+     */
+    private final ConcurrentHashMap<String, PublishedDepth> publishedDepths = new ConcurrentHashMap<>();
+
+    /**
+     * The levels changed since the last {@link #flushL2Deltas()}, null when the L2 feed is disabled
+     */
+    private final L2DeltaBatch l2Deltas;
+
+    /**
+     * Receives the L3 events of every OrderBook, null when the L3 feed is disabled
+     */
+    private final L3EventListener l3EventListener;
+
+    /**
+     * L3 snapshots asked for from other threads, taken by {@link #serviceL3SnapshotRequests()}
+     */
+    private final ConcurrentLinkedQueue<L3SnapshotRequest> l3SnapshotRequests = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Latency histograms and counters, null unless enabled with {@link #enableMetrics()}
+     */
+    private OrderBookMetrics metrics;
+
+    /**
+     * The orders created by this manager and the price levels of every book, re-used instead of allocated. Null unless
+     * enabled with {@link #enablePooling(int, int)}.
+     */
+    private ObjectPool<Order> orderPool;
+    private ObjectPool<PriceLevelOrders> levelPool;
+
+    /**
+     * Creates a manager without matching, orders are always rested as they arrive even if they cross the book.
+     */
+    public OrderBookManagerImpl() {
+        this(null);
+    }
+
+    /**
+     * Creates a manager that matches incoming orders against the book before resting them.
+     *
+     * @param fillListener receives every fill, or null to disable matching
+     */
+    public OrderBookManagerImpl(FillListener fillListener) {
+        this(fillListener, 0);
+    }
+
+    /**
+     * Creates a manager that also publishes the top levels of every OrderBook for reader threads, see
+     * {@link #getPublishedDepth(String)}.
+     *
+     * @param fillListener receives every fill, or null to disable matching
+     * @param snapshotDepth the number of levels to publish on each side of every book, or 0 to disable publishing
+     */
+    public OrderBookManagerImpl(FillListener fillListener, int snapshotDepth) {
+        this(fillListener, snapshotDepth, null);
+    }
+
+    /**
+     * Creates a manager that also feeds price level (L2) updates to a listener, see {@link #flushL2Deltas()}.
+     *
+     * @param fillListener receives every fill, or null to disable matching
+     * @param snapshotDepth the number of levels to publish on each side of every book, or 0 to disable publishing
+     * @param l2DeltaListener receives an update for every level changed between flushes, or null to disable the feed
+     */
+    public OrderBookManagerImpl(FillListener fillListener, int snapshotDepth, L2DeltaListener l2DeltaListener) {
+        this(fillListener, snapshotDepth, l2DeltaListener, null);
+    }
+
+    /**
+     * Creates a manager that also reports every change to every resting order to an order-by-order (L3) listener, as
+     * it happens.
+     *
+     * @param fillListener receives every fill, or null to disable matching
+     * @param snapshotDepth the number of levels to publish on each side of every book, or 0 to disable publishing
+     * @param l2DeltaListener receives an update for every level changed between flushes, or null to disable the feed
+     * @param l3EventListener receives every L3 event, or null to disable the feed
+     */
+    public OrderBookManagerImpl(FillListener fillListener, int snapshotDepth, L2DeltaListener l2DeltaListener,
+                                L3EventListener l3EventListener) {
+        if(snapshotDepth < 0)
+            throw new IllegalArgumentException("Snapshot depth must not be negative but was " + snapshotDepth);
+
+        this.fillListener = fillListener;
+        this.directoryFillListener = fillListener != null ? this::onFill : null;
+        this.snapshotDepth = snapshotDepth;
+        this.l2Deltas = l2DeltaListener != null ? new L2DeltaBatch(l2DeltaListener) : null;
+        this.l3EventListener = l3EventListener;
+    }
+
+    /**
+     * Create the OrderBook for an instrument with a fixed tick size, backed by array price ladders instead of TreeMaps.
+     *
+     * Must be called before any orders are added for the instrument. Instruments that are never set up this way get
+     * a TreeMap backed OrderBook when their first order arrives.
+     *
+     * @param instrument identifier of an instrument
+     * @param tickSize the minimum price increment of the instrument, every order price must be a multiple of it
+     * @param centrePrice the price the ladders are initially centred around, e.g. the reference price of the day
+     * @param ladderSize the initial number of price levels on each side before the ladders need to recentre
+     */
+    public void addPriceLadderInstrument(String instrument, long tickSize, long centrePrice, int ladderSize) {
+        if(getOrderBook(instrument) != null) {
+            throw new IllegalStateException("OrderBook for " + instrument + " already exists");
+        }
+        addOrderBook(instrument, new OrderBook(tickSize, centrePrice, ladderSize));
+    }
+
     /**
      * Find appropriate OrderBook and add the Order. If no OrderBook exists, one will be created
+     *
+     * If matching is enabled the order is first matched against the opposite side of the book, and only the remaining
+     * quantity (if any) is rested. Only orders that rest are added to the directory.
+     *
+     * @throws IllegalArgumentException if an order with the same id is already resting, or the OrderBook can't hold the
+     * order's price
      */
     public void addOrder(Order order) {
-        if(orderBooks.get(order.getInstrument()) == null) {
-            orderBooks.put(order.getInstrument(), new OrderBook());
+        long start = startTiming();
+        OrderBook orderBook = getOrderBook(order.getInstrument());
+        if(orderBook == null) {
+            orderBook = new OrderBook();
+            addOrderBook(order.getInstrument(), orderBook);
         }
-        orderBooks.get(order.getInstrument()).addOrder(order);
-        orderDirectory.put(order.getOrderId(), order);
+        addOrder(orderBook, order);
+        stopTiming(Operation.ADD, start);
+    }
+
+    /**
+     * Add an order to the OrderBook of an instrument found by id, see {@link #addOrder(Order)}. The order is created
+     * with the registered name of the instrument, so it doesn't carry its own copy.
+     *
+     * @param instrumentId the id of the instrument, see {@link #registerInstrument(String)}
+     * @param orderId numeric orderId of the new order
+     * @param side side of the new order
+     * @param price price of the new order
+     * @param quantity quantity of the new order
+     */
+    public void addOrder(int instrumentId, long orderId, Side side, long price, long quantity) {
+        long start = startTiming();
+        OrderBook orderBook = getOrderBook(instrumentId);
+        addOrder(orderBook, newOrder(orderId, instruments.getInstrument(instrumentId), side, price, quantity));
+        stopTiming(Operation.ADD, start);
+    }
+
+    /**
+     * Add an order with a String id to the OrderBook of an instrument found by id, see
+     * {@link #addOrder(int, long, Side, long, long)}.
+     */
+    public void addOrder(int instrumentId, String orderId, Side side, long price, long quantity) {
+        long start = startTiming();
+        OrderBook orderBook = getOrderBook(instrumentId);
+        addOrder(orderBook, newOrder(orderId, instruments.getInstrument(instrumentId), side, price, quantity));
+        stopTiming(Operation.ADD, start);
+    }
+
+    /**
+     * Get the id of an instrument, creating an empty OrderBook for it if it doesn't have one yet. Ids are dense and
+     * assigned in the order instruments are first seen, whether here or by an order arriving for them, so registering
+     * the day's instruments at startup gives them ids 0 to n - 1.
+     *
+     * @param instrument identifier of an instrument
+     * @return the id to use with the int id overloads of this manager
+     */
+    public int registerInstrument(String instrument) {
+        if(getOrderBook(instrument) == null)
+            addOrderBook(instrument, new OrderBook());
+        return instruments.getId(instrument);
+    }
+
+    /**
+     * @param instrument identifier of an instrument
+     * @return the id of the instrument, or {@link InstrumentRegistry#UNKNOWN} if it has no OrderBook yet
+     */
+    public int getInstrumentId(String instrument) {
+        return instruments.getId(instrument);
+    }
+
+    /**
+     * @param instrumentId the id of an instrument with an OrderBook
+     * @return the name of the instrument
+     */
+    public String getInstrument(int instrumentId) {
+        return instruments.getInstrument(instrumentId);
+    }
+
+    /**
+     * Match the order if matching is enabled, then rest what is left of it and add it to the directory. An order that
+     * is rejected goes back to the pool if it came from there.
+     *
+     * @param orderBook the OrderBook of the order's instrument
+     * @param order the new order
+     */
+    private void addOrder(OrderBook orderBook, Order order) {
+        try {
+            checkNotResting(order);
+            if(directoryFillListener != null) {
+                orderBook.matchOrder(order, directoryFillListener);
+                if(order.getQuantity() == 0) {
+                    recycle(order);
+                    return;
+                }
+            }
+            orderBook.addOrder(order);
+        } catch (RuntimeException rejected) {
+            //rejected before anything changed, so the order never rested
+            recycle(order);
+            throw rejected;
+        }
+
+        addToDirectory(order);
+    }
+
+    /**
+     * Apply every command of the batch in order, storing the result of each in it.
+     *
+     * Compared to calling the manager once per command, a run of commands on the same instrument looks its OrderBook
+     * up once, and if the L2 feed is enabled it is flushed once at the end of the batch, so a level touched by many
+     * commands of the batch is only reported once.
+     *
+     * @param batch the commands to apply, and receives their results
+     */
+    @Override
+    public void applyBatch(OrderCommandBatch batch) {
+        for(int i = 0; i < batch.size(); i++) {
+            OrderCommand command = batch.getCommand(i);
+            try {
+                batch.setResult(i, apply(command));
+            } catch (RuntimeException e) {
+                batch.setResult(i, OrderResult.REJECTED);
+                rejectedCommandCount++;
+            }
+        }
+        flushL2Deltas();
+    }
+
+    /**
+     * Register an OrderBook being restored from a snapshot, with its orders still to be restored.
+     *
+     * @param instrument identifier of an instrument
+     * @param orderBook the empty OrderBook, of the same kind as the one the snapshot was taken of
+     */
+    void restoreOrderBook(String instrument, OrderBook orderBook) {
+        addOrderBook(instrument, orderBook);
+    }
+
+    /**
+     * Rest an order restored from a snapshot at the back of its level, without matching it. The orders of a snapshot
+     * are restored in queue order, so every level ends up queued exactly as it was.
+     *
+     * @param order the order to rest, its OrderBook must have been restored already
+     */
+    void restoreOrder(Order order) {
+        getOrderBook(order.getInstrument()).addOrder(order);
+        addToDirectory(order);
     }
 
     /**
      * Find appropriate OrderBook and modify the Order with new quantity.
      *
+     * An unknown orderId is counted as a miss, nothing is thrown or allocated.
+     *
      * @param orderId orderId of the Order to be modified
      * @param newQuantity new quantity of the Order
+     * @return {@link OrderResult#OK} or {@link OrderResult#ORDER_NOT_FOUND}
      */
-    public void modifyOrder(String orderId, long newQuantity) {
-        try {
-            Order order = getOrderFromOrderId(orderId);
-            orderBooks.get(order.getInstrument()).modifyOrder(order, newQuantity);
-        } catch(OrderNotFoundException error){
-            //some logging should occur here
-        }
+    public OrderResult modifyOrder(String orderId, long newQuantity) {
+        long start = startTiming();
+        return modifyOrder(findOrder(orderId), newQuantity, start);
+    }
+
+    /**
+     * Find appropriate OrderBook and modify the Order with new quantity. The order is found without boxing the id or
+     * hashing a String.
+     *
+     * @param orderId numeric orderId of the Order to be modified
+     * @param newQuantity new quantity of the Order
+     * @return {@link OrderResult#OK} or {@link OrderResult#ORDER_NOT_FOUND}
+     */
+    public OrderResult modifyOrder(long orderId, long newQuantity) {
+        long start = startTiming();
+        return modifyOrder(numericOrderDirectory.get(orderId), newQuantity, start);
     }
 
     /**
      * Find appropriate OrderBook and delete the order.
      *
+     * An unknown orderId is counted as a miss, nothing is thrown or allocated.
+     *
      * @param orderId orderId of the Order to be deleted
+     * @return {@link OrderResult#OK} or {@link OrderResult#ORDER_NOT_FOUND}
      */
-    public void deleteOrder(String orderId) {
-        try {
-            Order order = getOrderFromOrderId(orderId);
-            orderBooks.get(order.getInstrument()).deleteOrder(order);
-        } catch(OrderNotFoundException error) {
-            //some logging should occur here
-        }
+    public OrderResult deleteOrder(String orderId) {
+        long start = startTiming();
+        return deleteOrder(findOrder(orderId), start);
+    }
+
+    /**
+     * Find appropriate OrderBook and delete the order. The order is found without boxing the id or hashing a String.
+     *
+     * @param orderId numeric orderId of the Order to be deleted
+     * @return {@link OrderResult#OK} or {@link OrderResult#ORDER_NOT_FOUND}
+     */
+    public OrderResult deleteOrder(long orderId) {
+        long start = startTiming();
+        return deleteOrder(numericOrderDirectory.get(orderId), start);
     }
 
     /**
@@ -64,7 +384,10 @@ public class OrderBookManagerImpl implements OrderBookManager {
      * @param side side of OrderBook to check
      */
     public long getBestPrice(String instrument, Side side) {
-        return orderBooks.get(instrument).getBestPrice(side);
+        long start = startTiming();
+        long bestPrice = getOrderBook(instrument).getBestPrice(side);
+        stopTiming(Operation.GET_BEST_PRICE, start);
+        return bestPrice;
     }
 
     /**
@@ -75,7 +398,10 @@ public class OrderBookManagerImpl implements OrderBookManager {
      * @param price price level to check
      */
     public long getOrderNumAtLevel(String instrument, Side side, long price) {
-        return orderBooks.get(instrument).getOrderNumAtLevel(side, price);
+        long start = startTiming();
+        long orderNum = getOrderBook(instrument).getOrderNumAtLevel(side, price);
+        stopTiming(Operation.GET_ORDER_NUM_AT_LEVEL, start);
+        return orderNum;
     }
 
     /**
@@ -86,10 +412,11 @@ public class OrderBookManagerImpl implements OrderBookManager {
      * @param price price level to check
      */
     public long getTotalQuantityAtLevel(String instrument, Side side, long price) {
-        if(orderBooks.get(instrument) != null) {
-            return orderBooks.get(instrument).getTotalQuantityAtLevel(side, price);
-        }
-        return -1;
+        long start = startTiming();
+        OrderBook orderBook = getOrderBook(instrument);
+        long totalQuantity = orderBook != null ? orderBook.getTotalQuantityAtLevel(side, price) : -1;
+        stopTiming(Operation.GET_TOTAL_QUANTITY_AT_LEVEL, start);
+        return totalQuantity;
     }
 
     /**
@@ -100,10 +427,11 @@ public class OrderBookManagerImpl implements OrderBookManager {
      * @param price price level to check
      */
     public long getTotalVolumeAtLevel(String instrument, Side side, long price) {
-        if(orderBooks.get(instrument) != null) {
-            return orderBooks.get(instrument).getTotalVolumeAtLevel(side, price);
-        }
-        return -1;
+        long start = startTiming();
+        OrderBook orderBook = getOrderBook(instrument);
+        long totalVolume = orderBook != null ? orderBook.getTotalVolumeAtLevel(side, price) : -1;
+        stopTiming(Operation.GET_TOTAL_VOLUME_AT_LEVEL, start);
+        return totalVolume;
     }
 
     /**
@@ -114,10 +442,326 @@ public class OrderBookManagerImpl implements OrderBookManager {
      * @param price price level to check
      */
     public List<Order> getOrdersAtLevel(String instrument, Side side, long price) {
-        if(orderBooks.get(instrument) != null) {
-            return orderBooks.get(instrument).getOrdersAtLevel(side, price);
+        long start = startTiming();
+        OrderBook orderBook = getOrderBook(instrument);
+        List<Order> orders = orderBook != null ? orderBook.getOrdersAtLevel(side, price) : Collections.emptyList();
+        stopTiming(Operation.GET_ORDERS_AT_LEVEL, start);
+        return orders;
+    }
+
+    /**
+     * Find appropriate OrderBook and pass the orders on the side specified at a price level to the consumer, without
+     * copying them.
+     *
+     * @param instrument instrument to check
+     * @param side side of OrderBook to check
+     * @param price price level to check
+     * @param consumer called for every order at the level
+     */
+    public void forEachOrderAtLevel(String instrument, Side side, long price, Consumer<Order> consumer) {
+        long start = startTiming();
+        OrderBook orderBook = getOrderBook(instrument);
+        if(orderBook != null) {
+            orderBook.forEachOrderAtLevel(side, price, consumer);
         }
-        return Collections.emptyList();
+        stopTiming(Operation.FOR_EACH_ORDER_AT_LEVEL, start);
+    }
+
+    /**
+     * Find appropriate OrderBook and walk the best levels on the side specified.
+     *
+     * @param instrument instrument to check
+     * @param side side of OrderBook to check
+     * @param maxLevels the most levels to visit
+     * @param visitor called for every level visited
+     * @return the number of levels visited, 0 if there is no OrderBook for the instrument
+     */
+    public int walkDepth(String instrument, Side side, int maxLevels, DepthVisitor visitor) {
+        long start = startTiming();
+        OrderBook orderBook = getOrderBook(instrument);
+        int levels = orderBook != null ? orderBook.walkDepth(side, maxLevels, visitor) : 0;
+        stopTiming(Operation.WALK_DEPTH, start);
+        return levels;
+    }
+
+    /**
+     * Find appropriate OrderBook and write the best levels on the side specified to the buffer, as price, total
+     * quantity and order count triples.
+     *
+     * @param instrument instrument to check
+     * @param side side of OrderBook to check
+     * @param n the most levels to get
+     * @param buffer receives the levels, must hold at least 3 * n values
+     * @return the number of levels written, 0 if there is no OrderBook for the instrument
+     */
+    public int getDepth(String instrument, Side side, int n, long[] buffer) {
+        if(n < 0 || buffer.length < 3L * n)
+            throw new IllegalArgumentException("Buffer of " + buffer.length + " can't hold " + n + " levels");
+
+        long start = startTiming();
+        OrderBook orderBook = getOrderBook(instrument);
+        int levels = orderBook != null ? orderBook.getDepth(side, n, buffer) : 0;
+        stopTiming(Operation.GET_DEPTH, start);
+        return levels;
+    }
+
+    /**
+     * Get the best price on the side specified of an instrument's OrderBook, found by id.
+     *
+     * @param instrumentId the id of the instrument, see {@link #registerInstrument(String)}
+     * @param side side of OrderBook to check
+     * @return the best price, or -1 if there are no orders on the side
+     */
+    public long getBestPrice(int instrumentId, Side side) {
+        long start = startTiming();
+        long bestPrice = getOrderBook(instrumentId).getBestPrice(side);
+        stopTiming(Operation.GET_BEST_PRICE, start);
+        return bestPrice;
+    }
+
+    /**
+     * Get the number of orders at a price level of an instrument's OrderBook, found by id.
+     *
+     * @param instrumentId the id of the instrument, see {@link #registerInstrument(String)}
+     * @param side side of OrderBook to check
+     * @param price price level to check
+     */
+    public long getOrderNumAtLevel(int instrumentId, Side side, long price) {
+        long start = startTiming();
+        long orderNum = getOrderBook(instrumentId).getOrderNumAtLevel(side, price);
+        stopTiming(Operation.GET_ORDER_NUM_AT_LEVEL, start);
+        return orderNum;
+    }
+
+    /**
+     * Get the total quantity at a price level of an instrument's OrderBook, found by id.
+     *
+     * @param instrumentId the id of the instrument, see {@link #registerInstrument(String)}
+     * @param side side of OrderBook to check
+     * @param price price level to check
+     */
+    public long getTotalQuantityAtLevel(int instrumentId, Side side, long price) {
+        long start = startTiming();
+        long totalQuantity = getOrderBook(instrumentId).getTotalQuantityAtLevel(side, price);
+        stopTiming(Operation.GET_TOTAL_QUANTITY_AT_LEVEL, start);
+        return totalQuantity;
+    }
+
+    /**
+     * Get the total volume at a price level of an instrument's OrderBook, found by id.
+     *
+     * @param instrumentId the id of the instrument, see {@link #registerInstrument(String)}
+     * @param side side of OrderBook to check
+     * @param price price level to check
+     */
+    public long getTotalVolumeAtLevel(int instrumentId, Side side, long price) {
+        long start = startTiming();
+        long totalVolume = getOrderBook(instrumentId).getTotalVolumeAtLevel(side, price);
+        stopTiming(Operation.GET_TOTAL_VOLUME_AT_LEVEL, start);
+        return totalVolume;
+    }
+
+    /**
+     * Get the list of orders at a price level of an instrument's OrderBook, found by id.
+     *
+     * @param instrumentId the id of the instrument, see {@link #registerInstrument(String)}
+     * @param side side of OrderBook to check
+     * @param price price level to check
+     */
+    public List<Order> getOrdersAtLevel(int instrumentId, Side side, long price) {
+        long start = startTiming();
+        List<Order> orders = getOrderBook(instrumentId).getOrdersAtLevel(side, price);
+        stopTiming(Operation.GET_ORDERS_AT_LEVEL, start);
+        return orders;
+    }
+
+    /**
+     * Pass the orders at a price level of an instrument's OrderBook, found by id, to the consumer without copying them.
+     *
+     * @param instrumentId the id of the instrument, see {@link #registerInstrument(String)}
+     * @param side side of OrderBook to check
+     * @param price price level to check
+     * @param consumer called for every order at the level
+     */
+    public void forEachOrderAtLevel(int instrumentId, Side side, long price, Consumer<Order> consumer) {
+        long start = startTiming();
+        getOrderBook(instrumentId).forEachOrderAtLevel(side, price, consumer);
+        stopTiming(Operation.FOR_EACH_ORDER_AT_LEVEL, start);
+    }
+
+    /**
+     * Walk the best levels on the side specified of an instrument's OrderBook, found by id.
+     *
+     * @param instrumentId the id of the instrument, see {@link #registerInstrument(String)}
+     * @param side side of OrderBook to check
+     * @param maxLevels the most levels to visit
+     * @param visitor called for every level visited
+     * @return the number of levels visited
+     */
+    public int walkDepth(int instrumentId, Side side, int maxLevels, DepthVisitor visitor) {
+        long start = startTiming();
+        int levels = getOrderBook(instrumentId).walkDepth(side, maxLevels, visitor);
+        stopTiming(Operation.WALK_DEPTH, start);
+        return levels;
+    }
+
+    /**
+     * Write the best levels on the side specified of an instrument's OrderBook, found by id, to the buffer as price,
+     * total quantity and order count triples.
+     *
+     * @param instrumentId the id of the instrument, see {@link #registerInstrument(String)}
+     * @param side side of OrderBook to check
+     * @param n the most levels to get
+     * @param buffer receives the levels, must hold at least 3 * n values
+     * @return the number of levels written
+     */
+    public int getDepth(int instrumentId, Side side, int n, long[] buffer) {
+        if(n < 0 || buffer.length < 3L * n)
+            throw new IllegalArgumentException("Buffer of " + buffer.length + " can't hold " + n + " levels");
+
+        long start = startTiming();
+        int levels = getOrderBook(instrumentId).getDepth(side, n, buffer);
+        stopTiming(Operation.GET_DEPTH, start);
+        return levels;
+    }
+
+    /**
+     * Start recording the latency of every operation and counting directory misses and the price levels created and
+     * removed, from then on. Until this is called the only cost of the instrumentation is a null check per operation.
+     *
+     * @return the metrics, safe to read and reset from any thread
+     */
+    public OrderBookMetrics enableMetrics() {
+        if(metrics == null) {
+            OrderBookMetrics metrics = new OrderBookMetrics();
+            for(int instrumentId = 0; instrumentId < instruments.size(); instrumentId++) {
+                orderBooks[instrumentId].enableMetrics(metrics);
+            }
+            this.metrics = metrics;
+        }
+        return metrics;
+    }
+
+    /**
+     * Re-use orders and price levels instead of allocating them, from then on. Orders added by the int id overloads of
+     * {@link #addOrder(int, long, Side, long, long) addOrder}, by {@link #applyBatch(OrderCommandBatch)} (and so by an
+     * {@link OrderFlowReplay OrderFlowReplay}) and by an {@link OrderCommandRingBuffer OrderCommandRingBuffer} in front
+     * of this manager are taken from a pool of preallocated orders, and go back to it when they are deleted, modified to
+     * 0 or completely filled.
+     * The price levels of every book are taken from a pool when created and go back when removed. Orders passed in
+     * by callers to {@link #addOrder(Order)} are rested as before and never pooled.
+     *
+     * Once warmed up, adds, modifies and deletes of orders with numeric ids then allocate nothing, except that a
+     * TreeMap backed book still allocates a TreeMap entry (and a boxed price) for every new price level; price ladder
+     * books don't. Orders with String ids still allocate an entry in the String directory.
+     *
+     * A pooled order is re-used as soon as it leaves the book, so Orders returned by the queries or passed to
+     * listeners must not be kept beyond that. Copy them (e.g. with {@link Order#Order(Order)}) to keep them.
+     *
+     * @param orderPoolSize the number of orders to preallocate, e.g. the peak number resting
+     * @param levelPoolSize the number of price levels to preallocate, e.g. the peak number in every book
+     */
+    public void enablePooling(int orderPoolSize, int levelPoolSize) {
+        if(orderPool != null)
+            throw new IllegalStateException("Pooling is already enabled");
+
+        orderPool = new ObjectPool<>(orderPoolSize, Order::newPooled);
+        levelPool = new ObjectPool<>(levelPoolSize, () -> new PriceLevelOrders(0));
+        for(int instrumentId = 0; instrumentId < instruments.size(); instrumentId++) {
+            orderBooks[instrumentId].enablePooling(levelPool);
+        }
+        if(l2Deltas != null)
+            l2Deltas.setLevelPool(levelPool);
+    }
+
+    /**
+     * Get the top levels of an instrument's OrderBook, as published after every mutation. Unlike every other method
+     * of this manager this is safe to call from any thread, and so are the methods of the returned object.
+     *
+     * @param instrument instrument to check
+     * @return the published levels, or null if depth snapshots are disabled or the instrument has no OrderBook yet
+     */
+    public PublishedDepth getPublishedDepth(String instrument) {
+        return publishedDepths.get(instrument);
+    }
+
+    /**
+     * Send the L2 delta listener one update for every price level changed since the last flush, with its current
+     * total quantity and order count. However many times a level changed in between, it is only reported once.
+     *
+     * Call this at the end of every batch of mutations. {@link #applyBatch(OrderCommandBatch)} and an
+     * {@link OrderCommandRingBuffer OrderCommandRingBuffer} in front of this manager do it for every batch they apply.
+     * Does nothing if the feed is disabled.
+     */
+    public void flushL2Deltas() {
+        if(l2Deltas != null)
+            l2Deltas.flush();
+    }
+
+    /**
+     * Copy every order resting in an instrument's OrderBook, with the sequence number of its last L3 event. Must be
+     * called from the thread that mutates this manager, see {@link #requestL3Snapshot(String)} for other threads.
+     *
+     * @param instrument instrument to copy
+     * @return the copy, empty with a sequence number of 0 if the instrument has no OrderBook yet
+     */
+    public L3Snapshot getL3Snapshot(String instrument) {
+        if(l3EventListener == null)
+            throw new IllegalStateException("The L3 feed is disabled, no L3 event listener was given");
+
+        OrderBook orderBook = getOrderBook(instrument);
+        if(orderBook == null)
+            return new L3Snapshot(instrument, 0);
+        return orderBook.captureL3(instrument);
+    }
+
+    /**
+     * Ask for an L3 snapshot of an instrument from any thread, e.g. by a consumer of the L3 feed that has missed
+     * events. The snapshot is taken the next time the mutating thread calls {@link #serviceL3SnapshotRequests()}, so
+     * the writer carries on in the meantime and the consumer keeps the events that arrive until then.
+     *
+     * @param instrument instrument to copy
+     * @return completes with the snapshot once it is taken
+     */
+    public CompletableFuture<L3Snapshot> requestL3Snapshot(String instrument) {
+        L3SnapshotRequest request = new L3SnapshotRequest(instrument);
+        l3SnapshotRequests.add(request);
+        return request.snapshot;
+    }
+
+    /**
+     * Take every L3 snapshot asked for since the last call. Must be called from the thread that mutates this manager,
+     * between mutations, e.g. as part of the batch end hook of an {@link OrderCommandRingBuffer OrderCommandRingBuffer}.
+     */
+    public void serviceL3SnapshotRequests() {
+        L3SnapshotRequest request;
+        while((request = l3SnapshotRequests.poll()) != null) {
+            try {
+                request.snapshot.complete(getL3Snapshot(request.instrument));
+            } catch (RuntimeException e) {
+                request.snapshot.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of instruments with an OrderBook, whose ids run from 0 to this - 1
+     */
+    int getInstrumentCount() {
+        return instruments.size();
+    }
+
+    /**
+     * Get the OrderBook of an instrument by id, without hashing its name.
+     *
+     * @param instrumentId the id of an instrument
+     * @return the OrderBook of the instrument
+     * @throws IllegalArgumentException if no instrument has the id
+     */
+    OrderBook getOrderBook(int instrumentId) {
+        if(instrumentId < 0 || instrumentId >= instruments.size())
+            throw new IllegalArgumentException("No instrument has id " + instrumentId);
+        return orderBooks[instrumentId];
     }
 
     /**
@@ -127,9 +771,324 @@ public class OrderBookManagerImpl implements OrderBookManager {
      * @return {@link Order Order} with the orderId specified
      */
     Order getOrderFromOrderId(String orderId) throws OrderNotFoundException {
-        if(orderDirectory.get(orderId) != null)
-            return orderDirectory.get(orderId);
+        Order order = findOrder(orderId);
+        if(order != null)
+            return order;
 
         throw new OrderNotFoundException("Order ID: " + orderId + " was not found in the directory");
     }
+
+    /**
+     * Find {@link Order Order} object based on it's orderId, without throwing if it is missing. An id that is a number
+     * is looked up as the numeric id, see {@link Order#hasNumericOrderId()}.
+     *
+     * @param orderId orderId to get Order from
+     * @return {@link Order Order} with the orderId specified, or null if there is none
+     */
+    Order findOrder(String orderId) {
+        if(Order.isNumericOrderId(orderId))
+            return numericOrderDirectory.get(Long.parseLong(orderId));
+        return orderDirectory.get(orderId);
+    }
+
+    /**
+     * Find {@link Order Order} object based on it's numeric orderId, without throwing if it is missing
+     *
+     * @param orderId numeric orderId to get Order from
+     * @return {@link Order Order} with the orderId specified, or null if there is none
+     */
+    Order findOrder(long orderId) {
+        return numericOrderDirectory.get(orderId);
+    }
+
+    /**
+     * Get the number of orders resting in all OrderBooks. Orders leave the directory when they are deleted, modified to
+     * a quantity of 0 or completely filled, so this is also the size of the directory.
+     *
+     * @return the number of live orders
+     */
+    public long getLiveOrderCount() {
+        return orderDirectory.size() + numericOrderDirectory.size();
+    }
+
+    /**
+     * @return the number of modify requests for orders that were not found, since this manager was created
+     */
+    public long getModifyMissCount() {
+        return modifyMissCount;
+    }
+
+    /**
+     * @return the number of delete requests for orders that were not found, since this manager was created
+     */
+    public long getDeleteMissCount() {
+        return deleteMissCount;
+    }
+
+    /**
+     * @return the number of commands rejected by {@link #applyBatch(OrderCommandBatch)}, skipped when replaying a
+     * journal or rejected by a shard of a {@link ShardedOrderBookManager}, since this manager was created
+     */
+    public long getRejectedCommandCount() {
+        return rejectedCommandCount;
+    }
+
+    /**
+     * Count a command that was rejected outside of a batch, e.g. a journal record that fails when it is replayed.
+     */
+    void commandRejected() {
+        rejectedCommandCount++;
+    }
+
+    /**
+     * Check that {@link #addOrder(Order)} would accept an order, without changing anything, so it can be rejected
+     * before it is journalled.
+     *
+     * @param order a new order
+     * @throws IllegalArgumentException if an order with the same id is already resting, or the OrderBook of the order's
+     * instrument can't hold its price
+     */
+    void checkOrder(Order order) {
+        checkNotResting(order);
+        OrderBook orderBook = getOrderBook(order.getInstrument());
+        //a new book takes any price
+        if(orderBook != null)
+            orderBook.checkOrder(order);
+    }
+
+    /**
+     * Check that no order with the id of a new order is resting. Replacing its directory entry would leave the resting
+     * order in its book with no way to reach it.
+     *
+     * @param order a new order
+     * @throws IllegalArgumentException if an order with the same id is already resting
+     */
+    private void checkNotResting(Order order) {
+        Order resting = order.hasNumericOrderId()
+                ? numericOrderDirectory.get(order.getNumericOrderId())
+                : orderDirectory.get(order.getOrderId());
+        if(resting != null)
+            throw new IllegalArgumentException("Order " + order.getOrderId() + " is already resting");
+    }
+
+    /**
+     * Get the OrderBook of an instrument, re-using the last lookup if it was for the same instrument. Instruments are
+     * compared by reference first, so commands sharing an interned instrument name don't even compare the Strings.
+     *
+     * @param instrument identifier of an instrument
+     * @return the OrderBook, or null if the instrument doesn't have one yet
+     */
+    private OrderBook getOrderBook(String instrument) {
+        if(lastOrderBook != null && (instrument == lastInstrument || lastInstrument.equals(instrument)))
+            return lastOrderBook;
+
+        int instrumentId = instruments.getId(instrument);
+        if(instrumentId == InstrumentRegistry.UNKNOWN)
+            return null;
+
+        OrderBook orderBook = orderBooks[instrumentId];
+        if(orderBook != null) {
+            lastInstrument = instrument;
+            lastOrderBook = orderBook;
+        }
+        return orderBook;
+    }
+
+    /**
+     * Apply a single command of a batch, e.g. of {@link #applyBatch(OrderCommandBatch)} or of the commands an
+     * {@link OrderCommandRingBuffer OrderCommandRingBuffer} applies at a time. The caller flushes the L2 feed at the end
+     * of the batch.
+     *
+     * @param command the command
+     * @return the result of the command, always {@link OrderResult#OK} for an add
+     * @throws RuntimeException if the command is rejected
+     */
+    OrderResult apply(OrderCommand command) {
+        switch(command.type) {
+            case ADD:
+                addOrder(command.orderId != null
+                        ? newOrder(command.orderId, command.instrument, command.side, command.price, command.quantity)
+                        : newOrder(command.numericOrderId, command.instrument, command.side, command.price, command.quantity));
+                return OrderResult.OK;
+            case MODIFY: {
+                long start = startTiming();
+                return modifyOrder(command.orderId != null
+                        ? findOrder(command.orderId)
+                        : numericOrderDirectory.get(command.numericOrderId), command.quantity, start);
+            }
+            default: {
+                long start = startTiming();
+                return deleteOrder(command.orderId != null
+                        ? findOrder(command.orderId)
+                        : numericOrderDirectory.get(command.numericOrderId), start);
+            }
+        }
+    }
+
+    /**
+     * Register a new OrderBook for an instrument, publishing its top levels if depth snapshots are enabled and feeding
+     * its changes to the L2 feed if that is enabled, and its L3 events to the L3 listener if there is one.
+     *
+     * @param instrument identifier of an instrument
+     * @param orderBook the new OrderBook
+     */
+    private void addOrderBook(String instrument, OrderBook orderBook) {
+        int instrumentId = instruments.register(instrument);
+        if(instrumentId == orderBooks.length)
+            orderBooks = Arrays.copyOf(orderBooks, orderBooks.length * 2);
+        orderBooks[instrumentId] = orderBook;
+        lastOrderBook = null;
+        if(l2Deltas != null)
+            orderBook.enableL2Deltas(instrument, l2Deltas);
+        if(l3EventListener != null)
+            orderBook.enableL3Events(instrument, l3EventListener);
+        if(snapshotDepth > 0)
+            publishedDepths.put(instrument, orderBook.enableDepthSnapshots(snapshotDepth));
+        if(metrics != null)
+            orderBook.enableMetrics(metrics);
+        if(levelPool != null)
+            orderBook.enablePooling(levelPool);
+    }
+
+    /**
+     * Modify an Order found in one of the directories, shared by the String and numeric id APIs.
+     *
+     * @param order the Order to be modified, or null if the lookup missed
+     * @param newQuantity new quantity of the Order
+     * @param start when the modify started, see {@link #startTiming()}
+     * @return {@link OrderResult#OK} or {@link OrderResult#ORDER_NOT_FOUND} if order is null
+     */
+    private OrderResult modifyOrder(Order order, long newQuantity, long start) {
+        if(order == null) {
+            modifyMissCount++;
+            if(metrics != null)
+                metrics.increment(OrderBookMetrics.Counter.MODIFY_MISSES);
+            return OrderResult.ORDER_NOT_FOUND;
+        }
+        Operation operation = newQuantity > order.getTotalQuantity() ? Operation.MODIFY_UP : Operation.MODIFY_DOWN;
+        getOrderBook(order.getInstrument()).modifyOrder(order, newQuantity);
+        if(newQuantity <= 0) {
+            removeFromDirectory(order);
+            recycle(order);
+        }
+        stopTiming(operation, start);
+        return OrderResult.OK;
+    }
+
+    /**
+     * Delete an Order found in one of the directories, shared by the String and numeric id APIs.
+     *
+     * @param order the Order to be deleted, or null if the lookup missed
+     * @param start when the delete started, see {@link #startTiming()}
+     * @return {@link OrderResult#OK} or {@link OrderResult#ORDER_NOT_FOUND} if order is null
+     */
+    private OrderResult deleteOrder(Order order, long start) {
+        if(order == null) {
+            deleteMissCount++;
+            if(metrics != null)
+                metrics.increment(OrderBookMetrics.Counter.DELETE_MISSES);
+            return OrderResult.ORDER_NOT_FOUND;
+        }
+        getOrderBook(order.getInstrument()).deleteOrder(order);
+        removeFromDirectory(order);
+        recycle(order);
+        stopTiming(Operation.DELETE, start);
+        return OrderResult.OK;
+    }
+
+    /**
+     * @return the time an operation started if metrics are enabled, otherwise 0 without reading the clock
+     */
+    private long startTiming() {
+        return metrics != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the latency of an operation if metrics are enabled.
+     *
+     * @param operation the operation
+     * @param start the result of {@link #startTiming()} when it started
+     */
+    private void stopTiming(Operation operation, long start) {
+        if(metrics != null)
+            metrics.recordLatency(operation, System.nanoTime() - start);
+    }
+
+    /**
+     * Add a resting Order to the directory matching its kind of id.
+     *
+     * @param order the Order to add
+     */
+    private void addToDirectory(Order order) {
+        if(order.hasNumericOrderId())
+            numericOrderDirectory.put(order.getNumericOrderId(), order);
+        else
+            orderDirectory.put(order.getOrderId(), order);
+    }
+
+    /**
+     * Remove an Order from whichever directory holds it, once it is no longer resting in its OrderBook.
+     *
+     * @param order the Order to remove
+     */
+    private void removeFromDirectory(Order order) {
+        if(order.hasNumericOrderId())
+            numericOrderDirectory.remove(order.getNumericOrderId());
+        else
+            orderDirectory.remove(order.getOrderId());
+    }
+
+    /**
+     * Evict resting orders from the directory as they are completely filled, then pass the fill on.
+     */
+    private void onFill(Order restingOrder, Order incomingOrder, long price, long quantity) {
+        if(restingOrder.getQuantity() == 0) {
+            removeFromDirectory(restingOrder);
+            fillListener.onFill(restingOrder, incomingOrder, price, quantity);
+            recycle(restingOrder);
+        } else {
+            fillListener.onFill(restingOrder, incomingOrder, price, quantity);
+        }
+    }
+
+    /**
+     * Create an order with a numeric id for this manager to rest, taken from the pool if pooling is enabled.
+     */
+    private Order newOrder(long orderId, String instrument, Side side, long price, long quantity) {
+        if(orderPool == null)
+            return new Order(orderId, instrument, side, price, quantity);
+        return orderPool.borrow().reset(orderId, instrument, side, price, quantity);
+    }
+
+    /**
+     * Create an order with a String id for this manager to rest, taken from the pool if pooling is enabled.
+     */
+    private Order newOrder(String orderId, String instrument, Side side, long price, long quantity) {
+        if(orderPool == null)
+            return new Order(orderId, instrument, side, price, quantity);
+        return orderPool.borrow().reset(orderId, instrument, side, price, quantity);
+    }
+
+    /**
+     * Return an order that has left its book to the pool, if it came from there. Orders created by callers are left
+     * alone.
+     *
+     * @param order an order no longer resting or in the directory
+     */
+    private void recycle(Order order) {
+        if(order.pooled)
+            orderPool.release(order);
+    }
+
+    /**
+     * An L3 snapshot asked for from another thread
+     */
+    private static class L3SnapshotRequest {
+        final String instrument;
+        final CompletableFuture<L3Snapshot> snapshot = new CompletableFuture<>();
+
+        L3SnapshotRequest(String instrument) {
+            this.instrument = instrument;
+        }
+    }
 }
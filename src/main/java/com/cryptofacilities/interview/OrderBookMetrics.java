@@ -0,0 +1,173 @@
+package com.cryptofacilities.interview;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histograms and counters from inside an {@link OrderBookManagerImpl OrderBookManagerImpl}, enabled with
+ * {@link OrderBookManagerImpl#enableMetrics()}.
+ *
+ * Every operation of the manager records its latency in nanoseconds in a {@link Histogram Histogram} of its own, and
+ * the manager and its books count directory misses and price levels created and removed. The number of levels on a
+ * side is recorded in a depth histogram every time a level is created. Everything is recorded by the manager's thread
+ * without locks or allocation, and can be read from any thread with {@link #getLatency(Operation)},
+ * {@link #getCount(Counter)} and the rest, or over JMX once {@link #register(String) registered}. {@link #reset()}
+ * makes everything count from that point, again from any thread.
+ *
+ * A manager without metrics only pays for a null check per operation.
+ */
+public class OrderBookMetrics implements OrderBookMetricsMXBean {
+
+    /**
+     * The operations timed
+     */
+    public enum Operation {
+        ADD, MODIFY_UP, MODIFY_DOWN, DELETE, GET_BEST_PRICE, GET_ORDER_NUM_AT_LEVEL, GET_TOTAL_QUANTITY_AT_LEVEL,
+        GET_TOTAL_VOLUME_AT_LEVEL, GET_ORDERS_AT_LEVEL, FOR_EACH_ORDER_AT_LEVEL, WALK_DEPTH, GET_DEPTH
+    }
+
+    /**
+     * The events counted
+     */
+    public enum Counter {
+        MODIFY_MISSES, DELETE_MISSES, LEVELS_CREATED, LEVELS_REMOVED
+    }
+
+    private final Histogram[] latencies = new Histogram[Operation.values().length];
+    private final Histogram depth = new Histogram();
+
+    /**
+     * Indexed by counter ordinal, incremented by the single writing thread
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(Counter.values().length);
+    private volatile long[] baseline = new long[Counter.values().length];
+
+    /**
+     * Price levels currently in every book, not affected by reset. Volatile for readers, only the writer updates it.
+     */
+    private volatile long levelCount;
+
+    OrderBookMetrics() {
+        for(int i = 0; i < latencies.length; i++) {
+            latencies[i] = new Histogram();
+        }
+    }
+
+    /**
+     * @return the latencies of an operation since the last reset, in nanoseconds
+     */
+    public HistogramSnapshot getLatency(Operation operation) {
+        return latencies[operation.ordinal()].snapshot();
+    }
+
+    /**
+     * @return how many times an event happened since the last reset
+     */
+    public long getCount(Counter counter) {
+        return counts.get(counter.ordinal()) - baseline[counter.ordinal()];
+    }
+
+    /**
+     * @return the number of levels on the side a level was created on, every time one was created since the last reset
+     */
+    public HistogramSnapshot getDepthHistogram() {
+        return depth.snapshot();
+    }
+
+    @Override
+    public long getLevelCount() {
+        return levelCount;
+    }
+
+    @Override
+    public Map<String, String> getLatencies() {
+        Map<String, String> summaries = new LinkedHashMap<>();
+        for(Operation operation : Operation.values()) {
+            summaries.put(operation.name(), getLatency(operation).toString());
+        }
+        return summaries;
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        for(Counter counter : Counter.values()) {
+            counters.put(counter.name(), getCount(counter));
+        }
+        return counters;
+    }
+
+    @Override
+    public String getDepth() {
+        return getDepthHistogram().toString();
+    }
+
+    /**
+     * @return every latency histogram since the last reset
+     */
+    public Map<Operation, HistogramSnapshot> snapshot() {
+        Map<Operation, HistogramSnapshot> snapshots = new EnumMap<>(Operation.class);
+        for(Operation operation : Operation.values()) {
+            snapshots.put(operation, getLatency(operation));
+        }
+        return snapshots;
+    }
+
+    @Override
+    public void reset() {
+        for(Histogram latency : latencies) {
+            latency.reset();
+        }
+        depth.reset();
+        long[] base = new long[counts.length()];
+        for(int i = 0; i < base.length; i++) {
+            base[i] = counts.get(i);
+        }
+        baseline = base;
+    }
+
+    /**
+     * Register these metrics with the platform MBean server, as
+     * {@code com.cryptofacilities.interview:type=OrderBookMetrics,name=<name>}.
+     *
+     * @param name distinguishes the metrics of this manager from any others, e.g. the shard
+     */
+    public void register(String name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                new ObjectName("com.cryptofacilities.interview:type=OrderBookMetrics,name=" + ObjectName.quote(name)));
+    }
+
+    /**
+     * @param levels the number of levels a book already had when metrics were enabled on it
+     */
+    void existingLevels(int levels) {
+        levelCount += levels;
+    }
+
+    void recordLatency(Operation operation, long nanos) {
+        latencies[operation.ordinal()].record(nanos);
+    }
+
+    void increment(Counter counter) {
+        counts.lazySet(counter.ordinal(), counts.get(counter.ordinal()) + 1);
+    }
+
+    /**
+     * @param sideDepth the number of levels on the side after the level was created
+     */
+    void levelCreated(int sideDepth) {
+        increment(Counter.LEVELS_CREATED);
+        levelCount++;
+        depth.record(sideDepth);
+    }
+
+    void levelRemoved() {
+        increment(Counter.LEVELS_REMOVED);
+        levelCount--;
+    }
+}
@@ -0,0 +1,34 @@
+package com.cryptofacilities.interview;
+
+import java.util.Map;
+
+/**
+ * The JMX view of an {@link OrderBookMetrics OrderBookMetrics}, see {@link OrderBookMetrics#register(String)}.
+ */
+public interface OrderBookMetricsMXBean {
+
+    /**
+     * @return a summary of the latency histogram of every operation since the last reset, keyed on operation name
+     */
+    Map<String, String> getLatencies();
+
+    /**
+     * @return every counter since the last reset, keyed on counter name
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * @return the number of price levels in all books right now
+     */
+    long getLevelCount();
+
+    /**
+     * @return a summary of the depth histogram since the last reset
+     */
+    String getDepth();
+
+    /**
+     * Start counting again from now.
+     */
+    void reset();
+}
@@ -0,0 +1,74 @@
+package com.cryptofacilities.interview;
+
+/**
+ * One side (bids or asks) of an {@link OrderBook OrderBook}, holding its price levels ordered from best to worst.
+ *
+ * Best means highest price for the buy side and lowest price for the sell side.
+ */
+interface OrderBookSide {
+
+  /**
+   * Get the level at a price.
+   *
+   * @param price the price of the level
+   * @return the level, or null if there are no orders at that price
+   */
+  PriceLevelOrders getLevel(long price);
+
+  /**
+   * Get the level at a price, creating an empty one if it doesn't exist yet.
+   *
+   * @param price the price of the level
+   * @return the level at that price
+   */
+  PriceLevelOrders getOrCreateLevel(long price);
+
+  /**
+   * Check that a level could be created at a price, so an order that can't rest at it is rejected before anything is
+   * matched against the book.
+   *
+   * @param price the price of a new order
+   * @throws IllegalArgumentException if there can't be a level at the price
+   */
+  void checkPrice(long price);
+
+  /**
+   * Remove the level at a price. Does nothing if there is no level at that price.
+   *
+   * If a level pool is set the removed level is returned to it, unless it is waiting to be reported by the L2 feed,
+   * which returns it once it has been reported.
+   *
+   * @param price the price of the level to remove
+   */
+  void removeLevel(long price);
+
+  /**
+   * @return the level with the best price, or null if this side is empty
+   */
+  PriceLevelOrders getBestLevel();
+
+  /**
+   * Get the next level after a level, walking from best to worst.
+   *
+   * @param level a level on this side
+   * @return the level with the next worse price, or null if the level is the worst on this side
+   */
+  PriceLevelOrders getNextLevel(PriceLevelOrders level);
+
+  /**
+   * @return the best price on this side, or -1 if this side is empty
+   */
+  long getBestPrice();
+
+  /**
+   * @return true if there are no price levels on this side
+   */
+  boolean isEmpty();
+
+  /**
+   * Take new levels from a pool and return removed ones to it, instead of allocating a level per new price.
+   *
+   * @param levelPool the pool, shared by every side of the manager
+   */
+  void setLevelPool(ObjectPool<PriceLevelOrders> levelPool);
+}
@@ -0,0 +1,611 @@
+package com.cryptofacilities.interview;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * A compact binary copy of every OrderBook of an {@link OrderBookManagerImpl OrderBookManagerImpl}, so a restart only
+ * has to replay the journal written after it rather than the whole day.
+ *
+ * Taking a snapshot is split up so the thread writing to the manager is only ever held up briefly:
+ * <ul>
+ *   <li>a {@link Capture Capture} encodes the books into memory on the manager's thread, a few levels at a time
+ *   between mutations. Every book is tagged with the journal position its capture started at, so the books don't all
+ *   have to be captured at the same moment, and a level is encoded before any mutation changes it so a book is
+ *   captured exactly as it was at that position however long it takes.</li>
+ *   <li>{@link #writeTo(Path)} can then run on any other thread, while the manager carries on. It writes the encoded
+ *   books to a temporary file, forces it to disk and renames it over the previous snapshot, so a crash part way
+ *   through never leaves a broken snapshot behind.</li>
+ * </ul>
+ * {@link #restore(Path, Path, OrderBookManagerImpl)} loads the books and replays the journal from the position of the
+ * first book captured, skipping every record for a book from before that book was captured.
+ *
+ * The layout is a header (magic, version, first book position, order count, book count), then every book: its
+ * instrument, the journal position it was captured at, the kind of book (with the parameters price ladder books were
+ * created with), then its levels in whatever order they were captured and an end of book marker. Every level is its side,
+ * price and order count followed by its orders in queue order, each an id and a quantity (iceberg orders flag their id
+ * and add their display and hidden quantities). A CRC32 of everything before it ends the file. The order directory
+ * is rebuilt from the resting orders on restore.
+ */
+public class OrderBookSnapshot {
+
+    private static final int MAGIC = 0x4F42534E; //OBSN
+    private static final int VERSION = 2;
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int HEADER_LENGTH = 4 + 4 + 8 + 8 + 4;
+
+    private static final byte TREE_MAP_BOOK = 0;
+    private static final byte PRICE_LADDER_BOOK = 1;
+    private static final byte BUY_LEVEL = 0;
+    private static final byte SELL_LEVEL = 1;
+    private static final byte END_OF_BOOK = 2;
+    private static final byte NUMERIC_ID = 0;
+    private static final byte STRING_ID = 1;
+    /**
+     * Set in the id kind of an iceberg order, whose quantity is followed by its display and hidden quantities
+     */
+    private static final byte ICEBERG = 2;
+
+    private final long journalPosition;
+    private final long orderCount;
+
+    /**
+     * The encoded snapshot, in fixed size chunks so capturing never has to copy what it has already encoded
+     */
+    private final List<ByteBuffer> chunks;
+
+    private OrderBookSnapshot(long journalPosition, long orderCount, List<ByteBuffer> chunks) {
+        this.journalPosition = journalPosition;
+        this.orderCount = orderCount;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Start capturing the OrderBooks a manager has now. Books created after this are not captured, the journal has
+     * every record for them.
+     *
+     * @param orderBookManager the manager to snapshot
+     * @return the capture, to be advanced on the manager's thread between mutations
+     */
+    public static Capture begin(OrderBookManagerImpl orderBookManager) {
+        return new Capture(orderBookManager);
+    }
+
+    /**
+     * Capture every OrderBook of a manager in one go. Must be called on the manager's thread, between mutations.
+     *
+     * @param orderBookManager the manager to snapshot
+     * @param journalPosition the position in the journal the snapshot corresponds to, see
+     *                        {@link OrderJournal#getPosition()}. Every record before it is reflected in the snapshot.
+     * @return the snapshot, ready to be written from any thread
+     */
+    public static OrderBookSnapshot capture(OrderBookManagerImpl orderBookManager, long journalPosition) {
+        Capture capture = begin(orderBookManager);
+        capture.captureBooks(journalPosition, Long.MAX_VALUE);
+        return capture.finish();
+    }
+
+    /**
+     * A snapshot being captured a few levels at a time, interleaved with mutations of the manager. Only used on the
+     * manager's thread, and only one capture of a manager can be in progress at a time.
+     */
+    public static class Capture {
+        private final OrderBookManagerImpl orderBookManager;
+        private final int bookCount;
+        private final Encoder encoder = new Encoder();
+        private int nextBook = 0;
+        private long firstPosition = -1;
+        private long orderCount = 0;
+
+        /**
+         * The book part way through being captured, null between books
+         */
+        private BookCapture book;
+
+        private Capture(OrderBookManagerImpl orderBookManager) {
+            this.orderBookManager = orderBookManager;
+            //books created after this are left to the journal tail
+            this.bookCount = orderBookManager.getInstrumentCount();
+        }
+
+        /**
+         * Capture the next levels, stopping after the level that takes the number of orders captured by this call to
+         * at least {@code maxOrders}. A book started by this call is tagged with the journal position given, and
+         * carries on from where it stopped in the next call.
+         *
+         * @param journalPosition the current position in the journal, see {@link OrderJournal#getPosition()}
+         * @param maxOrders roughly the most orders to capture, which bounds how long this holds up the manager
+         * @return true once every book has been captured
+         */
+        public boolean captureBooks(long journalPosition, long maxOrders) {
+            if(firstPosition == -1)
+                firstPosition = journalPosition;
+
+            long captured = 0;
+            while(!isComplete() && captured < maxOrders) {
+                if(book == null) {
+                    int instrumentId = nextBook++;
+                    book = new BookCapture(encoder, orderBookManager.getInstrument(instrumentId),
+                            orderBookManager.getOrderBook(instrumentId), journalPosition);
+                }
+
+                captured += book.captureLevels(maxOrders - captured);
+                if(book.isComplete()) {
+                    orderCount += book.getOrderCount();
+                    book = null;
+                }
+            }
+            return isComplete();
+        }
+
+        /**
+         * @return true once every book has been captured
+         */
+        public boolean isComplete() {
+            return nextBook == bookCount && book == null;
+        }
+
+        /**
+         * Give up on the capture, so the book part way through being captured stops saving its levels for it.
+         */
+        public void cancel() {
+            if(book != null) {
+                book.cancel();
+                book = null;
+            }
+        }
+
+        /**
+         * @return the snapshot, ready to be written from any thread
+         */
+        public OrderBookSnapshot finish() {
+            if(!isComplete())
+                throw new IllegalStateException((bookCount - nextBook + (book != null ? 1 : 0))
+                        + " books haven't been captured yet");
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putLong(firstPosition);
+            header.putLong(orderCount);
+            header.putInt(bookCount);
+            header.flip();
+
+            List<ByteBuffer> chunks = encoder.finish();
+            chunks.add(0, header);
+            return new OrderBookSnapshot(firstPosition, orderCount, chunks);
+        }
+    }
+
+    /**
+     * One book being captured a few levels at a time, walking the buy side then the sell side from the best level.
+     * Whatever the mutations in between do, the levels encoded are the book as it was when its capture started:
+     * <ul>
+     *   <li>the book calls {@link #beforeLevelChange(Side, PriceLevelOrders)} before anything changes a level, which
+     *   encodes the level there and then unless it already has been. The walk skips it when it gets there.</li>
+     *   <li>levels created since are marked as encoded, the journal tail creates them again</li>
+     *   <li>the book calls {@link #beforeLevelRemoved(Side, PriceLevelOrders)} before removing a level, so the walk
+     *   never waits on a level that has gone back to the pool</li>
+     * </ul>
+     * Levels end up encoded out of price order, which doesn't matter as each is restored as a whole.
+     */
+    static class BookCapture {
+        private static final AtomicLong NEXT_ID = new AtomicLong();
+
+        /**
+         * Marks the levels this capture has encoded, see {@link PriceLevelOrders#capturedBy}
+         */
+        private final long id = NEXT_ID.incrementAndGet();
+        private final Encoder encoder;
+        private final OrderBook orderBook;
+
+        /**
+         * The side being walked and the level on it to visit next, null once the walk reaches the end of the side
+         */
+        private Side side = Side.buy;
+        private PriceLevelOrders nextLevel;
+        private long orderCount = 0;
+        private boolean complete = false;
+
+        private BookCapture(Encoder encoder, String instrument, OrderBook orderBook, long journalPosition) {
+            this.encoder = encoder;
+            this.orderBook = orderBook;
+
+            encoder.putString(instrument);
+            encoder.putLong(journalPosition);
+
+            OrderBookSide buySide = orderBook.getSide(Side.buy);
+            if(buySide instanceof PriceLadderOrderBookSide) {
+                //both sides were created with the same parameters, restoring from those rather than the size the
+                //ladders have grown to keeps the limit on how far they can grow
+                PriceLadderOrderBookSide ladder = (PriceLadderOrderBookSide) buySide;
+                encoder.putByte(PRICE_LADDER_BOOK);
+                encoder.putLong(ladder.getTickSize());
+                encoder.putLong(ladder.getInitialCentrePrice());
+                encoder.putInt(ladder.getInitialLadderSize());
+            } else {
+                encoder.putByte(TREE_MAP_BOOK);
+            }
+
+            nextLevel = buySide.getBestLevel();
+            orderBook.setCapture(this);
+        }
+
+        /**
+         * Encode the next levels the walk reaches, stopping after the level that takes the number of orders encoded
+         * to at least {@code maxOrders}.
+         *
+         * @param maxOrders roughly the most orders to encode
+         * @return the number of orders encoded
+         */
+        long captureLevels(long maxOrders) {
+            long captured = 0;
+            while(!complete && captured < maxOrders) {
+                if(nextLevel == null) {
+                    if(side == Side.buy) {
+                        side = Side.sell;
+                        nextLevel = orderBook.getSide(Side.sell).getBestLevel();
+                    } else {
+                        encoder.putByte(END_OF_BOOK);
+                        orderBook.setCapture(null);
+                        complete = true;
+                    }
+                    continue;
+                }
+
+                PriceLevelOrders level = nextLevel;
+                nextLevel = orderBook.getSide(side).getNextLevel(level);
+                if(level.capturedBy != id)
+                    captured += encodeLevel(side, level);
+            }
+            return captured;
+        }
+
+        /**
+         * Called by the book before a level is changed in any way, including the orders resting at it.
+         *
+         * @param side the side of the level
+         * @param level the level about to change, or null if there is none at the price yet
+         */
+        void beforeLevelChange(Side side, PriceLevelOrders level) {
+            if(level != null && level.capturedBy != id)
+                encodeLevel(side, level);
+        }
+
+        /**
+         * Called by the book once it has created a level, which the journal tail will create again.
+         *
+         * @param level the new level
+         */
+        void levelCreated(PriceLevelOrders level) {
+            level.capturedBy = id;
+        }
+
+        /**
+         * Called by the book before it removes a level.
+         *
+         * @param side the side of the level
+         * @param level the level about to be removed
+         */
+        void beforeLevelRemoved(Side side, PriceLevelOrders level) {
+            if(side == this.side && level == nextLevel)
+                nextLevel = orderBook.getSide(side).getNextLevel(level);
+        }
+
+        /**
+         * Stop saving levels for this capture, it is not going to be finished.
+         */
+        void cancel() {
+            orderBook.setCapture(null);
+        }
+
+        /**
+         * @return true once every level of the book has been encoded
+         */
+        boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * @return the number of orders encoded
+         */
+        long getOrderCount() {
+            return orderCount;
+        }
+
+        private int encodeLevel(Side side, PriceLevelOrders level) {
+            level.capturedBy = id;
+            encoder.putByte(side == Side.buy ? BUY_LEVEL : SELL_LEVEL);
+            encoder.putLong(level.getPrice());
+            encoder.putInt(level.getOrderCount());
+            for(Order order = level.getFirstOrder(); order != null; order = order.next) {
+                byte iceberg = order.isIceberg() ? ICEBERG : 0;
+                if(order.hasNumericOrderId()) {
+                    encoder.putByte((byte) (NUMERIC_ID | iceberg));
+                    encoder.putLong(order.getNumericOrderId());
+                } else {
+                    encoder.putByte((byte) (STRING_ID | iceberg));
+                    encoder.putString(order.getOrderId());
+                }
+                encoder.putLong(order.getQuantity());
+                if(order.isIceberg()) {
+                    encoder.putLong(order.getDisplayQuantity());
+                    encoder.putLong(order.getHiddenQuantity());
+                }
+            }
+            orderCount += level.getOrderCount();
+            return level.getOrderCount();
+        }
+    }
+
+    /**
+     * @return the position in the journal of the first book captured, replay after a restore starts here
+     */
+    public long getJournalPosition() {
+        return journalPosition;
+    }
+
+    /**
+     * @return the number of resting orders in the snapshot
+     */
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    /**
+     * @return the size of the snapshot in bytes, not counting the trailing checksum
+     */
+    public long getSize() {
+        long size = 0;
+        for(ByteBuffer chunk : chunks) {
+            size += chunk.remaining();
+        }
+        return size;
+    }
+
+    /**
+     * Write the snapshot to a file, replacing the file only once the new snapshot is completely on disk. Safe to call
+     * from any thread, the manager it was captured from can carry on meanwhile.
+     *
+     * @param file the snapshot file
+     */
+    public void writeTo(Path file) throws IOException {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+
+        try(FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for(ByteBuffer chunk : chunks) {
+                ByteBuffer toWrite = chunk.duplicate();
+                crc.update(chunk.duplicate());
+                while(toWrite.hasRemaining()) {
+                    channel.write(toWrite);
+                }
+            }
+
+            ByteBuffer trailer = ByteBuffer.allocate(8);
+            trailer.putLong(crc.getValue()).flip();
+            while(trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+            channel.force(true);
+        }
+
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restore a manager with no books yet from a snapshot file and the journal written after it. Levels are queued
+     * exactly as they were and orders are not matched on restore, then the journal is replayed from the first book's
+     * position, skipping whatever each book already reflects.
+     *
+     * The snapshot's checksum is verified once the whole file has been read, so if this throws the manager is partly
+     * restored and should be discarded.
+     *
+     * @param snapshotFile the snapshot file
+     * @param journalFile the journal the snapshot was taken alongside
+     * @param orderBookManager the manager to restore into
+     * @return the number of journal records replayed after the snapshot
+     */
+    public static long restore(Path snapshotFile, Path journalFile, OrderBookManagerImpl orderBookManager)
+            throws IOException {
+        Map<String, Long> bookPositions = new HashMap<>();
+        long journalPosition = restoreBooks(snapshotFile, orderBookManager, bookPositions);
+        return OrderJournal.replay(journalFile, orderBookManager, journalPosition, bookPositions);
+    }
+
+    /**
+     * Restore every OrderBook and the order directory from a snapshot file, without replaying any journal.
+     *
+     * @param file the snapshot file
+     * @param orderBookManager the manager to restore into
+     * @param bookPositions filled with the journal position each book was captured at
+     * @return the position in the journal of the first book captured
+     */
+    static long restoreBooks(Path file, OrderBookManagerImpl orderBookManager, Map<String, Long> bookPositions)
+            throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Decoder decoder = new Decoder(channel);
+
+            if(decoder.getInt() != MAGIC)
+                throw new IOException(file + " is not an OrderBook snapshot");
+            int version = decoder.getInt();
+            if(version != VERSION)
+                throw new IOException("Unsupported snapshot version " + version + " in " + file);
+
+            long journalPosition = decoder.getLong();
+            long orderCount = decoder.getLong();
+            int bookCount = decoder.getInt();
+
+            long restoredOrders = 0;
+            for(int book = 0; book < bookCount; book++) {
+                String instrument = decoder.getString();
+                bookPositions.put(instrument, decoder.getLong());
+                if(decoder.getByte() == PRICE_LADDER_BOOK)
+                    orderBookManager.restoreOrderBook(instrument,
+                            new OrderBook(decoder.getLong(), decoder.getLong(), decoder.getInt()));
+                else
+                    orderBookManager.restoreOrderBook(instrument, new OrderBook());
+
+                byte levelKind;
+                while((levelKind = decoder.getByte()) != END_OF_BOOK) {
+                    if(levelKind != BUY_LEVEL && levelKind != SELL_LEVEL)
+                        throw new IOException("Corrupt snapshot, unknown level kind " + levelKind);
+                    restoredOrders += restoreLevel(decoder, orderBookManager, instrument,
+                            levelKind == BUY_LEVEL ? Side.buy : Side.sell);
+                }
+            }
+
+            long expectedCrc = decoder.getCrc();
+            if(decoder.getLong() != expectedCrc)
+                throw new IOException("Snapshot " + file + " is corrupt, its checksum doesn't match");
+            if(restoredOrders != orderCount)
+                throw new IOException("Snapshot " + file + " has " + restoredOrders + " orders, expected " + orderCount);
+            return journalPosition;
+        }
+    }
+
+    private static int restoreLevel(Decoder decoder, OrderBookManagerImpl orderBookManager, String instrument,
+                                    Side side) throws IOException {
+        long price = decoder.getLong();
+        int orderCount = decoder.getInt();
+        for(int i = 0; i < orderCount; i++) {
+            byte idKind = decoder.getByte();
+            Order order = (idKind & ~ICEBERG) == NUMERIC_ID
+                    ? new Order(decoder.getLong(), instrument, side, price, decoder.getLong())
+                    : new Order(decoder.getString(), instrument, side, price, decoder.getLong());
+            if((idKind & ICEBERG) != 0)
+                order.restoreReserve(decoder.getLong(), decoder.getLong());
+            orderBookManager.restoreOrder(order);
+        }
+        return orderCount;
+    }
+
+    /**
+     * Encodes into a list of fixed size chunks, starting a new chunk when the current one is too full for the next
+     * value.
+     */
+    private static class Encoder {
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+
+        void putByte(byte value) {
+            ensureRemaining(1).put(value);
+        }
+
+        void putInt(int value) {
+            ensureRemaining(4).putInt(value);
+        }
+
+        void putLong(long value) {
+            ensureRemaining(8).putLong(value);
+        }
+
+        void putString(String value) {
+            ensureRemaining(4 + 2 * value.length()).putInt(value.length());
+            for(int i = 0; i < value.length(); i++) {
+                chunk.putChar(value.charAt(i));
+            }
+        }
+
+        List<ByteBuffer> finish() {
+            chunk.flip();
+            chunks.add(chunk);
+            return chunks;
+        }
+
+        private ByteBuffer ensureRemaining(int bytes) {
+            if(chunk.remaining() < bytes) {
+                chunk.flip();
+                chunks.add(chunk);
+                chunk = ByteBuffer.allocate(Math.max(CHUNK_SIZE, bytes));
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * Decodes a snapshot file read in large chunks, keeping a CRC32 of everything decoded so far.
+     */
+    private static class Decoder {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * Position in the buffer up to which the CRC has been updated
+         */
+        private int crcPosition = 0;
+
+        Decoder(FileChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        byte getByte() throws IOException {
+            return ensureRemaining(1).get();
+        }
+
+        int getInt() throws IOException {
+            return ensureRemaining(4).getInt();
+        }
+
+        long getLong() throws IOException {
+            return ensureRemaining(8).getLong();
+        }
+
+        String getString() throws IOException {
+            int length = getInt();
+            if(length < 0 || 2 * length > buffer.capacity())
+                throw new IOException("Corrupt snapshot, string of length " + length);
+
+            char[] chars = new char[length];
+            ensureRemaining(2 * length);
+            for(int i = 0; i < length; i++) {
+                chars[i] = buffer.getChar();
+            }
+            return new String(chars);
+        }
+
+        /**
+         * @return the CRC of everything decoded so far
+         */
+        long getCrc() {
+            updateCrc();
+            return crc.getValue();
+        }
+
+        private ByteBuffer ensureRemaining(int bytes) throws IOException {
+            while(buffer.remaining() < bytes) {
+                updateCrc();
+                buffer.compact();
+                int read = channel.read(buffer);
+                buffer.flip();
+                crcPosition = 0;
+                if(read <= 0)
+                    throw new IOException("Snapshot ends part way through");
+            }
+            return buffer;
+        }
+
+        private void updateCrc() {
+            int position = buffer.position();
+            int limit = buffer.limit();
+            buffer.position(crcPosition).limit(position);
+            crc.update(buffer);
+            buffer.limit(limit);
+            crcPosition = position;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.cryptofacilities.interview;
+
+/**
+ * A mutable add/modify/delete command, used as a preallocated slot in an
+ * {@link OrderCommandRingBuffer OrderCommandRingBuffer} or an {@link OrderCommandBatch OrderCommandBatch}. Slots are
+ * overwritten in place for every command, so no object is allocated per command.
+ */
+class OrderCommand {
+
+    enum Type { ADD, MODIFY, DELETE }
+
+    Type type;
+    /**
+     * String id of the order, null when the command uses {@link #numericOrderId}
+     */
+    String orderId;
+    long numericOrderId;
+    String instrument;
+    Side side;
+    long price;
+    long quantity;
+
+    void set(Type type, String orderId, long numericOrderId, String instrument, Side side, long price, long quantity) {
+        this.type = type;
+        this.orderId = orderId;
+        this.numericOrderId = numericOrderId;
+        this.instrument = instrument;
+        this.side = side;
+        this.price = price;
+        this.quantity = quantity;
+    }
+
+    /**
+     * Apply this command to an OrderBookManager.
+     *
+     * @param orderBookManager the manager to apply the command to
+     * @return the result of a modify or delete, always {@link OrderResult#OK} for an add
+     */
+    OrderResult applyTo(OrderBookManager orderBookManager) {
+        switch (type) {
+            case ADD:
+                orderBookManager.addOrder(newOrder());
+                return OrderResult.OK;
+            case MODIFY:
+                if (orderId != null)
+                    return orderBookManager.modifyOrder(orderId, quantity);
+                return orderBookManager.modifyOrder(numericOrderId, quantity);
+            default:
+                if (orderId != null)
+                    return orderBookManager.deleteOrder(orderId);
+                return orderBookManager.deleteOrder(numericOrderId);
+        }
+    }
+
+    /**
+     * @return a new order for an add command
+     */
+    Order newOrder() {
+        return orderId != null
+                ? new Order(orderId, instrument, side, price, quantity)
+                : new Order(numericOrderId, instrument, side, price, quantity);
+    }
+}
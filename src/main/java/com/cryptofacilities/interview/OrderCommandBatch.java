@@ -0,0 +1,159 @@
+package com.cryptofacilities.interview;
+
+/**
+ * A re-usable batch of add/modify/delete commands, applied to an {@link OrderBookManager OrderBookManager} in one call
+ * with {@link OrderBookManager#applyBatch(OrderCommandBatch)}, e.g. a burst of orders read off the wire by a gateway.
+ *
+ * The commands are preallocated flyweight slots that are overwritten in place, so filling a batch doesn't allocate
+ * (an add still creates its Order when it is applied). Commands are applied in the order they were added, and each
+ * gets its own {@link OrderResult OrderResult}. Not thread-safe, a batch is filled and applied by one thread at a time.
+ */
+public class OrderCommandBatch {
+
+    private final OrderCommand[] commands;
+    private final OrderResult[] results;
+    private int size = 0;
+
+    /**
+     * @param capacity the most commands the batch holds
+     */
+    public OrderCommandBatch(int capacity) {
+        if(capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive but was " + capacity);
+
+        commands = new OrderCommand[capacity];
+        results = new OrderResult[capacity];
+        for(int i = 0; i < capacity; i++) {
+            commands[i] = new OrderCommand();
+        }
+    }
+
+    /**
+     * Add a command to add a new order.
+     *
+     * @return the index of the command, to get its result by
+     */
+    public int addOrder(String orderId, String instrument, Side side, long price, long quantity) {
+        return add(OrderCommand.Type.ADD, orderId, 0, instrument, side, price, quantity);
+    }
+
+    /**
+     * Add a command to add a new order with a numeric id.
+     *
+     * @return the index of the command, to get its result by
+     */
+    public int addOrder(long orderId, String instrument, Side side, long price, long quantity) {
+        return add(OrderCommand.Type.ADD, null, orderId, instrument, side, price, quantity);
+    }
+
+    /**
+     * Add a command to modify the quantity of an order.
+     *
+     * @return the index of the command, to get its result by
+     */
+    public int modifyOrder(String orderId, long newQuantity) {
+        return add(OrderCommand.Type.MODIFY, orderId, 0, null, null, 0, newQuantity);
+    }
+
+    /**
+     * Add a command to modify the quantity of an order with a numeric id.
+     *
+     * @return the index of the command, to get its result by
+     */
+    public int modifyOrder(long orderId, long newQuantity) {
+        return add(OrderCommand.Type.MODIFY, null, orderId, null, null, 0, newQuantity);
+    }
+
+    /**
+     * Add a command to delete an order.
+     *
+     * @return the index of the command, to get its result by
+     */
+    public int deleteOrder(String orderId) {
+        return add(OrderCommand.Type.DELETE, orderId, 0, null, null, 0, 0);
+    }
+
+    /**
+     * Add a command to delete an order with a numeric id.
+     *
+     * @return the index of the command, to get its result by
+     */
+    public int deleteOrder(long orderId) {
+        return add(OrderCommand.Type.DELETE, null, orderId, null, null, 0, 0);
+    }
+
+    /**
+     * @return the number of commands in the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if no more commands fit in the batch
+     */
+    public boolean isFull() {
+        return size == commands.length;
+    }
+
+    /**
+     * @param index the index of a command, as returned when it was added
+     * @return the result of the command, or null if the batch hasn't been applied yet
+     */
+    public OrderResult getResult(int index) {
+        if(index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Command " + index + " of " + size);
+        return results[index];
+    }
+
+    /**
+     * Empty the batch, so it can be filled again.
+     */
+    public void clear() {
+        for(int i = 0; i < size; i++) {
+            commands[i].set(null, null, 0, null, null, 0, 0);
+            results[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Apply every command to a manager one by one, through its public API.
+     *
+     * @param orderBookManager the manager to apply the commands to
+     */
+    void applyEach(OrderBookManager orderBookManager) {
+        for(int i = 0; i < size; i++) {
+            try {
+                results[i] = commands[i].applyTo(orderBookManager);
+            } catch (RuntimeException e) {
+                results[i] = OrderResult.REJECTED;
+            }
+        }
+    }
+
+    /**
+     * @param index the index of a command
+     * @return the command, for a manager applying the batch itself
+     */
+    OrderCommand getCommand(int index) {
+        return commands[index];
+    }
+
+    /**
+     * @param index the index of a command
+     * @param result the result of applying it
+     */
+    void setResult(int index, OrderResult result) {
+        results[index] = result;
+    }
+
+    private int add(OrderCommand.Type type, String orderId, long numericOrderId, String instrument, Side side,
+                    long price, long quantity) {
+        if(isFull())
+            throw new IllegalStateException("Batch is full at " + size + " commands");
+
+        commands[size].set(type, orderId, numericOrderId, instrument, side, price, quantity);
+        return size++;
+    }
+}
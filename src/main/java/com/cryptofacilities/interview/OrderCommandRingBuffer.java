@@ -0,0 +1,337 @@
+package com.cryptofacilities.interview;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free ingress pipeline in front of a single threaded {@link OrderBookManager OrderBookManager}, in the style of
+ * the LMAX Disruptor.
+ *
+ * Any number of producer threads publish add/modify/delete commands into a ring of preallocated, mutable
+ * {@link OrderCommand OrderCommand} slots. A single consumer thread applies them to the manager strictly in sequence
+ * order, so the manager only ever sees one thread. Publishing claims a sequence with a CAS, fills the slot in place and
+ * marks it available, so there are no locks and nothing is allocated per command on the way in.
+ *
+ * The consumer applies up to {@code maxBatchSize} commands at a time before telling producers the slots are free
+ * again, then runs the batch end hook if there is one (e.g. {@link OrderBookManagerImpl#flushL2Deltas()} of a manager
+ * wrapped by another OrderBookManager, so a burst of commands produces one L2 update per level touched). Both sides wait according to the {@link WaitStrategy WaitStrategy}. When the ring is full, producers either
+ * wait for space or have the command rejected, depending on the {@link Backpressure Backpressure}.
+ *
+ * In front of an {@link OrderBookManagerImpl OrderBookManagerImpl}, the consumer applies the commands the way
+ * {@link OrderBookManagerImpl#applyBatch(OrderCommandBatch)} does rather than through the public API: adds take their
+ * orders from the manager's pool if pooling is enabled, and the L2 feed is flushed once at the end of every batch.
+ */
+public class OrderCommandRingBuffer implements AutoCloseable {
+
+    /**
+     * What a producer does when the ring is full
+     */
+    public enum Backpressure {
+        /**
+         * wait for the consumer to free a slot
+         */
+        BLOCK,
+
+        /**
+         * give up straight away, the publish method returns false
+         */
+        REJECT
+    }
+
+    private final OrderBookManager orderBookManager;
+
+    /**
+     * The same manager if it is an OrderBookManagerImpl, which commands are then applied to directly, otherwise null
+     */
+    private final OrderBookManagerImpl orderBookManagerImpl;
+    private final OrderCommand[] slots;
+    private final int mask;
+    private final int indexShift;
+    private final int maxBatchSize;
+    private final WaitStrategy waitStrategy;
+    private final Backpressure backpressure;
+
+    /**
+     * Run on the consumer thread after every batch, null if there is none
+     */
+    private final Runnable batchEndHook;
+
+    /**
+     * The value {@link #producerSequence} is set to once the consumer has stopped, so no more sequences can be claimed
+     */
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    /**
+     * Highest sequence claimed by a producer, or {@link #CLOSED}
+     */
+    private final AtomicLong producerSequence = new AtomicLong(-1);
+
+    /**
+     * Highest sequence applied by the consumer, producers may not claim more than a ring ahead of it
+     */
+    private final AtomicLong consumerSequence = new AtomicLong(-1);
+
+    /**
+     * Last value of {@link #consumerSequence} seen by a producer, saves re-reading it on every claim
+     */
+    private volatile long cachedConsumerSequence = -1;
+
+    /**
+     * For each slot, which lap of the ring it was last published in. A sequence is available to the consumer once
+     * its slot holds the sequence's lap, which also works when producers publish out of order.
+     */
+    private final AtomicIntegerArray publishedLaps;
+
+    private final Thread consumer;
+    private volatile boolean running = true;
+
+    /**
+     * Only written by the consumer thread
+     */
+    private volatile long failedCommandCount = 0;
+
+    /**
+     * @param orderBookManager the manager the commands are applied to, only ever called from the consumer thread
+     * @param capacity number of slots in the ring, must be a power of 2
+     * @param maxBatchSize most commands the consumer applies before releasing their slots
+     * @param waitStrategy how the consumer waits for commands and producers wait for space
+     * @param backpressure what producers do when the ring is full
+     */
+    public OrderCommandRingBuffer(OrderBookManager orderBookManager, int capacity, int maxBatchSize,
+                                  WaitStrategy waitStrategy, Backpressure backpressure) {
+        this(orderBookManager, capacity, maxBatchSize, waitStrategy, backpressure, null);
+    }
+
+    /**
+     * @param orderBookManager the manager the commands are applied to, only ever called from the consumer thread
+     * @param capacity number of slots in the ring, must be a power of 2
+     * @param maxBatchSize most commands the consumer applies before releasing their slots
+     * @param waitStrategy how the consumer waits for commands and producers wait for space
+     * @param backpressure what producers do when the ring is full
+     * @param batchEndHook run on the consumer thread after every batch is applied, or null for none
+     */
+    public OrderCommandRingBuffer(OrderBookManager orderBookManager, int capacity, int maxBatchSize,
+                                  WaitStrategy waitStrategy, Backpressure backpressure, Runnable batchEndHook) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity must be a power of 2 but was " + capacity);
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("Max batch size must be positive but was " + maxBatchSize);
+
+        this.orderBookManager = orderBookManager;
+        this.orderBookManagerImpl = orderBookManager instanceof OrderBookManagerImpl
+                ? (OrderBookManagerImpl) orderBookManager
+                : null;
+        this.slots = new OrderCommand[capacity];
+        this.mask = capacity - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.waitStrategy = waitStrategy;
+        this.backpressure = backpressure;
+        this.batchEndHook = batchEndHook;
+        this.publishedLaps = new AtomicIntegerArray(capacity);
+
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new OrderCommand();
+            publishedLaps.set(i, -1);
+        }
+
+        consumer = new Thread(this::consume, "order-command-consumer");
+        consumer.setDaemon(true);
+    }
+
+    /**
+     * Start the consumer thread. Commands can be published before this, up to the capacity of the ring.
+     *
+     * @throws IllegalStateException if the ring buffer has been closed
+     */
+    public void start() {
+        if (!running)
+            throw new IllegalStateException("Ring buffer is closed");
+        consumer.start();
+    }
+
+    /**
+     * Publish a command to add a new order.
+     *
+     * Like every publish method, this returns false without publishing anything once the ring buffer is being closed,
+     * including while waiting for space in a full ring.
+     *
+     * @return true if the command was published, false if it was rejected because the ring is full
+     */
+    public boolean addOrder(String orderId, String instrument, Side side, long price, long quantity) {
+        return publish(OrderCommand.Type.ADD, orderId, 0, instrument, side, price, quantity);
+    }
+
+    /**
+     * Publish a command to add a new order with a numeric id.
+     *
+     * @return true if the command was published, false if it was rejected because the ring is full
+     */
+    public boolean addOrder(long orderId, String instrument, Side side, long price, long quantity) {
+        return publish(OrderCommand.Type.ADD, null, orderId, instrument, side, price, quantity);
+    }
+
+    /**
+     * Publish a command to modify the quantity of an order.
+     *
+     * @return true if the command was published, false if it was rejected because the ring is full
+     */
+    public boolean modifyOrder(String orderId, long newQuantity) {
+        return publish(OrderCommand.Type.MODIFY, orderId, 0, null, null, 0, newQuantity);
+    }
+
+    /**
+     * Publish a command to modify the quantity of an order with a numeric id.
+     *
+     * @return true if the command was published, false if it was rejected because the ring is full
+     */
+    public boolean modifyOrder(long orderId, long newQuantity) {
+        return publish(OrderCommand.Type.MODIFY, null, orderId, null, null, 0, newQuantity);
+    }
+
+    /**
+     * Publish a command to delete an order.
+     *
+     * @return true if the command was published, false if it was rejected because the ring is full
+     */
+    public boolean deleteOrder(String orderId) {
+        return publish(OrderCommand.Type.DELETE, orderId, 0, null, null, 0, 0);
+    }
+
+    /**
+     * Publish a command to delete an order with a numeric id.
+     *
+     * @return true if the command was published, false if it was rejected because the ring is full
+     */
+    public boolean deleteOrder(long orderId) {
+        return publish(OrderCommand.Type.DELETE, null, orderId, null, null, 0, 0);
+    }
+
+    /**
+     * @return the number of commands the consumer has applied
+     */
+    public long getAppliedCount() {
+        return consumerSequence.get() + 1;
+    }
+
+    /**
+     * @return the number of commands that threw when applied so far
+     */
+    public long getFailedCommandCount() {
+        return failedCommandCount;
+    }
+
+    /**
+     * Wait for every command published before this call to be applied, then stop the consumer thread. Commands
+     * published from then on are refused.
+     *
+     * If the consumer was never started, the commands are applied on the calling thread instead. If the calling thread
+     * is interrupted while waiting, it stops waiting with its interrupt status set and the consumer finishes on its own.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (consumer.getState() == Thread.State.NEW) {
+            consume();
+            return;
+        }
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean publish(OrderCommand.Type type, String orderId, long numericOrderId, String instrument, Side side,
+                            long price, long quantity) {
+        long sequence = claim();
+        if (sequence < 0)
+            return false;
+
+        slots[(int) sequence & mask].set(type, orderId, numericOrderId, instrument, side, price, quantity);
+        publishedLaps.lazySet((int) sequence & mask, (int) (sequence >>> indexShift));
+        return true;
+    }
+
+    /**
+     * Claim the next sequence for a producer.
+     *
+     * @return the claimed sequence, or -1 if the ring is full and the backpressure is {@link Backpressure#REJECT}, or
+     * the ring buffer is being closed
+     */
+    private long claim() {
+        int attempt = 0;
+        while (true) {
+            if (!running)
+                return -1;
+            long current = producerSequence.get();
+            //the consumer has stopped, a claim that read running just before close() must not succeed
+            if (current == CLOSED)
+                return -1;
+            long next = current + 1;
+            long wrapPoint = next - slots.length;
+
+            if (wrapPoint > cachedConsumerSequence) {
+                long consumed = consumerSequence.get();
+                cachedConsumerSequence = consumed;
+                if (wrapPoint > consumed) {
+                    if (backpressure == Backpressure.REJECT)
+                        return -1;
+                    waitStrategy.idle(attempt++);
+                    continue;
+                }
+            }
+
+            if (producerSequence.compareAndSet(current, next))
+                return next;
+        }
+    }
+
+    private boolean isPublished(long sequence) {
+        return publishedLaps.get((int) sequence & mask) == (int) (sequence >>> indexShift);
+    }
+
+    private void consume() {
+        long nextSequence = consumerSequence.get() + 1;
+        int attempt = 0;
+
+        while (true) {
+            long lastSequence = nextSequence - 1;
+            long batchEnd = nextSequence + maxBatchSize - 1;
+            while (lastSequence < batchEnd && isPublished(lastSequence + 1))
+                lastSequence++;
+
+            if (lastSequence < nextSequence) {
+                //read running before checking the claims, so nothing published before close() is left behind. Closing
+                //the claims with a CAS fails if a producer claimed another sequence in the meantime, which is then
+                //applied before trying again
+                boolean stopping = !running;
+                if (stopping && (producerSequence.get() == CLOSED
+                        || producerSequence.compareAndSet(nextSequence - 1, CLOSED)))
+                    return;
+                waitStrategy.idle(attempt++);
+                continue;
+            }
+
+            for (long sequence = nextSequence; sequence <= lastSequence; sequence++) {
+                OrderCommand command = slots[(int) sequence & mask];
+                try {
+                    if (orderBookManagerImpl != null)
+                        orderBookManagerImpl.apply(command);
+                    else
+                        command.applyTo(orderBookManager);
+                } catch (RuntimeException error) {
+                    //some logging should occur here
+                    failedCommandCount++;
+                }
+            }
+            if (orderBookManagerImpl != null)
+                orderBookManagerImpl.flushL2Deltas();
+            if (batchEndHook != null)
+                batchEndHook.run();
+            consumerSequence.lazySet(lastSequence);
+            nextSequence = lastSequence + 1;
+            attempt = 0;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.cryptofacilities.interview;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replays a file of order flow, encoded by an {@link OrderMessageEncoder OrderMessageEncoder}, through an
+ * {@link OrderBookManagerImpl OrderBookManagerImpl} as fast as it can, e.g. a whole day of events for capacity planning
+ * or to check the books against a reference run.
+ *
+ * The file is mapped into memory a large window at a time, so the events are decoded straight from the page cache
+ * without being copied into a buffer first. Decoded events are collected into an {@link OrderCommandBatch
+ * OrderCommandBatch} and applied with {@link OrderBookManagerImpl#applyBatch(OrderCommandBatch)}, so the L2 feed (if
+ * any) is flushed once per batch as it would be live. Every {@code checksumInterval} events a checksum of every book is
+ * taken between batches and reported with the rate so far and the estimated time to completion.
+ *
+ * A slice of the file can be replayed by giving start and stop offsets, e.g. the offset reached by an earlier replay.
+ * The instrument definitions before the start are applied first so the slice's orders find their instruments; orders
+ * added before the start are not, so their modifies and deletes count as not found.
+ *
+ *   java -cp target/classes com.cryptofacilities.interview.OrderFlowReplay messages.bin [start offset] [stop offset]
+ */
+public class OrderFlowReplay {
+
+    private final Path file;
+    private final int windowSize;
+    private final int batchSize;
+    private final long checksumInterval;
+
+    /**
+     * @param file the order flow, as written by an OrderMessageEncoder
+     * @param windowSize the number of bytes of the file mapped at a time, at least the longest possible message (just over 64 KB)
+     * @param batchSize the number of events applied per batch
+     * @param checksumInterval the number of events between progress reports with a checksum, or 0 for none
+     */
+    public OrderFlowReplay(Path file, int windowSize, int batchSize, long checksumInterval) {
+        if(windowSize < OrderMessageEncoder.MAX_MESSAGE_LENGTH)
+            throw new IllegalArgumentException("Window size must be at least " + OrderMessageEncoder.MAX_MESSAGE_LENGTH
+                    + " but was " + windowSize);
+        if(batchSize <= 0)
+            throw new IllegalArgumentException("Batch size must be positive but was " + batchSize);
+        if(checksumInterval < 0)
+            throw new IllegalArgumentException("Checksum interval must not be negative but was " + checksumInterval);
+
+        this.file = file;
+        this.windowSize = windowSize;
+        this.batchSize = batchSize;
+        this.checksumInterval = checksumInterval;
+    }
+
+    /**
+     * Replay the whole file.
+     *
+     * @see #replay(OrderBookManagerImpl, long, long, ReplayProgressListener)
+     */
+    public Result replay(OrderBookManagerImpl orderBookManager, ReplayProgressListener listener) throws IOException {
+        return replay(orderBookManager, 0, Long.MAX_VALUE, listener);
+    }
+
+    /**
+     * Replay the complete events between two offsets of the file.
+     *
+     * @param orderBookManager the manager to apply the events to
+     * @param startOffset the offset of the first event, must be the start of an event (0, or an end offset reported by
+     *                    an earlier replay or progress report)
+     * @param stopOffset events that end after this are not replayed, Long.MAX_VALUE for the end of the file
+     * @param listener receives a progress report every checksum interval, or null
+     * @return the totals of the replay, with the offset it stopped at
+     */
+    public Result replay(OrderBookManagerImpl orderBookManager, long startOffset, long stopOffset,
+                         ReplayProgressListener listener) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long stop = Math.min(stopOffset, channel.size());
+            if(startOffset < 0 || startOffset > stop)
+                throw new IllegalArgumentException("Start offset " + startOffset + " is outside the file, which ends at " + stop);
+
+            if(startOffset > 0)
+                defineInstruments(channel, orderBookManager, startOffset);
+
+            BatchingHandler handler = new BatchingHandler(orderBookManager, startOffset, stop, listener);
+            OrderMessageDecoder decoder = new OrderMessageDecoder(handler);
+            long position = startOffset;
+            while(position < stop) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(windowSize, stop - position));
+                while(decoder.decode(window, handler.room()) > 0) {
+                    handler.afterDecode(position + window.position());
+                }
+
+                //the rest of the window is a message cut short, that the next window starts with
+                if(window.position() == 0)
+                    break;
+                position += window.position();
+            }
+            handler.flush();
+            return new Result(handler.events, startOffset, position, System.nanoTime() - handler.startNanos,
+                    handler.rejectedCount, handler.notFoundCount, checksum(orderBookManager));
+        }
+    }
+
+    /**
+     * Checksum the price levels of every book of a manager: the price, total quantity and order count of every level
+     * of both sides, best first. Two managers that have had the same events applied have the same checksum, so a
+     * replay can be checked against a reference run at every progress report.
+     *
+     * @param orderBookManager the manager to checksum
+     * @return the checksum
+     */
+    public static long checksum(OrderBookManagerImpl orderBookManager) {
+        ChecksumVisitor visitor = new ChecksumVisitor();
+        for(int instrumentId = 0; instrumentId < orderBookManager.getInstrumentCount(); instrumentId++) {
+            for(Side side : Side.values()) {
+                visitor.mix(orderBookManager.walkDepth(instrumentId, side, Integer.MAX_VALUE, visitor));
+            }
+        }
+        return visitor.checksum;
+    }
+
+    /**
+     * Apply the instrument definitions before the start of a slice, skipping the orders.
+     */
+    private void defineInstruments(FileChannel channel, OrderBookManagerImpl orderBookManager, long startOffset)
+            throws IOException {
+        OrderMessageHandler handler = new OrderMessageHandler() {
+            @Override
+            public void onInstrument(int instrumentId, String instrument) {
+                OrderMessageDecoder.checkInstrumentId(instrument, instrumentId,
+                        orderBookManager.registerInstrument(instrument));
+            }
+
+            @Override
+            public void onAdd(int instrumentId, long orderId, Side side, long price, long quantity) {
+            }
+
+            @Override
+            public void onModify(long orderId, long newQuantity) {
+            }
+
+            @Override
+            public void onDelete(long orderId) {
+            }
+        };
+        OrderMessageDecoder decoder = new OrderMessageDecoder(handler);
+        long position = 0;
+        while(position < startOffset) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(windowSize, startOffset - position));
+            decoder.decode(window);
+            if(window.position() == 0)
+                throw new IllegalArgumentException("Start offset " + startOffset + " is not the start of an event");
+            position += window.position();
+        }
+    }
+
+    /**
+     * Collects decoded events into a batch, applies it once full and reports progress between batches.
+     */
+    private class BatchingHandler implements OrderMessageHandler {
+        private final OrderBookManagerImpl orderBookManager;
+        private final OrderCommandBatch batch = new OrderCommandBatch(batchSize);
+        private final ReplayProgressListener listener;
+        private final long startOffset;
+        private final long stopOffset;
+        private final long startNanos = System.nanoTime();
+        private long nextProgress = checksumInterval;
+        private long events = 0;
+        private long rejectedCount = 0;
+        private long notFoundCount = 0;
+
+        BatchingHandler(OrderBookManagerImpl orderBookManager, long startOffset, long stopOffset,
+                        ReplayProgressListener listener) {
+            this.orderBookManager = orderBookManager;
+            this.startOffset = startOffset;
+            this.stopOffset = stopOffset;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onInstrument(int instrumentId, String instrument) {
+            //orders already in the batch may be for instruments defined before this one
+            flush();
+            OrderMessageDecoder.checkInstrumentId(instrument, instrumentId, orderBookManager.registerInstrument(instrument));
+            events++;
+        }
+
+        @Override
+        public void onAdd(int instrumentId, long orderId, Side side, long price, long quantity) {
+            if(instrumentId < 0 || instrumentId >= orderBookManager.getInstrumentCount()) {
+                rejectedCount++;
+                events++;
+                return;
+            }
+            batch.addOrder(orderId, orderBookManager.getInstrument(instrumentId), side, price, quantity);
+        }
+
+        @Override
+        public void onModify(long orderId, long newQuantity) {
+            batch.modifyOrder(orderId, newQuantity);
+        }
+
+        @Override
+        public void onDelete(long orderId) {
+            batch.deleteOrder(orderId);
+        }
+
+        /**
+         * @return the number of events that can be decoded before the batch is full
+         */
+        int room() {
+            return batchSize - batch.size();
+        }
+
+        /**
+         * Apply the batch if it is full, and report progress if it is due.
+         *
+         * @param offset the file offset after the last event decoded
+         */
+        void afterDecode(long offset) {
+            if(!batch.isFull())
+                return;
+            flush();
+            if(listener != null && checksumInterval > 0 && events >= nextProgress) {
+                nextProgress += checksumInterval;
+                long elapsed = System.nanoTime() - startNanos;
+                long remaining = (long) ((double) elapsed * (stopOffset - offset) / (offset - startOffset));
+                listener.onProgress(events, offset, elapsed, remaining, checksum(orderBookManager));
+            }
+        }
+
+        void flush() {
+            if(batch.size() == 0)
+                return;
+            orderBookManager.applyBatch(batch);
+            for(int i = 0; i < batch.size(); i++) {
+                OrderResult result = batch.getResult(i);
+                if(result == OrderResult.REJECTED)
+                    rejectedCount++;
+                else if(result == OrderResult.ORDER_NOT_FOUND)
+                    notFoundCount++;
+            }
+            events += batch.size();
+            batch.clear();
+        }
+    }
+
+    /**
+     * Mixes the levels it visits into a 64 bit FNV-1a style checksum.
+     */
+    private static class ChecksumVisitor implements DepthVisitor {
+        private long checksum = 0xcbf29ce484222325L;
+
+        @Override
+        public boolean onLevel(int level, long price, long totalQuantity, int orderCount) {
+            mix(price);
+            mix(totalQuantity);
+            mix(orderCount);
+            return false;
+        }
+
+        void mix(long value) {
+            checksum = (checksum ^ value) * 0x100000001b3L;
+        }
+    }
+
+    /**
+     * The totals of a replay.
+     */
+    public static class Result {
+        private final long events;
+        private final long startOffset;
+        private final long endOffset;
+        private final long elapsedNanos;
+        private final long rejectedCount;
+        private final long notFoundCount;
+        private final long checksum;
+
+        Result(long events, long startOffset, long endOffset, long elapsedNanos, long rejectedCount,
+               long notFoundCount, long checksum) {
+            this.events = events;
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+            this.elapsedNanos = elapsedNanos;
+            this.rejectedCount = rejectedCount;
+            this.notFoundCount = notFoundCount;
+            this.checksum = checksum;
+        }
+
+        public long getEvents() {
+            return events;
+        }
+
+        public long getStartOffset() {
+            return startOffset;
+        }
+
+        /**
+         * @return the offset after the last event replayed, where a replay of the next slice should start
+         */
+        public long getEndOffset() {
+            return endOffset;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getEventsPerSecond() {
+            return events * 1e9 / Math.max(elapsedNanos, 1);
+        }
+
+        /**
+         * @return the number of events the manager rejected, e.g. an add for an unknown instrument
+         */
+        public long getRejectedCount() {
+            return rejectedCount;
+        }
+
+        /**
+         * @return the number of modifies and deletes of orders that weren't resting
+         */
+        public long getNotFoundCount() {
+            return notFoundCount;
+        }
+
+        /**
+         * @return the checksum of every book at the end of the replay
+         */
+        public long getChecksum() {
+            return checksum;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d events from offset %d to %d in %.1f ms, %.0f events/s, %d rejected, %d not found, "
+                    + "checksum %016x", events, startOffset, endOffset, elapsedNanos / 1e6, getEventsPerSecond(),
+                    rejectedCount, notFoundCount, checksum);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1) {
+            System.err.println("Usage: OrderFlowReplay <message file> [start offset] [stop offset]");
+            System.exit(1);
+        }
+
+        long startOffset = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        long stopOffset = args.length > 2 ? Long.parseLong(args[2]) : Long.MAX_VALUE;
+        OrderFlowReplay replay = new OrderFlowReplay(Paths.get(args[0]), 1 << 30, 256, 10_000_000);
+        Result result = replay.replay(new OrderBookManagerImpl(), startOffset, stopOffset,
+                (events, offset, elapsedNanos, remainingNanos, checksum) -> System.out.printf(
+                        "%d events, offset %d, %.0f events/s, %.1f s to go, checksum %016x%n", events, offset,
+                        events * 1e9 / elapsedNanos, remainingNanos / 1e9, checksum));
+        System.out.println(result);
+    }
+}
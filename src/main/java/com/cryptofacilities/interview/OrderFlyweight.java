@@ -0,0 +1,64 @@
+package com.cryptofacilities.interview;
+
+/**
+ * A re-usable view of one order record of an {@link OffHeapOrderBookManager OffHeapOrderBookManager}, with the same
+ * getters as {@link Order Order}.
+ *
+ * The manager points the flyweight at each order in turn as it passes it to a callback, so reading orders this way
+ * doesn't create an object per order. A flyweight is only valid during the callback it was passed to, use
+ * {@link #toOrder()} to keep a copy.
+ */
+public class OrderFlyweight {
+
+    private final OffHeapOrderStore store;
+    private final OffHeapOrderBookManager orderBookManager;
+    private int slot = OffHeapOrderStore.NONE;
+
+    OrderFlyweight(OffHeapOrderStore store, OffHeapOrderBookManager orderBookManager) {
+        this.store = store;
+        this.orderBookManager = orderBookManager;
+    }
+
+    /**
+     * Point this at another order record.
+     *
+     * @param slot the slot of the record
+     * @return this
+     */
+    OrderFlyweight wrap(int slot) {
+        this.slot = slot;
+        return this;
+    }
+
+    public long getNumericOrderId() {
+        return store.getOrderId(slot);
+    }
+
+    public String getInstrument() {
+        return orderBookManager.getInstrument(store.getInstrument(slot));
+    }
+
+    public Side getSide() {
+        return store.getSide(slot);
+    }
+
+    public long getPrice() {
+        return store.getPrice(slot);
+    }
+
+    public long getQuantity() {
+        return store.getQuantity(slot);
+    }
+
+    /**
+     * @return a copy of the order on the heap, which stays valid after the callback
+     */
+    public Order toOrder() {
+        return new Order(getNumericOrderId(), getInstrument(), getSide(), getPrice(), getQuantity());
+    }
+
+    @Override
+    public String toString() {
+        return toOrder().toString();
+    }
+}
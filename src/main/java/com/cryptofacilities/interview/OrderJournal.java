@@ -0,0 +1,280 @@
+package com.cryptofacilities.interview;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * An append-only binary journal of the commands applied to an {@link OrderBookManagerImpl OrderBookManagerImpl}, from
+ * which its state can be rebuilt after a restart with {@link #replay(Path, OrderBookManagerImpl)}.
+ *
+ * Every record has a fixed layout for its type:
+ * <pre>
+ *   short  record length in bytes, including this header
+ *   byte   record type
+ *   ...    the fields of the type, longs for ids/prices/quantities, a byte for the side, and strings (instruments and
+ *          String order ids) as a short length followed by their chars
+ * </pre>
+ *
+ * Records are encoded into a direct buffer, which is only written to the file when it is full or at a sync, so
+ * appending is a handful of buffer puts. Every {@code recordsPerSync} records the buffer is written and the file is
+ * forced to disk (group commit), so one fsync covers a whole batch of records. Records appended since the last sync can
+ * be lost in a crash, call {@link #sync()} to make everything appended so far durable.
+ *
+ * Only used from the thread that writes to the manager, like the manager itself.
+ */
+public class OrderJournal implements AutoCloseable {
+
+    static final byte ADD_NUMERIC = 1;
+    static final byte ADD = 2;
+    static final byte MODIFY_NUMERIC = 3;
+    static final byte MODIFY = 4;
+    static final byte DELETE_NUMERIC = 5;
+    static final byte DELETE = 6;
+    static final byte PRICE_LADDER_INSTRUMENT = 7;
+    /**
+     * An add of an iceberg order, laid out as an add with the total quantity, followed by the display quantity
+     */
+    static final byte ICEBERG_ADD_NUMERIC = 8;
+    static final byte ICEBERG_ADD = 9;
+
+    /**
+     * Bytes taken by the length and type at the start of every record
+     */
+    static final int HEADER_LENGTH = 3;
+
+    /**
+     * The longest instrument or String order id that can be journalled
+     */
+    static final int MAX_STRING_LENGTH = 255;
+
+    /**
+     * The largest record, an iceberg add with the longest String id and instrument
+     */
+    static final int MAX_RECORD_LENGTH = HEADER_LENGTH + 2 * (2 + 2 * MAX_STRING_LENGTH) + 1 + 8 + 8 + 8;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int recordsPerSync;
+    private int recordsSinceSync = 0;
+    private long recordCount = 0;
+
+    /**
+     * Bytes of the file already written, not counting what is still in the buffer
+     */
+    private long writtenLength;
+
+    /**
+     * Open a journal for appending, creating the file if it doesn't exist. New records go after any already in it.
+     *
+     * @param file the journal file
+     * @param bufferSize the number of bytes buffered before they are written to the file
+     * @param recordsPerSync the number of records between forcing the file to disk, or 0 to only force on
+     *                       {@link #sync()} and {@link #close()}
+     */
+    public OrderJournal(Path file, int bufferSize, int recordsPerSync) throws IOException {
+        if(bufferSize < MAX_RECORD_LENGTH)
+            throw new IllegalArgumentException("Buffer size must be at least " + MAX_RECORD_LENGTH + " but was " + bufferSize);
+        if(recordsPerSync < 0)
+            throw new IllegalArgumentException("Records per sync must not be negative but was " + recordsPerSync);
+
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.writtenLength = channel.size();
+        this.channel.position(writtenLength);
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.recordsPerSync = recordsPerSync;
+    }
+
+    /**
+     * Append the addition of an order, with the quantity it has before any matching. Iceberg orders are journalled with
+     * their total quantity and their display quantity.
+     */
+    public void appendAdd(Order order) {
+        int length = HEADER_LENGTH + (order.hasNumericOrderId() ? 8 : stringLength(order.getOrderId()))
+                + 1 + 8 + 8 + stringLength(order.getInstrument()) + (order.isIceberg() ? 8 : 0);
+        if(order.isIceberg())
+            startRecord(length, order.hasNumericOrderId() ? ICEBERG_ADD_NUMERIC : ICEBERG_ADD);
+        else
+            startRecord(length, order.hasNumericOrderId() ? ADD_NUMERIC : ADD);
+        if(order.hasNumericOrderId())
+            buffer.putLong(order.getNumericOrderId());
+        else
+            putString(order.getOrderId());
+        buffer.put((byte) order.getSide().ordinal());
+        buffer.putLong(order.getPrice());
+        buffer.putLong(order.getTotalQuantity());
+        putString(order.getInstrument());
+        if(order.isIceberg())
+            buffer.putLong(order.getDisplayQuantity());
+        endRecord();
+    }
+
+    public void appendModify(String orderId, long newQuantity) {
+        startRecord(HEADER_LENGTH + stringLength(orderId) + 8, MODIFY);
+        putString(orderId);
+        buffer.putLong(newQuantity);
+        endRecord();
+    }
+
+    public void appendModify(long orderId, long newQuantity) {
+        startRecord(HEADER_LENGTH + 8 + 8, MODIFY_NUMERIC);
+        buffer.putLong(orderId);
+        buffer.putLong(newQuantity);
+        endRecord();
+    }
+
+    public void appendDelete(String orderId) {
+        startRecord(HEADER_LENGTH + stringLength(orderId), DELETE);
+        putString(orderId);
+        endRecord();
+    }
+
+    public void appendDelete(long orderId) {
+        startRecord(HEADER_LENGTH + 8, DELETE_NUMERIC);
+        buffer.putLong(orderId);
+        endRecord();
+    }
+
+    /**
+     * Append the creation of a price ladder OrderBook, see
+     * {@link OrderBookManagerImpl#addPriceLadderInstrument(String, long, long, int)}.
+     */
+    public void appendPriceLadderInstrument(String instrument, long tickSize, long centrePrice, int ladderSize) {
+        startRecord(HEADER_LENGTH + stringLength(instrument) + 8 + 8 + 4, PRICE_LADDER_INSTRUMENT);
+        putString(instrument);
+        buffer.putLong(tickSize);
+        buffer.putLong(centrePrice);
+        buffer.putInt(ladderSize);
+        endRecord();
+    }
+
+    /**
+     * @return the number of records appended since this journal was opened
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return the offset in the file where the next record will go, i.e. the length of the journal once every record
+     * appended so far has been written
+     */
+    public long getPosition() {
+        return writtenLength + buffer.position();
+    }
+
+    /**
+     * Write every record appended so far to the file and force it to disk.
+     */
+    public void sync() {
+        try {
+            writeBuffer();
+            channel.force(false);
+            recordsSinceSync = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sync and close the file.
+     */
+    @Override
+    public void close() throws IOException {
+        sync();
+        channel.close();
+    }
+
+    /**
+     * Rebuild the state of a manager from a journal, applying every record in order. Matching and fills happen again
+     * exactly as they did originally, so a manager with a FillListener receives them all again.
+     *
+     * A record cut short at the end of the file, as left by a crash in the middle of a write, is truncated away so new
+     * records can be appended after the last complete one.
+     *
+     * @param file the journal file, nothing is replayed if it doesn't exist
+     * @param orderBookManager the manager to apply the records to, normally a new one
+     * @return the number of records replayed
+     */
+    public static long replay(Path file, OrderBookManagerImpl orderBookManager) throws IOException {
+        return replay(file, orderBookManager, 0, null);
+    }
+
+    /**
+     * Apply the records of a journal from an offset onwards, skipping those already reflected in the books of a
+     * snapshot. Used to replay the tail of the journal after restoring an {@link OrderBookSnapshot OrderBookSnapshot}.
+     *
+     * @param file the journal file, nothing is replayed if it doesn't exist
+     * @param orderBookManager the manager to apply the records to
+     * @param fromPosition the offset of the first record to apply, as returned by {@link #getPosition()}
+     * @param bookPositions the position each book was captured at, records for a book before its position are skipped.
+     *                      Null to apply every record.
+     * @return the number of records replayed
+     */
+    static long replay(Path file, OrderBookManagerImpl orderBookManager, long fromPosition,
+                       Map<String, Long> bookPositions) throws IOException {
+        if(!file.toFile().exists()) {
+            if(fromPosition > 0)
+                throw new IOException("Journal " + file + " is missing, expected at least " + fromPosition + " bytes");
+            return 0;
+        }
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if(fromPosition > channel.size())
+                throw new IOException("Journal " + file + " is shorter than the snapshot position " + fromPosition);
+
+            OrderJournalReader reader = new OrderJournalReader(channel, orderBookManager, fromPosition, bookPositions);
+            long records = reader.replay();
+            if(reader.getValidLength() < channel.size())
+                channel.truncate(reader.getValidLength());
+            return records;
+        }
+    }
+
+    private void startRecord(int length, byte type) {
+        if(buffer.remaining() < length)
+            writeBufferUnchecked();
+        buffer.putShort((short) length);
+        buffer.put(type);
+    }
+
+    private void endRecord() {
+        recordCount++;
+        if(recordsPerSync > 0 && ++recordsSinceSync >= recordsPerSync)
+            sync();
+    }
+
+    private void writeBufferUnchecked() {
+        try {
+            writeBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        writtenLength += buffer.remaining();
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static int stringLength(String value) {
+        if(value.length() > MAX_STRING_LENGTH)
+            throw new IllegalArgumentException("Can't journal a string longer than " + MAX_STRING_LENGTH + " chars: " + value);
+        return 2 + 2 * value.length();
+    }
+
+    private void putString(String value) {
+        buffer.putShort((short) value.length());
+        for(int i = 0; i < value.length(); i++) {
+            buffer.putChar(value.charAt(i));
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.cryptofacilities.interview;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+
+import static com.cryptofacilities.interview.OrderJournal.*;
+
+/**
+ * Reads the records of an {@link OrderJournal OrderJournal} from an offset in a file and applies them to a manager.
+ *
+ * The file is read in large chunks into a direct buffer and decoded in place. The last instrument decoded is kept and
+ * re-used while the following records are for the same instrument, so replaying a run of orders for one instrument
+ * doesn't allocate a String per record.
+ *
+ * When replaying after a snapshot, each book of the snapshot was captured at its own position in the journal. A record
+ * before the position of the book it applies to is already reflected in the book, so it is skipped. The book of a
+ * modify or delete is the book of the order it names, and records for books that aren't in the snapshot are applied.
+ *
+ * A record the manager rejects, e.g. an add written before orders were checked ahead of journalling them, changed
+ * nothing when it was first applied. It is counted with {@link OrderBookManagerImpl#getRejectedCommandCount()} and
+ * skipped, rather than making the whole journal unreadable.
+ */
+class OrderJournalReader {
+
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final OrderBookManagerImpl orderBookManager;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final char[] chars = new char[MAX_STRING_LENGTH];
+    private String lastInstrument = "";
+
+    /**
+     * The journal position each book of a snapshot was captured at, null when every record is applied
+     */
+    private final Map<String, Long> bookPositions;
+
+    /**
+     * File offset of the end of the last complete record applied
+     */
+    private long validLength = 0;
+
+    /**
+     * @param channel the journal file
+     * @param orderBookManager the manager to apply the records to
+     * @param fromPosition the offset of the first record to apply
+     * @param bookPositions the journal position each book of a snapshot was captured at, or null to apply every record
+     */
+    OrderJournalReader(FileChannel channel, OrderBookManagerImpl orderBookManager, long fromPosition,
+                       Map<String, Long> bookPositions) {
+        this.channel = channel;
+        this.orderBookManager = orderBookManager;
+        this.validLength = fromPosition;
+        this.bookPositions = bookPositions;
+    }
+
+    /**
+     * Apply every complete record in the file from the starting offset.
+     *
+     * @return the number of records read, including any the manager rejected
+     */
+    long replay() throws IOException {
+        channel.position(validLength);
+        buffer.clear().flip();
+        long records = 0;
+
+        while(true) {
+            if(!ensureRemaining(2))
+                break;
+
+            int length = buffer.getShort(buffer.position());
+            //a crash while the file was being extended can leave zeros after the last record
+            if(length == 0)
+                break;
+            if(length < HEADER_LENGTH || length > MAX_RECORD_LENGTH)
+                throw new IOException("Corrupt journal record of length " + length + " at offset " + validLength);
+
+            //the rest of the file is a record cut short
+            if(!ensureRemaining(length))
+                break;
+
+            int end = buffer.position() + length;
+            buffer.getShort();
+            byte type = buffer.get();
+            try {
+                apply(type);
+            } catch (IllegalArgumentException | IllegalStateException rejected) {
+                //the manager throws these before changing anything, so the record had no effect originally either
+                orderBookManager.commandRejected();
+            }
+            if(buffer.position() != end)
+                throw new IOException("Corrupt journal record of length " + length + " at offset " + validLength);
+
+            validLength += length;
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * @return the offset in the file after the last complete record
+     */
+    long getValidLength() {
+        return validLength;
+    }
+
+    /**
+     * Make sure a number of bytes are available to decode, moving whatever hasn't been decoded to the start of the
+     * buffer and reading more of the file after it if needed.
+     *
+     * @param bytes the number of bytes needed
+     * @return false if the file ends before that many bytes
+     */
+    private boolean ensureRemaining(int bytes) throws IOException {
+        while(buffer.remaining() < bytes) {
+            buffer.compact();
+            int read = channel.read(buffer);
+            buffer.flip();
+            if(read <= 0)
+                return false;
+        }
+        return true;
+    }
+
+    private void apply(byte type) throws IOException {
+        switch (type) {
+            case ADD_NUMERIC: {
+                long orderId = buffer.getLong();
+                Side side = readSide();
+                long price = buffer.getLong();
+                long quantity = buffer.getLong();
+                String instrument = readInstrument();
+                if(!isInSnapshot(instrument))
+                    orderBookManager.addOrder(new Order(orderId, instrument, side, price, quantity));
+                break;
+            }
+            case ADD: {
+                String orderId = readString();
+                Side side = readSide();
+                long price = buffer.getLong();
+                long quantity = buffer.getLong();
+                String instrument = readInstrument();
+                if(!isInSnapshot(instrument))
+                    orderBookManager.addOrder(new Order(orderId, instrument, side, price, quantity));
+                break;
+            }
+            case ICEBERG_ADD_NUMERIC: {
+                long orderId = buffer.getLong();
+                Side side = readSide();
+                long price = buffer.getLong();
+                long quantity = buffer.getLong();
+                String instrument = readInstrument();
+                long displayQuantity = buffer.getLong();
+                if(!isInSnapshot(instrument))
+                    orderBookManager.addOrder(new Order(orderId, instrument, side, price, quantity, displayQuantity));
+                break;
+            }
+            case ICEBERG_ADD: {
+                String orderId = readString();
+                Side side = readSide();
+                long price = buffer.getLong();
+                long quantity = buffer.getLong();
+                String instrument = readInstrument();
+                long displayQuantity = buffer.getLong();
+                if(!isInSnapshot(instrument))
+                    orderBookManager.addOrder(new Order(orderId, instrument, side, price, quantity, displayQuantity));
+                break;
+            }
+            case MODIFY_NUMERIC: {
+                long orderId = buffer.getLong();
+                long newQuantity = buffer.getLong();
+                if(!isInSnapshot(orderBookManager.findOrder(orderId)))
+                    orderBookManager.modifyOrder(orderId, newQuantity);
+                break;
+            }
+            case MODIFY: {
+                String orderId = readString();
+                long newQuantity = buffer.getLong();
+                if(!isInSnapshot(orderBookManager.findOrder(orderId)))
+                    orderBookManager.modifyOrder(orderId, newQuantity);
+                break;
+            }
+            case DELETE_NUMERIC: {
+                long orderId = buffer.getLong();
+                if(!isInSnapshot(orderBookManager.findOrder(orderId)))
+                    orderBookManager.deleteOrder(orderId);
+                break;
+            }
+            case DELETE: {
+                String orderId = readString();
+                if(!isInSnapshot(orderBookManager.findOrder(orderId)))
+                    orderBookManager.deleteOrder(orderId);
+                break;
+            }
+            case PRICE_LADDER_INSTRUMENT: {
+                String instrument = readString();
+                long tickSize = buffer.getLong();
+                long centrePrice = buffer.getLong();
+                int ladderSize = buffer.getInt();
+                if(!isInSnapshot(instrument))
+                    orderBookManager.addPriceLadderInstrument(instrument, tickSize, centrePrice, ladderSize);
+                break;
+            }
+            default:
+                throw new IOException("Unknown journal record type " + type + " at offset " + validLength);
+        }
+    }
+
+    /**
+     * @param instrument the instrument of the record being replayed
+     * @return true if the record is already reflected in the instrument's book in the snapshot
+     */
+    private boolean isInSnapshot(String instrument) {
+        if(bookPositions == null)
+            return false;
+        Long bookPosition = bookPositions.get(instrument);
+        return bookPosition != null && validLength < bookPosition;
+    }
+
+    /**
+     * @param order the order named by the modify or delete being replayed, null if it isn't resting
+     * @return true if the record is already reflected in the order's book in the snapshot
+     */
+    private boolean isInSnapshot(Order order) {
+        return order != null && isInSnapshot(order.getInstrument());
+    }
+
+    private Side readSide() {
+        return buffer.get() == 0 ? Side.buy : Side.sell;
+    }
+
+    private String readString() {
+        return new String(chars, 0, readChars());
+    }
+
+    private String readInstrument() {
+        int length = readChars();
+        if(!isLastInstrument(length))
+            lastInstrument = new String(chars, 0, length);
+        return lastInstrument;
+    }
+
+    private boolean isLastInstrument(int length) {
+        if(length != lastInstrument.length())
+            return false;
+        for(int i = 0; i < length; i++) {
+            if(chars[i] != lastInstrument.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private int readChars() {
+        int length = buffer.getShort();
+        for(int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,183 @@
+package com.cryptofacilities.interview;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static com.cryptofacilities.interview.OrderMessageEncoder.*;
+
+/**
+ * Decodes the messages of an {@link OrderMessageEncoder OrderMessageEncoder} in place and passes their fields to an
+ * {@link OrderMessageHandler OrderMessageHandler}.
+ *
+ * Fields are read with absolute gets at their fixed offsets, straight from the buffer, so decoding creates nothing
+ * per message. Only instrument definitions create a String, once per instrument. Messages of a template this decoder
+ * doesn't know are skipped by their block length.
+ */
+public class OrderMessageDecoder {
+
+    private static final Side[] SIDES = Side.values();
+
+    private final OrderMessageHandler handler;
+    private final byte[] instrumentName = new byte[MAX_INSTRUMENT_LENGTH];
+
+    /**
+     * @param handler receives every message decoded
+     */
+    public OrderMessageDecoder(OrderMessageHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Decode every complete message from the position of the buffer to its limit. The buffer is switched to little
+     * endian, and its position is left at the start of the first message that isn't complete, so a caller reading a
+     * stream in chunks can compact the buffer and read more after it.
+     *
+     * @param buffer the messages
+     * @return the number of messages decoded
+     * @throws IllegalArgumentException if a message is shorter than the layout of its template, or an add has an
+     * unknown side
+     */
+    public int decode(ByteBuffer buffer) {
+        return decode(buffer, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Decode complete messages from the position of the buffer, stopping after {@code maxMessages}. The position is
+     * left after the last message decoded, e.g. at the end of a batch for a caller that works in batches.
+     *
+     * @param buffer the messages
+     * @param maxMessages the most messages to decode
+     * @return the number of messages decoded, fewer than maxMessages only if the buffer has no more complete ones
+     * @throws IllegalArgumentException if a message is shorter than the layout of its template, or an add has an
+     * unknown side
+     */
+    public int decode(ByteBuffer buffer, int maxMessages) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int position = buffer.position();
+        int limit = buffer.limit();
+        int messages = 0;
+
+        while(messages < maxMessages && limit - position >= HEADER_LENGTH) {
+            int blockLength = buffer.getShort(position) & 0xFFFF;
+            if(limit - position < HEADER_LENGTH + blockLength)
+                break;
+
+            decodeBlock(buffer, buffer.getShort(position + 2), position + HEADER_LENGTH, blockLength);
+            position += HEADER_LENGTH + blockLength;
+            messages++;
+        }
+        buffer.position(position);
+        return messages;
+    }
+
+    private void decodeBlock(ByteBuffer buffer, short templateId, int block, int blockLength) {
+        switch(templateId) {
+            case ADD:
+                checkBlockLength(templateId, blockLength, ADD_BLOCK_LENGTH);
+                handler.onAdd(buffer.getInt(block + ADD_INSTRUMENT_ID_OFFSET), buffer.getLong(block + ADD_ORDER_ID_OFFSET),
+                        side(buffer.get(block + ADD_SIDE_OFFSET)), buffer.getLong(block + ADD_PRICE_OFFSET),
+                        buffer.getLong(block + ADD_QUANTITY_OFFSET));
+                break;
+            case MODIFY:
+                checkBlockLength(templateId, blockLength, MODIFY_BLOCK_LENGTH);
+                handler.onModify(buffer.getLong(block + MODIFY_ORDER_ID_OFFSET), buffer.getLong(block + MODIFY_QUANTITY_OFFSET));
+                break;
+            case DELETE:
+                checkBlockLength(templateId, blockLength, DELETE_BLOCK_LENGTH);
+                handler.onDelete(buffer.getLong(block + DELETE_ORDER_ID_OFFSET));
+                break;
+            case INSTRUMENT:
+                checkBlockLength(templateId, blockLength, INSTRUMENT_BLOCK_LENGTH);
+                int length = 0;
+                while(length < MAX_INSTRUMENT_LENGTH && buffer.get(block + INSTRUMENT_NAME_OFFSET + length) != 0) {
+                    instrumentName[length] = buffer.get(block + INSTRUMENT_NAME_OFFSET + length);
+                    length++;
+                }
+                handler.onInstrument(buffer.getInt(block + INSTRUMENT_ID_OFFSET),
+                        new String(instrumentName, 0, length, StandardCharsets.US_ASCII));
+                break;
+            default:
+                //a template added after this decoder was written
+                break;
+        }
+    }
+
+    private static void checkBlockLength(short templateId, int blockLength, int expected) {
+        if(blockLength < expected)
+            throw new IllegalArgumentException("Block of template " + templateId + " is " + blockLength
+                    + " bytes, expected at least " + expected);
+    }
+
+    private static Side side(byte side) {
+        if(side < 0 || side >= SIDES.length)
+            throw new IllegalArgumentException("Unknown side " + side);
+        return SIDES[side];
+    }
+
+    /**
+     * A handler that applies every message to a manager, through its int instrument id and numeric order id
+     * overloads. Every add creates the Order that rests in the book, but nothing else is created per message.
+     *
+     * @param orderBookManager the manager to apply the messages to, its instrument ids must match the stream's
+     */
+    public static OrderMessageHandler handlerFor(OrderBookManagerImpl orderBookManager) {
+        return new OrderMessageHandler() {
+            @Override
+            public void onInstrument(int instrumentId, String instrument) {
+                checkInstrumentId(instrument, instrumentId, orderBookManager.registerInstrument(instrument));
+            }
+
+            @Override
+            public void onAdd(int instrumentId, long orderId, Side side, long price, long quantity) {
+                orderBookManager.addOrder(instrumentId, orderId, side, price, quantity);
+            }
+
+            @Override
+            public void onModify(long orderId, long newQuantity) {
+                orderBookManager.modifyOrder(orderId, newQuantity);
+            }
+
+            @Override
+            public void onDelete(long orderId) {
+                orderBookManager.deleteOrder(orderId);
+            }
+        };
+    }
+
+    /**
+     * A handler that applies every message to an off-heap manager. Once the store is warm nothing at all is created
+     * per message.
+     *
+     * @param orderBookManager the manager to apply the messages to, its instrument ids must match the stream's
+     */
+    public static OrderMessageHandler handlerFor(OffHeapOrderBookManager orderBookManager) {
+        return new OrderMessageHandler() {
+            @Override
+            public void onInstrument(int instrumentId, String instrument) {
+                checkInstrumentId(instrument, instrumentId, orderBookManager.registerInstrument(instrument));
+            }
+
+            @Override
+            public void onAdd(int instrumentId, long orderId, Side side, long price, long quantity) {
+                orderBookManager.addOrder(instrumentId, orderId, side, price, quantity);
+            }
+
+            @Override
+            public void onModify(long orderId, long newQuantity) {
+                orderBookManager.modifyOrder(orderId, newQuantity);
+            }
+
+            @Override
+            public void onDelete(long orderId) {
+                orderBookManager.deleteOrder(orderId);
+            }
+        };
+    }
+
+    static void checkInstrumentId(String instrument, int expected, int actual) {
+        if(actual != expected)
+            throw new IllegalStateException("Instrument " + instrument + " has id " + actual
+                    + " but the stream defines it as " + expected);
+    }
+}
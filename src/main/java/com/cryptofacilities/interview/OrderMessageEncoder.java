@@ -0,0 +1,138 @@
+package com.cryptofacilities.interview;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes order messages in a fixed binary layout, in the style of Simple Binary Encoding, for
+ * {@link OrderMessageDecoder OrderMessageDecoder} to apply to a manager without creating any objects per message.
+ *
+ * Every message is a little endian header followed by a fixed length block of primitive fields at fixed offsets:
+ * <pre>
+ *   header      short block length, short template id
+ *   INSTRUMENT  int instrument id, 16 bytes of ASCII name padded with zeros
+ *   ADD         long order id, long price, long quantity, int instrument id, byte side, 3 bytes padding
+ *   MODIFY      long order id, long new quantity
+ *   DELETE      long order id
+ * </pre>
+ *
+ * Instruments are sent as int ids, each defined once by an INSTRUMENT message before its first order, and orders
+ * have numeric ids, so no message carries a string except the instrument definitions. The decoder moves on by the
+ * block length of the header, so blocks can grow new fields at the end without breaking older decoders.
+ */
+public class OrderMessageEncoder {
+
+    static final int HEADER_LENGTH = 4;
+
+    /**
+     * The longest message of any template, present or future, as the block length is an unsigned short
+     */
+    static final int MAX_MESSAGE_LENGTH = HEADER_LENGTH + 0xFFFF;
+
+    static final short INSTRUMENT = 1;
+    static final short ADD = 2;
+    static final short MODIFY = 3;
+    static final short DELETE = 4;
+
+    static final int INSTRUMENT_BLOCK_LENGTH = 20;
+    static final int INSTRUMENT_ID_OFFSET = 0;
+    static final int INSTRUMENT_NAME_OFFSET = 4;
+    static final int MAX_INSTRUMENT_LENGTH = 16;
+
+    static final int ADD_BLOCK_LENGTH = 32;
+    static final int ADD_ORDER_ID_OFFSET = 0;
+    static final int ADD_PRICE_OFFSET = 8;
+    static final int ADD_QUANTITY_OFFSET = 16;
+    static final int ADD_INSTRUMENT_ID_OFFSET = 24;
+    static final int ADD_SIDE_OFFSET = 28;
+
+    static final int MODIFY_BLOCK_LENGTH = 16;
+    static final int MODIFY_ORDER_ID_OFFSET = 0;
+    static final int MODIFY_QUANTITY_OFFSET = 8;
+
+    static final int DELETE_BLOCK_LENGTH = 8;
+    static final int DELETE_ORDER_ID_OFFSET = 0;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * @param buffer the buffer messages are appended to from its position, switched to little endian
+     */
+    public OrderMessageEncoder(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Define the id an instrument is known by in the rest of the stream.
+     *
+     * @return false if the buffer doesn't have room for the message, in which case nothing is written
+     */
+    public boolean encodeInstrument(int instrumentId, String instrument) {
+        if(instrument.length() > MAX_INSTRUMENT_LENGTH)
+            throw new IllegalArgumentException("Instrument names are at most " + MAX_INSTRUMENT_LENGTH + " chars: " + instrument);
+        if(!startMessage(INSTRUMENT, INSTRUMENT_BLOCK_LENGTH))
+            return false;
+
+        int block = buffer.position();
+        buffer.putInt(block + INSTRUMENT_ID_OFFSET, instrumentId);
+        byte[] name = instrument.getBytes(StandardCharsets.US_ASCII);
+        for(int i = 0; i < MAX_INSTRUMENT_LENGTH; i++) {
+            buffer.put(block + INSTRUMENT_NAME_OFFSET + i, i < name.length ? name[i] : 0);
+        }
+        buffer.position(block + INSTRUMENT_BLOCK_LENGTH);
+        return true;
+    }
+
+    /**
+     * @return false if the buffer doesn't have room for the message, in which case nothing is written
+     */
+    public boolean encodeAdd(int instrumentId, long orderId, Side side, long price, long quantity) {
+        if(!startMessage(ADD, ADD_BLOCK_LENGTH))
+            return false;
+
+        int block = buffer.position();
+        buffer.putLong(block + ADD_ORDER_ID_OFFSET, orderId);
+        buffer.putLong(block + ADD_PRICE_OFFSET, price);
+        buffer.putLong(block + ADD_QUANTITY_OFFSET, quantity);
+        buffer.putInt(block + ADD_INSTRUMENT_ID_OFFSET, instrumentId);
+        buffer.put(block + ADD_SIDE_OFFSET, (byte) side.ordinal());
+        buffer.position(block + ADD_BLOCK_LENGTH);
+        return true;
+    }
+
+    /**
+     * @return false if the buffer doesn't have room for the message, in which case nothing is written
+     */
+    public boolean encodeModify(long orderId, long newQuantity) {
+        if(!startMessage(MODIFY, MODIFY_BLOCK_LENGTH))
+            return false;
+
+        int block = buffer.position();
+        buffer.putLong(block + MODIFY_ORDER_ID_OFFSET, orderId);
+        buffer.putLong(block + MODIFY_QUANTITY_OFFSET, newQuantity);
+        buffer.position(block + MODIFY_BLOCK_LENGTH);
+        return true;
+    }
+
+    /**
+     * @return false if the buffer doesn't have room for the message, in which case nothing is written
+     */
+    public boolean encodeDelete(long orderId) {
+        if(!startMessage(DELETE, DELETE_BLOCK_LENGTH))
+            return false;
+
+        int block = buffer.position();
+        buffer.putLong(block + DELETE_ORDER_ID_OFFSET, orderId);
+        buffer.position(block + DELETE_BLOCK_LENGTH);
+        return true;
+    }
+
+    private boolean startMessage(short templateId, int blockLength) {
+        if(buffer.remaining() < HEADER_LENGTH + blockLength)
+            return false;
+        buffer.putShort((short) blockLength);
+        buffer.putShort(templateId);
+        return true;
+    }
+}
@@ -0,0 +1,37 @@
+package com.cryptofacilities.interview;
+
+/**
+ * Receives the order messages decoded by an {@link OrderMessageDecoder OrderMessageDecoder}, as primitive fields
+ * read straight from the buffer.
+ *
+ * See {@link OrderMessageDecoder#handlerFor(OrderBookManagerImpl)} and
+ * {@link OrderMessageDecoder#handlerFor(OffHeapOrderBookManager)} for handlers that apply the messages to a manager.
+ */
+public interface OrderMessageHandler {
+
+    /**
+     * @param instrumentId the id the instrument is known by in the stream
+     * @param instrument the name of the instrument
+     */
+    void onInstrument( int instrumentId, String instrument );
+
+    /**
+     * @param instrumentId the id of the instrument, as defined by an earlier instrument message
+     * @param orderId numeric identifier of the new order
+     * @param side either buy or sell
+     * @param price the price of the new order
+     * @param quantity the quantity of the new order
+     */
+    void onAdd( int instrumentId, long orderId, Side side, long price, long quantity );
+
+    /**
+     * @param orderId numeric identifier of an existing order
+     * @param newQuantity new quantity for the order
+     */
+    void onModify( long orderId, long newQuantity );
+
+    /**
+     * @param orderId numeric identifier of an existing order
+     */
+    void onDelete( long orderId );
+}
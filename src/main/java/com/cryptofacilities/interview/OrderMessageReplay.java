@@ -0,0 +1,69 @@
+package com.cryptofacilities.interview;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replays a file of captured order messages, as written by an {@link OrderMessageEncoder OrderMessageEncoder},
+ * through an {@link OrderMessageDecoder OrderMessageDecoder}.
+ *
+ * The file is read in large chunks into a direct buffer and decoded in place, like the journal is on startup. Run as
+ * a main class to time a replay into a new manager:
+ *
+ *   java -cp target/classes com.cryptofacilities.interview.OrderMessageReplay messages.bin [offheap capacity]
+ */
+public class OrderMessageReplay {
+
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Decode every message of the file.
+     *
+     * @param file the captured messages
+     * @param decoder decodes the messages and passes them on
+     * @return the number of messages replayed
+     * @throws IOException if the file can't be read or ends partway through a message
+     */
+    public static long replay(Path file, OrderMessageDecoder decoder) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        long messages = 0;
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while(channel.read(buffer) > 0) {
+                buffer.flip();
+                messages += decoder.decode(buffer);
+                buffer.compact();
+            }
+        }
+
+        if(buffer.position() > 0)
+            throw new IOException("Message file " + file + " ends partway through a message, " + buffer.position()
+                    + " bytes after the last complete one");
+        return messages;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1) {
+            System.err.println("Usage: OrderMessageReplay <message file> [offheap <capacity>]");
+            System.exit(1);
+        }
+
+        Path file = Paths.get(args[0]);
+        OrderMessageHandler handler;
+        if(args.length > 2 && args[1].equals("offheap"))
+            handler = OrderMessageDecoder.handlerFor(new OffHeapOrderBookManager(Integer.parseInt(args[2])));
+        else
+            handler = OrderMessageDecoder.handlerFor(new OrderBookManagerImpl());
+
+        long start = System.nanoTime();
+        long messages = replay(file, new OrderMessageDecoder(handler));
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("replayed %d messages in %.1f ms, %.0f messages/s%n", messages, elapsed / 1e6,
+                messages * 1e9 / elapsed);
+    }
+}
@@ -0,0 +1,22 @@
+package com.cryptofacilities.interview;
+
+/**
+ * Outcome of an operation on an existing order, or of any command in an {@link OrderCommandBatch OrderCommandBatch}.
+ */
+public enum OrderResult {
+    /**
+     * the operation was applied to the order
+     */
+    OK,
+
+    /**
+     * there is no live order with the id given, e.g. it was already deleted or filled
+     */
+    ORDER_NOT_FOUND,
+
+    /**
+     * the command was invalid and nothing was applied, e.g. an order priced off the tick size of a price ladder. An add
+     * is checked before it is matched, so a rejected one never trades, even if it crosses the book.
+     */
+    REJECTED;
+}
@@ -0,0 +1,263 @@
+package com.cryptofacilities.interview;
+
+/**
+ * An {@link OrderBookSide OrderBookSide} for instruments with a fixed tick size, keeping its price levels in a dense
+ * array indexed by {@code (price - basePrice) / tickSize}.
+ *
+ * Finding a level is an array index rather than a tree walk, and prices are never boxed. The lowest and highest
+ * occupied indexes are tracked so the best price is always known without a search. When a price falls outside the
+ * array, the ladder is recentred around the occupied range, doubling in size if that range no longer fits.
+ *
+ * The ladder grows to at most {@link #MAX_GROWTH} times its initial size. A price that would take the occupied range
+ * beyond that is rejected, so a single outlier price can't make the ladder allocate an array spanning it.
+ */
+class PriceLadderOrderBookSide implements OrderBookSide {
+
+  /**
+   * How many times its initial size a ladder can grow to
+   */
+  static final int MAX_GROWTH = 64;
+
+  private final Side side;
+  private final long tickSize;
+
+  /**
+   * The centre price and size the ladder was created with, whatever it has recentred and grown to since
+   */
+  private final long initialCentrePrice;
+  private final int initialLadderSize;
+
+  /**
+   * The most price levels the ladder can grow to
+   */
+  private final int maxLadderSize;
+
+  /**
+   * Price levels by index, null where there are no orders at that price
+   */
+  private PriceLevelOrders[] levels;
+
+  /**
+   * Price at index 0, always a multiple of the tick size
+   */
+  private long basePrice;
+
+  /**
+   * Lowest and highest occupied indexes, both -1 when this side is empty
+   */
+  private int lowIndex = -1;
+  private int highIndex = -1;
+
+  /**
+   * Where new levels come from and removed ones go, null to allocate a level per new price
+   */
+  private ObjectPool<PriceLevelOrders> levelPool;
+
+  /**
+   * @param side the side of the book this holds
+   * @param tickSize the minimum price increment, every price must be a multiple of it
+   * @param centrePrice the price the ladder is initially centred around
+   * @param ladderSize the initial number of price levels the ladder can hold without recentring
+   */
+  PriceLadderOrderBookSide(Side side, long tickSize, long centrePrice, int ladderSize) {
+    if(tickSize <= 0)
+      throw new IllegalArgumentException("Tick size must be positive but was " + tickSize);
+    if(ladderSize <= 0)
+      throw new IllegalArgumentException("Ladder size must be positive but was " + ladderSize);
+
+    this.side = side;
+    this.tickSize = tickSize;
+    this.initialCentrePrice = centrePrice;
+    this.initialLadderSize = ladderSize;
+    this.levels = new PriceLevelOrders[ladderSize];
+    this.maxLadderSize = (int) Math.min((long) ladderSize * MAX_GROWTH, Integer.MAX_VALUE - 8);
+    this.basePrice = alignToTick(centrePrice) - (ladderSize / 2) * tickSize;
+  }
+
+  /**
+   * @return the minimum price increment of this ladder
+   */
+  long getTickSize() {
+    return tickSize;
+  }
+
+  /**
+   * @return the number of price levels the ladder currently holds without recentring
+   */
+  int getLadderSize() {
+    return levels.length;
+  }
+
+  /**
+   * @return the centre price the ladder was created with, so a ladder created with it and the initial ladder size has
+   * the same limit on how far it can grow
+   */
+  long getInitialCentrePrice() {
+    return initialCentrePrice;
+  }
+
+  /**
+   * @return the ladder size the ladder was created with
+   */
+  int getInitialLadderSize() {
+    return initialLadderSize;
+  }
+
+  @Override
+  public PriceLevelOrders getLevel(long price) {
+    long offset = price - basePrice;
+    if(offset < 0 || offset % tickSize != 0)
+      return null;
+
+    long index = offset / tickSize;
+    if(index >= levels.length)
+      return null;
+    return levels[(int) index];
+  }
+
+  @Override
+  public PriceLevelOrders getOrCreateLevel(long price) {
+    checkPrice(price);
+
+    long offset = price - basePrice;
+    if(offset < 0 || offset / tickSize >= levels.length) {
+      recentre(price);
+      offset = price - basePrice;
+    }
+
+    int index = (int) (offset / tickSize);
+    PriceLevelOrders level = levels[index];
+    if(level == null) {
+      level = levelPool != null ? levelPool.borrow().reset(price) : new PriceLevelOrders(price);
+      levels[index] = level;
+
+      if(lowIndex == -1) {
+        lowIndex = index;
+        highIndex = index;
+      } else if(index < lowIndex) {
+        lowIndex = index;
+      } else if(index > highIndex) {
+        highIndex = index;
+      }
+    }
+    return level;
+  }
+
+  @Override
+  public void checkPrice(long price) {
+    if(price % tickSize != 0)
+      throw new IllegalArgumentException("Price " + price + " is not a multiple of the tick size " + tickSize);
+    if(isEmpty())
+      return;
+
+    long lowPrice = Math.min(price, basePrice + lowIndex * tickSize);
+    long highPrice = Math.max(price, basePrice + highIndex * tickSize);
+    long span = (highPrice - lowPrice) / tickSize + 1;
+    //a negative span is a range too wide to even subtract
+    if(span <= 0 || span > maxLadderSize)
+      throw new IllegalArgumentException("Price " + price + " is too far from the prices on the ladder, the range "
+              + lowPrice + " to " + highPrice + " doesn't fit in " + maxLadderSize + " levels");
+  }
+
+  @Override
+  public void removeLevel(long price) {
+    PriceLevelOrders level = getLevel(price);
+    if(level == null)
+      return;
+
+    int index = (int) ((price - basePrice) / tickSize);
+    levels[index] = null;
+    if(levelPool != null && !level.l2Pending)
+      levelPool.release(level);
+
+    if(lowIndex == highIndex) {
+      lowIndex = -1;
+      highIndex = -1;
+    } else if(index == lowIndex) {
+      do { lowIndex++; } while(levels[lowIndex] == null);
+    } else if(index == highIndex) {
+      do { highIndex--; } while(levels[highIndex] == null);
+    }
+  }
+
+  @Override
+  public PriceLevelOrders getBestLevel() {
+    if(lowIndex == -1)
+      return null;
+    return levels[side == Side.buy ? highIndex : lowIndex];
+  }
+
+  @Override
+  public PriceLevelOrders getNextLevel(PriceLevelOrders level) {
+    int index = (int) ((level.getPrice() - basePrice) / tickSize);
+    if(side == Side.buy) {
+      while(--index >= lowIndex) {
+        if(levels[index] != null)
+          return levels[index];
+      }
+    } else {
+      while(++index <= highIndex) {
+        if(levels[index] != null)
+          return levels[index];
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public long getBestPrice() {
+    PriceLevelOrders bestLevel = getBestLevel();
+    if(bestLevel != null)
+      return bestLevel.getPrice();
+    return -1;
+  }
+
+  @Override
+  public void setLevelPool(ObjectPool<PriceLevelOrders> levelPool) {
+    this.levelPool = levelPool;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return lowIndex == -1;
+  }
+
+  /**
+   * Move the ladder so that it covers both the occupied levels and a new price, keeping the levels centred in the
+   * array. The array is doubled until the range fits, which {@link #checkPrice(long)} makes sure it does within
+   * {@link #maxLadderSize}.
+   *
+   * @param price the new price that must fit in the ladder
+   */
+  private void recentre(long price) {
+    long lowPrice = isEmpty() ? price : Math.min(price, basePrice + lowIndex * tickSize);
+    long highPrice = isEmpty() ? price : Math.max(price, basePrice + highIndex * tickSize);
+    long span = (highPrice - lowPrice) / tickSize + 1;
+
+    int ladderSize = levels.length;
+    while(ladderSize < span) {
+      ladderSize = (int) Math.min(ladderSize * 2L, maxLadderSize);
+    }
+
+    long newBasePrice = lowPrice - ((ladderSize - span) / 2) * tickSize;
+    PriceLevelOrders[] newLevels = new PriceLevelOrders[ladderSize];
+
+    if(!isEmpty()) {
+      int shift = (int) ((basePrice - newBasePrice) / tickSize);
+      System.arraycopy(levels, lowIndex, newLevels, lowIndex + shift, highIndex - lowIndex + 1);
+      lowIndex += shift;
+      highIndex += shift;
+    }
+
+    levels = newLevels;
+    basePrice = newBasePrice;
+  }
+
+  /**
+   * @param price any price
+   * @return the nearest multiple of the tick size at or below the price
+   */
+  private long alignToTick(long price) {
+    return price - Math.floorMod(price, tickSize);
+  }
+}
@@ -0,0 +1,250 @@
+package com.cryptofacilities.interview;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the orders resting at a single price level on one side of an OrderBook, in time priority.
+ *
+ * The queue is an intrusive doubly linked list through the orders themselves (see {@link Order#previous},
+ * {@link Order#next} and {@link Order#level}), so adding, removing and re-queuing an order are O(1) pointer
+ * operations with no hashing and no per-order entry objects.
+ *
+ * The total quantity and order count at the level are kept up to date on every add/modify/delete, so
+ * getTotalQuantity, getTotalVolume and getOrderCount are O(1) instead of looping over the orders.
+ */
+class PriceLevelOrders extends LinkedLevel<PriceLevelOrders> {
+  private long price;
+  private Order head;
+  private Order tail;
+  private int orderCount = 0;
+  private long totalQuantity = 0; //we keep track of this and update when new orders are added or existing ones change
+
+  /**
+   * Maintained by {@link L2DeltaBatch L2DeltaBatch}. Pending while this level is queued to be reported in the current
+   * batch, published once it has been reported with orders, so its removal needs reporting too.
+   */
+  boolean l2Pending;
+  boolean l2Published;
+
+  /**
+   * The id of the last {@link OrderBookSnapshot.BookCapture snapshot capture} to encode this level, or to create it
+   * while in progress, which has nothing more to encode from it
+   */
+  long capturedBy;
+
+  /**
+   * @param price the price of this level, shared by every order resting at it
+   */
+  PriceLevelOrders(long price) {
+    this.price = price;
+  }
+
+  /**
+   * Re-use an empty level from an {@link ObjectPool ObjectPool} for a new price.
+   *
+   * @param price the price of the new level
+   * @return this level
+   */
+  PriceLevelOrders reset(long price) {
+    this.price = price;
+    l2Pending = false;
+    l2Published = false;
+    return this;
+  }
+
+  /**
+   * @return the price of this level
+   */
+  long getPrice() {
+    return price;
+  }
+
+  /**
+   * Get a copy of the orders at this price level, in the order they are queued.
+   * @return the orders at this level
+   */
+  List<Order> getOrders() {
+    List<Order> orders = new ArrayList<>(orderCount);
+    for(Order order = head; order != null; order = order.next) {
+      orders.add(order);
+    }
+    return orders;
+  }
+
+  /**
+   * @return the first order in the queue at this level, the rest follow through {@link Order#next}. Null if empty.
+   */
+  Order getFirstOrder() {
+    return head;
+  }
+
+  /**
+   * Get total quantity at this price level
+   * @return The quantity available at this price level tracked in this object.
+   */
+  long getTotalQuantity() {
+    return totalQuantity;
+  }
+
+  /**
+   * Get total volume (price * quantity) at this price level
+   * @return The volume available at this price level.
+   */
+  long getTotalVolume() {
+    return totalQuantity * price;
+  }
+
+  /**
+   * @return the number of orders resting at this price level
+   */
+  int getOrderCount() {
+    return orderCount;
+  }
+
+  /**
+   * @return true if there are no orders left at this price level
+   */
+  boolean isEmpty() {
+    return orderCount == 0;
+  }
+
+  /**
+   * Add an order to the back of the queue at this price level.
+   * @param order the order to add
+   */
+  void addOrder(Order order) {
+    append(order);
+    totalQuantity += order.getQuantity(); //recalculate the qty
+  }
+
+  /**
+   * Remove an order from this price level.
+   * @param order the order to remove
+   * @return true if the order was resting at this level
+   */
+  boolean deleteOrder(Order order) {
+    if(order.level != this)
+      return false;
+
+    unlink(order);
+    totalQuantity -= order.getQuantity(); //recalculate the qty
+    return true;
+  }
+
+  /**
+   * Change the quantity of an order resting at this level, in place.
+   *
+   * If the quantity is increased the order loses its time priority and moves to the back of the queue,
+   * otherwise it keeps its position. For an iceberg order the quantity is its total, shown and hidden, see
+   * {@link Order#setTotalQuantity(long, boolean)}.
+   *
+   * @param order the order to modify
+   * @param newQuantity the new quantity of the order, always positive
+   */
+  void modifyOrder(Order order, long newQuantity) {
+    if(order.level != this)
+      return;
+
+    boolean increased = newQuantity > order.getTotalQuantity();
+    if(increased && order != tail) {
+      unlink(order);
+      append(order);
+    }
+    long shownBefore = order.getQuantity();
+    order.setTotalQuantity(newQuantity, increased);
+    totalQuantity += order.getQuantity() - shownBefore; //recalculate the qty
+  }
+
+  /**
+   * Fill an incoming order against the orders at this level, front of the queue first.
+   *
+   * Both the incoming order and the resting orders have their quantity reduced by each fill. Resting orders that are
+   * completely filled are removed from the level. A resting iceberg order whose shown quantity is filled is refilled
+   * from its reserve instead and moved to the back of the queue, a couple of pointer updates, and an incoming iceberg
+   * order carries on matching with its reserve.
+   *
+   * @param incomingOrder the order crossing this level, its quantity is the amount still to be filled
+   * @param fillListener notified of every fill
+   */
+  void matchOrder(Order incomingOrder, FillListener fillListener) {
+    while(incomingOrder.getQuantity() > 0 && head != null) {
+      Order restingOrder = head;
+      long fillQuantity = Math.min(incomingOrder.getQuantity(), restingOrder.getQuantity());
+
+      restingOrder.setQuantity(restingOrder.getQuantity() - fillQuantity);
+      incomingOrder.setQuantity(incomingOrder.getQuantity() - fillQuantity);
+      totalQuantity -= fillQuantity;
+
+      if(restingOrder.getQuantity() == 0) {
+        long refill = restingOrder.replenish();
+        if(refill == 0) {
+          unlink(restingOrder);
+        } else {
+          totalQuantity += refill;
+          restingOrder.replenished = true;
+          if(restingOrder != tail) {
+            unlink(restingOrder);
+            append(restingOrder);
+          }
+        }
+      }
+      if(incomingOrder.getQuantity() == 0)
+        incomingOrder.replenish();
+
+      fillListener.onFill(restingOrder, incomingOrder, price, fillQuantity);
+      restingOrder.replenished = false;
+    }
+  }
+
+  /**
+   * Link an order in at the back of the queue.
+   * @param order an order not resting at any level
+   */
+  private void append(Order order) {
+    order.level = this;
+    order.previous = tail;
+    order.next = null;
+
+    if(tail == null)
+      head = order;
+    else
+      tail.next = order;
+    tail = order;
+    orderCount++;
+  }
+
+  /**
+   * Unlink an order from wherever it is in the queue.
+   * @param order an order resting at this level
+   */
+  private void unlink(Order order) {
+    if(order.previous == null)
+      head = order.next;
+    else
+      order.previous.next = order.next;
+
+    if(order.next == null)
+      tail = order.previous;
+    else
+      order.next.previous = order.previous;
+
+    order.level = null;
+    order.previous = null;
+    order.next = null;
+    orderCount--;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof PriceLevelOrders)) return false;
+    PriceLevelOrders that = (PriceLevelOrders) o;
+    return price == that.price && getOrders().equals(that.getOrders());
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Long.hashCode(price) + getOrders().hashCode();
+  }
+}
@@ -0,0 +1,156 @@
+package com.cryptofacilities.interview;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The top levels of both sides of an {@link OrderBook OrderBook}, published by the thread writing to the book for any
+ * number of reader threads.
+ *
+ * The book's thread rewrites the levels in place after every mutation that changes them, so publishing never allocates
+ * or waits. Consistency is kept with a seqlock: the sequence is odd while the levels are being rewritten and even
+ * otherwise. Readers copy the levels into their own {@link DepthSnapshot DepthSnapshot} without locking, and copy
+ * again if the sequence shows the book's thread published while they were reading.
+ */
+public class PublishedDepth {
+
+    private static final int FIELDS_PER_LEVEL = 3;
+    private static final int PRICE = 0;
+    private static final int QUANTITY = 1;
+    private static final int ORDER_COUNT = 2;
+
+    /**
+     * The number of levels kept per side
+     */
+    private final int depth;
+
+    /**
+     * Even when the levels are consistent, odd while they are being rewritten
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * The number of levels on each side, then the levels of the buy side and the sell side, each level being its
+     * price, total quantity and order count
+     */
+    private final AtomicLongArray levels;
+
+    /**
+     * @param depth the number of levels to keep on each side
+     */
+    PublishedDepth(int depth) {
+        if(depth <= 0)
+            throw new IllegalArgumentException("Depth must be positive but was " + depth);
+
+        this.depth = depth;
+        this.levels = new AtomicLongArray(2 + 2 * depth * FIELDS_PER_LEVEL);
+    }
+
+    /**
+     * @return the number of levels kept per side
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the number of times the levels have been published, changes whenever they do
+     */
+    public long getVersion() {
+        return sequence.get() >>> 1;
+    }
+
+    /**
+     * Get the best price on a side, without copying the rest of the levels.
+     *
+     * @param side the side of the book
+     * @return the best price on the side, or -1 if the side is empty
+     */
+    public long getBestPrice(Side side) {
+        while(true) {
+            long before = sequence.get();
+            if((before & 1) == 0) {
+                long bestPrice = levels.get(levelCountIndex(side)) > 0 ? levels.get(fieldIndex(side, 0, PRICE)) : -1;
+                if(sequence.get() == before)
+                    return bestPrice;
+            }
+        }
+    }
+
+    /**
+     * Copy a consistent view of the levels into a snapshot owned by the calling thread.
+     *
+     * @param snapshot the snapshot to copy into, must have been created with at least this depth
+     */
+    public void readInto(DepthSnapshot snapshot) {
+        while(true) {
+            long before = sequence.get();
+            if((before & 1) != 0)
+                continue;
+
+            //by ordinal rather than Side.values(), which copies the array on every call
+            for(int side = 0; side < 2; side++) {
+                int levelCount = (int) levels.get(side);
+                snapshot.levelCounts[side] = levelCount;
+                long[] copy = snapshot.levels[side];
+                int first = 2 + side * depth * FIELDS_PER_LEVEL;
+                for(int field = 0; field < levelCount * FIELDS_PER_LEVEL; field++) {
+                    copy[field] = levels.get(first + field);
+                }
+            }
+
+            if(sequence.get() == before) {
+                snapshot.version = before >>> 1;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Check whether a change at a price could alter the published levels of a side. Only called by the book's thread.
+     *
+     * @param side the side of the book
+     * @param price the price of the level that changed
+     * @return true if the price is at or better than the worst published level, or there are fewer than depth levels
+     */
+    boolean isWithinDepth(Side side, long price) {
+        int levelCount = (int) levels.get(levelCountIndex(side));
+        if(levelCount < depth)
+            return true;
+
+        long worstPrice = levels.get(fieldIndex(side, depth - 1, PRICE));
+        return side == Side.buy ? price >= worstPrice : price <= worstPrice;
+    }
+
+    /**
+     * Rewrite the published levels of a side from the book. Only called by the book's thread.
+     *
+     * @param side the side of the book
+     * @param orderBookSide the levels of that side
+     */
+    void publish(Side side, OrderBookSide orderBookSide) {
+        long current = sequence.get();
+        //volatile write, so none of the level writes below can be seen before the sequence turns odd
+        sequence.set(current + 1);
+
+        int levelCount = 0;
+        for(PriceLevelOrders level = orderBookSide.getBestLevel(); level != null && levelCount < depth;
+                level = orderBookSide.getNextLevel(level)) {
+            levels.lazySet(fieldIndex(side, levelCount, PRICE), level.getPrice());
+            levels.lazySet(fieldIndex(side, levelCount, QUANTITY), level.getTotalQuantity());
+            levels.lazySet(fieldIndex(side, levelCount, ORDER_COUNT), level.getOrderCount());
+            levelCount++;
+        }
+        levels.lazySet(levelCountIndex(side), levelCount);
+
+        sequence.lazySet(current + 2);
+    }
+
+    private static int levelCountIndex(Side side) {
+        return side.ordinal();
+    }
+
+    private int fieldIndex(Side side, int level, int field) {
+        return 2 + (side.ordinal() * depth + level) * FIELDS_PER_LEVEL + field;
+    }
+}
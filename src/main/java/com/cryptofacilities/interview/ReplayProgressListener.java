@@ -0,0 +1,17 @@
+package com.cryptofacilities.interview;
+
+/**
+ * Receives the progress of an {@link OrderFlowReplay OrderFlowReplay}, every so many events. Called between batches on
+ * the replaying thread, so the books are in a consistent state and can be queried from the listener.
+ */
+public interface ReplayProgressListener {
+
+    /**
+     * @param events the number of events replayed so far
+     * @param offset the file offset after the last event replayed
+     * @param elapsedNanos the time since the replay started
+     * @param remainingNanos the estimated time to completion, from the rate so far through the file
+     * @param checksum the checksum of every book at this point, see {@link OrderFlowReplay#checksum(OrderBookManagerImpl)}
+     */
+    void onProgress( long events, long offset, long elapsedNanos, long remainingNanos, long checksum );
+}
@@ -0,0 +1,345 @@
+package com.cryptofacilities.interview;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A thread-safe {@link OrderBookManager OrderBookManager} that partitions instruments across a number of shards.
+ *
+ * Each shard owns a single threaded {@link OrderBookManagerImpl OrderBookManagerImpl} and a worker thread that is the
+ * only writer to it, so every OrderBook stays single-writer and needs no locking. Instruments are assigned to shards by
+ * hash, and modify/delete requests are routed to the shard that holds the order through a concurrent order id to shard
+ * directory.
+ *
+ * Mutations are queued to the owning shard and applied asynchronously, in the order they were submitted per instrument.
+ * modifyOrder/deleteOrder therefore return {@link OrderResult#OK} once the request has been routed to the shard that
+ * holds the order, and {@link OrderResult#ORDER_NOT_FOUND} straight away if no shard holds it. Queries run on the
+ * owning shard and wait for the answer, so they see every mutation submitted before them by the same thread.
+ */
+public class ShardedOrderBookManager implements OrderBookManager, AutoCloseable {
+
+    private final Shard[] shards;
+
+    /**
+     * A mapping of Order ID to the {@link Shard Shard} the order rests in
+     */
+    private final ConcurrentHashMap<String, Shard> orderRoutes = new ConcurrentHashMap<>();
+
+    /**
+     * A mapping of numeric Order ID to the {@link Shard Shard} the order rests in
+     */
+    private final ConcurrentHashMap<Long, Shard> numericOrderRoutes = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a sharded manager without matching.
+     *
+     * @param shardCount number of shards, each with its own worker thread
+     */
+    public ShardedOrderBookManager(int shardCount) {
+        this(shardCount, null);
+    }
+
+    /**
+     * Creates a sharded manager that matches incoming orders against the book before resting them.
+     *
+     * @param shardCount number of shards, each with its own worker thread
+     * @param fillListener receives every fill on the worker thread of the shard the fill happened in, or null to
+     *                     disable matching
+     */
+    public ShardedOrderBookManager(int shardCount, FillListener fillListener) {
+        if(shardCount <= 0)
+            throw new IllegalArgumentException("Shard count must be positive but was " + shardCount);
+
+        shards = new Shard[shardCount];
+        for(int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, fillListener);
+        }
+    }
+
+    /**
+     * Route the order to the shard owning its instrument, where it is added asynchronously. If the shard rejects the
+     * order, its route is removed again and the rejection is counted, see {@link #getRejectedCommandCount()}.
+     */
+    public void addOrder(Order order) {
+        Shard shard = shardFor(order.getInstrument());
+        addRoute(order, shard);
+        shard.execute(() -> {
+            try {
+                shard.orderBookManager.addOrder(order);
+            } catch (RuntimeException rejected) {
+                //some logging should occur here. The route stays if it leads to an order resting with the same id
+                if(!shard.holds(order))
+                    removeRoute(order, shard);
+                shard.orderBookManager.commandRejected();
+                return;
+            }
+            //completely filled on arrival, so it never rested
+            if(order.getQuantity() == 0)
+                removeRoute(order);
+        });
+    }
+
+    /**
+     * Route the modification to the shard holding the order, where it is applied asynchronously.
+     *
+     * @return {@link OrderResult#OK} if the request was routed, {@link OrderResult#ORDER_NOT_FOUND} if no shard holds
+     * the order
+     */
+    public OrderResult modifyOrder(String orderId, long newQuantity) {
+        if(Order.isNumericOrderId(orderId))
+            return modifyOrder(Long.parseLong(orderId), newQuantity);
+
+        Shard shard = newQuantity <= 0 ? orderRoutes.remove(orderId) : orderRoutes.get(orderId);
+        if(shard == null)
+            return OrderResult.ORDER_NOT_FOUND;
+
+        shard.execute(() -> shard.orderBookManager.modifyOrder(orderId, newQuantity));
+        return OrderResult.OK;
+    }
+
+    /**
+     * Route the modification to the shard holding the order, where it is applied asynchronously.
+     *
+     * @return {@link OrderResult#OK} if the request was routed, {@link OrderResult#ORDER_NOT_FOUND} if no shard holds
+     * the order
+     */
+    public OrderResult modifyOrder(long orderId, long newQuantity) {
+        Shard shard = newQuantity <= 0 ? numericOrderRoutes.remove(orderId) : numericOrderRoutes.get(orderId);
+        if(shard == null)
+            return OrderResult.ORDER_NOT_FOUND;
+
+        shard.execute(() -> shard.orderBookManager.modifyOrder(orderId, newQuantity));
+        return OrderResult.OK;
+    }
+
+    /**
+     * Route the deletion to the shard holding the order, where it is applied asynchronously.
+     *
+     * @return {@link OrderResult#OK} if the request was routed, {@link OrderResult#ORDER_NOT_FOUND} if no shard holds
+     * the order
+     */
+    public OrderResult deleteOrder(String orderId) {
+        if(Order.isNumericOrderId(orderId))
+            return deleteOrder(Long.parseLong(orderId));
+
+        Shard shard = orderRoutes.remove(orderId);
+        if(shard == null)
+            return OrderResult.ORDER_NOT_FOUND;
+
+        shard.execute(() -> shard.orderBookManager.deleteOrder(orderId));
+        return OrderResult.OK;
+    }
+
+    /**
+     * Route the deletion to the shard holding the order, where it is applied asynchronously.
+     *
+     * @return {@link OrderResult#OK} if the request was routed, {@link OrderResult#ORDER_NOT_FOUND} if no shard holds
+     * the order
+     */
+    public OrderResult deleteOrder(long orderId) {
+        Shard shard = numericOrderRoutes.remove(orderId);
+        if(shard == null)
+            return OrderResult.ORDER_NOT_FOUND;
+
+        shard.execute(() -> shard.orderBookManager.deleteOrder(orderId));
+        return OrderResult.OK;
+    }
+
+    public long getBestPrice(String instrument, Side side) {
+        Shard shard = shardFor(instrument);
+        return shard.query(() -> shard.orderBookManager.getBestPrice(instrument, side));
+    }
+
+    public long getOrderNumAtLevel(String instrument, Side side, long price) {
+        Shard shard = shardFor(instrument);
+        return shard.query(() -> shard.orderBookManager.getOrderNumAtLevel(instrument, side, price));
+    }
+
+    public long getTotalQuantityAtLevel(String instrument, Side side, long price) {
+        Shard shard = shardFor(instrument);
+        return shard.query(() -> shard.orderBookManager.getTotalQuantityAtLevel(instrument, side, price));
+    }
+
+    public long getTotalVolumeAtLevel(String instrument, Side side, long price) {
+        Shard shard = shardFor(instrument);
+        return shard.query(() -> shard.orderBookManager.getTotalVolumeAtLevel(instrument, side, price));
+    }
+
+    /**
+     * The orders are copied on the worker thread of the shard owning the instrument, so the caller never sees the
+     * resting orders themselves, which that thread keeps changing (and re-uses once they leave the book if pooling is
+     * enabled).
+     */
+    public List<Order> getOrdersAtLevel(String instrument, Side side, long price) {
+        Shard shard = shardFor(instrument);
+        return shard.query(() -> {
+            List<Order> orders = new ArrayList<>();
+            shard.orderBookManager.forEachOrderAtLevel(instrument, side, price, order -> orders.add(new Order(order)));
+            return orders;
+        });
+    }
+
+    /**
+     * The consumer is called on the worker thread of the shard owning the instrument, and this returns once it has
+     * seen every order.
+     */
+    public void forEachOrderAtLevel(String instrument, Side side, long price, Consumer<Order> consumer) {
+        Shard shard = shardFor(instrument);
+        shard.query(() -> {
+            shard.orderBookManager.forEachOrderAtLevel(instrument, side, price, consumer);
+            return null;
+        });
+    }
+
+    /**
+     * The visitor is called on the worker thread of the shard owning the instrument, and this returns once the walk
+     * is done.
+     */
+    public int walkDepth(String instrument, Side side, int maxLevels, DepthVisitor visitor) {
+        Shard shard = shardFor(instrument);
+        return shard.query(() -> shard.orderBookManager.walkDepth(instrument, side, maxLevels, visitor));
+    }
+
+    /**
+     * The buffer is written on the worker thread of the shard owning the instrument, and this returns once it is
+     * filled.
+     */
+    public int getDepth(String instrument, Side side, int n, long[] buffer) {
+        Shard shard = shardFor(instrument);
+        return shard.query(() -> shard.orderBookManager.getDepth(instrument, side, n, buffer));
+    }
+
+    /**
+     * Block until every shard has applied all the mutations submitted before this call.
+     */
+    public void flush() {
+        CompletableFuture<?>[] pending = new CompletableFuture<?>[shards.length];
+        for(int i = 0; i < shards.length; i++) {
+            pending[i] = CompletableFuture.runAsync(() -> {}, shards[i].worker);
+        }
+        CompletableFuture.allOf(pending).join();
+    }
+
+    /**
+     * @return the number of orders resting in all shards, once the mutations submitted so far have been applied
+     */
+    public long getLiveOrderCount() {
+        long liveOrderCount = 0;
+        for(Shard shard : shards) {
+            liveOrderCount += shard.query(shard.orderBookManager::getLiveOrderCount);
+        }
+        return liveOrderCount;
+    }
+
+    /**
+     * @return the number of adds rejected by the shards, once the mutations submitted so far have been applied
+     */
+    public long getRejectedCommandCount() {
+        long rejectedCommandCount = 0;
+        for(Shard shard : shards) {
+            rejectedCommandCount += shard.query(shard.orderBookManager::getRejectedCommandCount);
+        }
+        return rejectedCommandCount;
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Apply every mutation submitted so far, then stop the worker threads. If the calling thread is interrupted while
+     * waiting, it stops waiting with its interrupt status set and the workers finish on their own.
+     */
+    @Override
+    public void close() {
+        for(Shard shard : shards) {
+            shard.worker.shutdown();
+        }
+        try {
+            for(Shard shard : shards) {
+                shard.worker.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Shard shardFor(String instrument) {
+        return shards[Math.floorMod(instrument.hashCode(), shards.length)];
+    }
+
+    private void addRoute(Order order, Shard shard) {
+        if(order.hasNumericOrderId())
+            numericOrderRoutes.put(order.getNumericOrderId(), shard);
+        else
+            orderRoutes.put(order.getOrderId(), shard);
+    }
+
+    private void removeRoute(Order order) {
+        if(order.hasNumericOrderId())
+            numericOrderRoutes.remove(order.getNumericOrderId());
+        else
+            orderRoutes.remove(order.getOrderId());
+    }
+
+    /**
+     * Remove the route of an order only if it still leads to the shard, and not to another shard an order with the
+     * same id was added to since.
+     */
+    private void removeRoute(Order order, Shard shard) {
+        if(order.hasNumericOrderId())
+            numericOrderRoutes.remove(order.getNumericOrderId(), shard);
+        else
+            orderRoutes.remove(order.getOrderId(), shard);
+    }
+
+    /**
+     * One partition of the instruments, an OrderBookManagerImpl and the single thread allowed to touch it.
+     */
+    private class Shard {
+        private final OrderBookManagerImpl orderBookManager;
+        private final ExecutorService worker;
+
+        Shard(int index, FillListener fillListener) {
+            orderBookManager = fillListener == null
+                    ? new OrderBookManagerImpl()
+                    : new OrderBookManagerImpl((restingOrder, incomingOrder, price, quantity) -> {
+                        if(restingOrder.getQuantity() == 0)
+                            removeRoute(restingOrder);
+                        fillListener.onFill(restingOrder, incomingOrder, price, quantity);
+                    });
+            worker = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "order-book-shard-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        /**
+         * @return true if an order with the id of the order is resting in this shard, only called on the worker thread
+         */
+        boolean holds(Order order) {
+            return order.hasNumericOrderId()
+                    ? orderBookManager.findOrder(order.getNumericOrderId()) != null
+                    : orderBookManager.findOrder(order.getOrderId()) != null;
+        }
+
+        void execute(Runnable mutation) {
+            worker.execute(mutation);
+        }
+
+        <T> T query(Supplier<T> query) {
+            return CompletableFuture.supplyAsync(query, worker).join();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.cryptofacilities.interview;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * The price levels of one side of a book, for any price, ordered from best to worst.
+ *
+ * The TreeMap is only used to find where a new level goes. Levels are also indexed by primitive price and linked to
+ * their neighbours from best to worst (see {@link LinkedLevel#nextLevel}), so looking up a level, finding the best one
+ * and walking from one to the next never box a price or allocate.
+ *
+ * @param <L> the type of level held
+ */
+class SortedLevels<L extends LinkedLevel<L>> {
+  /**
+   * Key = Price Level on Side, Value = the level at that price.
+   * Ordered so that the first key is always the best price.
+   */
+  private final TreeMap<Long, L> levels;
+
+  /**
+   * The same levels keyed on primitive price
+   */
+  private final LongObjectHashMap<L> levelsByPrice = new LongObjectHashMap<>(16);
+
+  /**
+   * The first level of the links from best to worst, null when there are no levels
+   */
+  private L bestLevel;
+
+  /**
+   * Levels on the buy side are in <b>descending</b> order on price
+   * Levels on the sell side are in <b>ascending</b> order on price
+   *
+   * @param side the side of the book the levels are on
+   */
+  SortedLevels(Side side) {
+    levels = side == Side.buy ? new TreeMap<>(Collections.reverseOrder()) : new TreeMap<>();
+  }
+
+  /**
+   * @param price the price of the level
+   * @return the level, or null if there is none at that price
+   */
+  L get(long price) {
+    return levelsByPrice.get(price);
+  }
+
+  /**
+   * Add a level at a price that doesn't have one yet, linking it between its neighbours.
+   *
+   * @param price the price of the level
+   * @param level the new level
+   */
+  void add(long price, L level) {
+    levels.put(price, level);
+    levelsByPrice.put(price, level);
+
+    //the map is ordered best first, so the lower key is the next better price on either side
+    Long betterPrice = levels.lowerKey(price);
+    L betterLevel = betterPrice != null ? levelsByPrice.get(betterPrice) : null;
+    level.previousLevel = betterLevel;
+    level.nextLevel = betterLevel != null ? betterLevel.nextLevel : bestLevel;
+    if(level.nextLevel != null)
+      level.nextLevel.previousLevel = level;
+    if(betterLevel != null)
+      betterLevel.nextLevel = level;
+    else
+      bestLevel = level;
+  }
+
+  /**
+   * Remove the level at a price, linking its neighbours to each other.
+   *
+   * @param price the price of the level
+   * @return the removed level with its links cleared, or null if there was none at that price
+   */
+  L remove(long price) {
+    L level = levelsByPrice.remove(price);
+    if(level == null)
+      return null;
+
+    levels.remove(price);
+    if(level.previousLevel != null)
+      level.previousLevel.nextLevel = level.nextLevel;
+    else
+      bestLevel = level.nextLevel;
+    if(level.nextLevel != null)
+      level.nextLevel.previousLevel = level.previousLevel;
+    level.previousLevel = null;
+    level.nextLevel = null;
+    return level;
+  }
+
+  /**
+   * @return the level with the best price, or null if there are none. The rest follow through
+   * {@link LinkedLevel#nextLevel}.
+   */
+  L getBestLevel() {
+    return bestLevel;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof SortedLevels)) return false;
+    SortedLevels<?> that = (SortedLevels<?>) o;
+    return Objects.equals(levels, that.levels);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(levels);
+  }
+}
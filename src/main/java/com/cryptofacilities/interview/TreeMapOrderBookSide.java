@@ -0,0 +1,105 @@
+package com.cryptofacilities.interview;
+
+import java.util.Objects;
+
+/**
+ * An {@link OrderBookSide OrderBookSide} keeping its price levels in a TreeMap keyed on price.
+ *
+ * Works for any price, so it is the default for instruments without a known tick size or price band.
+ *
+ * The levels are held in {@link SortedLevels SortedLevels}, which only uses the TreeMap to place new levels, so
+ * looking up a level, finding the best one and walking from one to the next never box a price or allocate.
+ */
+class TreeMapOrderBookSide implements OrderBookSide {
+  /**
+   * The {@link PriceLevelOrders PriceLevelOrders} on this side, best price first
+   */
+  private final SortedLevels<PriceLevelOrders> levels;
+
+  /**
+   * Where new levels come from and removed ones go, null to allocate a level per new price
+   */
+  private ObjectPool<PriceLevelOrders> levelPool;
+
+  /**
+   * Levels on the buy side are in <b>descending</b> order on price
+   * Levels on the sell side are in <b>ascending</b> order on price
+   *
+   * @param side the side of the book this holds
+   */
+  TreeMapOrderBookSide(Side side) {
+    levels = new SortedLevels<>(side);
+  }
+
+  @Override
+  public PriceLevelOrders getLevel(long price) {
+    return levels.get(price);
+  }
+
+  @Override
+  public PriceLevelOrders getOrCreateLevel(long price) {
+    PriceLevelOrders level = levels.get(price);
+    if(level != null)
+      return level;
+
+    level = levelPool != null ? levelPool.borrow().reset(price) : new PriceLevelOrders(price);
+    levels.add(price, level);
+    return level;
+  }
+
+  @Override
+  public void checkPrice(long price) {
+    //the tree holds any price
+  }
+
+  @Override
+  public void removeLevel(long price) {
+    PriceLevelOrders level = levels.remove(price);
+    if(level == null)
+      return;
+
+    if(levelPool != null && !level.l2Pending)
+      levelPool.release(level);
+  }
+
+  @Override
+  public PriceLevelOrders getBestLevel() {
+    return levels.getBestLevel();
+  }
+
+  @Override
+  public PriceLevelOrders getNextLevel(PriceLevelOrders level) {
+    return level.nextLevel;
+  }
+
+  @Override
+  public long getBestPrice() {
+    PriceLevelOrders bestLevel = levels.getBestLevel();
+    if(bestLevel != null)
+      return bestLevel.getPrice();
+    return -1;
+  }
+
+  @Override
+  public void setLevelPool(ObjectPool<PriceLevelOrders> levelPool) {
+    this.levelPool = levelPool;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return levels.getBestLevel() == null;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof TreeMapOrderBookSide)) return false;
+    TreeMapOrderBookSide that = (TreeMapOrderBookSide) o;
+    return Objects.equals(levels, that.levels);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(levels);
+  }
+}
@@ -0,0 +1,56 @@
+package com.cryptofacilities.interview;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a thread waits for an {@link OrderCommandRingBuffer OrderCommandRingBuffer}, either the consumer waiting for
+ * commands to be published or a producer waiting for space when the ring is full.
+ *
+ * Each strategy trades latency for CPU: busy spinning reacts fastest but burns a whole core, sleeping frees the core
+ * but takes tens of microseconds to wake up.
+ */
+public enum WaitStrategy {
+    /**
+     * spin without ever giving up the CPU, lowest latency
+     */
+    BUSY_SPIN {
+        @Override
+        void idle(int attempt) {
+        }
+    },
+
+    /**
+     * spin briefly, then yield the CPU to other threads between checks
+     */
+    YIELDING {
+        @Override
+        void idle(int attempt) {
+            if (attempt > SPIN_ATTEMPTS)
+                Thread.yield();
+        }
+    },
+
+    /**
+     * spin, then yield, then park for a short time between checks
+     */
+    SLEEPING {
+        @Override
+        void idle(int attempt) {
+            if (attempt > SPIN_ATTEMPTS + YIELD_ATTEMPTS)
+                LockSupport.parkNanos(SLEEP_NANOS);
+            else if (attempt > SPIN_ATTEMPTS)
+                Thread.yield();
+        }
+    };
+
+    private static final int SPIN_ATTEMPTS = 100;
+    private static final int YIELD_ATTEMPTS = 100;
+    private static final long SLEEP_NANOS = 50_000;
+
+    /**
+     * Called every time a check finds nothing to do.
+     *
+     * @param attempt the number of checks in a row that found nothing to do, starting from 0
+     */
+    abstract void idle(int attempt);
+}
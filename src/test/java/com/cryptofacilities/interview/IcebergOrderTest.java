@@ -0,0 +1,150 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class IcebergOrderTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final List<String> fills = new ArrayList<>();
+  private final FillListener recorder = (resting, incoming, price, quantity) ->
+          fills.add(resting.getOrderId() + " " + quantity);
+
+  @Test
+  public void testIcebergShowsOnlyItsDisplayQuantityAndReplenishesAtTheBack() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl(recorder);
+    Order iceberg = new Order(1, "ETHBTC", Side.sell, 100, 50, 10);
+    orderBookManager.addOrder(iceberg);
+    orderBookManager.addOrder(new Order(2, "ETHBTC", Side.sell, 100, 5));
+
+    assertEquals(10, iceberg.getQuantity());
+    assertEquals(40, iceberg.getHiddenQuantity());
+    assertEquals(15, orderBookManager.getTotalQuantityAtLevel("ETHBTC", Side.sell, 100));
+    assertEquals(1500, orderBookManager.getTotalVolumeAtLevel("ETHBTC", Side.sell, 100));
+
+    //uses up the shown 10, which is refilled from the reserve behind order 2, then takes 2 from order 2
+    orderBookManager.addOrder(new Order(3, "ETHBTC", Side.buy, 100, 12));
+    assertEquals(Arrays.asList("1 10", "2 2"), fills);
+    assertEquals(Arrays.asList(new Order(2, "ETHBTC", Side.sell, 100, 3), new Order(1, "ETHBTC", Side.sell, 100, 10, 10)),
+            orderBookManager.getOrdersAtLevel("ETHBTC", Side.sell, 100));
+    assertEquals(30, iceberg.getHiddenQuantity());
+    assertEquals(13, orderBookManager.getTotalQuantityAtLevel("ETHBTC", Side.sell, 100));
+    assertEquals(2, orderBookManager.getOrderNumAtLevel("ETHBTC", Side.sell, 100));
+
+    //the last slice shows what is left of the reserve, then the order is gone once that is filled
+    orderBookManager.addOrder(new Order(4, "ETHBTC", Side.buy, 100, 3 + 39));
+    assertEquals(1, iceberg.getQuantity());
+    assertEquals(0, iceberg.getHiddenQuantity());
+    assertEquals(1, orderBookManager.getTotalQuantityAtLevel("ETHBTC", Side.sell, 100));
+    orderBookManager.addOrder(new Order(5, "ETHBTC", Side.buy, 100, 1));
+    assertEquals(-1, orderBookManager.getBestPrice("ETHBTC", Side.sell));
+    assertEquals(0, orderBookManager.getLiveOrderCount());
+  }
+
+  @Test
+  public void testModifyChangesTheTotalHiddenFirst() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    Order iceberg = new Order("ice", "ETHBTC", Side.buy, 100, 40, 10);
+    orderBookManager.addOrder(iceberg);
+    orderBookManager.addOrder(new Order("plain", "ETHBTC", Side.buy, 100, 5));
+
+    //only the reserve shrinks, so the level and the queue are untouched
+    orderBookManager.modifyOrder("ice", 25);
+    assertEquals(10, iceberg.getQuantity());
+    assertEquals(15, iceberg.getHiddenQuantity());
+    assertEquals(15, orderBookManager.getTotalQuantityAtLevel("ETHBTC", Side.buy, 100));
+    assertEquals("ice", orderBookManager.getOrdersAtLevel("ETHBTC", Side.buy, 100).get(0).getOrderId());
+
+    //below what is shown, the reserve is gone and the shown quantity is cut, keeping priority
+    orderBookManager.modifyOrder("ice", 4);
+    assertEquals(4, iceberg.getQuantity());
+    assertEquals(0, iceberg.getHiddenQuantity());
+    assertEquals(9, orderBookManager.getTotalQuantityAtLevel("ETHBTC", Side.buy, 100));
+    assertEquals("ice", orderBookManager.getOrdersAtLevel("ETHBTC", Side.buy, 100).get(0).getOrderId());
+
+    //an increase loses priority and shows a full slice again
+    orderBookManager.modifyOrder("ice", 100);
+    assertEquals(10, iceberg.getQuantity());
+    assertEquals(90, iceberg.getHiddenQuantity());
+    assertEquals(15, orderBookManager.getTotalQuantityAtLevel("ETHBTC", Side.buy, 100));
+    assertEquals("plain", orderBookManager.getOrdersAtLevel("ETHBTC", Side.buy, 100).get(0).getOrderId());
+  }
+
+  @Test
+  public void testIncomingIcebergMatchesWithItsReserveAndRestsTheRest() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl(recorder);
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.sell, 100, 12));
+    orderBookManager.addOrder(new Order(2, "ETHBTC", Side.sell, 101, 4));
+
+    Order iceberg = new Order(3, "ETHBTC", Side.buy, 101, 30, 5);
+    orderBookManager.addOrder(iceberg);
+    assertEquals(Arrays.asList("1 5", "1 5", "1 2", "2 3", "2 1"), fills);
+    //14 left, 4 of which are shown
+    assertEquals(4, iceberg.getQuantity());
+    assertEquals(10, iceberg.getHiddenQuantity());
+    assertEquals(4, orderBookManager.getTotalQuantityAtLevel("ETHBTC", Side.buy, 101));
+    assertEquals(-1, orderBookManager.getBestPrice("ETHBTC", Side.sell));
+  }
+
+  @Test
+  public void testReplenishmentIsReportedAsRequeued() {
+    L3Book l3Book = new L3Book();
+    List<String> events = new ArrayList<>();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {}, 0,
+            null, (instrument, sequence, type, order, quantity) -> {
+              events.add(type + " " + order.getOrderId() + " " + quantity);
+              l3Book.onOrderEvent(instrument, sequence, type, order, quantity);
+            });
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.sell, 100, 25, 10));
+    orderBookManager.addOrder(new Order(2, "ETHBTC", Side.sell, 100, 5));
+    orderBookManager.modifyOrder(1, 20);
+    orderBookManager.addOrder(new Order(3, "ETHBTC", Side.buy, 100, 12));
+
+    assertEquals(Arrays.asList(
+            "ADDED 1 10",
+            "ADDED 2 5",
+            //cutting the reserve alone shows nothing
+            "REQUEUED 1 10",
+            "REDUCED 2 3"), events);
+    assertEquals(orderBookManager.getOrdersAtLevel("ETHBTC", Side.sell, 100),
+            l3Book.getOrdersAtLevel("ETHBTC", Side.sell, 100));
+  }
+
+  @Test
+  public void testReserveSurvivesJournalAndSnapshot() throws Exception {
+    Path journalFile = folder.getRoot().toPath().resolve("orders.journal");
+    Path snapshotFile = folder.getRoot().toPath().resolve("books.snapshot");
+
+    try (JournaledOrderBookManager orderBookManager = new JournaledOrderBookManager(
+            new OrderBookManagerImpl(recorder), journalFile, 8192, 0, snapshotFile, 0)) {
+      orderBookManager.addOrder(new Order(1, "ETHBTC", Side.sell, 100, 50, 10));
+      orderBookManager.addOrder(new Order("two", "ETHBTC", Side.sell, 100, 30, 20));
+      orderBookManager.addOrder(new Order(3, "ETHBTC", Side.buy, 100, 14));
+      orderBookManager.snapshot().get();
+      orderBookManager.addOrder(new Order(4, "ETHBTC", Side.buy, 100, 3));
+    }
+
+    OrderBookManagerImpl restored = new OrderBookManagerImpl(recorder);
+    new JournaledOrderBookManager(restored, journalFile, 8192, 0, snapshotFile, 0).close();
+    OrderBookManagerImpl replayed = new OrderBookManagerImpl(recorder);
+    OrderJournal.replay(journalFile, replayed);
+
+    for (OrderBookManagerImpl orderBookManager : Arrays.asList(restored, replayed)) {
+      List<Order> orders = orderBookManager.getOrdersAtLevel("ETHBTC", Side.sell, 100);
+      assertEquals(Arrays.asList(new Order("two", "ETHBTC", Side.sell, 100, 13, 20), new Order(1, "ETHBTC", Side.sell, 100, 10, 10)),
+              orders);
+      assertEquals(10, orders.get(0).getHiddenQuantity());
+      assertEquals(30, orders.get(1).getHiddenQuantity());
+    }
+  }
+}
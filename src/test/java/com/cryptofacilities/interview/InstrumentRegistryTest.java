@@ -0,0 +1,69 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class InstrumentRegistryTest {
+
+  @Test
+  public void testIdsAreDenseAndStable() {
+    InstrumentRegistry registry = new InstrumentRegistry();
+    for(int i = 0; i < 100; i++) {
+      assertEquals(i, registry.register("INSTRUMENT" + i));
+    }
+    assertEquals(42, registry.register(new String("INSTRUMENT42")));
+    assertEquals(7, registry.getId("INSTRUMENT7"));
+    assertEquals(InstrumentRegistry.UNKNOWN, registry.getId("MISSING"));
+    assertEquals("INSTRUMENT99", registry.getInstrument(99));
+    assertEquals(100, registry.size());
+    try {
+      registry.getInstrument(100);
+      throw new AssertionError("expected an unassigned id to be refused");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void testIntIdOverloadsShareTheBooks() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    orderBookManager.addOrder(new Order(1, "XBTUSD", Side.sell, 9000, 2));
+    int ethbtc = orderBookManager.registerInstrument("ETHBTC");
+    int xbtusd = orderBookManager.registerInstrument("XBTUSD");
+    assertEquals(1, ethbtc);
+    assertEquals(0, xbtusd);
+    assertEquals(ethbtc, orderBookManager.getInstrumentId("ETHBTC"));
+
+    String instrument = orderBookManager.getInstrument(ethbtc);
+    orderBookManager.addOrder(ethbtc, 2, Side.buy, 100, 5);
+    orderBookManager.addOrder(ethbtc, "three", Side.buy, 100, 3);
+    orderBookManager.addOrder(new Order(4, new String("ETHBTC"), Side.buy, 99, 1));
+    orderBookManager.addOrder(xbtusd, 5, Side.sell, 8999, 4);
+
+    assertEquals(Arrays.asList(new Order(2, "ETHBTC", Side.buy, 100, 5), new Order("three", "ETHBTC", Side.buy, 100, 3)),
+            orderBookManager.getOrdersAtLevel(ethbtc, Side.buy, 100));
+    assertSame(instrument, orderBookManager.getOrdersAtLevel("ETHBTC", Side.buy, 100).get(0).getInstrument());
+    assertEquals(100, orderBookManager.getBestPrice(ethbtc, Side.buy));
+    assertEquals(8999, orderBookManager.getBestPrice(xbtusd, Side.sell));
+    assertEquals(2, orderBookManager.getOrderNumAtLevel(ethbtc, Side.buy, 100));
+    assertEquals(8, orderBookManager.getTotalQuantityAtLevel(ethbtc, Side.buy, 100));
+    assertEquals(800, orderBookManager.getTotalVolumeAtLevel(ethbtc, Side.buy, 100));
+
+    long[] depth = new long[6];
+    assertEquals(2, orderBookManager.getDepth(ethbtc, Side.buy, 2, depth));
+    assertEquals(Arrays.toString(new long[] {100, 8, 2, 99, 1, 1}), Arrays.toString(depth));
+
+    //numeric and String order ids still find orders added through either API
+    assertEquals(OrderResult.OK, orderBookManager.deleteOrder(2));
+    assertEquals(OrderResult.OK, orderBookManager.modifyOrder("three", 1));
+    assertEquals(1, orderBookManager.getTotalQuantityAtLevel("ETHBTC", Side.buy, 100));
+    try {
+      orderBookManager.getBestPrice(2, Side.buy);
+      throw new AssertionError("expected an unassigned id to be refused");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
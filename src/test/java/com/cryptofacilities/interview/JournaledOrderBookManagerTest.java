@@ -0,0 +1,171 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class JournaledOrderBookManagerTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testReplayRebuildsBooksAndDirectory() throws IOException {
+    Path journalFile = folder.getRoot().toPath().resolve("orders.journal");
+
+    try (JournaledOrderBookManager orderBookManager = new JournaledOrderBookManager(new OrderBookManagerImpl(),
+            journalFile, 8192, 0)) {
+      orderBookManager.addPriceLadderInstrument("ETHBTC", 5, 100, 8);
+      orderBookManager.addOrder(new Order("one", "ETHBTC", Side.buy, 100, 5));
+      orderBookManager.addOrder(new Order(2, "ETHBTC", Side.buy, 100, 7));
+      orderBookManager.addOrder(new Order(3, "XBTUSD", Side.sell, 9000, 1));
+      orderBookManager.addOrder(new Order(4, "XBTUSD", Side.sell, 9001, 2));
+      orderBookManager.modifyOrder("one", 9);
+      orderBookManager.modifyOrder(3, 4);
+      orderBookManager.deleteOrder(4);
+      orderBookManager.deleteOrder("missing");
+    }
+
+    OrderBookManagerImpl recovered = new OrderBookManagerImpl();
+    try (JournaledOrderBookManager orderBookManager = new JournaledOrderBookManager(recovered, journalFile, 8192, 0)) {
+      assertEquals(9, orderBookManager.getReplayedRecordCount());
+      assertEquals(3, recovered.getLiveOrderCount());
+      assertEquals(Arrays.asList(new Order(2, "ETHBTC", Side.buy, 100, 7), new Order("one", "ETHBTC", Side.buy, 100, 9)),
+              orderBookManager.getOrdersAtLevel("ETHBTC", Side.buy, 100));
+      assertEquals(9000, orderBookManager.getBestPrice("XBTUSD", Side.sell));
+      assertEquals(4, orderBookManager.getTotalQuantityAtLevel("XBTUSD", Side.sell, 9000));
+      assertEquals(-1, orderBookManager.getOrderNumAtLevel("XBTUSD", Side.sell, 9001));
+
+      //the ladder book was recreated, so off-tick prices are still rejected
+      try {
+        recovered.addOrder(new Order(5, "ETHBTC", Side.buy, 101, 1));
+        throw new AssertionError("expected the price ladder to reject an off-tick price");
+      } catch (IllegalArgumentException expected) {
+      }
+
+      //new records are appended after the replayed ones
+      orderBookManager.deleteOrder(2);
+    }
+
+    OrderBookManagerImpl recoveredAgain = new OrderBookManagerImpl();
+    try (JournaledOrderBookManager orderBookManager = new JournaledOrderBookManager(recoveredAgain, journalFile, 8192, 0)) {
+      assertEquals(10, orderBookManager.getReplayedRecordCount());
+      assertEquals(2, recoveredAgain.getLiveOrderCount());
+    }
+  }
+
+  @Test
+  public void testReplayReproducesMatching() throws IOException {
+    Path journalFile = folder.getRoot().toPath().resolve("orders.journal");
+
+    try (JournaledOrderBookManager orderBookManager = new JournaledOrderBookManager(
+            new OrderBookManagerImpl((resting, incoming, price, quantity) -> {}), journalFile, 8192, 2)) {
+      orderBookManager.addOrder(new Order(1, "ETHBTC", Side.sell, 10, 5));
+      orderBookManager.addOrder(new Order(2, "ETHBTC", Side.buy, 10, 3));
+    }
+
+    long[] filled = new long[1];
+    OrderBookManagerImpl recovered = new OrderBookManagerImpl((resting, incoming, price, quantity) -> filled[0] += quantity);
+    OrderJournal.replay(journalFile, recovered);
+
+    assertEquals(3, filled[0]);
+    assertEquals(2, recovered.getTotalQuantityAtLevel("ETHBTC", Side.sell, 10));
+    assertEquals(1, recovered.getLiveOrderCount());
+  }
+
+  @Test
+  public void testRejectedCommandsDontStopRestarts() throws IOException {
+    Path journalFile = folder.getRoot().toPath().resolve("orders.journal");
+
+    try (JournaledOrderBookManager orderBookManager = new JournaledOrderBookManager(new OrderBookManagerImpl(),
+            journalFile, 8192, 0)) {
+      orderBookManager.addPriceLadderInstrument("ETHBTC", 10, 100, 8);
+      orderBookManager.addOrder(new Order(1, "ETHBTC", Side.sell, 100, 5));
+      try {
+        orderBookManager.addOrder(new Order("bad", "ETHBTC", Side.buy, 105, 1));
+        throw new AssertionError("expected the price ladder to reject an off-tick price");
+      } catch (IllegalArgumentException expected) {
+      }
+      try {
+        orderBookManager.addPriceLadderInstrument("ETHBTC", 10, 100, 8);
+        throw new AssertionError("expected a second book for the instrument to be rejected");
+      } catch (IllegalStateException expected) {
+      }
+      orderBookManager.addOrder(new Order(2, "ETHBTC", Side.buy, 90, 3));
+    }
+
+    //neither rejected command was journalled
+    OrderBookManagerImpl recovered = new OrderBookManagerImpl();
+    try (JournaledOrderBookManager orderBookManager = new JournaledOrderBookManager(recovered, journalFile, 8192, 0)) {
+      assertEquals(3, orderBookManager.getReplayedRecordCount());
+      assertEquals(0, recovered.getRejectedCommandCount());
+      assertEquals(2, recovered.getLiveOrderCount());
+    }
+
+    //a journal that does hold them, as written before adds were checked first, still replays around them
+    try (OrderJournal journal = new OrderJournal(journalFile, 8192, 0)) {
+      journal.appendAdd(new Order("bad", "ETHBTC", Side.buy, 105, 1));
+      journal.appendPriceLadderInstrument("ETHBTC", 10, 100, 8);
+      journal.appendDelete(1);
+    }
+    OrderBookManagerImpl recoveredAgain = new OrderBookManagerImpl();
+    try (JournaledOrderBookManager orderBookManager = new JournaledOrderBookManager(recoveredAgain, journalFile, 8192, 0)) {
+      assertEquals(6, orderBookManager.getReplayedRecordCount());
+      assertEquals(2, recoveredAgain.getRejectedCommandCount());
+      assertEquals(1, recoveredAgain.getLiveOrderCount());
+      assertEquals(90, orderBookManager.getBestPrice("ETHBTC", Side.buy));
+      assertEquals(-1, orderBookManager.getBestPrice("ETHBTC", Side.sell));
+    }
+  }
+
+  @Test
+  public void testTornRecordIsTruncated() throws IOException {
+    Path journalFile = folder.getRoot().toPath().resolve("orders.journal");
+
+    try (OrderJournal journal = new OrderJournal(journalFile, 8192, 0)) {
+      journal.appendAdd(new Order(1, "ETHBTC", Side.sell, 10, 5));
+      journal.appendAdd(new Order(2, "ETHBTC", Side.sell, 11, 5));
+    }
+    long completeLength = Files.size(journalFile);
+
+    //a crash half way through writing the third record
+    try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      channel.write(java.nio.ByteBuffer.wrap(new byte[] {0, 40, OrderJournal.ADD_NUMERIC, 0, 0}));
+    }
+
+    OrderBookManagerImpl recovered = new OrderBookManagerImpl();
+    assertEquals(2, OrderJournal.replay(journalFile, recovered));
+    assertEquals(2, recovered.getLiveOrderCount());
+    assertEquals(completeLength, Files.size(journalFile));
+  }
+
+  @Test
+  public void testManyRecordsAcrossBufferBoundaries() throws IOException {
+    Path journalFile = folder.getRoot().toPath().resolve("orders.journal");
+    int orderCount = 200_000;
+
+    try (OrderJournal journal = new OrderJournal(journalFile, OrderJournal.MAX_RECORD_LENGTH, 1000)) {
+      for (int i = 0; i < orderCount; i++) {
+        journal.appendAdd(new Order("order" + i, "INSTRUMENT" + i % 7, Side.buy, 100 + i % 50, 10));
+        if (i % 2 == 1)
+          journal.appendDelete("order" + (i - 1));
+      }
+      assertEquals(orderCount * 3 / 2, journal.getRecordCount());
+    }
+
+    OrderBookManagerImpl recovered = new OrderBookManagerImpl();
+    assertEquals(orderCount * 3 / 2, OrderJournal.replay(journalFile, recovered));
+    assertEquals(orderCount / 2, recovered.getLiveOrderCount());
+    //the odd (surviving) orders with i % 350 == 1
+    assertEquals(5720, recovered.getTotalQuantityAtLevel("INSTRUMENT1", Side.buy, 101));
+  }
+}
@@ -0,0 +1,140 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class L2BookTest {
+
+  private final List<String> updates = new ArrayList<>();
+  private final L2DeltaListener recorder = (instrument, side, price, totalQuantity, orderCount) ->
+          updates.add(instrument + " " + side + " " + price + " " + totalQuantity + " " + orderCount);
+
+  @Test
+  public void testBurstAtALevelIsCoalescedIntoOneUpdate() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl(null, 0, recorder);
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.buy, 100, 5));
+    orderBookManager.addOrder(new Order(2, "ETHBTC", Side.buy, 100, 3));
+    orderBookManager.modifyOrder(1, 2);
+    orderBookManager.addOrder(new Order(3, "ETHBTC", Side.sell, 101, 4));
+    orderBookManager.addOrder(new Order(4, "XBTUSD", Side.sell, 9000, 1));
+    orderBookManager.flushL2Deltas();
+
+    assertEquals(3, updates.size());
+    assertEquals("ETHBTC buy 100 5 2", updates.get(0));
+    assertEquals("ETHBTC sell 101 4 1", updates.get(1));
+    assertEquals("XBTUSD sell 9000 1 1", updates.get(2));
+
+    //nothing changed since, so nothing is reported
+    updates.clear();
+    orderBookManager.flushL2Deltas();
+    assertEquals(0, updates.size());
+  }
+
+  @Test
+  public void testRemovedLevelsAreReportedOnlyIfTheyWerePublished() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl(null, 0, recorder);
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.buy, 100, 5));
+    orderBookManager.flushL2Deltas();
+    updates.clear();
+
+    orderBookManager.deleteOrder(1);
+    //created and removed within the batch, downstream never saw it
+    orderBookManager.addOrder(new Order(2, "ETHBTC", Side.buy, 99, 5));
+    orderBookManager.modifyOrder(2, 0);
+    orderBookManager.flushL2Deltas();
+    assertEquals(1, updates.size());
+    assertEquals("ETHBTC buy 100 0 0", updates.get(0));
+
+    //removed then recreated at the same price within the batch, only the new state is reported
+    updates.clear();
+    orderBookManager.addOrder(new Order(3, "ETHBTC", Side.sell, 105, 5));
+    orderBookManager.flushL2Deltas();
+    updates.clear();
+    orderBookManager.deleteOrder(3);
+    orderBookManager.addOrder(new Order(4, "ETHBTC", Side.sell, 105, 7));
+    orderBookManager.flushL2Deltas();
+    assertEquals(1, updates.size());
+    assertEquals("ETHBTC sell 105 7 1", updates.get(0));
+  }
+
+  @Test
+  public void testFillsAreReported() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {}, 0,
+            recorder);
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.sell, 100, 5));
+    orderBookManager.addOrder(new Order(2, "ETHBTC", Side.sell, 101, 5));
+    orderBookManager.flushL2Deltas();
+    updates.clear();
+
+    orderBookManager.addOrder(new Order(3, "ETHBTC", Side.buy, 101, 7));
+    orderBookManager.flushL2Deltas();
+    assertEquals(2, updates.size());
+    assertEquals("ETHBTC sell 100 0 0", updates.get(0));
+    assertEquals("ETHBTC sell 101 3 1", updates.get(1));
+  }
+
+  @Test
+  public void testL2BookFollowsTheOrderBooks() {
+    L2Book l2Book = new L2Book();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {}, 0,
+            l2Book);
+    orderBookManager.addPriceLadderInstrument("LADDER", 1, 100, 8);
+    String[] instruments = {"TREE", "LADDER"};
+    Random random = new Random(7);
+
+    for(int batch = 0; batch < 200; batch++) {
+      for(int i = 0; i < 50; i++) {
+        int orderId = random.nextInt(400);
+        int action = random.nextInt(3);
+        if(action == 0) {
+          if(orderBookManager.findOrder(orderId) == null)
+            orderBookManager.addOrder(new Order(orderId, instruments[orderId % 2], Side.values()[random.nextInt(2)],
+                    90 + random.nextInt(20), 1 + random.nextInt(10)));
+        } else if(action == 1) {
+          orderBookManager.modifyOrder(orderId, random.nextInt(10));
+        } else {
+          orderBookManager.deleteOrder(orderId);
+        }
+      }
+      orderBookManager.flushL2Deltas();
+
+      for(String instrument : instruments) {
+        for(Side side : Side.values()) {
+          assertEquals(orderBookManager.getBestPrice(instrument, side),
+                  l2Book.getBestPrice(instrument, side));
+          for(long price = 85; price <= 115; price++) {
+            assertEquals(orderBookManager.getTotalQuantityAtLevel(instrument, side, price),
+                    l2Book.getTotalQuantityAtLevel(instrument, side, price));
+            assertEquals(orderBookManager.getOrderNumAtLevel(instrument, side, price),
+                    l2Book.getOrderNumAtLevel(instrument, side, price));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testRingBufferFlushesAfterEveryBatch() throws InterruptedException {
+    L2Book l2Book = new L2Book();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl(null, 0, l2Book);
+    OrderCommandRingBuffer ringBuffer = new OrderCommandRingBuffer(orderBookManager, 1024, 1024,
+            WaitStrategy.YIELDING, OrderCommandRingBuffer.Backpressure.BLOCK);
+
+    //published before the consumer starts, so they are applied as a single batch
+    for(int i = 0; i < 100; i++) {
+      ringBuffer.addOrder(i, "ETHBTC", Side.buy, 100, 1);
+    }
+    ringBuffer.start();
+    ringBuffer.close();
+
+    assertEquals(1, l2Book.getUpdateCount());
+    assertEquals(100, l2Book.getTotalQuantityAtLevel("ETHBTC", Side.buy, 100));
+    assertEquals(100, l2Book.getOrderNumAtLevel("ETHBTC", Side.buy, 100));
+    assertEquals(1, l2Book.getLevelCount("ETHBTC", Side.buy));
+  }
+}
@@ -0,0 +1,155 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class L3BookTest {
+
+  private final List<String> events = new ArrayList<>();
+  private final L3EventListener recorder = (instrument, sequence, type, order, quantity) ->
+          events.add(instrument + " " + sequence + " " + type + " " + order.getOrderId() + " " + quantity);
+
+  @Test
+  public void testEventsAreNumberedPerInstrument() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {}, 0,
+            null, recorder);
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.sell, 100, 5));
+    orderBookManager.addOrder(new Order("two", "ETHBTC", Side.sell, 100, 5));
+    orderBookManager.addOrder(new Order(3, "XBTUSD", Side.buy, 9000, 1));
+    orderBookManager.modifyOrder(1, 3);
+    orderBookManager.modifyOrder(1, 6);
+    orderBookManager.modifyOrder(1, 6);
+    orderBookManager.deleteOrder(3);
+    //fills "two" completely, then 1 partially, and rests the remainder
+    orderBookManager.addOrder(new Order(4, "ETHBTC", Side.buy, 100, 8));
+    orderBookManager.addOrder(new Order(5, "ETHBTC", Side.buy, 99, 4));
+    orderBookManager.modifyOrder(1, 0);
+
+    assertEquals(Arrays.asList(
+            "ETHBTC 1 ADDED 1 5",
+            "ETHBTC 2 ADDED two 5",
+            "XBTUSD 1 ADDED 3 1",
+            "ETHBTC 3 REDUCED 1 3",
+            "ETHBTC 4 REQUEUED 1 6",
+            "XBTUSD 2 DELETED 3 0",
+            "ETHBTC 5 DELETED two 0",
+            "ETHBTC 6 REDUCED 1 3",
+            "ETHBTC 7 ADDED 5 4",
+            "ETHBTC 8 DELETED 1 0"), events);
+  }
+
+  @Test
+  public void testL3BookFollowsTheOrderBooks() {
+    L3Book l3Book = new L3Book();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {}, 0,
+            null, l3Book);
+    orderBookManager.addPriceLadderInstrument("LADDER", 1, 100, 8);
+    Random random = new Random(11);
+
+    for(int i = 0; i < 10_000; i++) {
+      mutate(orderBookManager, random);
+    }
+
+    assertSameOrders(orderBookManager, l3Book);
+    assertFalse(l3Book.isRecovering("TREE"));
+    assertFalse(l3Book.isRecovering("LADDER"));
+  }
+
+  @Test
+  public void testMissedEventsAreRecoveredFromASnapshot() {
+    List<CompletableFuture<L3Snapshot>> snapshots = new ArrayList<>();
+    OrderBookManagerImpl[] orderBookManager = new OrderBookManagerImpl[1];
+    L3Book l3Book = new L3Book(instrument -> snapshots.add(orderBookManager[0].requestL3Snapshot(instrument)));
+
+    //drops some events, as a lossy transport would
+    boolean[] dropping = new boolean[1];
+    orderBookManager[0] = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {}, 0, null,
+            (instrument, sequence, type, order, quantity) -> {
+              if(!dropping[0])
+                l3Book.onOrderEvent(instrument, sequence, type, order, quantity);
+            });
+    Random random = new Random(3);
+
+    for(int i = 0; i < 500; i++) {
+      mutate(orderBookManager[0], random);
+    }
+    dropping[0] = true;
+    for(int i = 0; i < 50; i++) {
+      mutate(orderBookManager[0], random);
+    }
+    dropping[0] = false;
+
+    //the writer carries on while the consumer waits for the snapshot, and its events are held back
+    for(int i = 0; i < 100; i++) {
+      mutate(orderBookManager[0], random);
+    }
+    assertTrue(l3Book.isRecovering("TREE"));
+    assertEquals(2, snapshots.size());
+    orderBookManager[0].serviceL3SnapshotRequests();
+    for(int i = 0; i < 100; i++) {
+      mutate(orderBookManager[0], random);
+    }
+
+    for(CompletableFuture<L3Snapshot> snapshot : snapshots) {
+      assertTrue(l3Book.applySnapshot(snapshot.join()));
+    }
+    assertSameOrders(orderBookManager[0], l3Book);
+
+    //and it stays in sync from then on
+    for(int i = 0; i < 100; i++) {
+      mutate(orderBookManager[0], random);
+    }
+    assertSameOrders(orderBookManager[0], l3Book);
+  }
+
+  @Test
+  public void testSnapshotTakenBeforeTheGapDoesNotResync() {
+    L3Book l3Book = new L3Book();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl(null, 0, null, l3Book);
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.buy, 100, 5));
+    L3Snapshot early = orderBookManager.getL3Snapshot("ETHBTC");
+
+    l3Book.onOrderEvent("ETHBTC", 3, L3EventType.ADDED, new Order(3, "ETHBTC", Side.buy, 100, 5), 5);
+    assertTrue(l3Book.isRecovering("ETHBTC"));
+    assertFalse(l3Book.applySnapshot(early));
+    assertTrue(l3Book.isRecovering("ETHBTC"));
+  }
+
+  private static void mutate(OrderBookManagerImpl orderBookManager, Random random) {
+    int orderId = random.nextInt(300);
+    int action = random.nextInt(3);
+    if(action == 0) {
+      if(orderBookManager.findOrder(orderId) == null)
+        orderBookManager.addOrder(new Order(orderId, orderId % 2 == 0 ? "TREE" : "LADDER",
+                Side.values()[random.nextInt(2)], 90 + random.nextInt(20), 1 + random.nextInt(10)));
+    } else if(action == 1) {
+      orderBookManager.modifyOrder(orderId, random.nextInt(12));
+    } else {
+      orderBookManager.deleteOrder(orderId);
+    }
+  }
+
+  private static void assertSameOrders(OrderBookManagerImpl orderBookManager, L3Book l3Book) {
+    for(String instrument : new String[] {"TREE", "LADDER"}) {
+      long orderCount = 0;
+      for(Side side : Side.values()) {
+        assertEquals(orderBookManager.getBestPrice(instrument, side), l3Book.getBestPrice(instrument, side));
+        for(long price = 85; price <= 115; price++) {
+          List<Order> orders = orderBookManager.getOrdersAtLevel(instrument, side, price);
+          assertEquals(orders, l3Book.getOrdersAtLevel(instrument, side, price));
+          orderCount += orders.size();
+        }
+      }
+      assertEquals(orderCount, l3Book.getOrderCount(instrument));
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LongObjectHashMapTest {
+
+  private LongObjectHashMap<String> testMap;
+
+  @Before
+  public void init() {
+    testMap = new LongObjectHashMap<>(4);
+  }
+
+  @Test
+  public void testEmptyMap() {
+    assertTrue(testMap.isEmpty());
+    assertNull(testMap.get(1));
+    assertNull(testMap.remove(1));
+  }
+
+  @Test
+  public void testPutGetRemove() {
+    assertNull(testMap.put(1, "one"));
+    assertNull(testMap.put(-7, "minus seven"));
+    assertEquals("one", testMap.put(1, "uno"));
+
+    assertEquals(2, testMap.size());
+    assertEquals("uno", testMap.get(1));
+    assertEquals("minus seven", testMap.get(-7));
+
+    assertEquals("uno", testMap.remove(1));
+    assertNull(testMap.get(1));
+    assertEquals(1, testMap.size());
+  }
+
+  @Test
+  public void testGrowsPastExpectedSize() {
+    for (long key = 0; key < 1_000; key++) {
+      testMap.put(key, Long.toString(key));
+    }
+
+    assertEquals(1_000, testMap.size());
+    for (long key = 0; key < 1_000; key++) {
+      assertEquals(Long.toString(key), testMap.get(key));
+    }
+  }
+
+  @Test
+  public void testClear() {
+    testMap.put(1, "one");
+    testMap.clear();
+
+    assertTrue(testMap.isEmpty());
+    assertNull(testMap.get(1));
+  }
+
+  @Test
+  public void testMatchesHashMapUnderRandomChurn() {
+    //removes shift entries back along their probe run, check nothing gets lost doing so
+    Map<Long, String> expected = new HashMap<>();
+    Random random = new Random(42);
+
+    for (int i = 0; i < 100_000; i++) {
+      long key = random.nextInt(512);
+      if (random.nextBoolean()) {
+        assertEquals(expected.put(key, "v" + i), testMap.put(key, "v" + i));
+      } else {
+        assertEquals(expected.remove(key), testMap.remove(key));
+      }
+    }
+
+    assertEquals(expected.size(), testMap.size());
+    for (long key = 0; key < 512; key++) {
+      assertEquals(expected.get(key), testMap.get(key));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullValueRejected() {
+    testMap.put(1, null);
+  }
+}
@@ -0,0 +1,128 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class OffHeapOrderBookManagerTest {
+
+  @Test
+  public void testRandomOperationsMatchOnHeapManager() {
+    OffHeapOrderBookManager offHeap = new OffHeapOrderBookManager(1_000);
+    OrderBookManagerImpl onHeap = new OrderBookManagerImpl();
+    Random random = new Random(7);
+    List<Long> liveIds = new ArrayList<>();
+    long nextOrderId = 0;
+    String[] instruments = {"ETHBTC", "XBTUSD", "LTCBTC"};
+
+    for(int i = 0; i < 50_000; i++) {
+      int operation = random.nextInt(10);
+      //the book fills up early on, so most of the run adds orders into freed records
+      if((operation < 5 && liveIds.size() < 1_000) || liveIds.isEmpty()) {
+        Order order = new Order(nextOrderId++, instruments[random.nextInt(instruments.length)],
+                Side.values()[random.nextInt(2)], 100 + random.nextInt(20), 1 + random.nextInt(50));
+        offHeap.addOrder(order);
+        onHeap.addOrder(new Order(order));
+        liveIds.add(order.getNumericOrderId());
+      } else if(operation < 8) {
+        long orderId = liveIds.get(random.nextInt(liveIds.size()));
+        long newQuantity = random.nextInt(60);
+        assertEquals(onHeap.modifyOrder(orderId, newQuantity), offHeap.modifyOrder(orderId, newQuantity));
+        if(newQuantity == 0)
+          liveIds.remove(orderId);
+      } else {
+        long orderId = random.nextInt(10) == 0 ? -1 : liveIds.remove(random.nextInt(liveIds.size()));
+        assertEquals(onHeap.deleteOrder(orderId), offHeap.deleteOrder(orderId));
+      }
+    }
+
+    assertEquals(onHeap.getLiveOrderCount(), offHeap.getLiveOrderCount());
+    long[] onHeapDepth = new long[60];
+    long[] offHeapDepth = new long[60];
+    for(String instrument : instruments) {
+      for(Side side : Side.values()) {
+        assertEquals(onHeap.getBestPrice(instrument, side), offHeap.getBestPrice(instrument, side));
+        assertEquals(onHeap.getDepth(instrument, side, 20, onHeapDepth),
+                offHeap.getDepth(instrument, side, 20, offHeapDepth));
+        assertEquals(Arrays.toString(onHeapDepth), Arrays.toString(offHeapDepth));
+        for(long price = 100; price < 120; price++) {
+          assertEquals(onHeap.getOrdersAtLevel(instrument, side, price), offHeap.getOrdersAtLevel(instrument, side, price));
+          assertEquals(onHeap.getTotalVolumeAtLevel(instrument, side, price),
+                  offHeap.getTotalVolumeAtLevel(instrument, side, price));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFreedRecordsAreReused() {
+    OffHeapOrderBookManager orderBookManager = new OffHeapOrderBookManager(4);
+    for(int i = 0; i < 1_000; i++) {
+      orderBookManager.addOrder(new Order(i, "ETHBTC", Side.sell, 100 + i % 3, 1));
+      if(i >= 3)
+        assertEquals(OrderResult.OK, orderBookManager.deleteOrder(i - 3));
+    }
+    assertEquals(3, orderBookManager.getLiveOrderCount());
+
+    orderBookManager.addOrder(new Order(1_000, "ETHBTC", Side.sell, 100, 1));
+    try {
+      orderBookManager.addOrder(new Order(1_001, "ETHBTC", Side.sell, 100, 1));
+      throw new AssertionError("expected a full store to refuse the order");
+    } catch (IllegalStateException expected) {
+    }
+    assertEquals(4, orderBookManager.getLiveOrderCount());
+  }
+
+  @Test
+  public void testOnlyNumericIdsAreAccepted() {
+    OffHeapOrderBookManager orderBookManager = new OffHeapOrderBookManager(4);
+    try {
+      orderBookManager.addOrder(new Order("one", "ETHBTC", Side.buy, 100, 1));
+      throw new AssertionError("expected an order with a String id to be refused");
+    } catch (IllegalArgumentException expected) {
+    }
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.buy, 100, 1));
+    try {
+      orderBookManager.addOrder(new Order(1, "ETHBTC", Side.buy, 100, 1));
+      throw new AssertionError("expected a second order with the same id to be refused");
+    } catch (IllegalArgumentException expected) {
+    }
+    assertEquals(OrderResult.ORDER_NOT_FOUND, orderBookManager.modifyOrder("one", 2));
+    assertEquals(OrderResult.ORDER_NOT_FOUND, orderBookManager.deleteOrder("one"));
+    assertEquals(1, orderBookManager.getLiveOrderCount());
+
+    //a String id that is a number is the numeric id
+    assertEquals(OrderResult.OK, orderBookManager.modifyOrder("1", 2));
+    assertEquals(2, orderBookManager.getTotalQuantityAtLevel("ETHBTC", Side.buy, 100));
+    assertEquals(OrderResult.OK, orderBookManager.deleteOrder("1"));
+    assertEquals(0, orderBookManager.getLiveOrderCount());
+  }
+
+  @Test
+  public void testRecordsAreReadInQueueOrder() {
+    OffHeapOrderBookManager orderBookManager = new OffHeapOrderBookManager(8);
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.buy, 100, 5));
+    orderBookManager.addOrder(new Order(2, "ETHBTC", Side.buy, 100, 6));
+    orderBookManager.addOrder(new Order(3, "ETHBTC", Side.buy, 100, 7));
+    orderBookManager.modifyOrder(1, 8);
+    orderBookManager.modifyOrder(3, 2);
+
+    List<Long> orderIds = new ArrayList<>();
+    List<Long> quantities = new ArrayList<>();
+    orderBookManager.forEachRecordAtLevel("ETHBTC", Side.buy, 100, order -> {
+      orderIds.add(order.getNumericOrderId());
+      quantities.add(order.getQuantity());
+      assertEquals("ETHBTC", order.getInstrument());
+    });
+    assertEquals(Arrays.asList(2L, 3L, 1L), orderIds);
+    assertEquals(Arrays.asList(6L, 2L, 8L), quantities);
+    assertEquals(16, orderBookManager.getTotalQuantityAtLevel("ETHBTC", Side.buy, 100));
+    assertEquals(3, orderBookManager.getOrderNumAtLevel("ETHBTC", Side.buy, 100));
+    assertEquals(-1, orderBookManager.getOrderNumAtLevel("XBTUSD", Side.buy, 100));
+  }
+}
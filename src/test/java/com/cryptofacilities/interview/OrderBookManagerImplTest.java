@@ -11,6 +11,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -38,32 +40,136 @@ public class OrderBookManagerImplTest {
     verify(mockedOrderBook, times(1)).addOrder(orderOne);
   }
 
+  @Test
+  public void testAddOrderWithMatching() {
+    FillListener fillListener = (resting, incoming, price, quantity) -> {};
+    testOrderBookManager = new OrderBookManagerImpl(fillListener);
+
+    testOrderBookManager.addOrder(orderOne);
+    verify(mockedOrderBook, times(1)).matchOrder(eq(orderOne), any(FillListener.class));
+    verify(mockedOrderBook, times(1)).addOrder(orderOne);
+  }
+
+  @Test
+  public void testAddOrderWithRestingIdIsRejected() {
+    testOrderBookManager.addOrder(orderOne);
+    Order duplicate = new Order(orderOne.getOrderId(), "ETHBTC", Side.buy, 3, 4);
+    try {
+      testOrderBookManager.addOrder(duplicate);
+      throw new AssertionError("expected an order with a resting id to be rejected");
+    } catch (IllegalArgumentException expected) {
+    }
+    verify(mockedOrderBook, times(0)).addOrder(duplicate);
+
+    //the first order is still the one the id reaches
+    assertEquals(OrderResult.OK, testOrderBookManager.deleteOrder(orderOne.getOrderId()));
+    verify(mockedOrderBook, times(1)).deleteOrder(orderOne);
+    assertEquals(0, testOrderBookManager.getLiveOrderCount());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testAddPriceLadderInstrumentAfterOrders() {
+    testOrderBookManager.addOrder(orderOne);
+    testOrderBookManager.addPriceLadderInstrument(orderOne.getInstrument(), 1, 1, 100);
+  }
+
   @Test
   public void testModifyOrder() {
     long newQuantity = 10;
 
     testOrderBookManager.addOrder(orderOne);
-    testOrderBookManager.modifyOrder(orderOne.getOrderId(), newQuantity);
+    assertEquals(OrderResult.OK, testOrderBookManager.modifyOrder(orderOne.getOrderId(), newQuantity));
     verify(mockedOrderBook, times(1)).modifyOrder(orderOne, newQuantity);
   }
 
+  @Test
+  public void testModifyOrderToZeroEvictsFromDirectory() {
+    testOrderBookManager.addOrder(orderOne);
+    assertEquals(OrderResult.OK, testOrderBookManager.modifyOrder(orderOne.getOrderId(), 0));
+    verify(mockedOrderBook, times(1)).modifyOrder(orderOne, 0);
+
+    assertEquals(0, testOrderBookManager.getLiveOrderCount());
+    assertEquals(OrderResult.ORDER_NOT_FOUND, testOrderBookManager.modifyOrder(orderOne.getOrderId(), 5));
+  }
+
+  @Test
+  public void testModifyOrderWithNumericId() {
+    Order numericOrder = new Order(7, "ETHBTC", Side.buy, 1, 2);
+
+    testOrderBookManager.addOrder(numericOrder);
+    testOrderBookManager.modifyOrder(7, 10);
+    verify(mockedOrderBook, times(1)).modifyOrder(numericOrder, 10);
+  }
+
+  @Test
+  public void testNumberAsStringIdIsTheNumericId() {
+    Order numericOrder = new Order(42, "ETHBTC", Side.buy, 1, 2);
+
+    testOrderBookManager.addOrder(numericOrder);
+    assertEquals(OrderResult.OK, testOrderBookManager.modifyOrder("42", 10));
+    verify(mockedOrderBook, times(1)).modifyOrder(numericOrder, 10);
+    assertEquals(OrderResult.OK, testOrderBookManager.deleteOrder("42"));
+    verify(mockedOrderBook, times(1)).deleteOrder(numericOrder);
+
+    //only the canonical form of the number is the same id
+    Order stringOrder = new Order("042", "ETHBTC", Side.buy, 1, 2);
+    testOrderBookManager.addOrder(stringOrder);
+    assertEquals(OrderResult.ORDER_NOT_FOUND, testOrderBookManager.deleteOrder(42));
+    assertEquals(OrderResult.OK, testOrderBookManager.deleteOrder("042"));
+    verify(mockedOrderBook, times(1)).deleteOrder(stringOrder);
+  }
+
+  @Test
+  public void testNumericStringIdsAreParsed() {
+    assertEquals(true, new Order("42", "ETHBTC", Side.buy, 1, 2).hasNumericOrderId());
+    assertEquals(42, new Order("42", "ETHBTC", Side.buy, 1, 2).getNumericOrderId());
+    assertEquals(true, Order.isNumericOrderId("0"));
+    assertEquals(true, Order.isNumericOrderId("-7"));
+    assertEquals(true, Order.isNumericOrderId(Long.toString(Long.MIN_VALUE)));
+    assertEquals(false, Order.isNumericOrderId("-0"));
+    assertEquals(false, Order.isNumericOrderId("+7"));
+    assertEquals(false, Order.isNumericOrderId("9223372036854775808"));
+    assertEquals(false, Order.isNumericOrderId("one"));
+    assertEquals(false, Order.isNumericOrderId(""));
+  }
+
   @Test
   public void testModifyOrderDoesntExist() {
-    //should catch the exception and continue
-    testOrderBookManager.modifyOrder(orderOne.getOrderId(), 10);
+    //should report the miss and continue
+    assertEquals(OrderResult.ORDER_NOT_FOUND, testOrderBookManager.modifyOrder(orderOne.getOrderId(), 10));
+    assertEquals(OrderResult.ORDER_NOT_FOUND, testOrderBookManager.modifyOrder(20, 10));
+    assertEquals(2, testOrderBookManager.getModifyMissCount());
+    assertEquals(0, testOrderBookManager.getDeleteMissCount());
   }
 
   @Test
   public void testDeleteOrder() {
     testOrderBookManager.addOrder(orderOne);
-    testOrderBookManager.deleteOrder(orderOne.getOrderId());
+    assertEquals(1, testOrderBookManager.getLiveOrderCount());
+    assertEquals(OrderResult.OK, testOrderBookManager.deleteOrder(orderOne.getOrderId()));
     verify(mockedOrderBook, times(1)).deleteOrder(orderOne);
+
+    //evicted from the directory, so a second delete is a miss
+    assertEquals(0, testOrderBookManager.getLiveOrderCount());
+    assertEquals(OrderResult.ORDER_NOT_FOUND, testOrderBookManager.deleteOrder(orderOne.getOrderId()));
+  }
+
+  @Test
+  public void testDeleteOrderWithNumericId() {
+    Order numericOrder = new Order(7, "ETHBTC", Side.buy, 1, 2);
+
+    testOrderBookManager.addOrder(numericOrder);
+    testOrderBookManager.deleteOrder(7);
+    testOrderBookManager.deleteOrder(8);
+    verify(mockedOrderBook, times(1)).deleteOrder(numericOrder);
   }
 
   @Test
   public void testDeleteOrderDoesntExist() {
-    //should catch the exception and continue
-    testOrderBookManager.deleteOrder(orderOne.getOrderId());
+    //should report the miss and continue
+    assertEquals(OrderResult.ORDER_NOT_FOUND, testOrderBookManager.deleteOrder(orderOne.getOrderId()));
+    assertEquals(1, testOrderBookManager.getDeleteMissCount());
+    assertEquals(0, testOrderBookManager.getModifyMissCount());
   }
 
   @Test
@@ -170,4 +276,14 @@ public class OrderBookManagerImplTest {
   public void testGetOrderFromIdThrowsException() throws OrderNotFoundException {
     testOrderBookManager.getOrderFromOrderId("20");
   }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetDepthRejectsBufferTooSmall() {
+    testOrderBookManager.getDepth("ETHBTC", Side.buy, 3, new long[8]);
+  }
+
+  @Test
+  public void testGetDepthOfUnknownInstrument() {
+    assertEquals(0, testOrderBookManager.getDepth("ETHBTC", Side.buy, 3, new long[9]));
+  }
 }
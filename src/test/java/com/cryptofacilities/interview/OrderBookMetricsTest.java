@@ -0,0 +1,105 @@
+package com.cryptofacilities.interview;
+
+import com.cryptofacilities.interview.OrderBookMetrics.Counter;
+import com.cryptofacilities.interview.OrderBookMetrics.Operation;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OrderBookMetricsTest {
+
+  @Test
+  public void testHistogramPercentilesAndReset() {
+    Histogram histogram = new Histogram();
+    for (long value = 1; value <= 10_000; value++) {
+      histogram.record(value);
+    }
+
+    HistogramSnapshot snapshot = histogram.snapshot();
+    assertEquals(10_000, snapshot.getTotalCount());
+    //16 buckets per power of two, so within 1/16 of the exact value
+    assertEquals(5_000, snapshot.getValueAtPercentile(50), 5_000 / 16);
+    assertEquals(9_900, snapshot.getValueAtPercentile(99), 9_900 / 16);
+    assertEquals(10_000, snapshot.getMax(), 10_000 / 16);
+    assertEquals(5_000.5, snapshot.getMean(), 5_000 / 16);
+
+    histogram.reset();
+    assertEquals(0, histogram.snapshot().getTotalCount());
+    histogram.record(7);
+    assertEquals(1, histogram.snapshot().getTotalCount());
+    assertEquals(7, histogram.snapshot().getValueAtPercentile(100));
+  }
+
+  @Test
+  public void testManagerRecordsOperationsAndCounters() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    //enabled after a book already has levels
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.buy, 100, 5));
+    OrderBookMetrics metrics = orderBookManager.enableMetrics();
+    assertEquals(1, metrics.getLevelCount());
+
+    orderBookManager.addOrder(new Order(2, "ETHBTC", Side.buy, 99, 5));
+    orderBookManager.addOrder(new Order("three", "XBTUSD", Side.sell, 9000, 5));
+    orderBookManager.modifyOrder(1, 10);
+    orderBookManager.modifyOrder("three", 1);
+    orderBookManager.modifyOrder(42, 1);
+    orderBookManager.deleteOrder(2);
+    orderBookManager.deleteOrder("missing");
+    orderBookManager.getBestPrice("ETHBTC", Side.buy);
+    orderBookManager.getDepth("ETHBTC", Side.buy, 5, new long[15]);
+
+    assertEquals(2, metrics.getLatency(Operation.ADD).getTotalCount());
+    assertEquals(1, metrics.getLatency(Operation.MODIFY_UP).getTotalCount());
+    assertEquals(1, metrics.getLatency(Operation.MODIFY_DOWN).getTotalCount());
+    assertEquals(1, metrics.getLatency(Operation.DELETE).getTotalCount());
+    assertEquals(1, metrics.getLatency(Operation.GET_BEST_PRICE).getTotalCount());
+    assertEquals(1, metrics.getLatency(Operation.GET_DEPTH).getTotalCount());
+    assertEquals(1, metrics.getCount(Counter.MODIFY_MISSES));
+    assertEquals(1, metrics.getCount(Counter.DELETE_MISSES));
+    assertEquals(2, metrics.getCount(Counter.LEVELS_CREATED));
+    assertEquals(1, metrics.getCount(Counter.LEVELS_REMOVED));
+    assertEquals(2, metrics.getLevelCount());
+    //the ETHBTC level at 99 was the second on its side, the XBTUSD one the first
+    assertEquals(2, metrics.getDepthHistogram().getMax());
+
+    metrics.reset();
+    assertEquals(0, metrics.getLatency(Operation.ADD).getTotalCount());
+    assertEquals(0, metrics.getCount(Counter.LEVELS_CREATED));
+    assertEquals(2, metrics.getLevelCount());
+
+    //a book created after metrics were enabled
+    orderBookManager.addOrder(new Order(4, "NEW", Side.buy, 1, 1));
+    orderBookManager.modifyOrder(4, 0);
+    assertEquals(1, metrics.getLatency(Operation.ADD).getTotalCount());
+    assertEquals(1, metrics.getCount(Counter.LEVELS_CREATED));
+    assertEquals(1, metrics.getCount(Counter.LEVELS_REMOVED));
+    assertEquals(2, metrics.getLevelCount());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testMetricsReadableThroughJmx() throws Exception {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    OrderBookMetrics metrics = orderBookManager.enableMetrics();
+    metrics.register("test");
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.buy, 100, 5));
+    orderBookManager.deleteOrder(2);
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("com.cryptofacilities.interview:type=OrderBookMetrics,name=" + ObjectName.quote("test"));
+    try {
+      assertEquals(1L, server.getAttribute(name, "LevelCount"));
+      assertTrue(server.getAttribute(name, "Latencies").toString().contains("ADD"));
+
+      server.invoke(name, "reset", null, null);
+      assertEquals(0, metrics.getCount(Counter.DELETE_MISSES));
+    } finally {
+      server.unregisterMBean(name);
+    }
+  }
+}
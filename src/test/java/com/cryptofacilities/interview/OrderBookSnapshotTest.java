@@ -0,0 +1,337 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OrderBookSnapshotTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRestoreKeepsLevelsAndQueueOrder() throws IOException {
+    Path snapshotFile = folder.getRoot().toPath().resolve("books.snapshot");
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    orderBookManager.addPriceLadderInstrument("ETHBTC", 5, 100, 4);
+    orderBookManager.addOrder(new Order("one", "ETHBTC", Side.buy, 100, 5));
+    orderBookManager.addOrder(new Order(2, "ETHBTC", Side.buy, 100, 7));
+    orderBookManager.addOrder(new Order(3, "ETHBTC", Side.buy, 95, 1));
+    orderBookManager.addOrder(new Order(4, "ETHBTC", Side.sell, 200, 2));
+    orderBookManager.modifyOrder("one", 8);
+    orderBookManager.addOrder(new Order(5, "XBTUSD", Side.sell, 9001, 3));
+    orderBookManager.addOrder(new Order(6, "XBTUSD", Side.sell, 9000, 4));
+    orderBookManager.addOrder(new Order(7, "EMPTY", Side.sell, 1, 1));
+    orderBookManager.deleteOrder(7);
+
+    OrderBookSnapshot snapshot = OrderBookSnapshot.capture(orderBookManager, 42);
+    snapshot.writeTo(snapshotFile);
+    assertEquals(6, snapshot.getOrderCount());
+
+    OrderBookManagerImpl restored = new OrderBookManagerImpl();
+    Map<String, Long> bookPositions = new HashMap<>();
+    assertEquals(42, OrderBookSnapshot.restoreBooks(snapshotFile, restored, bookPositions));
+    assertEquals(Long.valueOf(42), bookPositions.get("XBTUSD"));
+
+    assertEquals(6, restored.getLiveOrderCount());
+    assertEquals(Arrays.asList(new Order(2, "ETHBTC", Side.buy, 100, 7), new Order("one", "ETHBTC", Side.buy, 100, 8)),
+            restored.getOrdersAtLevel("ETHBTC", Side.buy, 100));
+    assertEquals(1, restored.getTotalQuantityAtLevel("ETHBTC", Side.buy, 95));
+    assertEquals(200, restored.getBestPrice("ETHBTC", Side.sell));
+    assertEquals(9000, restored.getBestPrice("XBTUSD", Side.sell));
+    assertEquals(-1, restored.getBestPrice("EMPTY", Side.sell));
+
+    //the directory was rebuilt, and the ladder book is still a ladder
+    assertEquals(OrderResult.OK, restored.deleteOrder("one"));
+    assertEquals(OrderResult.OK, restored.modifyOrder(6, 1));
+    try {
+      restored.addOrder(new Order(8, "ETHBTC", Side.buy, 101, 1));
+      throw new AssertionError("expected the price ladder to reject an off-tick price");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void testRestoreSnapshotThenJournalTail() throws Exception {
+    Path journalFile = folder.getRoot().toPath().resolve("orders.journal");
+    Path snapshotFile = folder.getRoot().toPath().resolve("books.snapshot");
+
+    try (JournaledOrderBookManager orderBookManager = new JournaledOrderBookManager(new OrderBookManagerImpl(),
+            journalFile, 8192, 0, snapshotFile, 1000)) {
+      for (int i = 0; i < 2_500; i++) {
+        orderBookManager.addOrder(new Order(i, "ETHBTC", Side.values()[i % 2], 100 + i % 2, 1));
+        if (i % 5 == 4)
+          orderBookManager.deleteOrder(i - 2);
+      }
+      orderBookManager.snapshot().get();
+      orderBookManager.modifyOrder(1, 10);
+      orderBookManager.deleteOrder(0);
+    }
+
+    OrderBookManagerImpl restored = new OrderBookManagerImpl();
+    try (JournaledOrderBookManager orderBookManager = new JournaledOrderBookManager(restored, journalFile, 8192, 0,
+            snapshotFile, 1000)) {
+      //only the journal written after the last snapshot is replayed
+      assertEquals(2, orderBookManager.getReplayedRecordCount());
+      assertEquals(1999, restored.getLiveOrderCount());
+      assertEquals(1000 + 9, restored.getTotalQuantityAtLevel("ETHBTC", Side.sell, 101));
+      assertEquals(OrderResult.ORDER_NOT_FOUND, restored.deleteOrder(0));
+    }
+
+    OrderBookManagerImpl replayedOnly = new OrderBookManagerImpl();
+    OrderJournal.replay(journalFile, replayedOnly);
+    assertEquals(replayedOnly.getLiveOrderCount(), restored.getLiveOrderCount());
+    assertEquals(replayedOnly.getOrdersAtLevel("ETHBTC", Side.buy, 100), restored.getOrdersAtLevel("ETHBTC", Side.buy, 100));
+    assertEquals(replayedOnly.getOrdersAtLevel("ETHBTC", Side.sell, 101), restored.getOrdersAtLevel("ETHBTC", Side.sell, 101));
+  }
+
+  @Test
+  public void testFailedSnapshotWritesAreCounted() throws Exception {
+    Path journalFile = folder.getRoot().toPath().resolve("orders.journal");
+    //the directory doesn't exist, so every write fails
+    Path snapshotFile = folder.getRoot().toPath().resolve("missing").resolve("books.snapshot");
+
+    try (JournaledOrderBookManager orderBookManager = new JournaledOrderBookManager(
+            new OrderBookManagerImpl(), journalFile, 8192, 0, snapshotFile, 1)) {
+      orderBookManager.addOrder(new Order(1, "ETHBTC", Side.buy, 100, 5));
+      try {
+        orderBookManager.snapshot().get();
+        throw new AssertionError("expected the snapshot write to fail");
+      } catch (ExecutionException expected) {
+      }
+      assertEquals(0, orderBookManager.getFailedSnapshotCount());
+
+      //found by the next mutation, which starts another snapshot
+      orderBookManager.addOrder(new Order(2, "ETHBTC", Side.buy, 100, 5));
+      assertEquals(1, orderBookManager.getFailedSnapshotCount());
+    }
+  }
+
+  @Test
+  public void testIncrementalCaptureInterleavedWithMutations() throws IOException {
+    Path journalFile = folder.getRoot().toPath().resolve("orders.journal");
+    Path snapshotFile = folder.getRoot().toPath().resolve("books.snapshot");
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {});
+
+    try (OrderJournal journal = new OrderJournal(journalFile, 8192, 0)) {
+      for (int i = 0; i < 100; i++) {
+        Order order = new Order(i, "INSTRUMENT" + i % 10, Side.buy, 100 + i % 3, 10);
+        journal.appendAdd(order);
+        orderBookManager.addOrder(order);
+      }
+
+      //capture one book after each mutation, while mutating books either side of the ones captured so far
+      OrderBookSnapshot.Capture capture = OrderBookSnapshot.begin(orderBookManager);
+      int nextOrderId = 100;
+      int mutation = 0;
+      while (!capture.captureBooks(journal.getPosition(), 1)) {
+        for (int instrument = 0; instrument < 10; instrument++) {
+          Order order = new Order(nextOrderId++, "INSTRUMENT" + instrument, Side.sell, 101 + mutation % 3, 4);
+          journal.appendAdd(order);
+          orderBookManager.addOrder(order);
+          journal.appendModify(instrument + 10 * mutation, 7);
+          orderBookManager.modifyOrder(instrument + 10 * mutation, 7);
+          journal.appendDelete(instrument + 10 * (mutation + 1));
+          orderBookManager.deleteOrder(instrument + 10 * (mutation + 1));
+        }
+        mutation++;
+      }
+      journal.sync();
+      capture.finish().writeTo(snapshotFile);
+
+      //a book created after the snapshot started, and more mutations after it finished
+      Order order = new Order(nextOrderId, "NEW", Side.buy, 1, 1);
+      journal.appendAdd(order);
+      orderBookManager.addOrder(order);
+      journal.appendDelete(99);
+      orderBookManager.deleteOrder(99);
+    }
+
+    OrderBookManagerImpl restored = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {});
+    OrderBookSnapshot.restore(snapshotFile, journalFile, restored);
+
+    assertEquals(orderBookManager.getLiveOrderCount(), restored.getLiveOrderCount());
+    assertEquals(1, restored.getTotalQuantityAtLevel("NEW", Side.buy, 1));
+    for (int instrument = 0; instrument < 10; instrument++) {
+      for (Side side : Side.values()) {
+        for (long price = 100; price <= 103; price++) {
+          assertEquals(orderBookManager.getOrdersAtLevel("INSTRUMENT" + instrument, side, price),
+                  restored.getOrdersAtLevel("INSTRUMENT" + instrument, side, price));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testLargeBookCapturedALevelAtATimeMatchesItsJournalPosition() throws IOException {
+    Path journalFile = folder.getRoot().toPath().resolve("orders.journal");
+    Path snapshotFile = folder.getRoot().toPath().resolve("books.snapshot");
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {});
+    //removed levels are recycled, so the capture must never hold on to one
+    orderBookManager.enablePooling(16, 16);
+    List<String> instruments = Arrays.asList("TREE", "LADDER");
+
+    int mutation = 0;
+    try (OrderJournal journal = new OrderJournal(journalFile, 8192, 0)) {
+      journal.appendPriceLadderInstrument("LADDER", 1, 1000, 8);
+      orderBookManager.addPriceLadderInstrument("LADDER", 1, 1000, 8);
+      for (int instrument = 0; instrument < 2; instrument++) {
+        for (int i = 0; i < 200; i++) {
+          long id = 1000 * instrument + i;
+          //every 7th order is an iceberg showing a third of its quantity
+          add(journal, orderBookManager, i % 7 == 0
+                  ? new Order(id, instruments.get(instrument), Side.buy, 1000 - i % 40, 30, 10)
+                  : new Order(id, instruments.get(instrument), Side.buy, 1000 - i % 40, 10));
+          add(journal, orderBookManager, new Order(id + 500, instruments.get(instrument), Side.sell, 1001 + i % 40,
+                  10));
+        }
+      }
+
+      //capture a few levels after each round of mutations, which fill, create, requeue, shrink and remove levels both
+      //ahead of and behind the capture
+      OrderBookSnapshot.Capture capture = OrderBookSnapshot.begin(orderBookManager);
+      int nextOrderId = 2000;
+      while (!capture.captureBooks(journal.getPosition(), 20)) {
+        for (int instrument = 0; instrument < 2 && mutation < 50; instrument++) {
+          String name = instruments.get(instrument);
+          long base = 1000 * instrument;
+          add(journal, orderBookManager, new Order(nextOrderId++, name, Side.buy, 960 - mutation, 10));
+          add(journal, orderBookManager, new Order(nextOrderId++, name, Side.buy, 980 - mutation % 20, 10));
+          //now and then a sell large enough to rest what's left, on a new level the next buy fills
+          add(journal, orderBookManager, new Order(nextOrderId++, name, Side.sell,
+                  orderBookManager.getBestPrice(name, Side.buy), mutation % 5 == 0 ? 100 : 12));
+          add(journal, orderBookManager, new Order(nextOrderId++, name, Side.buy,
+                  orderBookManager.getBestPrice(name, Side.sell), 12));
+
+          long modified = base + 40 * (mutation % 5) + 20 + mutation % 10;
+          journal.appendModify(modified, mutation % 2 == 0 ? 15 : 3);
+          orderBookManager.modifyOrder(modified, mutation % 2 == 0 ? 15 : 3);
+          long deleted = base + 40 * (mutation / 10 % 5) + 39 - mutation % 10;
+          journal.appendDelete(deleted);
+          orderBookManager.deleteOrder(deleted);
+          journal.appendDelete(deleted + 500);
+          orderBookManager.deleteOrder(deleted + 500);
+        }
+        mutation++;
+      }
+      journal.sync();
+      capture.finish().writeTo(snapshotFile);
+    }
+    assertTrue("expected the capture to be spread over many rounds of mutations, but took " + mutation,
+            mutation >= 20);
+
+    OrderBookManagerImpl restored = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {});
+    OrderBookSnapshot.restore(snapshotFile, journalFile, restored);
+
+    assertEquals(orderBookManager.getLiveOrderCount(), restored.getLiveOrderCount());
+    for (String instrument : instruments) {
+      for (Side side : Side.values()) {
+        for (long price = 900; price <= 1040; price++) {
+          List<Order> expected = orderBookManager.getOrdersAtLevel(instrument, side, price);
+          List<Order> actual = restored.getOrdersAtLevel(instrument, side, price);
+          assertEquals(expected, actual);
+          for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTotalQuantity(), actual.get(i).getTotalQuantity());
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testLevelsCreatedPartWayThroughABookAreLeftToTheJournal() throws IOException {
+    Path journalFile = folder.getRoot().toPath().resolve("orders.journal");
+    Path snapshotFile = folder.getRoot().toPath().resolve("books.snapshot");
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {});
+
+    try (OrderJournal journal = new OrderJournal(journalFile, 8192, 0)) {
+      add(journal, orderBookManager, new Order(1, "XBTUSD", Side.buy, 100, 10));
+      add(journal, orderBookManager, new Order(2, "XBTUSD", Side.buy, 99, 10));
+      add(journal, orderBookManager, new Order(3, "XBTUSD", Side.buy, 98, 10));
+      add(journal, orderBookManager, new Order(4, "XBTUSD", Side.sell, 110, 10));
+
+      OrderBookSnapshot.Capture capture = OrderBookSnapshot.begin(orderBookManager);
+      capture.captureBooks(journal.getPosition(), 1);
+      //fills the level captured already and the next one, then rests on a new level of the side not captured yet
+      add(journal, orderBookManager, new Order(5, "XBTUSD", Side.sell, 99, 25));
+      assertTrue(capture.captureBooks(journal.getPosition(), Long.MAX_VALUE));
+      journal.sync();
+      capture.finish().writeTo(snapshotFile);
+    }
+
+    OrderBookManagerImpl restored = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {});
+    OrderBookSnapshot.restore(snapshotFile, journalFile, restored);
+
+    assertEquals(3, restored.getLiveOrderCount());
+    assertEquals(10, restored.getTotalQuantityAtLevel("XBTUSD", Side.buy, 98));
+    assertEquals(-1, restored.getTotalQuantityAtLevel("XBTUSD", Side.buy, 99));
+    assertEquals(5, restored.getTotalQuantityAtLevel("XBTUSD", Side.sell, 99));
+  }
+
+  private static void add(OrderJournal journal, OrderBookManagerImpl orderBookManager, Order order) {
+    journal.appendAdd(order);
+    orderBookManager.addOrder(order);
+  }
+
+  @Test
+  public void testRestoredLadderKeepsItsGrowthLimit() throws IOException {
+    Path snapshotFile = folder.getRoot().toPath().resolve("books.snapshot");
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    orderBookManager.addPriceLadderInstrument("ETHBTC", 1, 1000, 4);
+    //grows the buy ladder as far as it can go
+    long lowestPrice = 1000 - 4 * PriceLadderOrderBookSide.MAX_GROWTH + 1;
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.buy, 1000, 5));
+    orderBookManager.addOrder(new Order(2, "ETHBTC", Side.buy, lowestPrice, 5));
+    OrderBookSnapshot.capture(orderBookManager, 0).writeTo(snapshotFile);
+
+    OrderBookManagerImpl restored = new OrderBookManagerImpl();
+    OrderBookSnapshot.restoreBooks(snapshotFile, restored, new HashMap<>());
+    assertEquals(5, restored.getTotalQuantityAtLevel("ETHBTC", Side.buy, lowestPrice));
+    for (OrderBookManagerImpl manager : Arrays.asList(orderBookManager, restored)) {
+      try {
+        manager.addOrder(new Order(3, "ETHBTC", Side.buy, lowestPrice - 1, 5));
+        throw new AssertionError("expected a price beyond the growth limit of the ladder to be rejected");
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void testCorruptSnapshotIsRejected() throws IOException {
+    Path snapshotFile = folder.getRoot().toPath().resolve("books.snapshot");
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.buy, 100, 5));
+    OrderBookSnapshot.capture(orderBookManager, 0).writeTo(snapshotFile);
+
+    //flip the quantity of the order
+    try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer lastByte = ByteBuffer.allocate(1);
+      //the last byte of the quantity, before the empty sell side and the checksum
+      long quantityOffset = channel.size() - 8 - 4 - 1;
+      channel.read(lastByte, quantityOffset);
+      lastByte.put(0, (byte) (lastByte.get(0) ^ 1)).rewind();
+      channel.write(lastByte, quantityOffset);
+    }
+
+    try {
+      OrderBookSnapshot.restoreBooks(snapshotFile, new OrderBookManagerImpl(), new HashMap<>());
+      throw new AssertionError("expected the corrupt snapshot to be rejected");
+    } catch (IOException expected) {
+      assertTrue(expected.getMessage().contains("checksum"));
+    }
+  }
+}
@@ -4,7 +4,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 
 public class OrderBookTest {
@@ -166,9 +169,190 @@ public class OrderBookTest {
     );
   }
 
+  @Test
+  public void testLevelAggregatesFollowModifyAndDelete() {
+    testOrderBook.addOrder(sellOrderOne);
+    testOrderBook.addOrder(sellOrderTwo);
+    testOrderBook.addOrder(sellOrderThree);
+
+    assertEquals(3, testOrderBook.getOrderNumAtLevel(Side.sell, 3));
+    assertEquals(29, testOrderBook.getTotalQuantityAtLevel(Side.sell, 3));
+    assertEquals(87, testOrderBook.getTotalVolumeAtLevel(Side.sell, 3));
+
+    testOrderBook.modifyOrder(sellOrderTwo, 2);
+    assertEquals(23, testOrderBook.getTotalQuantityAtLevel(Side.sell, 3));
+
+    testOrderBook.modifyOrder(sellOrderOne, 10);
+    assertEquals(28, testOrderBook.getTotalQuantityAtLevel(Side.sell, 3));
+
+    testOrderBook.deleteOrder(sellOrderThree);
+    assertEquals(2, testOrderBook.getOrderNumAtLevel(Side.sell, 3));
+    assertEquals(12, testOrderBook.getTotalQuantityAtLevel(Side.sell, 3));
+    assertEquals(36, testOrderBook.getTotalVolumeAtLevel(Side.sell, 3));
+  }
+
+  @Test
+  public void testMatchOrderSweepsLevelsInPriceTimePriority() {
+    Order sellOrderCheaper = new Order("5", "ETHBTC", Side.sell, 2, 4);
+    testOrderBook.addOrder(sellOrderOne);
+    testOrderBook.addOrder(sellOrderTwo);
+    testOrderBook.addOrder(sellOrderCheaper);
+
+    List<String> fills = new ArrayList<>();
+    Order buyOrder = new Order("6", "ETHBTC", Side.buy, 3, 12);
+    testOrderBook.matchOrder(buyOrder, (resting, incoming, price, quantity) ->
+            fills.add(resting.getOrderId() + "@" + price + "x" + quantity));
+
+    assertEquals(Arrays.asList("5@2x4", "2@3x5", "3@3x3"), fills);
+    assertEquals(0, buyOrder.getQuantity());
+    assertEquals(3, testOrderBook.getBestPrice(Side.sell));
+    assertEquals(1, testOrderBook.getOrderNumAtLevel(Side.sell, 3));
+    assertEquals(5, testOrderBook.getTotalQuantityAtLevel(Side.sell, 3));
+    assertEquals(-1, testOrderBook.getOrderNumAtLevel(Side.sell, 2));
+  }
+
+  @Test
+  public void testMatchOrderStopsAtLimitPrice() {
+    testOrderBook.addOrder(sellOrderOne);
+
+    Order buyOrder = new Order("6", "ETHBTC", Side.buy, 2, 12);
+    testOrderBook.matchOrder(buyOrder, (resting, incoming, price, quantity) -> {
+      throw new AssertionError("buy below the best ask should not fill");
+    });
+
+    assertEquals(12, buyOrder.getQuantity());
+    assertEquals(5, testOrderBook.getTotalQuantityAtLevel(Side.sell, 3));
+  }
+
+  @Test
+  public void testMatchOrderLeavesRemainder() {
+    testOrderBook.addOrder(buyOrderOne);
+
+    Order sellOrder = new Order("6", "ETHBTC", Side.sell, 1, 5);
+    testOrderBook.matchOrder(sellOrder, (resting, incoming, price, quantity) -> {});
+
+    assertEquals(3, sellOrder.getQuantity());
+    assertEquals(0, buyOrderOne.getQuantity());
+    assertEquals(-1, testOrderBook.getBestPrice(Side.buy));
+  }
+
+  @Test
+  public void testPriceLadderOrderBook() {
+    testOrderBook = new OrderBook(1, 3, 4);
+    testOrderBook.addOrder(buyOrderOne);
+    testOrderBook.addOrder(sellOrderOne);
+    testOrderBook.addOrder(sellOrderTwo);
+
+    assertEquals(1, testOrderBook.getBestPrice(Side.buy));
+    assertEquals(3, testOrderBook.getBestPrice(Side.sell));
+    assertEquals(13, testOrderBook.getTotalQuantityAtLevel(Side.sell, 3));
+
+    Order buyOrder = new Order("6", "ETHBTC", Side.buy, 3, 6);
+    testOrderBook.matchOrder(buyOrder, (resting, incoming, price, quantity) -> {});
+
+    assertEquals(0, buyOrder.getQuantity());
+    assertEquals(7, testOrderBook.getTotalQuantityAtLevel(Side.sell, 3));
+
+    testOrderBook.deleteOrder(sellOrderTwo);
+    assertEquals(-1, testOrderBook.getBestPrice(Side.sell));
+  }
+
+  @Test
+  public void testOffTickOrderIsRejectedBeforeMatching() {
+    testOrderBook = new OrderBook(10, 100, 8);
+    Order sellOrder = new Order("1", "ETHBTC", Side.sell, 100, 5);
+    testOrderBook.addOrder(sellOrder);
+
+    List<Long> fills = new ArrayList<>();
+    try {
+      testOrderBook.matchOrder(new Order("2", "ETHBTC", Side.buy, 105, 8), (resting, incoming, price, quantity) -> fills.add(quantity));
+      throw new AssertionError("expected the price ladder to reject an off-tick price");
+    } catch (IllegalArgumentException expected) {
+    }
+
+    assertEquals(Collections.emptyList(), fills);
+    assertEquals(5, sellOrder.getQuantity());
+    assertEquals(5, testOrderBook.getTotalQuantityAtLevel(Side.sell, 100));
+  }
+
   @Test
   public void testDeleteNonExistentPriceLevel() {
     //this should never happen but just to be safe
     testOrderBook.deleteOrder(sellOrderOne);
   }
+
+  @Test
+  public void testForEachOrderAtLevelVisitsQueueOrder() {
+    testOrderBook.addOrder(sellOrderOne);
+    testOrderBook.addOrder(sellOrderTwo);
+    testOrderBook.addOrder(sellOrderThree);
+    testOrderBook.modifyOrder(sellOrderOne, 20);
+
+    List<Order> visited = new ArrayList<>();
+    testOrderBook.forEachOrderAtLevel(Side.sell, 3, visited::add);
+    assertEquals(testOrderBook.getOrdersAtLevel(Side.sell, 3), visited);
+    assertEquals(Arrays.asList(sellOrderTwo, sellOrderThree, sellOrderOne), visited);
+
+    visited.clear();
+    testOrderBook.forEachOrderAtLevel(Side.sell, 4, visited::add);
+    testOrderBook.forEachOrderAtLevel(Side.buy, 3, visited::add);
+    assertEquals(Collections.emptyList(), visited);
+  }
+
+  @Test
+  public void testWalkDepthVisitsBestLevelsFirst() {
+    testOrderBook = new OrderBook(1, 5, 4);
+    testOrderBook.addOrder(new Order("a", "ETHBTC", Side.buy, 4, 1));
+    testOrderBook.addOrder(new Order("b", "ETHBTC", Side.buy, 2, 2));
+    testOrderBook.addOrder(new Order("c", "ETHBTC", Side.buy, 4, 3));
+    testOrderBook.addOrder(new Order("d", "ETHBTC", Side.buy, 1, 4));
+    testOrderBook.addOrder(new Order("e", "ETHBTC", Side.buy, 9, 5));
+
+    List<String> visited = new ArrayList<>();
+    int levels = testOrderBook.walkDepth(Side.buy, 3, new DepthVisitor() {
+      @Override
+      public boolean onLevel(int level, long price, long totalQuantity, int orderCount) {
+        visited.add(level + ":" + price + "/" + totalQuantity + "/" + orderCount);
+        return price == 4;
+      }
+
+      @Override
+      public void onOrder(int level, Order order) {
+        visited.add(level + ":" + order.getOrderId());
+      }
+    });
+
+    assertEquals(3, levels);
+    assertEquals(Arrays.asList("0:9/5/1", "1:4/4/2", "1:a", "1:c", "2:2/2/1"), visited);
+    assertEquals(4, testOrderBook.walkDepth(Side.buy, 10, (level, price, totalQuantity, orderCount) -> false));
+    assertEquals(0, testOrderBook.walkDepth(Side.sell, 10, (level, price, totalQuantity, orderCount) -> true));
+  }
+
+  @Test
+  public void testGetDepthOfSparseBook() {
+    testOrderBook.addOrder(new Order("a", "ETHBTC", Side.sell, 1_000, 1));
+    testOrderBook.addOrder(new Order("b", "ETHBTC", Side.sell, 5, 2));
+    testOrderBook.addOrder(new Order("c", "ETHBTC", Side.sell, 1_000, 3));
+    testOrderBook.addOrder(new Order("d", "ETHBTC", Side.sell, 70_000, 4));
+
+    long[] buffer = new long[3 * 4];
+    assertEquals(2, testOrderBook.getDepth(Side.sell, 2, buffer));
+    assertEquals(Arrays.asList(5L, 2L, 1L, 1_000L, 4L, 2L, 0L, 0L, 0L, 0L, 0L, 0L), asList(buffer));
+
+    //the buffer is re-used, only the levels that exist are written
+    testOrderBook.deleteOrder(testOrderBook.getOrdersAtLevel(Side.sell, 5).get(0));
+    assertEquals(2, testOrderBook.getDepth(Side.sell, 4, buffer));
+    assertEquals(1_000, buffer[0]);
+    assertEquals(70_000, buffer[3]);
+    assertEquals(4, buffer[4]);
+    assertEquals(0, testOrderBook.getDepth(Side.buy, 4, buffer));
+  }
+
+  private static List<Long> asList(long[] values) {
+    List<Long> list = new ArrayList<>();
+    for(long value : values) {
+      list.add(value);
+    }
+    return list;
+  }
 }
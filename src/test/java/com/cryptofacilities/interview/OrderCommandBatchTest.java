@@ -0,0 +1,136 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OrderCommandBatchTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testEveryCommandGetsItsResult() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    orderBookManager.addPriceLadderInstrument("LADDER", 5, 100, 8);
+    OrderCommandBatch batch = new OrderCommandBatch(16);
+
+    int add = batch.addOrder(1, "ETHBTC", Side.buy, 100, 5);
+    int addString = batch.addOrder("two", "ETHBTC", Side.buy, 100, 3);
+    int offTick = batch.addOrder(3, "LADDER", Side.buy, 101, 3);
+    int modify = batch.modifyOrder(1, 7);
+    int modifyMissing = batch.modifyOrder(3, 7);
+    int delete = batch.deleteOrder("two");
+    int deleteAgain = batch.deleteOrder("two");
+    int addLadder = batch.addOrder(4, "LADDER", Side.sell, 105, 1);
+    orderBookManager.applyBatch(batch);
+
+    assertEquals(OrderResult.OK, batch.getResult(add));
+    assertEquals(OrderResult.OK, batch.getResult(addString));
+    assertEquals(OrderResult.REJECTED, batch.getResult(offTick));
+    assertEquals(OrderResult.OK, batch.getResult(modify));
+    assertEquals(OrderResult.ORDER_NOT_FOUND, batch.getResult(modifyMissing));
+    assertEquals(OrderResult.OK, batch.getResult(delete));
+    assertEquals(OrderResult.ORDER_NOT_FOUND, batch.getResult(deleteAgain));
+    assertEquals(OrderResult.OK, batch.getResult(addLadder));
+
+    assertEquals(Arrays.asList(new Order(1, "ETHBTC", Side.buy, 100, 7)),
+            orderBookManager.getOrdersAtLevel("ETHBTC", Side.buy, 100));
+    assertEquals(105, orderBookManager.getBestPrice("LADDER", Side.sell));
+    assertEquals(2, orderBookManager.getLiveOrderCount());
+  }
+
+  @Test
+  public void testRejectedCrossingAddLeavesTheBookUnchanged() {
+    List<String> events = new ArrayList<>();
+    L2Book l2Book = new L2Book();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl(
+            (resting, incoming, price, quantity) -> events.add("fill " + quantity), 0, l2Book,
+            (instrument, sequence, type, order, quantity) -> events.add(type + " " + order.getOrderId()));
+    orderBookManager.addPriceLadderInstrument("LADDER", 10, 100, 8);
+    orderBookManager.addOrder(new Order(1, "LADDER", Side.sell, 100, 5));
+    orderBookManager.flushL2Deltas();
+    events.clear();
+
+    //crosses the resting sell, but is off the tick
+    OrderCommandBatch batch = new OrderCommandBatch(1);
+    batch.addOrder(2, "LADDER", Side.buy, 105, 8);
+    orderBookManager.applyBatch(batch);
+
+    assertEquals(OrderResult.REJECTED, batch.getResult(0));
+    assertEquals(1, orderBookManager.getRejectedCommandCount());
+    assertEquals(Collections.emptyList(), events);
+    assertEquals(Collections.singletonList(new Order(1, "LADDER", Side.sell, 100, 5)),
+            orderBookManager.getOrdersAtLevel("LADDER", Side.sell, 100));
+    assertEquals(-1, orderBookManager.getBestPrice("LADDER", Side.buy));
+    assertEquals(5, l2Book.getTotalQuantityAtLevel("LADDER", Side.sell, 100));
+    assertEquals(1, orderBookManager.getLiveOrderCount());
+  }
+
+  @Test
+  public void testBatchIsReusedAfterClear() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    OrderCommandBatch batch = new OrderCommandBatch(2);
+    batch.addOrder(1, "ETHBTC", Side.sell, 100, 5);
+    batch.addOrder(2, "XBTUSD", Side.sell, 100, 5);
+    assertTrue(batch.isFull());
+    try {
+      batch.deleteOrder(1);
+      throw new AssertionError("expected a full batch to refuse more commands");
+    } catch (IllegalStateException expected) {
+    }
+    orderBookManager.applyBatch(batch);
+
+    batch.clear();
+    assertEquals(0, batch.size());
+    assertEquals(0, batch.deleteOrder(1));
+    orderBookManager.applyBatch(batch);
+    assertEquals(OrderResult.OK, batch.getResult(0));
+    assertEquals(1, orderBookManager.getLiveOrderCount());
+  }
+
+  @Test
+  public void testL2DeltasAreFlushedOncePerBatch() {
+    L2Book l2Book = new L2Book();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl(null, 0, l2Book);
+    OrderCommandBatch batch = new OrderCommandBatch(64);
+    for(int i = 0; i < 50; i++) {
+      batch.addOrder(i, "ETHBTC", Side.buy, 100, 1);
+    }
+    batch.modifyOrder(0, 10);
+    orderBookManager.applyBatch(batch);
+
+    assertEquals(1, l2Book.getUpdateCount());
+    assertEquals(59, l2Book.getTotalQuantityAtLevel("ETHBTC", Side.buy, 100));
+  }
+
+  @Test
+  public void testOtherManagersApplyCommandsOneByOne() throws Exception {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    try (JournaledOrderBookManager journaled = new JournaledOrderBookManager(orderBookManager,
+            folder.getRoot().toPath().resolve("orders.journal"), 8192, 0)) {
+      OrderCommandBatch batch = new OrderCommandBatch(4);
+      batch.addOrder(1, "ETHBTC", Side.sell, 100, 5);
+      batch.modifyOrder(1, 2);
+      batch.deleteOrder(2);
+      journaled.applyBatch(batch);
+
+      assertEquals(OrderResult.OK, batch.getResult(1));
+      assertEquals(OrderResult.ORDER_NOT_FOUND, batch.getResult(2));
+    }
+    assertEquals(2, orderBookManager.getTotalQuantityAtLevel("ETHBTC", Side.sell, 100));
+
+    //every command was journalled
+    OrderBookManagerImpl replayed = new OrderBookManagerImpl();
+    assertEquals(3, OrderJournal.replay(folder.getRoot().toPath().resolve("orders.journal"), replayed));
+    assertEquals(2, replayed.getTotalQuantityAtLevel("ETHBTC", Side.sell, 100));
+  }
+}
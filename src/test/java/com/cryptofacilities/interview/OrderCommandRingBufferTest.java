@@ -0,0 +1,175 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OrderCommandRingBufferTest {
+
+  @Test
+  public void testCommandsAreAppliedInOrder() throws InterruptedException {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    OrderCommandRingBuffer ringBuffer = new OrderCommandRingBuffer(orderBookManager, 8, 4,
+            WaitStrategy.YIELDING, OrderCommandRingBuffer.Backpressure.BLOCK);
+    ringBuffer.start();
+
+    assertTrue(ringBuffer.addOrder("1", "ETHBTC", Side.buy, 10, 5));
+    assertTrue(ringBuffer.addOrder(2, "ETHBTC", Side.buy, 10, 7));
+    assertTrue(ringBuffer.modifyOrder("1", 9));
+    assertTrue(ringBuffer.modifyOrder(2, 3));
+    assertTrue(ringBuffer.addOrder(3, "ETHBTC", Side.sell, 12, 1));
+    assertTrue(ringBuffer.deleteOrder(3));
+    assertTrue(ringBuffer.deleteOrder("missing"));
+    ringBuffer.close();
+
+    assertEquals(7, ringBuffer.getAppliedCount());
+    assertEquals(0, ringBuffer.getFailedCommandCount());
+    assertEquals(12, orderBookManager.getTotalQuantityAtLevel("ETHBTC", Side.buy, 10));
+    assertEquals(2, orderBookManager.getOrderNumAtLevel("ETHBTC", Side.buy, 10));
+    assertEquals(-1, orderBookManager.getBestPrice("ETHBTC", Side.sell));
+    assertEquals(1, orderBookManager.getDeleteMissCount());
+  }
+
+  @Test
+  public void testRejectWhenFull() throws InterruptedException {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    OrderCommandRingBuffer ringBuffer = new OrderCommandRingBuffer(orderBookManager, 4, 4,
+            WaitStrategy.BUSY_SPIN, OrderCommandRingBuffer.Backpressure.REJECT);
+
+    //nothing consumes until started, so the ring fills up
+    for (int i = 0; i < 4; i++) {
+      assertTrue(ringBuffer.addOrder(i, "ETHBTC", Side.buy, 10, 1));
+    }
+    assertFalse(ringBuffer.addOrder(4, "ETHBTC", Side.buy, 10, 1));
+
+    ringBuffer.start();
+    ringBuffer.close();
+
+    assertEquals(4, ringBuffer.getAppliedCount());
+    assertEquals(4, orderBookManager.getLiveOrderCount());
+  }
+
+  @Test
+  public void testPublishAfterCloseIsRefused() throws InterruptedException {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    OrderCommandRingBuffer ringBuffer = new OrderCommandRingBuffer(orderBookManager, 2, 2,
+            WaitStrategy.YIELDING, OrderCommandRingBuffer.Backpressure.BLOCK);
+    assertTrue(ringBuffer.addOrder(1, "ETHBTC", Side.buy, 10, 1));
+    assertTrue(ringBuffer.addOrder(2, "ETHBTC", Side.buy, 10, 1));
+
+    //the ring is full and nothing consumes it, so this producer waits until the close
+    boolean[] published = {true};
+    Thread producer = new Thread(() -> published[0] = ringBuffer.addOrder(3, "ETHBTC", Side.buy, 10, 1));
+    producer.start();
+    ringBuffer.close();
+    producer.join(10_000);
+    assertFalse(producer.isAlive());
+    //never started, so the close applied what was published on this thread. The waiting producer is normally
+    //refused, but if it claimed the space the close freed before seeing it, its command was applied too
+    long refusedOrApplied = published[0] ? 3 : 2;
+    assertEquals(refusedOrApplied, ringBuffer.getAppliedCount());
+    assertEquals(refusedOrApplied, orderBookManager.getLiveOrderCount());
+    assertFalse(ringBuffer.addOrder(6, "ETHBTC", Side.buy, 10, 1));
+    try {
+      ringBuffer.start();
+      throw new AssertionError("expected a closed ring buffer not to start");
+    } catch (IllegalStateException expected) {
+    }
+
+    OrderCommandRingBuffer started = new OrderCommandRingBuffer(orderBookManager, 2, 2,
+            WaitStrategy.YIELDING, OrderCommandRingBuffer.Backpressure.BLOCK);
+    started.start();
+    assertTrue(started.addOrder(4, "ETHBTC", Side.buy, 10, 1));
+    started.close();
+    assertFalse(started.addOrder(5, "ETHBTC", Side.buy, 10, 1));
+    assertFalse(started.deleteOrder(4));
+    assertEquals(1, started.getAppliedCount());
+    assertEquals(refusedOrApplied + 1, orderBookManager.getLiveOrderCount());
+  }
+
+  @Test
+  public void testAddsTakePooledOrders() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    orderBookManager.enablePooling(1, 1);
+    int ethbtc = orderBookManager.registerInstrument("ETHBTC");
+    orderBookManager.addOrder(ethbtc, 1, Side.buy, 10, 1);
+    Order pooled = orderBookManager.getOrdersAtLevel(ethbtc, Side.buy, 10).get(0);
+    orderBookManager.deleteOrder(1);
+
+    OrderCommandRingBuffer ringBuffer = new OrderCommandRingBuffer(orderBookManager, 4, 4,
+            WaitStrategy.YIELDING, OrderCommandRingBuffer.Backpressure.BLOCK);
+    ringBuffer.addOrder(2, "ETHBTC", Side.buy, 11, 3);
+    ringBuffer.close();
+
+    assertSame(pooled, orderBookManager.getOrdersAtLevel(ethbtc, Side.buy, 11).get(0));
+    assertEquals(new Order(2, "ETHBTC", Side.buy, 11, 3), pooled);
+  }
+
+  @Test
+  public void testFailedCommandsAreCountedAndSkipped() throws InterruptedException {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    OrderCommandRingBuffer ringBuffer = new OrderCommandRingBuffer(orderBookManager, 4, 1,
+            WaitStrategy.SLEEPING, OrderCommandRingBuffer.Backpressure.BLOCK);
+    ringBuffer.start();
+
+    //an order without a side can't be rested, so the manager throws
+    ringBuffer.addOrder(1, "ETHBTC", null, 10, 1);
+    ringBuffer.addOrder(2, "ETHBTC", Side.buy, 10, 1);
+    ringBuffer.close();
+
+    assertEquals(1, ringBuffer.getFailedCommandCount());
+    assertEquals(1, orderBookManager.getLiveOrderCount());
+  }
+
+  @Test
+  public void testConcurrentProducers() throws InterruptedException {
+    final int producerCount = 4;
+    final int ordersPerProducer = 20_000;
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    OrderCommandRingBuffer ringBuffer = new OrderCommandRingBuffer(orderBookManager, 64, 16,
+            WaitStrategy.YIELDING, OrderCommandRingBuffer.Backpressure.BLOCK);
+    ringBuffer.start();
+
+    CountDownLatch startSignal = new CountDownLatch(1);
+    List<Thread> producers = new ArrayList<>();
+    for (int producer = 0; producer < producerCount; producer++) {
+      final int firstOrderId = producer * ordersPerProducer;
+      Thread thread = new Thread(() -> {
+        try {
+          startSignal.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int i = 0; i < ordersPerProducer; i++) {
+          long orderId = firstOrderId + i;
+          ringBuffer.addOrder(orderId, "ETHBTC", Side.buy, 100 + i % 10, 1);
+          //every other order is deleted again by the producer that added it
+          if (i % 2 == 0)
+            ringBuffer.deleteOrder(orderId);
+        }
+      });
+      thread.start();
+      producers.add(thread);
+    }
+
+    startSignal.countDown();
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    ringBuffer.close();
+
+    assertEquals(producerCount * ordersPerProducer * 3 / 2, ringBuffer.getAppliedCount());
+    assertEquals(0, orderBookManager.getDeleteMissCount());
+    assertEquals(producerCount * ordersPerProducer / 2, orderBookManager.getLiveOrderCount());
+    //orders at 101 have odd sequence numbers, so none of them were deleted
+    assertEquals(producerCount * ordersPerProducer / 10,
+            orderBookManager.getOrderNumAtLevel("ETHBTC", Side.buy, 101));
+  }
+}
@@ -0,0 +1,113 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OrderFlowReplayTest {
+
+  private static final int ORDERS = 30_000;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path file;
+  private long messageCount;
+
+  @Before
+  public void writeOrderFlow() throws IOException {
+    file = folder.getRoot().toPath().resolve("flow.bin");
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    OrderMessageEncoder encoder = new OrderMessageEncoder(buffer);
+    try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      for(int i = 0; i < ORDERS; i++) {
+        if(buffer.remaining() < 128) {
+          buffer.flip();
+          channel.write(buffer);
+          buffer.clear();
+        }
+        //instruments are defined as they first appear, so some come after a slice's start
+        if(i < 5_000 && i % 1_000 == 0) {
+          encoder.encodeInstrument(i / 1_000, "INSTRUMENT" + i / 1_000);
+          messageCount++;
+        }
+        encoder.encodeAdd(i % 5_000 / 1_000, i, Side.values()[i % 2], 100 + i % 13, 10);
+        messageCount++;
+        if(i >= 50) {
+          encoder.encodeModify(i - 50, 3);
+          messageCount++;
+        }
+        if(i >= 2_000 && i % 2 == 0) {
+          encoder.encodeDelete(i - 2_000);
+          messageCount++;
+        }
+      }
+      buffer.flip();
+      channel.write(buffer);
+    }
+  }
+
+  @Test
+  public void testReplayMatchesReference() throws IOException {
+    OrderBookManagerImpl reference = new OrderBookManagerImpl();
+    OrderMessageReplay.replay(file, new OrderMessageDecoder(OrderMessageDecoder.handlerFor(reference)));
+
+    //a small window, so many messages straddle two windows
+    OrderFlowReplay replay = new OrderFlowReplay(file, 1 << 17, 100, 10_000);
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    List<Long> progressEvents = new ArrayList<>();
+    OrderFlowReplay.Result result = replay.replay(orderBookManager,
+            (events, offset, elapsedNanos, remainingNanos, checksum) -> {
+              progressEvents.add(events);
+              assertTrue(offset > 0 && remainingNanos >= 0);
+            });
+
+    assertEquals(messageCount, result.getEvents());
+    assertEquals(file.toFile().length(), result.getEndOffset());
+    assertEquals(0, result.getRejectedCount());
+    assertEquals(0, result.getNotFoundCount());
+    assertEquals(OrderFlowReplay.checksum(reference), result.getChecksum());
+    assertEquals(reference.getLiveOrderCount(), orderBookManager.getLiveOrderCount());
+    assertEquals(messageCount / 10_000, progressEvents.size());
+    for(int i = 0; i < progressEvents.size(); i++) {
+      assertTrue(progressEvents.get(i) >= (i + 1) * 10_000L);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNonPositiveBatchSizeIsRejected() {
+    new OrderFlowReplay(file, 1 << 17, 0, 0);
+  }
+
+  @Test
+  public void testSlicesReplayTheWholeFile() throws IOException {
+    OrderFlowReplay replay = new OrderFlowReplay(file, 1 << 17, 64, 0);
+    long wholeChecksum = replay.replay(new OrderBookManagerImpl(), null).getChecksum();
+
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    OrderFlowReplay.Result first = replay.replay(orderBookManager, 0, file.toFile().length() / 3, null);
+    assertTrue(first.getEndOffset() <= file.toFile().length() / 3);
+    assertNotEquals(wholeChecksum, first.getChecksum());
+    OrderFlowReplay.Result rest = replay.replay(orderBookManager, first.getEndOffset(), Long.MAX_VALUE, null);
+    assertEquals(messageCount, first.getEvents() + rest.getEvents());
+    assertEquals(wholeChecksum, rest.getChecksum());
+
+    //a slice on its own still knows the instruments defined before it, but not the orders
+    OrderFlowReplay.Result slice = replay.replay(new OrderBookManagerImpl(), first.getEndOffset(), Long.MAX_VALUE, null);
+    assertEquals(0, slice.getRejectedCount());
+    assertTrue(slice.getNotFoundCount() > 0);
+  }
+}
@@ -0,0 +1,93 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs millions of order lifecycles through a real OrderBookManagerImpl and checks that nothing is retained once the
+ * orders are gone, i.e. the heap stays flat.
+ */
+public class OrderLifecycleSoakTest {
+
+  private static final int CYCLES = 2_000_000;
+
+  /**
+   * A leak of even one small object per cycle would retain well over this much over the run.
+   */
+  private static final long MAX_HEAP_GROWTH_BYTES = 16 * 1024 * 1024;
+
+  @Test
+  public void testHeapStaysFlatOverAddDeleteCycles() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+
+    runCycles(orderBookManager, CYCLES / 10);
+    long heapAfterWarmup = usedHeap();
+
+    runCycles(orderBookManager, CYCLES);
+    long heapAfterSoak = usedHeap();
+
+    assertEquals(0, orderBookManager.getLiveOrderCount());
+    assertEquals(-1, orderBookManager.getBestPrice("ETHBTC", Side.buy));
+    assertTrue("heap grew by " + (heapAfterSoak - heapAfterWarmup) + " bytes",
+            heapAfterSoak - heapAfterWarmup < MAX_HEAP_GROWTH_BYTES);
+  }
+
+  @Test
+  public void testHeapStaysFlatOverFillCycles() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {});
+
+    runFillCycles(orderBookManager, CYCLES / 10);
+    long heapAfterWarmup = usedHeap();
+
+    runFillCycles(orderBookManager, CYCLES);
+    long heapAfterSoak = usedHeap();
+
+    assertEquals(0, orderBookManager.getLiveOrderCount());
+    assertEquals(-1, orderBookManager.getBestPrice("ETHBTC", Side.sell));
+    assertTrue("heap grew by " + (heapAfterSoak - heapAfterWarmup) + " bytes",
+            heapAfterSoak - heapAfterWarmup < MAX_HEAP_GROWTH_BYTES);
+  }
+
+  /**
+   * Every cycle rests a few orders and removes them again by delete, modify to zero and the numeric id API.
+   */
+  private static void runCycles(OrderBookManagerImpl orderBookManager, int cycles) {
+    for (int cycle = 0; cycle < cycles; cycle++) {
+      String orderId = "order-" + cycle;
+      long price = 100 + cycle % 50;
+
+      orderBookManager.addOrder(new Order(orderId, "ETHBTC", Side.buy, price, 10));
+      orderBookManager.addOrder(new Order(cycle, "ETHBTC", Side.buy, price, 10));
+      orderBookManager.modifyOrder(orderId, 20);
+      orderBookManager.modifyOrder(cycle, 5);
+
+      if (cycle % 2 == 0) {
+        orderBookManager.deleteOrder(orderId);
+        orderBookManager.deleteOrder(cycle);
+      } else {
+        orderBookManager.modifyOrder(orderId, 0);
+        orderBookManager.modifyOrder(cycle, 0);
+      }
+    }
+  }
+
+  /**
+   * Every cycle rests a sell and then completely fills it with a buy.
+   */
+  private static void runFillCycles(OrderBookManagerImpl orderBookManager, int cycles) {
+    for (int cycle = 0; cycle < cycles; cycle++) {
+      orderBookManager.addOrder(new Order(cycle, "ETHBTC", Side.sell, 100, 10));
+      orderBookManager.addOrder(new Order(-cycle - 1, "ETHBTC", Side.buy, 100, 10));
+    }
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,154 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class OrderMessageDecoderTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testMessagesAreAppliedToTheBook() {
+    ByteBuffer buffer = ByteBuffer.allocate(1024);
+    OrderMessageEncoder encoder = new OrderMessageEncoder(buffer);
+    encoder.encodeInstrument(0, "XBTUSD");
+    encoder.encodeInstrument(1, "ETHBTC");
+    encoder.encodeAdd(1, 1, Side.buy, 100, 5);
+    encoder.encodeAdd(1, 2, Side.buy, 100, 6);
+    encoder.encodeAdd(0, 3, Side.sell, 9000, 1);
+    encoder.encodeModify(1, 9);
+    encoder.encodeDelete(3);
+    buffer.flip();
+
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    assertEquals(7, new OrderMessageDecoder(OrderMessageDecoder.handlerFor(orderBookManager)).decode(buffer));
+    assertEquals(0, buffer.remaining());
+
+    assertEquals(Arrays.asList(new Order(2, "ETHBTC", Side.buy, 100, 6), new Order(1, "ETHBTC", Side.buy, 100, 9)),
+            orderBookManager.getOrdersAtLevel("ETHBTC", Side.buy, 100));
+    assertEquals(-1, orderBookManager.getBestPrice("XBTUSD", Side.sell));
+    assertEquals(1, orderBookManager.getInstrumentId("ETHBTC"));
+  }
+
+  @Test
+  public void testPartialAndUnknownMessages() {
+    ByteBuffer buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+    OrderMessageEncoder encoder = new OrderMessageEncoder(buffer);
+    encoder.encodeInstrument(0, "ETHBTC");
+    //a template from a newer encoder, skipped by its block length
+    buffer.putShort((short) 6).putShort((short) 99).putInt(1).putShort((short) 2);
+    encoder.encodeAdd(0, 1, Side.sell, 100, 5);
+    encoder.encodeDelete(1);
+    int end = buffer.position();
+
+    CountingHandler handler = new CountingHandler();
+    OrderMessageDecoder decoder = new OrderMessageDecoder(handler);
+    buffer.flip().limit(end - 3);
+    assertEquals(3, decoder.decode(buffer));
+    assertEquals(end - 12, buffer.position());
+
+    buffer.limit(end);
+    assertEquals(1, decoder.decode(buffer));
+    assertEquals(Arrays.asList(1, 1, 0, 1), Arrays.asList(handler.instruments, handler.adds, handler.modifies, handler.deletes));
+  }
+
+  @Test
+  public void testUnknownSideIsRejected() {
+    ByteBuffer buffer = ByteBuffer.allocate(1024);
+    OrderMessageEncoder encoder = new OrderMessageEncoder(buffer);
+    encoder.encodeAdd(0, 1, Side.sell, 100, 5);
+    buffer.put(OrderMessageEncoder.HEADER_LENGTH + OrderMessageEncoder.ADD_SIDE_OFFSET, (byte) -1);
+    buffer.flip();
+
+    try {
+      new OrderMessageDecoder(new CountingHandler()).decode(buffer);
+      throw new AssertionError("expected an add with an unknown side to be rejected");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void testFileReplayIntoOffHeapBook() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("messages.bin");
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    OrderMessageEncoder encoder = new OrderMessageEncoder(buffer);
+    long messages = 0;
+    try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      encoder.encodeInstrument(0, "ETHBTC");
+      messages++;
+      for(int i = 0; i < 100_000; i++) {
+        //enough messages to span many read chunks, with every third order deleted again
+        if(buffer.remaining() < 64) {
+          buffer.flip();
+          channel.write(buffer);
+          buffer.clear();
+        }
+        encoder.encodeAdd(0, i, Side.values()[i % 2], 100 + i % 10, 1 + i % 7);
+        messages++;
+        if(i % 3 == 2) {
+          encoder.encodeDelete(i - 1);
+          messages++;
+        }
+      }
+      buffer.flip();
+      channel.write(buffer);
+    }
+
+    OffHeapOrderBookManager offHeap = new OffHeapOrderBookManager(100_000);
+    assertEquals(messages, OrderMessageReplay.replay(file, new OrderMessageDecoder(OrderMessageDecoder.handlerFor(offHeap))));
+    OrderBookManagerImpl onHeap = new OrderBookManagerImpl();
+    OrderMessageReplay.replay(file, new OrderMessageDecoder(OrderMessageDecoder.handlerFor(onHeap)));
+
+    assertEquals(onHeap.getLiveOrderCount(), offHeap.getLiveOrderCount());
+    for(long price = 100; price < 110; price++) {
+      assertEquals(onHeap.getOrdersAtLevel("ETHBTC", Side.buy, price), offHeap.getOrdersAtLevel("ETHBTC", Side.buy, price));
+      assertEquals(onHeap.getOrdersAtLevel("ETHBTC", Side.sell, price), offHeap.getOrdersAtLevel("ETHBTC", Side.sell, price));
+    }
+
+    //a file cut short partway through a message
+    try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 1);
+    }
+    try {
+      OrderMessageReplay.replay(file, new OrderMessageDecoder(new CountingHandler()));
+      throw new AssertionError("expected a truncated file to be rejected");
+    } catch (IOException expected) {
+    }
+  }
+
+  private static class CountingHandler implements OrderMessageHandler {
+    int instruments, adds, modifies, deletes;
+
+    @Override
+    public void onInstrument(int instrumentId, String instrument) {
+      instruments++;
+    }
+
+    @Override
+    public void onAdd(int instrumentId, long orderId, Side side, long price, long quantity) {
+      adds++;
+    }
+
+    @Override
+    public void onModify(long orderId, long newQuantity) {
+      modifies++;
+    }
+
+    @Override
+    public void onDelete(long orderId) {
+      deletes++;
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OrderPoolingTest {
+
+  private static final int LIVE_ORDERS = 1_000;
+  private static final int OPERATIONS = 200_000;
+
+  /**
+   * Allowance for one-off allocations that aren't part of the steady state, well under one byte per operation
+   */
+  private static final long ALLOCATION_ALLOWANCE = 1024;
+
+  @Test
+  public void testRecycledOrdersAndLevelsStartClean() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {});
+    orderBookManager.enablePooling(4, 4);
+    int ethbtc = orderBookManager.registerInstrument("ETHBTC");
+
+    orderBookManager.addOrder(ethbtc, 1, Side.buy, 100, 5);
+    Order first = orderBookManager.getOrdersAtLevel(ethbtc, Side.buy, 100).get(0);
+    orderBookManager.deleteOrder(1);
+    assertEquals(-1, orderBookManager.getOrderNumAtLevel(ethbtc, Side.buy, 100));
+
+    //the same order and level come back for the next add, with its values
+    orderBookManager.addOrder(ethbtc, "two", Side.sell, 101, 3);
+    Order second = orderBookManager.getOrdersAtLevel(ethbtc, Side.sell, 101).get(0);
+    assertSame(first, second);
+    assertEquals(new Order("two", "ETHBTC", Side.sell, 101, 3), second);
+    assertEquals(3, orderBookManager.getTotalQuantityAtLevel(ethbtc, Side.sell, 101));
+    assertEquals(-1, orderBookManager.getBestPrice(ethbtc, Side.buy));
+
+    //an incoming order that is completely filled goes straight back, and so does the resting order it filled
+    orderBookManager.addOrder(ethbtc, 3, Side.buy, 101, 3);
+    assertEquals(-1, orderBookManager.getBestPrice(ethbtc, Side.sell));
+    assertEquals(OrderResult.ORDER_NOT_FOUND, orderBookManager.deleteOrder("two"));
+    assertEquals(OrderResult.ORDER_NOT_FOUND, orderBookManager.deleteOrder(3));
+
+    //orders passed in by the caller are rested but never pooled
+    Order callers = new Order(4, "ETHBTC", Side.buy, 99, 1);
+    orderBookManager.addOrder(callers);
+    orderBookManager.modifyOrder(4, 0);
+    orderBookManager.addOrder(ethbtc, 5, Side.buy, 99, 2);
+    assertEquals(Collections.singletonList(new Order(5, "ETHBTC", Side.buy, 99, 2)),
+            orderBookManager.getOrdersAtLevel(ethbtc, Side.buy, 99));
+    assertEquals(new Order(4, "ETHBTC", Side.buy, 99, 1), callers);
+  }
+
+  @Test
+  public void testRejectedAddsGiveTheirOrderBack() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {});
+    orderBookManager.enablePooling(1, 4);
+    orderBookManager.addPriceLadderInstrument("ETHBTC", 5, 100, 4);
+    int ethbtc = orderBookManager.getInstrumentId("ETHBTC");
+
+    orderBookManager.addOrder(ethbtc, 1, Side.buy, 100, 5);
+    Order pooled = orderBookManager.getOrdersAtLevel(ethbtc, Side.buy, 100).get(0);
+    orderBookManager.deleteOrder(1);
+
+    //off the tick of the ladder, so the add is rejected after the order was borrowed
+    try {
+      orderBookManager.addOrder(ethbtc, 2, Side.buy, 101, 5);
+      throw new AssertionError("expected an off-tick add to be rejected");
+    } catch (IllegalArgumentException expected) {
+    }
+    OrderCommandBatch batch = new OrderCommandBatch(1);
+    batch.addOrder(3, "ETHBTC", Side.buy, 102, 5);
+    orderBookManager.applyBatch(batch);
+    assertEquals(OrderResult.REJECTED, batch.getResult(0));
+
+    orderBookManager.addOrder(ethbtc, 4, Side.buy, 95, 5);
+    assertSame(pooled, orderBookManager.getOrdersAtLevel(ethbtc, Side.buy, 95).get(0));
+  }
+
+  @Test
+  public void testQueuedL2LevelsAreRecycledAfterTheFlush() {
+    StringBuilder updates = new StringBuilder();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl(null, 0,
+            (instrument, side, price, totalQuantity, orderCount) ->
+                    updates.append(side).append(' ').append(price).append('=').append(totalQuantity).append(' '));
+    orderBookManager.enablePooling(0, 0);
+    int ethbtc = orderBookManager.registerInstrument("ETHBTC");
+
+    orderBookManager.addOrder(ethbtc, 1, Side.buy, 100, 5);
+    orderBookManager.flushL2Deltas();
+    //removed while queued, so it can't be re-used for the new level until it has been reported
+    orderBookManager.deleteOrder(1);
+    orderBookManager.addOrder(ethbtc, 2, Side.buy, 101, 7);
+    orderBookManager.flushL2Deltas();
+    assertEquals("buy 100=5 buy 100=0 buy 101=7 ", updates.toString());
+
+    orderBookManager.deleteOrder(2);
+    orderBookManager.flushL2Deltas();
+    orderBookManager.addOrder(ethbtc, 3, Side.buy, 102, 1);
+    orderBookManager.flushL2Deltas();
+    assertEquals("buy 100=5 buy 100=0 buy 101=7 buy 101=0 buy 102=1 ", updates.toString());
+  }
+
+  @Test
+  public void testSteadyStateAllocatesNothing() {
+    OrderBookManagerImpl unpooled = newManager();
+    long unpooledBytes = bytesAllocated(unpooled);
+    assertTrue("expected the unpooled manager to allocate, but it took " + unpooledBytes + " bytes",
+            unpooledBytes > 0);
+
+    OrderBookManagerImpl pooled = newManager();
+    pooled.enablePooling(LIVE_ORDERS, LIVE_ORDERS);
+    long pooledBytes = bytesAllocated(pooled);
+    assertTrue("expected the pooled manager to allocate at most " + ALLOCATION_ALLOWANCE + " bytes in "
+            + OPERATIONS + " operations, but it took " + pooledBytes, pooledBytes <= ALLOCATION_ALLOWANCE);
+  }
+
+  /**
+   * A book with matching and the L2 feed enabled, on a price ladder so new levels don't allocate tree entries.
+   */
+  private static OrderBookManagerImpl newManager() {
+    long[] filled = new long[1];
+    long[] updated = new long[1];
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl(
+            (resting, incoming, price, quantity) -> filled[0] += quantity, 0,
+            (instrument, side, price, totalQuantity, orderCount) -> updated[0] += totalQuantity);
+    orderBookManager.addPriceLadderInstrument("ETHBTC", 1, 10_000, 8192);
+    return orderBookManager;
+  }
+
+  /**
+   * Run a mix of adds, modifies up and down, deletes and crossing orders that create and remove levels, twice to warm
+   * up and then once measured.
+   *
+   * @return the bytes allocated by this thread in the whole measured run
+   */
+  private static long bytesAllocated(OrderBookManagerImpl orderBookManager) {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    int ethbtc = orderBookManager.getInstrumentId("ETHBTC");
+    long[] orderIds = new long[LIVE_ORDERS];
+    Arrays.fill(orderIds, -1);
+
+    long nextOrderId = 0;
+    for(int run = 0; run < 3; run++) {
+      long overhead = threads.getThreadAllocatedBytes(threadId);
+      long before = threads.getThreadAllocatedBytes(threadId);
+      overhead = before - overhead;
+
+      for(int i = 0; i < OPERATIONS; i++) {
+        int slot = (int) (nextOrderId % LIVE_ORDERS);
+        long random = (nextOrderId * 0x9E3779B97F4A7C15L) >>> 40;
+        //the order added LIVE_ORDERS ago leaves, one added half as long ago changes size (unless it was filled)
+        if(orderIds[slot] != -1) {
+          if(random % 2 == 0)
+            orderBookManager.deleteOrder(orderIds[slot]);
+          else
+            orderBookManager.modifyOrder(orderIds[slot], 0);
+        }
+        long halfway = orderIds[(slot + LIVE_ORDERS / 2) % LIVE_ORDERS];
+        if(halfway != -1)
+          orderBookManager.modifyOrder(halfway, 1 + random % 20);
+
+        Side side = random % 2 == 0 ? Side.buy : Side.sell;
+        long price = random % 50 == 0
+                ? 10_000 //crosses whichever side it isn't on
+                : side == Side.buy ? 9_999 - random % 2000 : 10_001 + random % 2000;
+        orderBookManager.addOrder(ethbtc, nextOrderId, side, price, 1 + random % 10);
+        orderIds[slot] = nextOrderId++;
+
+        if(i % 64 == 63)
+          orderBookManager.flushL2Deltas();
+      }
+
+      long allocated = threads.getThreadAllocatedBytes(threadId) - before - overhead;
+      if(run == 2)
+        return allocated;
+    }
+    throw new AssertionError();
+  }
+}
@@ -0,0 +1,125 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PriceLadderOrderBookSideTest {
+
+  @Test
+  public void testEmptyLadder() {
+    PriceLadderOrderBookSide ladder = new PriceLadderOrderBookSide(Side.buy, 5, 100, 10);
+
+    assertTrue(ladder.isEmpty());
+    assertEquals(-1, ladder.getBestPrice());
+    assertNull(ladder.getBestLevel());
+    assertNull(ladder.getLevel(100));
+  }
+
+  @Test
+  public void testBestPriceTracking() {
+    for (Side side : Side.values()) {
+      PriceLadderOrderBookSide ladder = new PriceLadderOrderBookSide(side, 5, 100, 10);
+      ladder.getOrCreateLevel(95);
+      ladder.getOrCreateLevel(110);
+      ladder.getOrCreateLevel(100);
+
+      assertEquals(side == Side.buy ? 110 : 95, ladder.getBestPrice());
+
+      ladder.removeLevel(side == Side.buy ? 110 : 95);
+      assertEquals(100, ladder.getBestPrice());
+
+      ladder.removeLevel(100);
+      assertEquals(side == Side.buy ? 95 : 110, ladder.getBestPrice());
+
+      ladder.removeLevel(side == Side.buy ? 95 : 110);
+      assertTrue(ladder.isEmpty());
+    }
+  }
+
+  @Test
+  public void testNextLevelWalksFromBestToWorst() {
+    for (Side side : Side.values()) {
+      PriceLadderOrderBookSide ladder = new PriceLadderOrderBookSide(side, 5, 100, 10);
+      ladder.getOrCreateLevel(90);
+      ladder.getOrCreateLevel(110);
+      ladder.getOrCreateLevel(100);
+
+      PriceLevelOrders level = ladder.getBestLevel();
+      assertEquals(side == Side.buy ? 110 : 90, level.getPrice());
+      level = ladder.getNextLevel(level);
+      assertEquals(100, level.getPrice());
+      level = ladder.getNextLevel(level);
+      assertEquals(side == Side.buy ? 90 : 110, level.getPrice());
+      assertNull(ladder.getNextLevel(level));
+    }
+  }
+
+  @Test
+  public void testRecentreKeepsLevels() {
+    PriceLadderOrderBookSide ladder = new PriceLadderOrderBookSide(Side.sell, 1, 100, 4);
+    PriceLevelOrders levelAt100 = ladder.getOrCreateLevel(100);
+    PriceLevelOrders levelAt101 = ladder.getOrCreateLevel(101);
+
+    //well outside the initial window in both directions, forces the ladder to grow
+    PriceLevelOrders levelAt50 = ladder.getOrCreateLevel(50);
+    PriceLevelOrders levelAt200 = ladder.getOrCreateLevel(200);
+
+    assertSame(levelAt100, ladder.getLevel(100));
+    assertSame(levelAt101, ladder.getLevel(101));
+    assertSame(levelAt50, ladder.getLevel(50));
+    assertSame(levelAt200, ladder.getLevel(200));
+    assertNull(ladder.getLevel(150));
+    assertEquals(50, ladder.getBestPrice());
+  }
+
+  @Test
+  public void testRecentreWhenEmpty() {
+    PriceLadderOrderBookSide ladder = new PriceLadderOrderBookSide(Side.buy, 1, 100, 4);
+
+    ladder.getOrCreateLevel(10_000);
+
+    assertEquals(10_000, ladder.getBestPrice());
+    assertEquals(10_000, ladder.getLevel(10_000).getPrice());
+  }
+
+  @Test
+  public void testOutlierPriceRejectedWithoutGrowing() {
+    PriceLadderOrderBookSide ladder = new PriceLadderOrderBookSide(Side.buy, 1, 100, 4);
+    ladder.getOrCreateLevel(100);
+
+    try {
+      ladder.getOrCreateLevel(1_000_000_000);
+      throw new AssertionError("expected a price this far from the ladder to be rejected");
+    } catch (IllegalArgumentException expected) {
+    }
+    assertEquals(4, ladder.getLadderSize());
+    assertEquals(100, ladder.getBestPrice());
+
+    //the furthest price that still fits grows the ladder to its limit
+    ladder.getOrCreateLevel(100 + 4 * PriceLadderOrderBookSide.MAX_GROWTH - 1);
+    assertEquals(4 * PriceLadderOrderBookSide.MAX_GROWTH, ladder.getLadderSize());
+
+    //once empty the ladder can move anywhere
+    ladder.removeLevel(100);
+    ladder.removeLevel(100 + 4 * PriceLadderOrderBookSide.MAX_GROWTH - 1);
+    ladder.getOrCreateLevel(1_000_000_000);
+    assertEquals(1_000_000_000, ladder.getBestPrice());
+  }
+
+  @Test
+  public void testOffTickPriceLookupReturnsNull() {
+    PriceLadderOrderBookSide ladder = new PriceLadderOrderBookSide(Side.buy, 5, 100, 10);
+    ladder.getOrCreateLevel(100);
+
+    assertNull(ladder.getLevel(101));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOffTickPriceRejected() {
+    new PriceLadderOrderBookSide(Side.buy, 5, 100, 10).getOrCreateLevel(101);
+  }
+}
@@ -0,0 +1,127 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PriceLevelOrdersTest {
+
+  private PriceLevelOrders testPriceLevel;
+  private Order orderOne, orderTwo, orderThree;
+
+  @Before
+  public void init() {
+    testPriceLevel = new PriceLevelOrders(3);
+    orderOne = new Order("1", "ETHBTC", Side.sell, 3, 5);
+    orderTwo = new Order("2", "ETHBTC", Side.sell, 3, 8);
+    orderThree = new Order("3", "ETHBTC", Side.sell, 3, 16);
+  }
+
+  @Test
+  public void testEmptyPriceLevel() {
+    assertTrue(testPriceLevel.isEmpty());
+    assertEquals(0, testPriceLevel.getOrderCount());
+    assertEquals(0, testPriceLevel.getTotalQuantity());
+    assertEquals(0, testPriceLevel.getTotalVolume());
+  }
+
+  @Test
+  public void testAddOrderUpdatesAggregates() {
+    testPriceLevel.addOrder(orderOne);
+    testPriceLevel.addOrder(orderTwo);
+    testPriceLevel.addOrder(orderThree);
+
+    assertEquals(3, testPriceLevel.getOrderCount());
+    assertEquals(29, testPriceLevel.getTotalQuantity());
+    assertEquals(87, testPriceLevel.getTotalVolume());
+  }
+
+  @Test
+  public void testDeleteOrderUpdatesAggregates() {
+    testPriceLevel.addOrder(orderOne);
+    testPriceLevel.addOrder(orderTwo);
+
+    assertTrue(testPriceLevel.deleteOrder(orderOne));
+
+    assertEquals(1, testPriceLevel.getOrderCount());
+    assertEquals(8, testPriceLevel.getTotalQuantity());
+    assertEquals(24, testPriceLevel.getTotalVolume());
+  }
+
+  @Test
+  public void testDeleteOrderNotAtLevel() {
+    testPriceLevel.addOrder(orderOne);
+
+    assertFalse(testPriceLevel.deleteOrder(orderTwo));
+
+    assertEquals(1, testPriceLevel.getOrderCount());
+    assertEquals(5, testPriceLevel.getTotalQuantity());
+  }
+
+  @Test
+  public void testModifyOrderUpdatesAggregates() {
+    testPriceLevel.addOrder(orderOne);
+    testPriceLevel.addOrder(orderTwo);
+
+    testPriceLevel.modifyOrder(orderOne, 2);
+    assertEquals(10, testPriceLevel.getTotalQuantity());
+    assertEquals(0, testPriceLevel.getOrders().indexOf(new Order("1", "ETHBTC", Side.sell, 3, 2)));
+
+    testPriceLevel.modifyOrder(orderOne, 20);
+    assertEquals(28, testPriceLevel.getTotalQuantity());
+    assertEquals(84, testPriceLevel.getTotalVolume());
+    assertEquals(1, testPriceLevel.getOrders().indexOf(new Order("1", "ETHBTC", Side.sell, 3, 20)));
+    assertEquals(2, testPriceLevel.getOrderCount());
+  }
+
+  @Test
+  public void testModifyOrderNotAtLevel() {
+    testPriceLevel.addOrder(orderOne);
+
+    testPriceLevel.modifyOrder(orderTwo, 100);
+
+    assertEquals(1, testPriceLevel.getOrderCount());
+    assertEquals(5, testPriceLevel.getTotalQuantity());
+  }
+
+  @Test
+  public void testModifyOrderInPlaceRequeuesFromMiddle() {
+    testPriceLevel.addOrder(orderOne);
+    testPriceLevel.addOrder(orderTwo);
+    testPriceLevel.addOrder(orderThree);
+
+    testPriceLevel.modifyOrder(orderTwo, 9);
+
+    assertEquals(Arrays.asList(orderOne, orderThree, orderTwo), testPriceLevel.getOrders());
+    assertSame(orderTwo, testPriceLevel.getOrders().get(2));
+    assertEquals(9, orderTwo.getQuantity());
+  }
+
+  @Test
+  public void testDeleteOrderFromEachPosition() {
+    testPriceLevel.addOrder(orderOne);
+    testPriceLevel.addOrder(orderTwo);
+    testPriceLevel.addOrder(orderThree);
+
+    assertTrue(testPriceLevel.deleteOrder(orderTwo));
+    assertEquals(Arrays.asList(orderOne, orderThree), testPriceLevel.getOrders());
+
+    assertTrue(testPriceLevel.deleteOrder(orderThree));
+    assertEquals(Collections.singletonList(orderOne), testPriceLevel.getOrders());
+
+    assertTrue(testPriceLevel.deleteOrder(orderOne));
+    assertTrue(testPriceLevel.isEmpty());
+
+    //re-adding after the queue has been emptied
+    testPriceLevel.addOrder(orderTwo);
+    assertEquals(Collections.singletonList(orderTwo), testPriceLevel.getOrders());
+    assertEquals(8, testPriceLevel.getTotalQuantity());
+  }
+}
@@ -0,0 +1,139 @@
+package com.cryptofacilities.interview;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PublishedDepthTest {
+
+  @Test
+  public void testTopLevelsArePublished() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl(null, 2);
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.buy, 10, 5));
+    orderBookManager.addOrder(new Order(2, "ETHBTC", Side.buy, 12, 3));
+    orderBookManager.addOrder(new Order(3, "ETHBTC", Side.buy, 12, 4));
+    orderBookManager.addOrder(new Order(4, "ETHBTC", Side.buy, 8, 1));
+    orderBookManager.addOrder(new Order(5, "ETHBTC", Side.sell, 15, 2));
+
+    PublishedDepth publishedDepth = orderBookManager.getPublishedDepth("ETHBTC");
+    DepthSnapshot snapshot = new DepthSnapshot(2);
+    publishedDepth.readInto(snapshot);
+
+    assertEquals(12, publishedDepth.getBestPrice(Side.buy));
+    assertEquals(15, publishedDepth.getBestPrice(Side.sell));
+    assertEquals(2, snapshot.getLevelCount(Side.buy));
+    assertEquals(12, snapshot.getPrice(Side.buy, 0));
+    assertEquals(7, snapshot.getTotalQuantity(Side.buy, 0));
+    assertEquals(2, snapshot.getOrderCount(Side.buy, 0));
+    assertEquals(10, snapshot.getPrice(Side.buy, 1));
+    assertEquals(1, snapshot.getLevelCount(Side.sell));
+    assertEquals(2, snapshot.getTotalQuantity(Side.sell, 0));
+
+    orderBookManager.deleteOrder(2);
+    orderBookManager.deleteOrder(3);
+    orderBookManager.deleteOrder(5);
+    publishedDepth.readInto(snapshot);
+
+    assertEquals(2, snapshot.getLevelCount(Side.buy));
+    assertEquals(10, snapshot.getBestPrice(Side.buy));
+    assertEquals(8, snapshot.getPrice(Side.buy, 1));
+    assertEquals(-1, snapshot.getBestPrice(Side.sell));
+  }
+
+  @Test
+  public void testChangesBelowDepthAreNotRepublished() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl(null, 1);
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.sell, 10, 5));
+    PublishedDepth publishedDepth = orderBookManager.getPublishedDepth("ETHBTC");
+    long version = publishedDepth.getVersion();
+
+    orderBookManager.addOrder(new Order(2, "ETHBTC", Side.sell, 11, 5));
+    orderBookManager.modifyOrder(2, 7);
+    orderBookManager.deleteOrder(2);
+    assertEquals(version, publishedDepth.getVersion());
+
+    orderBookManager.modifyOrder(1, 3);
+    assertEquals(version + 1, publishedDepth.getVersion());
+  }
+
+  @Test
+  public void testFillsArePublished() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {}, 5);
+    orderBookManager.addPriceLadderInstrument("ETHBTC", 1, 10, 16);
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.sell, 10, 5));
+    orderBookManager.addOrder(new Order(2, "ETHBTC", Side.sell, 11, 5));
+    orderBookManager.addOrder(new Order(3, "ETHBTC", Side.buy, 10, 7));
+
+    DepthSnapshot snapshot = new DepthSnapshot(5);
+    orderBookManager.getPublishedDepth("ETHBTC").readInto(snapshot);
+
+    assertEquals(1, snapshot.getLevelCount(Side.sell));
+    assertEquals(11, snapshot.getBestPrice(Side.sell));
+    assertEquals(10, snapshot.getBestPrice(Side.buy));
+    assertEquals(2, snapshot.getTotalQuantity(Side.buy, 0));
+  }
+
+  @Test
+  public void testFillsByAnIncomingIcebergArePublished() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl((resting, incoming, price, quantity) -> {}, 5);
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.sell, 100, 10));
+    orderBookManager.addOrder(new Order(2, "ETHBTC", Side.sell, 101, 50));
+    //fills 10 and is refilled to the same 10 it showed before matching
+    Order iceberg = new Order(3, "ETHBTC", Side.buy, 100, 20, 10);
+    orderBookManager.addOrder(iceberg);
+    assertEquals(10, iceberg.getQuantity());
+
+    DepthSnapshot snapshot = new DepthSnapshot(5);
+    orderBookManager.getPublishedDepth("ETHBTC").readInto(snapshot);
+
+    assertEquals(1, snapshot.getLevelCount(Side.sell));
+    assertEquals(101, snapshot.getBestPrice(Side.sell));
+    assertEquals(100, snapshot.getBestPrice(Side.buy));
+    assertEquals(10, snapshot.getTotalQuantity(Side.buy, 0));
+  }
+
+  @Test
+  public void testDisabledByDefault() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    orderBookManager.addOrder(new Order(1, "ETHBTC", Side.sell, 10, 5));
+
+    assertNull(orderBookManager.getPublishedDepth("ETHBTC"));
+  }
+
+  @Test
+  public void testReadersNeverSeeTornLevels() throws InterruptedException {
+    final long orderQuantity = 10;
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl(null, 4);
+    orderBookManager.addOrder(new Order(0, "ETHBTC", Side.buy, 100, orderQuantity));
+    PublishedDepth publishedDepth = orderBookManager.getPublishedDepth("ETHBTC");
+
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicReference<String> failure = new AtomicReference<>();
+    Thread reader = new Thread(() -> {
+      DepthSnapshot snapshot = new DepthSnapshot(4);
+      while (running.get()) {
+        publishedDepth.readInto(snapshot);
+        //every order has the same quantity, so a level mixing two publishes shows up as a mismatch
+        for (int level = 0; level < snapshot.getLevelCount(Side.buy); level++) {
+          if (snapshot.getTotalQuantity(Side.buy, level) != snapshot.getOrderCount(Side.buy, level) * orderQuantity)
+            failure.compareAndSet(null, "torn level " + level + " in version " + snapshot.getVersion());
+        }
+      }
+    });
+    reader.start();
+
+    for (int i = 1; i < 200_000; i++) {
+      orderBookManager.addOrder(new Order(i, "ETHBTC", Side.buy, 100 + i % 5, orderQuantity));
+      if (i % 3 == 0)
+        orderBookManager.deleteOrder(i - 2);
+    }
+    running.set(false);
+    reader.join();
+
+    assertNull(failure.get());
+  }
+}
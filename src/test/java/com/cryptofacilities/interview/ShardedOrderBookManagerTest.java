@@ -0,0 +1,168 @@
+package com.cryptofacilities.interview;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class ShardedOrderBookManagerTest {
+
+  private ShardedOrderBookManager testOrderBookManager;
+
+  @Before
+  public void init() {
+    testOrderBookManager = new ShardedOrderBookManager(4);
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    testOrderBookManager.close();
+  }
+
+  @Test
+  public void testInstrumentsAcrossShards() {
+    for (int instrument = 0; instrument < 20; instrument++) {
+      testOrderBookManager.addOrder(new Order("b" + instrument, "INST" + instrument, Side.buy, 100 + instrument, 10));
+      testOrderBookManager.addOrder(new Order(instrument, "INST" + instrument, Side.sell, 200 + instrument, 5));
+    }
+
+    for (int instrument = 0; instrument < 20; instrument++) {
+      assertEquals(100 + instrument, testOrderBookManager.getBestPrice("INST" + instrument, Side.buy));
+      assertEquals(200 + instrument, testOrderBookManager.getBestPrice("INST" + instrument, Side.sell));
+    }
+    assertEquals(40, testOrderBookManager.getLiveOrderCount());
+  }
+
+  @Test
+  public void testModifyAndDeleteAreRoutedToOwningShard() {
+    Order orderOne = new Order("1", "ETHBTC", Side.buy, 10, 5);
+    Order orderTwo = new Order(2, "ETHBTC", Side.buy, 10, 7);
+    testOrderBookManager.addOrder(orderOne);
+    testOrderBookManager.addOrder(orderTwo);
+
+    assertEquals(OrderResult.OK, testOrderBookManager.modifyOrder("1", 9));
+    assertEquals(OrderResult.OK, testOrderBookManager.modifyOrder(2, 3));
+
+    assertEquals(12, testOrderBookManager.getTotalQuantityAtLevel("ETHBTC", Side.buy, 10));
+    assertEquals(120, testOrderBookManager.getTotalVolumeAtLevel("ETHBTC", Side.buy, 10));
+    assertEquals(Arrays.asList(orderTwo, orderOne), testOrderBookManager.getOrdersAtLevel("ETHBTC", Side.buy, 10));
+
+    assertEquals(OrderResult.OK, testOrderBookManager.deleteOrder("1"));
+    assertEquals(OrderResult.OK, testOrderBookManager.modifyOrder(2, 0));
+    assertEquals(OrderResult.ORDER_NOT_FOUND, testOrderBookManager.deleteOrder("1"));
+    assertEquals(OrderResult.ORDER_NOT_FOUND, testOrderBookManager.deleteOrder(2));
+
+    assertEquals(-1, testOrderBookManager.getOrderNumAtLevel("ETHBTC", Side.buy, 10));
+    assertEquals(0, testOrderBookManager.getLiveOrderCount());
+  }
+
+  @Test
+  public void testRejectedAddsAreCountedAndLeaveNoRoute() {
+    //an order without a side can't be rested
+    testOrderBookManager.addOrder(new Order(1, "ETHBTC", null, 10, 5));
+    testOrderBookManager.addOrder(new Order("two", "ETHBTC", Side.buy, 10, 5));
+    testOrderBookManager.addOrder(new Order("two", "ETHBTC", Side.buy, 11, 3));
+    testOrderBookManager.flush();
+
+    assertEquals(2, testOrderBookManager.getRejectedCommandCount());
+    assertEquals(OrderResult.ORDER_NOT_FOUND, testOrderBookManager.deleteOrder(1));
+    //the duplicate was rejected, but the route still leads to the order resting with its id
+    assertEquals(OrderResult.OK, testOrderBookManager.deleteOrder("two"));
+    assertEquals(0, testOrderBookManager.getLiveOrderCount());
+    assertEquals(-1, testOrderBookManager.getBestPrice("ETHBTC", Side.buy));
+  }
+
+  @Test
+  public void testFilledOrdersAreNoLongerRouted() throws InterruptedException {
+    testOrderBookManager.close();
+    AtomicLong filledQuantity = new AtomicLong();
+    testOrderBookManager = new ShardedOrderBookManager(2, (resting, incoming, price, quantity) ->
+            filledQuantity.addAndGet(quantity));
+
+    testOrderBookManager.addOrder(new Order(1, "ETHBTC", Side.sell, 10, 5));
+    testOrderBookManager.addOrder(new Order(2, "ETHBTC", Side.buy, 10, 5));
+    testOrderBookManager.flush();
+
+    assertEquals(5, filledQuantity.get());
+    assertEquals(OrderResult.ORDER_NOT_FOUND, testOrderBookManager.deleteOrder(1));
+    assertEquals(OrderResult.ORDER_NOT_FOUND, testOrderBookManager.deleteOrder(2));
+    assertEquals(0, testOrderBookManager.getLiveOrderCount());
+  }
+
+  @Test
+  public void testOrderingPreservedPerInstrumentWithConcurrentProducers() throws InterruptedException {
+    int producers = 4;
+    int ordersPerProducer = 10_000;
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+
+    for (int producer = 0; producer < producers; producer++) {
+      String instrument = "INST" + producer;
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        //each order is modified down and then deleted straight after being added, which only works if the
+        //three operations are applied in the order they were submitted
+        for (int i = 0; i < ordersPerProducer; i++) {
+          String orderId = instrument + "-" + i;
+          testOrderBookManager.addOrder(new Order(orderId, instrument, Side.buy, 100 + i % 10, 10));
+          testOrderBookManager.modifyOrder(orderId, 5);
+          if (i % 2 == 0)
+            testOrderBookManager.deleteOrder(orderId);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(producers * ordersPerProducer / 2, testOrderBookManager.getLiveOrderCount());
+    for (int producer = 0; producer < producers; producer++) {
+      //odd orders stay, all 1000 at price 101 were reduced to 5 and none at 100 survive
+      assertEquals(ordersPerProducer / 10 * 5, testOrderBookManager.getTotalQuantityAtLevel("INST" + producer, Side.buy, 101));
+      assertEquals(-1, testOrderBookManager.getTotalQuantityAtLevel("INST" + producer, Side.buy, 100));
+    }
+  }
+
+  @Test
+  public void testOrdersAtLevelAreCopies() {
+    Order order = new Order(1, "ETHBTC", Side.buy, 10, 5);
+    testOrderBookManager.addOrder(order);
+
+    List<Order> orders = testOrderBookManager.getOrdersAtLevel("ETHBTC", Side.buy, 10);
+    assertEquals(Collections.singletonList(order), orders);
+    assertNotSame(order, orders.get(0));
+
+    //later changes on the shard don't reach the copies
+    testOrderBookManager.modifyOrder(1, 2);
+    assertEquals(2, testOrderBookManager.getTotalQuantityAtLevel("ETHBTC", Side.buy, 10));
+    assertEquals(5, orders.get(0).getQuantity());
+  }
+
+  @Test
+  public void testUnknownInstrumentQueries() {
+    assertEquals(-1, testOrderBookManager.getTotalQuantityAtLevel("NONE", Side.buy, 10));
+    assertEquals(Collections.emptyList(), testOrderBookManager.getOrdersAtLevel("NONE", Side.buy, 10));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShardCountMustBePositive() {
+    new ShardedOrderBookManager(0);
+  }
+}